@@ -12,9 +12,9 @@ public interface Account {
   
   public void setName(String name);
   
-  public BigDecimal getBalance();
+  public Money getBalance();
   
-  public void setBalance(BigDecimal balance);
+  public void setBalance(Money balance);
   
   public int getType();
   
@@ -1,17 +1,15 @@
 package com.bank.accounts;
 
-import com.bank.databasehelper.DatabaseInsertHelper;
 import com.bank.databasehelper.DatabaseSelectHelper;
 import com.bank.databasehelper.DatabaseUpdateHelper;
-import com.bank.exceptions.IllegalAmountException;
 import com.bank.generics.AccountMap;
+import com.bank.messages.NotificationQueue;
 import java.math.BigDecimal;
-import java.util.List;
 
 public abstract class AccountImpl implements Account {
   private int id;
   private String name;
-  private BigDecimal balance;
+  private Money balance;
   private int type;
   BigDecimal interestRate = null;
   
@@ -21,7 +19,7 @@ public abstract class AccountImpl implements Account {
    * @param name the name of the account
    * @param balance the balance of the account
    */
-  public AccountImpl(int id, String name, BigDecimal balance) {
+  public AccountImpl(int id, String name, Money balance) {
     this.setId(id);
     this.setName(name);
     this.setBalance(balance);
@@ -53,13 +51,13 @@ public abstract class AccountImpl implements Account {
    * Updates the account's balance from the database and then returns it.
    * @return the account balance
    */
-  public BigDecimal getBalance() {
+  public Money getBalance() {
     // Updating in case information was changed
     this.balance = DatabaseSelectHelper.getBalance(this.id);
     return this.balance;
   }
 
-  public void setBalance(BigDecimal balance) {
+  public void setBalance(Money balance) {
     this.balance = balance;
   }
   
@@ -88,12 +86,10 @@ public abstract class AccountImpl implements Account {
    */
   public void addInterest() {
 
-    // Calculating the new balance
-    BigDecimal newInterest = this.getBalance().multiply(this.interestRate);
-    BigDecimal newBalance = this.getBalance().add(newInterest);
-
-    // Rounding
-    newBalance = newBalance.setScale(2, BigDecimal.ROUND_HALF_UP);
+    // Calculating the new balance, the interest is rounded to the nearest cent
+    Money balance = this.getBalance();
+    Money newInterest = balance.multiply(this.interestRate);
+    Money newBalance = balance.add(newInterest);
     this.setBalance(newBalance);
 
     // Updating the balance in the database
@@ -107,17 +103,10 @@ public abstract class AccountImpl implements Account {
     String message = "$" + newInterest + " worth of interest has been added to your " + typeName
         + " account " + accountname;
 
-    // get the user of the account
-    try {
-      List<Integer> users = DatabaseSelectHelper.getUsers();
-      for (int userid : users) {
-        if (DatabaseSelectHelper.getAccountIds(userid).contains(this.id)) {
-          // leave message for the user
-          DatabaseInsertHelper.insertMessage(userid, message);
-        }
-      }
-    } catch (IllegalAmountException e) {
-      e.printStackTrace();
+    // leave a message for every owner of the account, written after the interest is added
+    NotificationQueue notifications = NotificationQueue.getInstance();
+    for (int userid : DatabaseSelectHelper.getAccountOwners(this.id)) {
+      notifications.send(userid, message);
     }
   }
 
@@ -1,7 +1,5 @@
 package com.bank.accounts;
 
-import java.math.BigDecimal;
-
 public class BalanceOwingAccount extends AccountImpl {
   private final String typeName = "BALANCEOWING";
   
@@ -11,7 +9,7 @@ public class BalanceOwingAccount extends AccountImpl {
    * @param name the name of the account
    * @param balance the balance of the account
    */
-  public BalanceOwingAccount(int id, String name, BigDecimal balance) {
+  public BalanceOwingAccount(int id, String name, Money balance) {
     super(id, name, balance);
     this.setType(this.typeName);
   }
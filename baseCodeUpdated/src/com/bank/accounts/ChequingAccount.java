@@ -1,7 +1,5 @@
 package com.bank.accounts;
 
-import java.math.BigDecimal;
-
 public class ChequingAccount extends AccountImpl {
   // Account type name
   private final String typeName = "CHEQUING";
@@ -12,7 +10,7 @@ public class ChequingAccount extends AccountImpl {
    * @param name the name of the account
    * @param balance the balance of the account
    */
-  public ChequingAccount(int id, String name, BigDecimal balance) {
+  public ChequingAccount(int id, String name, Money balance) {
     super(id, name, balance);
     this.setType(this.typeName);
   }
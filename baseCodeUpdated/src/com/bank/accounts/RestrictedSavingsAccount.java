@@ -1,7 +1,5 @@
 package com.bank.accounts;
 
-import java.math.BigDecimal;
-
 public class RestrictedSavingsAccount extends AccountImpl {
   // Account type name
   private final String typeName = "RESTRICTEDSAVING";
@@ -12,7 +10,7 @@ public class RestrictedSavingsAccount extends AccountImpl {
    * @param name account name
    * @param balance account balance
    */
-  public RestrictedSavingsAccount(int id, String name, BigDecimal balance) {
+  public RestrictedSavingsAccount(int id, String name, Money balance) {
     super(id, name, balance);
     this.setType(this.typeName);
   }
@@ -1,7 +1,5 @@
 package com.bank.accounts;
 
-import java.math.BigDecimal;
-
 public class SavingsAccount extends AccountImpl {
   // Account type name
   private final String typeName = "SAVING";
@@ -12,7 +10,7 @@ public class SavingsAccount extends AccountImpl {
    * @param name account name
    * @param balance account balance
    */
-  public SavingsAccount(int id, String name, BigDecimal balance) {
+  public SavingsAccount(int id, String name, Money balance) {
     super(id, name, balance);
     this.setType(this.typeName);
   }
@@ -1,7 +1,5 @@
 package com.bank.accounts;
 
-import java.math.BigDecimal;
-
 public class Tfsa extends AccountImpl {
   // Account type name
   private final String typeName = "TFSA";
@@ -12,7 +10,7 @@ public class Tfsa extends AccountImpl {
    * @param name account name
    * @param balance account balance
    */
-  public Tfsa(int id, String name, BigDecimal balance) {
+  public Tfsa(int id, String name, Money balance) {
     super(id, name, balance);
     this.setType(this.typeName);
   }
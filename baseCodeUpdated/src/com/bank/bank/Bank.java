@@ -1,6 +1,7 @@
 package com.bank.bank;
 
 import com.bank.accounts.Account;
+import com.bank.accounts.Money;
 import com.bank.databasehelper.DatabaseInsertHelper;
 import com.bank.databasehelper.DatabaseSelectHelper;
 import com.bank.databasehelper.DatabaseSerializer;
@@ -23,10 +24,15 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.math.BigDecimal;
 import java.sql.Connection;
+import java.util.Arrays;
 import java.util.List;
 
 
 public class Bank {
+  // Messages are read from the database this many at a time
+  private static final int MESSAGE_PAGE_SIZE = 50;
+  // The most messages a search shows
+  private static final int MESSAGE_SEARCH_LIMIT = 20;
   /**
    * This is the main method to run your entire program! Follow the Candy Cane instructions to
    * finish this off.
@@ -127,7 +133,8 @@ public class Bank {
         System.out.println("11: View any user's messages");
         System.out.println("12: View personal messages");
         System.out.println("13: Send message");
-        System.out.println("14: Exit");
+        System.out.println("14: Search messages");
+        System.out.println("15: Exit");
         int selection = Integer.parseInt(bfReader.readLine());
         
         if (selection == 1) {
@@ -186,7 +193,7 @@ public class Bank {
           listCustomerAccountsInterface();
         } else if (selection == 7) {
           // View How Much Money the Bank is Currently Trafficking
-          BigDecimal dosh = terminal.bankBalance();
+          Money dosh = terminal.bankBalance();
           System.out.println("The amount of money our bank is trafficking: $" + dosh);
         } else if (selection == 8) {
           // Promote Teller to Admin
@@ -233,6 +240,9 @@ public class Bank {
           // send messages
           sendMessage(adminId, adminPw);
         } else if (selection == 14) {
+          // search messages
+          searchMessages(terminal);
+        } else if (selection == 15) {
           // Exit
           break;
         }
@@ -608,6 +618,13 @@ public class Bank {
       String accountName = bfReader.readLine();
       System.out.print("Balance (including two decimal places): ");
       BigDecimal accountBalance = new BigDecimal(bfReader.readLine());
+      
+      // Check that the balance has 2 or fewer decimal places
+      if (accountBalance.scale() > 2) {
+        System.out.println("Invalid balance (2 decimal places maximum)");
+        return;
+      }
+      
       System.out.print("Account Type (name): ");
       String accountType = bfReader.readLine();
       
@@ -628,7 +645,8 @@ public class Bank {
       if (accountTypeId == AccountMap.getInstance().getTypeId("SAVING")
           && accountBalance.floatValue() < 1000.00) {
         System.out.println("Savings accounts require a minimum $1000 deposit");
-      } else if (terminal.makeNewAccount(accountName, accountBalance, accountTypeId) != -1) {
+      } else if (terminal.makeNewAccount(accountName, Money.valueOf(accountBalance),
+          accountTypeId) != -1) {
         System.out.println("Account created");
         String accountsString = "";
         System.out.println("Customer account list:");
@@ -809,7 +827,7 @@ public class Bank {
       
       // Proceeding if a match was found
       if (accountMatch) {
-        if (atm.makeDeposit(depositAmount, accountId)) {
+        if (atm.makeDeposit(Money.valueOf(depositAmount), accountId)) {
           System.out.println("Deposit made");
           System.out.println("New balance: " + DatabaseSelectHelper.getBalance(accountId));
         } else {
@@ -854,11 +872,11 @@ public class Bank {
       Account type = DatabaseSelectHelper.getAccountDetails(accountId);
       // Proceeding if a match was found
       if (accountMatch) {
-        if (atm.makeWithdrawal(withdrawAmount, accountId)) {
+        if (atm.makeWithdrawal(Money.valueOf(withdrawAmount), accountId)) {
           System.out.println("Withdrawal made");
           System.out.println("New balance: " + DatabaseSelectHelper.getBalance(accountId));
           if (type.getType() == AccountMap.getInstance().getTypeId("SAVING")
-              && DatabaseSelectHelper.getBalance(accountId).floatValue() < 1000.00f) {
+              && DatabaseSelectHelper.getBalance(accountId).getCents() < 100000) {
             DatabaseUpdateHelper.updateAccountType(AccountMap.getInstance().getTypeId("CHEQUING"),
                 accountId);
           }
@@ -934,6 +952,30 @@ public class Bank {
     }
   }
   
+  private static void searchMessages(AdminTerminal terminal) {
+    InputStreamReader isReader = new InputStreamReader(System.in);
+    BufferedReader bfReader = new BufferedReader(isReader);
+
+    try {
+      System.out.print("Words to search for: ");
+      String query = bfReader.readLine();
+      System.out.print("User's ID (0 for everyone): ");
+      int userId = Integer.parseInt(bfReader.readLine());
+      
+      // Best matches first
+      List<Message> messages = terminal.searchMessages(query, userId, MESSAGE_SEARCH_LIMIT);
+      if (messages.isEmpty()) {
+        System.out.println("No messages found");
+      }
+      for (Message message : messages) {
+        System.out.println("Message " + message.getMessageid() + " for user "
+            + message.getUserid() + ": " + message.getMessage());
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+  
   private static void viewAnyMessage(AdminTerminal terminal) {
     InputStreamReader isReader = new InputStreamReader(System.in);
     BufferedReader bfReader = new BufferedReader(isReader);
@@ -942,17 +984,25 @@ public class Bank {
       // Get messageId
       System.out.print("User's ID: ");
       int userId = Integer.parseInt(bfReader.readLine());
-      // Get messages
-      List<Message> messages = DatabaseSelectHelper.getAllMessages(userId);
+      // Get messages a page at a time, newest first
+      List<Message> messages = DatabaseSelectHelper.getMessages(userId, 0, MESSAGE_PAGE_SIZE);
       if (messages.isEmpty()) {
         System.out.println("No messages");
       }
-      for (Message message : messages) {
-        if (message.getViewed() != 1) {
-          System.out.print("(unread) ");
+      while (!messages.isEmpty()) {
+        for (Message message : messages) {
+          if (message.getViewed() != 1) {
+            System.out.print("(unread) ");
+          }
+          
+          System.out.println(message.getMessage());
         }
         
-        System.out.println(message.getMessage());
+        if (messages.size() < MESSAGE_PAGE_SIZE) {
+          break;
+        }
+        int lastId = messages.get(messages.size() - 1).getMessageid();
+        messages = DatabaseSelectHelper.getMessages(userId, lastId, MESSAGE_PAGE_SIZE);
       }
     } catch (IOException e) {
       e.printStackTrace();
@@ -961,22 +1011,33 @@ public class Bank {
 
   private static void viewMessages(int userId) {
     try {
-      // Get messages
-      List<Message> messages = DatabaseSelectHelper.getAllMessages(userId);
+      // Get messages a page at a time, newest first
+      List<Message> messages = DatabaseSelectHelper.getMessages(userId, 0, MESSAGE_PAGE_SIZE);
       if (messages.isEmpty()) {
         System.out.println("No messages");
       }
       
-      System.out.println("Messages: ");
-      for (Message message : messages) {
-        if (message.getViewed() != 1) {
-          System.out.print("(unread) ");
+      System.out.println("Messages (" + DatabaseSelectHelper.countUnread(userId) + " unread): ");
+      while (!messages.isEmpty()) {
+        int[] unread = new int[messages.size()];
+        int unreadCount = 0;
+        for (Message message : messages) {
+          if (message.getViewed() != 1) {
+            System.out.print("(unread) ");
+            unread[unreadCount++] = message.getMessageid();
+          }
           
-          // Updating viewed status since it was viewed
-          DatabaseUpdateHelper.updateUserMessageState(message.getMessageid());
+          System.out.println(message.getMessage());
         }
         
-        System.out.println(message.getMessage());
+        // Updating viewed status of the page since it was viewed, with one write
+        DatabaseUpdateHelper.markViewed(Arrays.copyOf(unread, unreadCount));
+        
+        if (messages.size() < MESSAGE_PAGE_SIZE) {
+          break;
+        }
+        int lastId = messages.get(messages.size() - 1).getMessageid();
+        messages = DatabaseSelectHelper.getMessages(userId, lastId, MESSAGE_PAGE_SIZE);
       }
     } catch (Exception e) {
       System.out.println("Invalid input");
@@ -1,11 +1,13 @@
 package com.bank.database;
 
+import com.bank.accounts.Money;
 import com.bank.security.PasswordHelpers;
 
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 
 
@@ -24,14 +26,18 @@ public class DatabaseInserter {
       throws DatabaseInsertException {
     String sql = "INSERT INTO ROLES(NAME) VALUES(?)";
     try {
-      PreparedStatement preparedStatement = connection.prepareStatement(sql, 
-                                              Statement.RETURN_GENERATED_KEYS);
+      PreparedStatement preparedStatement = StatementCache.prepare(connection, sql,
+          Statement.RETURN_GENERATED_KEYS);
       preparedStatement.setString(1,role);
       int id = preparedStatement.executeUpdate();
       if (id > 0) {
         ResultSet uniqueKey = preparedStatement.getGeneratedKeys();
-        if (uniqueKey.next()) {
-          return uniqueKey.getInt(1);
+        try {
+          if (uniqueKey.next()) {
+            return uniqueKey.getInt(1);
+          }
+        } finally {
+          uniqueKey.close();
         }
       }
     } catch (Exception e) {
@@ -73,15 +79,19 @@ public class DatabaseInserter {
       Connection connection) throws DatabaseInsertException {
     String sql = "INSERT INTO ACCOUNTTYPES(NAME,INTERESTRATE) VALUES(?,?)";;
     try {
-      PreparedStatement preparedStatement = connection.prepareStatement(sql, 
-                                              Statement.RETURN_GENERATED_KEYS);
+      PreparedStatement preparedStatement = StatementCache.prepare(connection, sql,
+          Statement.RETURN_GENERATED_KEYS);
       preparedStatement.setString(1, name);
       preparedStatement.setString(2, interestRate.toPlainString());
       int id = preparedStatement.executeUpdate();
       if (id > 0) {
         ResultSet uniqueKey = preparedStatement.getGeneratedKeys();
-        if (uniqueKey.next()) {
-          return uniqueKey.getInt(1);
+        try {
+          if (uniqueKey.next()) {
+            return uniqueKey.getInt(1);
+          }
+        } finally {
+          uniqueKey.close();
         }
       }
     } catch (Exception e) {
@@ -100,20 +110,24 @@ public class DatabaseInserter {
    * @return accountId of inserted account.
    * @throws DatabaseInsertException on failure of insert.
    */
-  protected static int insertAccount(String name, BigDecimal balance, int typeId, 
+  protected static int insertAccount(String name, Money balance, int typeId, 
       Connection connection) throws DatabaseInsertException {
     String sql = "INSERT INTO ACCOUNTS(NAME,BALANCE,TYPE) VALUES(?,?,?)";
     try {
-      PreparedStatement preparedStatement = connection.prepareStatement(sql, 
+      PreparedStatement preparedStatement = StatementCache.prepare(connection, sql,
           Statement.RETURN_GENERATED_KEYS);
       preparedStatement.setString(1, name);
-      preparedStatement.setString(2, balance.toPlainString());
+      preparedStatement.setLong(2, balance.getCents());
       preparedStatement.setInt(3, typeId);
       int id = preparedStatement.executeUpdate();
       if (id > 0) {
         ResultSet uniqueKey = preparedStatement.getGeneratedKeys();
-        if (uniqueKey.next()) {
-          return uniqueKey.getInt(1);
+        try {
+          if (uniqueKey.next()) {
+            return uniqueKey.getInt(1);
+          }
+        } finally {
+          uniqueKey.close();
         }
       }
     } catch (Exception e) {
@@ -134,15 +148,19 @@ public class DatabaseInserter {
       throws DatabaseInsertException {
     String sql = "INSERT INTO USERACCOUNT(USERID,ACCOUNTID) VALUES(?,?);";
     try {
-      PreparedStatement preparedStatement = connection.prepareStatement(sql,
-                                              Statement.RETURN_GENERATED_KEYS);
+      PreparedStatement preparedStatement = StatementCache.prepare(connection, sql,
+          Statement.RETURN_GENERATED_KEYS);
       preparedStatement.setInt(1, userId);
       preparedStatement.setInt(2, accountId);
       int id = preparedStatement.executeUpdate();
       if (id > 0) {
         ResultSet uniqueKey = preparedStatement.getGeneratedKeys();
-        if (uniqueKey.next()) {
-          return uniqueKey.getInt(1);
+        try {
+          if (uniqueKey.next()) {
+            return uniqueKey.getInt(1);
+          }
+        } finally {
+          uniqueKey.close();
         }
       }
     } catch (Exception e) {
@@ -163,17 +181,62 @@ public class DatabaseInserter {
       throws DatabaseInsertException {
     String sql = "INSERT INTO USERMESSAGES(USERID,MESSAGE,VIEWED) VALUES(?, ?, ?);";
     try {
-      PreparedStatement preparedStatement = connection.prepareStatement(sql,
-                                              Statement.RETURN_GENERATED_KEYS);
+      PreparedStatement preparedStatement = StatementCache.prepare(connection, sql,
+          Statement.RETURN_GENERATED_KEYS);
       preparedStatement.setInt(1, userId);
       preparedStatement.setString(2, message);
       preparedStatement.setInt(3, 0);
       int id = preparedStatement.executeUpdate();
       if (id > 0) {
         ResultSet uniqueKey = preparedStatement.getGeneratedKeys();
-        if (uniqueKey.next()) {
-          return uniqueKey.getInt(1);
+        try {
+          if (uniqueKey.next()) {
+            return uniqueKey.getInt(1);
+          }
+        } finally {
+          uniqueKey.close();
+        }
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+    throw new DatabaseInsertException();
+  }
+  
+  /**
+   * Insert messages into the database in one transaction. Messages for a user that doesn't exist
+   * are left out.
+   * @param userIds the id of the user every message is for.
+   * @param messages the messages to be left, in the same order as their users.
+   * @param connection the connection to the database.
+   * @return the number of messages inserted.
+   * @throws DatabaseInsertException thrown on failure, nothing is inserted then.
+   */
+  protected static int insertMessages(int[] userIds, String[] messages, Connection connection)
+      throws DatabaseInsertException {
+    String sql = "INSERT INTO USERMESSAGES(USERID,MESSAGE,VIEWED) SELECT ?, ?, 0"
+        + " WHERE EXISTS (SELECT 1 FROM USERS WHERE ID = ?);";
+    try {
+      connection.setAutoCommit(false);
+      try {
+        PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
+        for (int i = 0; i < messages.length; i++) {
+          preparedStatement.setInt(1, userIds[i]);
+          preparedStatement.setString(2, messages[i]);
+          preparedStatement.setInt(3, userIds[i]);
+          preparedStatement.addBatch();
+        }
+        int inserted = 0;
+        for (int count : preparedStatement.executeBatch()) {
+          inserted += count;
         }
+        connection.commit();
+        return inserted;
+      } catch (SQLException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(true);
       }
     } catch (Exception e) {
       e.printStackTrace();
@@ -185,7 +248,7 @@ public class DatabaseInserter {
     String sql = "INSERT INTO USERPW(USERID, PASSWORD) VALUES(?,?);";
     try {
       password = PasswordHelpers.passwordHash(password);
-      PreparedStatement preparedStatement = connection.prepareStatement(sql);
+      PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
       preparedStatement.setInt(1, userId);
       preparedStatement.setString(2, password);
       preparedStatement.executeUpdate();
@@ -199,7 +262,7 @@ public class DatabaseInserter {
         Connection connection) {
     String sql = "INSERT INTO USERS(NAME, AGE, ADDRESS, ROLEID) VALUES(?,?,?,?);";
     try {
-      PreparedStatement preparedStatement = connection.prepareStatement(sql, 
+      PreparedStatement preparedStatement = StatementCache.prepare(connection, sql,
           Statement.RETURN_GENERATED_KEYS);
       preparedStatement.setString(1, name);
       preparedStatement.setInt(2, age);
@@ -208,8 +271,12 @@ public class DatabaseInserter {
       int id = preparedStatement.executeUpdate();
       if (id > 0) {
         ResultSet uniqueKey = preparedStatement.getGeneratedKeys();
-        if (uniqueKey.next()) {
-          return uniqueKey.getInt(1);
+        try {
+          if (uniqueKey.next()) {
+            return uniqueKey.getInt(1);
+          }
+        } finally {
+          uniqueKey.close();
         }
       }
     } catch (Exception e) {
@@ -1,11 +1,12 @@
 package com.bank.database;
 
+import com.bank.accounts.Money;
+
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 
 public class DatabaseSelector {
 
@@ -20,9 +21,9 @@ public class DatabaseSelector {
    * @throws SQLException thrown if an SQLException occurs.
    */
   protected static ResultSet getRoles(Connection connection) throws SQLException {
-    Statement statement = connection.createStatement();
-    ResultSet results = statement.executeQuery("SELECT * FROM ROLES;");
-    return results;
+    String sql = "SELECT * FROM ROLES;";
+    PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
+    return preparedStatement.executeQuery();
   }
   
   /**
@@ -34,10 +35,12 @@ public class DatabaseSelector {
    */
   protected static String getRole(int id, Connection connection) throws SQLException {
     String sql = "SELECT NAME FROM ROLES WHERE ID = ?";
-    PreparedStatement preparedStatement = connection.prepareStatement(sql);
+    PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
     preparedStatement.setInt(1, id);
     ResultSet results = preparedStatement.executeQuery();
-    return results.getString("NAME");
+    String value = results.getString("NAME");
+    results.close();
+    return value;
   }
   
   /**
@@ -49,10 +52,12 @@ public class DatabaseSelector {
    */
   protected static int getUserRole(int userId, Connection connection) throws SQLException {
     String sql = "SELECT ROLEID FROM USERS WHERE ID = ?";
-    PreparedStatement preparedStatement = connection.prepareStatement(sql);
+    PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
     preparedStatement.setInt(1, userId);
     ResultSet results = preparedStatement.executeQuery();
-    return results.getInt("ROLEID");
+    int value = results.getInt("ROLEID");
+    results.close();
+    return value;
   }
   
   /**
@@ -63,7 +68,7 @@ public class DatabaseSelector {
    */
   protected static ResultSet getUsersDetails(Connection connection) throws SQLException {
     String sql = "SELECT * FROM USERS";
-    PreparedStatement preparedStatement = connection.prepareStatement(sql);
+    PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
     return preparedStatement.executeQuery();
   }
   
@@ -76,7 +81,7 @@ public class DatabaseSelector {
    */
   protected static ResultSet getUserDetails(int userId, Connection connection) throws SQLException {
     String sql = "SELECT * FROM USERS WHERE ID = ?";
-    PreparedStatement preparedStatement = connection.prepareStatement(sql);
+    PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
     preparedStatement.setInt(1, userId);
     return preparedStatement.executeQuery();
   }
@@ -90,10 +95,12 @@ public class DatabaseSelector {
    */
   protected static String getPassword(int userId, Connection connection) throws SQLException {
     String sql = "SELECT PASSWORD FROM USERPW WHERE USERID = ?";
-    PreparedStatement preparedStatement = connection.prepareStatement(sql);
+    PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
     preparedStatement.setInt(1, userId);
     ResultSet results = preparedStatement.executeQuery();
-    return results.getString("PASSWORD");
+    String value = results.getString("PASSWORD");
+    results.close();
+    return value;
   }
   
   /**
@@ -105,13 +112,48 @@ public class DatabaseSelector {
    */
   protected static ResultSet getAccountIds(int userId, Connection connection) throws SQLException {
     String sql = "SELECT ACCOUNTID FROM USERACCOUNT WHERE USERID = ?";
-    PreparedStatement preparedStatement = connection.prepareStatement(sql);
+    PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
     preparedStatement.setInt(1, userId);
     return preparedStatement.executeQuery();
   }
  
   
   
+  /**
+   * return the id's of all of the owners of an account.
+   * @param accountId the id of the account.
+   * @param connection the connection to the database.
+   * @return a result set containing the USERID of every owner.
+   * @throws SQLException thrown when something goes wrong with query.
+   */
+  protected static ResultSet getAccountOwners(int accountId, Connection connection)
+      throws SQLException {
+    String sql = "SELECT USERID FROM USERACCOUNT WHERE ACCOUNTID = ?";
+    PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
+    preparedStatement.setInt(1, accountId);
+    return preparedStatement.executeQuery();
+  }
+  
+  /**
+   * check whether a user owns an account.
+   * @param userId the id of the user.
+   * @param accountId the id of the account.
+   * @param connection the connection to the database.
+   * @return true if the user owns the account, false otherwise.
+   * @throws SQLException thrown when something goes wrong with query.
+   */
+  protected static boolean isOwner(int userId, int accountId, Connection connection)
+      throws SQLException {
+    String sql = "SELECT EXISTS (SELECT 1 FROM USERACCOUNT WHERE USERID = ? AND ACCOUNTID = ?)";
+    PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
+    preparedStatement.setInt(1, userId);
+    preparedStatement.setInt(2, accountId);
+    ResultSet results = preparedStatement.executeQuery();
+    boolean value = results.getInt(1) != 0;
+    results.close();
+    return value;
+  }
+  
   /**
    * get the full details of an account.
    * @param accountId the id of the account
@@ -122,7 +164,7 @@ public class DatabaseSelector {
   protected static ResultSet getAccountDetails(int accountId, Connection connection) 
        throws SQLException {
     String sql = "SELECT * FROM ACCOUNTS WHERE ID = ?";
-    PreparedStatement preparedStatement = connection.prepareStatement(sql);
+    PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
     preparedStatement.setInt(1, accountId);
     return preparedStatement.executeQuery();
   }
@@ -134,12 +176,14 @@ public class DatabaseSelector {
    * @return the balance
    * @throws SQLException thrown when something goes wrong with query.
    */
-  protected static BigDecimal getBalance(int accountId, Connection connection) throws SQLException {
+  protected static Money getBalance(int accountId, Connection connection) throws SQLException {
     String sql = "SELECT BALANCE FROM ACCOUNTS WHERE ID = ?";
-    PreparedStatement preparedStatement = connection.prepareStatement(sql);
+    PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
     preparedStatement.setInt(1, accountId);
     ResultSet results = preparedStatement.executeQuery();
-    return new BigDecimal(results.getString("BALANCE"));
+    Money value = Money.ofCents(results.getLong("BALANCE"));
+    results.close();
+    return value;
   }
   
   /**
@@ -151,10 +195,12 @@ public class DatabaseSelector {
    */
   protected static int getAccountType(int accountId, Connection connection) throws SQLException {
     String sql = "SELECT TYPE FROM ACCOUNTS WHERE ID = ?";
-    PreparedStatement preparedStatement = connection.prepareStatement(sql);
+    PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
     preparedStatement.setInt(1, accountId);
     ResultSet results = preparedStatement.executeQuery();
-    return results.getInt("TYPE");
+    int value = results.getInt("TYPE");
+    results.close();
+    return value;
     
   }
   
@@ -168,10 +214,12 @@ public class DatabaseSelector {
   protected static String getAccountTypeName(int accountTypeId, Connection connection) 
       throws SQLException {
     String sql = "SELECT NAME FROM ACCOUNTTYPES WHERE ID = ?";
-    PreparedStatement preparedStatement = connection.prepareStatement(sql);
+    PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
     preparedStatement.setInt(1, accountTypeId);
     ResultSet results = preparedStatement.executeQuery();
-    return results.getString("NAME");
+    String value = results.getString("NAME");
+    results.close();
+    return value;
   }
  
   /**
@@ -182,7 +230,20 @@ public class DatabaseSelector {
    */
   protected static ResultSet getAccountTypesId(Connection connection) throws SQLException {
     String sql = "SELECT ID FROM ACCOUNTTYPES";
-    PreparedStatement preparedStatement = connection.prepareStatement(sql);
+    PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
+    return preparedStatement.executeQuery();
+  }
+  
+  /**
+   * Return the ID, name and interest rate of every account type.
+   * @param connection the connection to the database.
+   * @return a result set of the ID, NAME and INTERESTRATE of every account type, in the order
+   *     of their IDs.
+   * @throws SQLException thrown if there is an issue.
+   */
+  protected static ResultSet getAccountTypesDetails(Connection connection) throws SQLException {
+    String sql = "SELECT ID,NAME,INTERESTRATE FROM ACCOUNTTYPES ORDER BY ID";
+    PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
     return preparedStatement.executeQuery();
   }
   
@@ -196,10 +257,12 @@ public class DatabaseSelector {
   protected static BigDecimal getInterestRate(int accountType, Connection connection) 
       throws SQLException {
     String sql = "SELECT INTERESTRATE FROM ACCOUNTTYPES WHERE ID = ?";
-    PreparedStatement preparedStatement = connection.prepareStatement(sql);
+    PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
     preparedStatement.setInt(1, accountType);
     ResultSet results = preparedStatement.executeQuery();
-    return new BigDecimal(results.getString("INTERESTRATE"));
+    BigDecimal value = new BigDecimal(results.getString("INTERESTRATE"));
+    results.close();
+    return value;
   }
   
   /**
@@ -210,12 +273,101 @@ public class DatabaseSelector {
    * @throws SQLException if something goes wrong.
    */
   protected static ResultSet getAllMessages(int userId, Connection connection) throws SQLException {
-    String sql = "SELECT * FROM USERMESSAGES WHERE USERID = ?";
-    PreparedStatement preparedStatement = connection.prepareStatement(sql);
+    // Ordered, since the inbox index would otherwise list the unread messages first
+    String sql = "SELECT * FROM USERMESSAGES WHERE USERID = ? ORDER BY ID";
+    PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
     preparedStatement.setInt(1, userId);
     return preparedStatement.executeQuery();
   }
   
+  /**
+   * Get a page of the messages of a user, newest first.
+   * @param userId the user whose messages are being retrieved.
+   * @param beforeId only messages with a lower id are on the page.
+   * @param limit the most messages on the page.
+   * @param connection connection to database.
+   * @return a result set containing the messages, ordered by id from the highest.
+   * @throws SQLException if something goes wrong.
+   */
+  protected static ResultSet getMessagesPage(int userId, long beforeId, int limit,
+      Connection connection) throws SQLException {
+    // A message is unread (0) or read (1). The index keeps the two apart, so the page is made
+    // of the first messages of each in index order, and only those are sorted
+    String sql = "SELECT * FROM (SELECT ID,USERID,MESSAGE,VIEWED FROM USERMESSAGES "
+        + "WHERE USERID = ? AND VIEWED = 0 AND ID < ? ORDER BY ID DESC LIMIT ?) "
+        + "UNION ALL "
+        + "SELECT * FROM (SELECT ID,USERID,MESSAGE,VIEWED FROM USERMESSAGES "
+        + "WHERE USERID = ? AND VIEWED = 1 AND ID < ? ORDER BY ID DESC LIMIT ?) "
+        + "ORDER BY ID DESC LIMIT ?";
+    PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
+    preparedStatement.setInt(1, userId);
+    preparedStatement.setLong(2, beforeId);
+    preparedStatement.setInt(3, limit);
+    preparedStatement.setInt(4, userId);
+    preparedStatement.setLong(5, beforeId);
+    preparedStatement.setInt(6, limit);
+    preparedStatement.setInt(7, limit);
+    return preparedStatement.executeQuery();
+  }
+  
+  /**
+   * Count the messages of a user that were not read, from the index alone.
+   * @param userId the user whose messages are counted.
+   * @param connection connection to database.
+   * @return the number of unread messages.
+   * @throws SQLException if something goes wrong.
+   */
+  protected static int countUnread(int userId, Connection connection) throws SQLException {
+    String sql = "SELECT COUNT(*) FROM USERMESSAGES WHERE USERID = ? AND VIEWED = 0";
+    PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
+    preparedStatement.setInt(1, userId);
+    ResultSet results = preparedStatement.executeQuery();
+    int count = results.getInt(1);
+    results.close();
+    return count;
+  }
+  
+  /**
+   * Find the messages that match a full-text query.
+   * @param match the full-text query.
+   * @param userId only the messages of this user are found, all messages if it is 0 or less.
+   * @param connection connection to the database.
+   * @return a result set with the ID and the 'pcnalx' MATCHINFO of every match, in no order.
+   * @throws SQLException if something goes wrong.
+   */
+  protected static ResultSet searchMessages(String match, int userId, Connection connection)
+      throws SQLException {
+    String sql = "SELECT docid AS ID,matchinfo(USERMESSAGES_SEARCH,'pcnalx') AS MATCHINFO "
+        + "FROM USERMESSAGES_SEARCH WHERE USERMESSAGES_SEARCH MATCH ?";
+    if (userId <= 0) {
+      PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
+      preparedStatement.setString(1, match);
+      return preparedStatement.executeQuery();
+    }
+    
+    // The inbox index lists the messages of the user, without reading any of them
+    PreparedStatement preparedStatement = StatementCache.prepare(connection,
+        sql + " AND docid IN (SELECT ID FROM USERMESSAGES WHERE USERID = ?)");
+    preparedStatement.setString(1, match);
+    preparedStatement.setInt(2, userId);
+    return preparedStatement.executeQuery();
+  }
+  
+  /**
+   * Get one message by its id.
+   * @param messageId the id of the message.
+   * @param connection connection to the database.
+   * @return a result set containing the message, empty if it does not exist.
+   * @throws SQLException if something goes wrong.
+   */
+  protected static ResultSet getMessage(int messageId, Connection connection)
+      throws SQLException {
+    String sql = "SELECT ID,USERID,MESSAGE,VIEWED FROM USERMESSAGES WHERE ID = ?";
+    PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
+    preparedStatement.setInt(1, messageId);
+    return preparedStatement.executeQuery();
+  }
+  
   /**
    * Get a specific message from the database.
    * @param messageId the id of the message.
@@ -226,9 +378,12 @@ public class DatabaseSelector {
   protected static String getSpecificMessage(int messageId, Connection connection) 
       throws SQLException {
     String sql = "SELECT MESSAGE FROM USERMESSAGES WHERE ID = ?";
-    PreparedStatement preparedStatement = connection.prepareStatement(sql);
+    PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
     preparedStatement.setInt(1, messageId);
-    return preparedStatement.executeQuery().getString("MESSAGE");
+    ResultSet results = preparedStatement.executeQuery();
+    String value = results.getString("MESSAGE");
+    results.close();
+    return value;
   }
   
 }
@@ -1,10 +1,16 @@
 package com.bank.database;
 
+import com.bank.accounts.Money;
+
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.SQLException;
 
 public class DatabaseUpdater {
+  // The most message IDs in one update, below the limit on SQLite arguments
+  private static final int MAX_UPDATE_IDS = 500;
+  
   /* 
    * UPDATE FUNCTIONS
    */
@@ -18,7 +24,7 @@ public class DatabaseUpdater {
   protected static boolean updateRoleName(String name, int id, Connection connection) {
     String sql = "UPDATE ROLES SET NAME = ? WHERE ID = ?;";
     try {
-      PreparedStatement preparedStatement = connection.prepareStatement(sql);
+      PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
       preparedStatement.setString(1, name);
       preparedStatement.setInt(2, id);
       preparedStatement.executeUpdate();
@@ -40,7 +46,7 @@ public class DatabaseUpdater {
   protected static boolean updateUserName(String name, int id, Connection connection) {
     String sql = "UPDATE USERS SET NAME = ? WHERE ID = ?;";
     try {
-      PreparedStatement preparedStatement = connection.prepareStatement(sql);
+      PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
       preparedStatement.setString(1, name);
       preparedStatement.setInt(2, id);
       preparedStatement.executeUpdate();
@@ -61,7 +67,7 @@ public class DatabaseUpdater {
   protected static boolean updateUserAge(int age, int id, Connection connection) {
     String sql = "UPDATE USERS SET AGE = ? WHERE ID = ?;";
     try {
-      PreparedStatement preparedStatement = connection.prepareStatement(sql);
+      PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
       preparedStatement.setInt(1, age);
       preparedStatement.setInt(2, id);
       preparedStatement.executeUpdate();
@@ -82,7 +88,7 @@ public class DatabaseUpdater {
   protected static boolean updateUserRole(int roleId, int id, Connection connection) {
     String sql = "UPDATE USERS SET ROLEID = ? WHERE ID = ?;";
     try {
-      PreparedStatement preparedStatement = connection.prepareStatement(sql);
+      PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
       preparedStatement.setInt(1, roleId);
       preparedStatement.setInt(2, id);
       preparedStatement.executeUpdate();
@@ -103,7 +109,7 @@ public class DatabaseUpdater {
   protected static boolean updateUserAddress(String address, int id, Connection connection) {
     String sql = "UPDATE USERS SET ADDRESS = ? WHERE ID = ?;";
     try {
-      PreparedStatement preparedStatement = connection.prepareStatement(sql);
+      PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
       preparedStatement.setString(1, address);
       preparedStatement.setInt(2, id);
       preparedStatement.executeUpdate();
@@ -124,7 +130,7 @@ public class DatabaseUpdater {
   protected static boolean updateAccountName(String name, int id, Connection connection) {
     String sql = "UPDATE ACCOUNTS SET NAME = ? WHERE ID = ?;";
     try {
-      PreparedStatement preparedStatement = connection.prepareStatement(sql);
+      PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
       preparedStatement.setString(1, name);
       preparedStatement.setInt(2, id);
       preparedStatement.executeUpdate();
@@ -142,11 +148,11 @@ public class DatabaseUpdater {
    * @param connection the connection to the database.
    * @return true if successful, false otherwise.
    */
-  protected static boolean updateAccountBalance(BigDecimal balance, int id, Connection connection) {
+  protected static boolean updateAccountBalance(Money balance, int id, Connection connection) {
     String sql = "UPDATE ACCOUNTS SET BALANCE = ? WHERE ID = ?;";
     try {
-      PreparedStatement preparedStatement = connection.prepareStatement(sql);
-      preparedStatement.setString(1, balance.toPlainString());
+      PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
+      preparedStatement.setLong(1, balance.getCents());
       preparedStatement.setInt(2, id);
       preparedStatement.executeUpdate();
       return true;
@@ -166,7 +172,7 @@ public class DatabaseUpdater {
   protected static boolean updateAccountType(int typeId, int id, Connection connection) {
     String sql = "UPDATE ACCOUNTS SET TYPE = ? WHERE ID = ?;";
     try {
-      PreparedStatement preparedStatement = connection.prepareStatement(sql);
+      PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
       preparedStatement.setInt(1, typeId);
       preparedStatement.setInt(2, id);
       preparedStatement.executeUpdate();
@@ -187,7 +193,7 @@ public class DatabaseUpdater {
   protected static boolean updateAccountTypeName(String name, int id, Connection connection) {
     String sql = "UPDATE ACCOUNTTYPES SET NAME = ? WHERE ID = ?;";
     try {
-      PreparedStatement preparedStatement = connection.prepareStatement(sql);
+      PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
       preparedStatement.setString(1, name);
       preparedStatement.setInt(2, id);
       preparedStatement.executeUpdate();
@@ -209,7 +215,7 @@ public class DatabaseUpdater {
       Connection connection) {
     String sql = "UPDATE ACCOUNTTYPES SET INTERESTRATE = ? WHERE ID = ?;";
     try {
-      PreparedStatement preparedStatement = connection.prepareStatement(sql);
+      PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
       preparedStatement.setString(1, interestRate.toPlainString());
       preparedStatement.setInt(2, id);
       preparedStatement.executeUpdate();
@@ -231,7 +237,7 @@ public class DatabaseUpdater {
       Connection connection) {
     String sql = "UPDATE USERPW SET PASSWORD = ? WHERE USERID = ?";
     try { 
-      PreparedStatement preparedStatement = connection.prepareStatement(sql);
+      PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
       preparedStatement.setString(1, password);
       preparedStatement.setInt(2, id);
       preparedStatement.executeUpdate();
@@ -251,7 +257,7 @@ public class DatabaseUpdater {
   protected static boolean updateUserMessageState(int id, Connection connection) {
     String sql = "UPDATE USERMESSAGES SET VIEWED = ? WHERE ID = ?";
     try {
-      PreparedStatement preparedStatement = connection.prepareStatement(sql);
+      PreparedStatement preparedStatement = StatementCache.prepare(connection, sql);
       preparedStatement.setInt(1, 1);
       preparedStatement.setInt(2, id);
       preparedStatement.executeUpdate();
@@ -262,4 +268,50 @@ public class DatabaseUpdater {
     return false;
   }
   
+  /**
+   * Mark messages as read in one transaction.
+   * @param messageIds the IDs of the messages.
+   * @param connection the database connection.
+   * @return the number of messages marked, -1 if they could not be marked.
+   */
+  protected static int markViewed(int[] messageIds, Connection connection) {
+    int marked = 0;
+    try {
+      connection.setAutoCommit(false);
+      try {
+        // SQLite takes at most 999 arguments, so a long list is updated in a few pieces
+        for (int start = 0; start < messageIds.length; start += MAX_UPDATE_IDS) {
+          int end = Math.min(messageIds.length, start + MAX_UPDATE_IDS);
+          StringBuilder sql = new StringBuilder(
+              "UPDATE USERMESSAGES SET VIEWED = 1 WHERE VIEWED = 0 AND ID IN (");
+          for (int i = start; i < end; i++) {
+            sql.append(i == start ? "?" : ",?");
+          }
+          sql.append(')');
+          
+          // Not cached, the statement changes with the number of messages
+          PreparedStatement preparedStatement = connection.prepareStatement(sql.toString());
+          try {
+            for (int i = start; i < end; i++) {
+              preparedStatement.setInt(i - start + 1, messageIds[i]);
+            }
+            marked += preparedStatement.executeUpdate();
+          } finally {
+            preparedStatement.close();
+          }
+        }
+        connection.commit();
+      } catch (SQLException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(true);
+      }
+      return marked;
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+    return -1;
+  }
+  
 }
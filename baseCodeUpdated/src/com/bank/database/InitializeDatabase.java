@@ -1,5 +1,6 @@
 package com.bank.database;
 
+import com.bank.accounts.Money;
 import com.bank.generics.AccountTypes;
 import com.bank.generics.Roles;
 
@@ -59,7 +60,7 @@ public class InitializeDatabase {
   public static void update() throws SQLException {
     Connection connection = DatabaseDriver.connectOrCreateDataBase();
     
-    DatabaseUpdater.updateAccountBalance(new BigDecimal("99.92"), 1, connection);
+    DatabaseUpdater.updateAccountBalance(Money.ofCents(9992), 1, connection);
     DatabaseUpdater.updateAccountName("New John", 1, connection);
     DatabaseUpdater.updateAccountType(2, 1, connection);
     DatabaseUpdater.updateAccountTypeInterestRate(new BigDecimal("0.4"), 1, connection);
@@ -133,7 +134,7 @@ public class InitializeDatabase {
   
   private static int initializeFirstAccount(Connection connection) {
     String name = "John's Checking Account";
-    BigDecimal balance = new BigDecimal("1000000.00");
+    Money balance = Money.ofCents(100000000);
     int typeId = 1;
     
     try {
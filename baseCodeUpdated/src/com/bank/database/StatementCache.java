@@ -0,0 +1,148 @@
+package com.bank.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the prepared statements of a connection so each SQL string is only compiled once per
+ * connection. Only connections that were attached get a cache, any other connection gets a
+ * freshly prepared statement like before.
+ */
+public class StatementCache {
+  private static final Map<Connection, StatementCache> caches =
+      new IdentityHashMap<Connection, StatementCache>();
+  private static final AtomicLong hits = new AtomicLong();
+  private static final AtomicLong misses = new AtomicLong();
+
+  private final Map<String, PreparedStatement> statements;
+
+  private StatementCache(final int capacity) {
+    // Access ordered so the least recently used statement is the one evicted
+    this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+        if (size() > capacity) {
+          close(eldest.getValue());
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Starts caching the statements prepared on a connection.
+   * @param connection the connection
+   * @param capacity the most statements kept open for this connection
+   */
+  public static void attach(Connection connection, int capacity) {
+    if (connection == null || capacity <= 0) {
+      return;
+    }
+
+    synchronized (caches) {
+      if (!caches.containsKey(connection)) {
+        caches.put(connection, new StatementCache(capacity));
+      }
+    }
+  }
+
+  /**
+   * Stops caching the statements of a connection and closes them. Call this before the
+   * connection is closed.
+   * @param connection the connection
+   */
+  public static void detach(Connection connection) {
+    StatementCache cache;
+
+    synchronized (caches) {
+      cache = caches.remove(connection);
+    }
+
+    if (cache != null) {
+      for (PreparedStatement statement : cache.statements.values()) {
+        close(statement);
+      }
+      cache.statements.clear();
+    }
+  }
+
+  /**
+   * Number of times a cached statement was reused.
+   * @return the number of hits
+   */
+  public static long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * Number of times a statement had to be prepared on an attached connection.
+   * @return the number of misses
+   */
+  public static long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Gets a prepared statement for the sql.
+   * @param connection the connection
+   * @param sql the sql of the statement
+   * @return the prepared statement
+   * @throws SQLException if the statement could not be prepared
+   */
+  static PreparedStatement prepare(Connection connection, String sql) throws SQLException {
+    return prepare(connection, sql, Statement.NO_GENERATED_KEYS);
+  }
+
+  /**
+   * Gets a prepared statement for the sql.
+   * @param connection the connection
+   * @param sql the sql of the statement
+   * @param autoGeneratedKeys whether the generated keys should be returned
+   * @return the prepared statement
+   * @throws SQLException if the statement could not be prepared
+   */
+  static PreparedStatement prepare(Connection connection, String sql, int autoGeneratedKeys)
+      throws SQLException {
+    StatementCache cache;
+
+    synchronized (caches) {
+      cache = caches.get(connection);
+    }
+
+    if (cache == null) {
+      return connection.prepareStatement(sql, autoGeneratedKeys);
+    }
+
+    // A connection is only used by one caller at a time, so the cache itself needs no lock
+    String key = autoGeneratedKeys + sql;
+    PreparedStatement statement = cache.statements.get(key);
+
+    if (statement != null && !statement.isClosed()) {
+      hits.incrementAndGet();
+      statement.clearParameters();
+    } else {
+      misses.incrementAndGet();
+      statement = connection.prepareStatement(sql, autoGeneratedKeys);
+      cache.statements.put(key, statement);
+    }
+
+    return statement;
+  }
+
+  private static void close(Statement statement) {
+    try {
+      statement.close();
+    } catch (SQLException e) {
+      e.printStackTrace();
+    }
+  }
+}
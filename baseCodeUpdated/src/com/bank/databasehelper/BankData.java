@@ -163,7 +163,8 @@ public class BankData implements Serializable {
         // Adding account objects to account list
         int id = accountId;
         String name = DatabaseSelectHelper.getAccountName(accountId);
-        BigDecimal balance = DatabaseSelectHelper.getBalance(accountId);
+        // Kept as BigDecimal so backups made before balances were stored in cents still load
+        BigDecimal balance = DatabaseSelectHelper.getBalance(accountId).toBigDecimal();
         int type = DatabaseSelectHelper.getAccountType(accountId);
         
         // Adding serializable account object to account list
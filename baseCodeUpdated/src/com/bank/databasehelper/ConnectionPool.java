@@ -0,0 +1,203 @@
+package com.bank.databasehelper;
+
+import com.bank.database.StatementCache;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * A small pool of open database connections shared by the database helpers. No more than a
+ * set number of connections are open at once, and a caller that finds them all in use waits
+ * for one to be given back. A helper must therefore never lease a second connection while it
+ * holds one, it passes the one it holds down instead.
+ */
+public class ConnectionPool {
+  private int maxSize;
+  private long idleTimeout;
+  private long waitTimeout;
+  // Most recently returned connection first, so the oldest ones are evicted first
+  private final Deque<PooledConnection> idle = new ArrayDeque<PooledConnection>();
+  private final Set<Connection> leased =
+      Collections.newSetFromMap(new IdentityHashMap<Connection, Boolean>());
+  // Connections being opened for a caller, counted so the pool is not overfilled meanwhile
+  private int opening = 0;
+
+  private static class PooledConnection {
+    private final Connection connection;
+    private final long returnedAt;
+
+    private PooledConnection(Connection connection, long returnedAt) {
+      this.connection = connection;
+      this.returnedAt = returnedAt;
+    }
+  }
+
+  /**
+   * Creates an empty ConnectionPool.
+   * @param maxSize the most connections open at once, at least 1
+   * @param idleTimeout milliseconds an unused connection is kept before it is closed
+   * @param waitTimeout milliseconds a caller waits for a connection when all are in use
+   */
+  public ConnectionPool(int maxSize, long idleTimeout, long waitTimeout) {
+    configure(maxSize, idleTimeout);
+    this.waitTimeout = waitTimeout;
+  }
+
+  /**
+   * Changes the size and idle timeout of the pool. Extra idle connections are closed.
+   * @param maxSize the most connections open at once, at least 1
+   * @param idleTimeout milliseconds an unused connection is kept before it is closed
+   */
+  public synchronized void configure(int maxSize, long idleTimeout) {
+    if (maxSize < 1 || idleTimeout < 0) {
+      throw new IllegalArgumentException();
+    }
+
+    this.maxSize = maxSize;
+    this.idleTimeout = idleTimeout;
+    evict(System.currentTimeMillis());
+    notifyAll();
+  }
+
+  /**
+   * Leases a connection, reusing an idle one if there is one. A new one is opened only while
+   * fewer than the most connections are open, otherwise the caller waits for one to be given
+   * back.
+   * @return an open connection, or null if the database could not be opened or no connection
+   *     was given back in time
+   */
+  public Connection lease() {
+    synchronized (this) {
+      long deadline = System.currentTimeMillis() + waitTimeout;
+
+      while (true) {
+        long now = System.currentTimeMillis();
+        evict(now);
+
+        while (!idle.isEmpty()) {
+          Connection connection = idle.removeFirst().connection;
+          if (isOpen(connection)) {
+            leased.add(connection);
+            return connection;
+          }
+        }
+
+        if (leased.size() + opening < maxSize) {
+          opening++;
+          break;
+        }
+
+        if (now >= deadline) {
+          System.out.println("Every database connection is in use, try again later");
+          return null;
+        }
+
+        try {
+          wait(deadline - now);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return null;
+        }
+      }
+    }
+
+    // Opening is slow, so it is done outside of the lock
+    Connection connection = null;
+    try {
+      connection = DatabaseDriverHelper.openConnection();
+    } finally {
+      synchronized (this) {
+        opening--;
+        if (connection != null) {
+          leased.add(connection);
+        } else {
+          notifyAll();
+        }
+      }
+    }
+
+    return connection;
+  }
+
+  /**
+   * Returns a leased connection to the pool. It is closed instead if the pool was shrunk, or
+   * if it was not leased from this pool since the last {@link #closeAll()}.
+   * @param connection the connection, may be null
+   */
+  public void giveBack(Connection connection) {
+    if (connection == null) {
+      return;
+    }
+
+    synchronized (this) {
+      long now = System.currentTimeMillis();
+      evict(now);
+      boolean mine = leased.remove(connection);
+      notifyAll();
+
+      if (mine && idle.size() + leased.size() + opening < maxSize && isOpen(connection)) {
+        idle.addFirst(new PooledConnection(connection, now));
+        return;
+      }
+    }
+
+    close(connection);
+  }
+
+  /**
+   * Closes every idle connection. Connections that are leased are closed when given back,
+   * so none of them are reused once the database file has been replaced.
+   */
+  public synchronized void closeAll() {
+    leased.clear();
+    while (!idle.isEmpty()) {
+      close(idle.removeFirst().connection);
+    }
+    notifyAll();
+  }
+
+  public synchronized int getIdleCount() {
+    return idle.size();
+  }
+
+  public synchronized int getLeasedCount() {
+    return leased.size();
+  }
+
+  private void evict(long now) {
+    Iterator<PooledConnection> iterator = idle.descendingIterator();
+
+    while (iterator.hasNext()) {
+      PooledConnection pooled = iterator.next();
+      if (idle.size() + leased.size() + opening > maxSize
+          || now - pooled.returnedAt >= idleTimeout) {
+        iterator.remove();
+        close(pooled.connection);
+      }
+    }
+  }
+
+  private static boolean isOpen(Connection connection) {
+    try {
+      return !connection.isClosed();
+    } catch (SQLException e) {
+      return false;
+    }
+  }
+
+  private static void close(Connection connection) {
+    StatementCache.detach(connection);
+
+    try {
+      connection.close();
+    } catch (SQLException e) {
+      e.printStackTrace();
+    }
+  }
+}
@@ -1,16 +1,121 @@
 package com.bank.databasehelper;
 
 import com.bank.database.DatabaseDriver;
+import com.bank.database.StatementCache;
 import com.bank.exceptions.ConnectionFailedException;
+import com.bank.generics.AccountMap;
+import com.bank.generics.RoleMap;
 
 import java.sql.Connection;
+import java.sql.SQLException;
 
 public class DatabaseDriverHelper extends DatabaseDriver {
+  // Defaults, can be overridden with -Dbank.pool.size, -Dbank.pool.idleMillis,
+  // -Dbank.pool.waitMillis and -Dbank.pool.statements
+  private static final int DEFAULT_POOL_SIZE = 4;
+  private static final long DEFAULT_IDLE_MILLIS = 60000;
+  private static final long DEFAULT_WAIT_MILLIS = 10000;
+  private static final int DEFAULT_STATEMENTS = 32;
+
+  private static final int statementsPerConnection =
+      Integer.getInteger("bank.pool.statements", DEFAULT_STATEMENTS);
+
+  private static final ConnectionPool pool = new ConnectionPool(
+      Integer.getInteger("bank.pool.size", DEFAULT_POOL_SIZE),
+      Long.getLong("bank.pool.idleMillis", DEFAULT_IDLE_MILLIS),
+      Long.getLong("bank.pool.waitMillis", DEFAULT_WAIT_MILLIS));
+
+  // Whether the database file has been brought up to date, which is done by the first
+  // connection opened on it
+  private static boolean schemaReady = false;
+
+  /**
+   * Leases a connection from the pool, opening the database if no connection is idle.
+   * The connection must be given back with {@link #returnConnection(Connection)}.
+   * @return the database connection
+   */
   protected static Connection connectOrCreateDataBase() {
-    return DatabaseDriver.connectOrCreateDataBase();
+    return pool.lease();
+  }
+
+  /**
+   * Gives a connection leased with {@link #connectOrCreateDataBase()} back to the pool.
+   * @param connection the connection, may be null
+   */
+  protected static void returnConnection(Connection connection) {
+    pool.giveBack(connection);
+  }
+
+  /**
+   * Changes how many connections are kept open, and for how long they are kept idle.
+   * @param size the most connections open at once, at least 1
+   * @param idleMillis milliseconds an idle connection is kept before it is closed
+   */
+  public static void configurePool(int size, long idleMillis) {
+    pool.configure(size, idleMillis);
+  }
+
+  /**
+   * Closes every pooled connection, for example before the database file is replaced.
+   */
+  public static void closePool() {
+    pool.closeAll();
+    resetSchema();
   }
   
+  /**
+   * Copies the database into a new file, as it was when the copy started.
+   * @param target the file to copy to, which must not exist yet
+   * @return true if the database was copied, false otherwise
+   */
+  static boolean copyDatabase(String target) {
+    // VACUUM fails while any statement of its connection is still open, as the cached
+    // statements of pooled connections are, so the copy gets a connection of its own
+    Connection connection = DatabaseDriver.connectOrCreateDataBase();
+    if (connection == null) {
+      return false;
+    }
+
+    try {
+      return DatabaseDriver.copyInto(connection, target);
+    } finally {
+      try {
+        connection.close();
+      } catch (SQLException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
   public static Connection reInitialize() throws ConnectionFailedException {
+    pool.closeAll();
+    resetSchema();
+    AccountMap.invalidate();
+    RoleMap.invalidate();
     return DatabaseDriver.reInitialize();
   }
+
+  private static synchronized void resetSchema() {
+    schemaReady = false;
+  }
+
+  static Connection openConnection() {
+    Connection connection = DatabaseDriver.connectOrCreateDataBase();
+    if (connection == null) {
+      return null;
+    }
+
+    synchronized (DatabaseDriverHelper.class) {
+      if (!schemaReady) {
+        // Databases created before balances were stored in cents still have them as text
+        DatabaseDriver.migrateBalances(connection);
+        DatabaseDriver.createIndexes(connection);
+        DatabaseDriver.createMessageSearch(connection);
+        schemaReady = true;
+      }
+    }
+    // Pooled connections live long enough for their prepared statements to be worth keeping
+    StatementCache.attach(connection, statementsPerConnection);
+    return connection;
+  }
 }
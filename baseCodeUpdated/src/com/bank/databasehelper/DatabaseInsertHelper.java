@@ -1,6 +1,7 @@
 package com.bank.databasehelper;
 
 import com.bank.accounts.Account;
+import com.bank.accounts.Money;
 import com.bank.database.DatabaseInsertException;
 import com.bank.database.DatabaseInserter;
 import com.bank.exceptions.IllegalAgeException;
@@ -9,9 +10,11 @@ import com.bank.generics.AccountMap;
 import com.bank.generics.AccountTypes;
 import com.bank.generics.RoleMap;
 import com.bank.generics.Roles;
+import com.bank.messages.Message;
 import com.bank.users.User;
 import java.math.BigDecimal;
 import java.sql.Connection;
+import java.util.Arrays;
 import java.util.List;
 
 
@@ -19,32 +22,26 @@ public class DatabaseInsertHelper extends DatabaseInserter {
   /**
    * Inserts an account into the database.
    * @param name the name of the account
-   * @param balance the balance of the account with 2 decimal places
+   * @param balance the balance of the account
    * @param typeId a valid type ID from one of the AccountTypes
    * @return the accountId of the account if it was inserted, -1 otherwise
    */
-  public static int insertAccount(String name, BigDecimal balance, int typeId) {
+  public static int insertAccount(String name, Money balance, int typeId) {
     // Return variable
     int ret = -1;
     Connection connection = null;
     
     try {
-      connection = DatabaseDriverHelper.connectOrCreateDataBase();
-      
-      if (!name.isEmpty() && balance.scale() == 2 
+      // Checked before a connection is leased, loading the types may need one of its own
+      if (!name.isEmpty() && balance != null
           && AccountMap.getInstance().containsTypeId(typeId)) {
+        connection = DatabaseDriverHelper.connectOrCreateDataBase();
         ret = DatabaseInserter.insertAccount(name, balance, typeId, connection);
       }
     } catch (Exception e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      DatabaseDriverHelper.returnConnection(connection);
     }
     
     return ret;
@@ -62,16 +59,16 @@ public class DatabaseInsertHelper extends DatabaseInserter {
     Connection connection = null;
     
     try {
-      connection = DatabaseDriverHelper.connectOrCreateDataBase();
-      
       // Will throw an exception if name isn't in AccountTypes enumerator
       AccountTypes.valueOf(name.toUpperCase());
       
       // Checking if the interest rate is valid and the account type isn't already in the database
       if (interestRate.compareTo(new BigDecimal("1")) == -1 
           && interestRate.compareTo(new BigDecimal("0")) >= 0 && !hasDuplicateType(name)) {
+        connection = DatabaseDriverHelper.connectOrCreateDataBase();
         try {
           ret = DatabaseInserter.insertAccountType(name.toUpperCase(), interestRate, connection);
+          AccountMap.invalidate();
         } catch (DatabaseInsertException e) {
           e.printStackTrace();
         }
@@ -79,13 +76,7 @@ public class DatabaseInsertHelper extends DatabaseInserter {
     } catch (IllegalArgumentException e) {
       System.out.println("Invalid role name");
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      DatabaseDriverHelper.returnConnection(connection);
     }
     
     return ret;
@@ -107,7 +98,6 @@ public class DatabaseInsertHelper extends DatabaseInserter {
     Connection connection = null;
     
     try {
-      connection = DatabaseDriverHelper.connectOrCreateDataBase();
       //List<Integer> roleIds = DatabaseSelectHelper.getRoles();
       
       // Verifying valid input values
@@ -117,6 +107,7 @@ public class DatabaseInsertHelper extends DatabaseInserter {
       
       if (!name.isEmpty() && address.length() <= 100 
           && RoleMap.getInstance().containsRoleId(roleId) && !password.isEmpty()) {
+        connection = DatabaseDriverHelper.connectOrCreateDataBase();
         ret = DatabaseInserter.insertNewUser(name, age, address, roleId, password, connection);
       }
     } catch (IllegalAgeException e) {
@@ -124,13 +115,7 @@ public class DatabaseInsertHelper extends DatabaseInserter {
     } catch (Exception e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      DatabaseDriverHelper.returnConnection(connection);
     }
     
     return ret;
@@ -146,15 +131,15 @@ public class DatabaseInsertHelper extends DatabaseInserter {
     Connection connection = null;
     
     try {
-      connection = DatabaseDriverHelper.connectOrCreateDataBase();
-      
       // Will throw an exception if role is not in the Roles enumerator
       Roles.valueOf(role.toUpperCase());
       
       // Inserting the user if exception was not thrown and the role is not already in the database
       if (!hasDuplicateRole(role)) {
+        connection = DatabaseDriverHelper.connectOrCreateDataBase();
         try {
           ret = DatabaseInserter.insertRole(role.toUpperCase(), connection);
+          RoleMap.invalidate();
         } catch (DatabaseInsertException e) {
           e.printStackTrace();
         }
@@ -162,13 +147,7 @@ public class DatabaseInsertHelper extends DatabaseInserter {
     } catch (IllegalArgumentException e) {
       System.out.println("Invalid role name");
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      DatabaseDriverHelper.returnConnection(connection);
     }
     
     return ret;
@@ -185,30 +164,22 @@ public class DatabaseInsertHelper extends DatabaseInserter {
     Connection connection = null;
     
     try {
-      connection = DatabaseDriverHelper.connectOrCreateDataBase();
-      
       // Storing the user and account object to check if it exists later
       User user = DatabaseSelectHelper.getUserDetails(userId);
       Account account = DatabaseSelectHelper.getAccountDetails(accountId);
       
       // Checking if the user and account exists
       if (user != null && account != null) {
-        List<Integer> accountIds = DatabaseSelectHelper.getAccountIds(userId);
         // Insert if the account is not already in the user account
-        if (!accountIds.contains(accountId)) {
+        if (!DatabaseSelectHelper.isOwner(userId, accountId)) {
+          connection = DatabaseDriverHelper.connectOrCreateDataBase();
           ret = DatabaseInserter.insertUserAccount(userId, accountId, connection);
         }
       }
     } catch (Exception e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      DatabaseDriverHelper.returnConnection(connection);
     }
     
     return ret;
@@ -236,17 +207,47 @@ public class DatabaseInsertHelper extends DatabaseInserter {
     } catch (DatabaseInsertException e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      DatabaseDriverHelper.returnConnection(connection);
     }
     return id;
   }
   
+  /**
+   * Insert messages into the database in one transaction. Messages over 512 characters or for a
+   * user that doesn't exist are left out.
+   * @param messages the messages, with the id of the user each is for.
+   * @return the number of messages inserted, -1 if they could not be written.
+   */
+  public static int insertMessages(List<Message> messages) {
+    int[] userIds = new int[messages.size()];
+    String[] contents = new String[messages.size()];
+    int count = 0;
+    for (Message message : messages) {
+      if (message.getMessage().length() <= 512) {
+        userIds[count] = message.getUserid();
+        contents[count] = message.getMessage();
+        count++;
+      }
+    }
+    
+    if (count == 0) {
+      return 0;
+    }
+    
+    Connection connection = null;
+    int inserted = -1;
+    try {
+      connection = DatabaseDriverHelper.connectOrCreateDataBase();
+      inserted = DatabaseInsertHelper.insertMessages(Arrays.copyOf(userIds, count),
+          Arrays.copyOf(contents, count), connection);
+    } catch (DatabaseInsertException e) {
+      e.printStackTrace();
+    } finally {
+      DatabaseDriverHelper.returnConnection(connection);
+    }
+    return inserted;
+  }
+  
   private static boolean hasDuplicateRole(String role) {
     boolean ret = false;
     String roleStr = "";
@@ -3,11 +3,14 @@ package com.bank.databasehelper;
 import com.bank.accounts.Account;
 import com.bank.accounts.BalanceOwingAccount;
 import com.bank.accounts.ChequingAccount;
+import com.bank.accounts.Money;
 import com.bank.accounts.RestrictedSavingsAccount;
 import com.bank.accounts.SavingsAccount;
 import com.bank.accounts.Tfsa;
 import com.bank.database.DatabaseSelector;
+import com.bank.generics.AccountMap;
 import com.bank.messages.Message;
+import com.bank.messages.MessageSearch;
 import com.bank.users.Admin;
 import com.bank.users.Customer;
 import com.bank.users.Teller;
@@ -17,7 +20,9 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class DatabaseSelectHelper extends DatabaseSelector {
   /**
@@ -36,13 +41,7 @@ public class DatabaseSelectHelper extends DatabaseSelector {
     } catch (SQLException e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      DatabaseDriverHelper.returnConnection(connection);
     }
     
     return role;
@@ -64,13 +63,7 @@ public class DatabaseSelectHelper extends DatabaseSelector {
     } catch (SQLException e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      DatabaseDriverHelper.returnConnection(connection);
     }
     
     return hashPassword;
@@ -83,11 +76,12 @@ public class DatabaseSelectHelper extends DatabaseSelector {
   public static List<Integer> getUsers() {
     // Return variable
     Connection connection = null;
+    ResultSet results = null;
     List<Integer> userIds = new ArrayList<Integer>();
     
     try {
       connection = DatabaseDriverHelper.connectOrCreateDataBase();
-      ResultSet results = DatabaseSelector.getUsersDetails(connection);
+      results = DatabaseSelector.getUsersDetails(connection);
       
       while (results.next()) {
         userIds.add(results.getInt("ID"));
@@ -95,13 +89,8 @@ public class DatabaseSelectHelper extends DatabaseSelector {
     } catch (SQLException e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      closeResults(results);
+      DatabaseDriverHelper.returnConnection(connection);
     }
     
     return userIds;
@@ -116,49 +105,43 @@ public class DatabaseSelectHelper extends DatabaseSelector {
     // Return variable
     User user = null;
     Connection connection = null;
+    ResultSet results = null;
+    String role = null;
+    String name = null;
+    int age = 0;
+    String address = null;
     
     try {
       connection = DatabaseDriverHelper.connectOrCreateDataBase();
-      ResultSet results = DatabaseSelector.getUserDetails(userId, connection);
+      results = DatabaseSelector.getUserDetails(userId, connection);
       
-      // Creating the User
       while (results.next()) {
-        switch (DatabaseSelectHelper.getRole(results.getInt("ROLEID"))) {
-          case "ADMIN":
-            user = new Admin(
-                userId, 
-                results.getString("NAME"), 
-                results.getInt("AGE"), 
-                results.getString("ADDRESS"));
-            break;
-          case "TELLER":
-            user = new Teller(
-                userId, 
-                results.getString("NAME"), 
-                results.getInt("AGE"), 
-                results.getString("ADDRESS"));
-            break;
-          case "CUSTOMER":
-            user = new Customer(
-                userId, 
-                results.getString("NAME"), 
-                results.getInt("AGE"), 
-                results.getString("ADDRESS"));
-            break;
-          default:
-            // SQLException would have been thrown if an ID was invalid
-        }
+        // Read on the connection already held rather than leasing another one
+        role = DatabaseSelector.getRole(results.getInt("ROLEID"), connection);
+        name = results.getString("NAME");
+        age = results.getInt("AGE");
+        address = results.getString("ADDRESS");
       }
     } catch (SQLException e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      closeResults(results);
+      DatabaseDriverHelper.returnConnection(connection);
+    }
+    
+    // Creating the User, once the connection is given back since loading the roles may lease one
+    switch (role == null ? "" : role) {
+      case "ADMIN":
+        user = new Admin(userId, name, age, address);
+        break;
+      case "TELLER":
+        user = new Teller(userId, name, age, address);
+        break;
+      case "CUSTOMER":
+        user = new Customer(userId, name, age, address);
+        break;
+      default:
+        // SQLException would have been thrown if an ID was invalid
     }
     
     return user;
@@ -173,11 +156,12 @@ public class DatabaseSelectHelper extends DatabaseSelector {
     // Return variable
     List<Integer> accountIds = new ArrayList<Integer>();
     Connection connection = null;
+    ResultSet results = null;
     
     try {
       connection = DatabaseDriverHelper.connectOrCreateDataBase();
       // I changed this to getAccountsIds from getUserDetails
-      ResultSet results = DatabaseSelector.getAccountIds(userId, connection);
+      results = DatabaseSelector.getAccountIds(userId, connection);
       
       while (results.next()) {
         accountIds.add(results.getInt("ACCOUNTID"));
@@ -185,18 +169,62 @@ public class DatabaseSelectHelper extends DatabaseSelector {
     } catch (SQLException e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      closeResults(results);
+      DatabaseDriverHelper.returnConnection(connection);
     }
     
     return accountIds;
   }
   
+  /**
+   * Gets the IDs of the users who own an account in the database.
+   * @param accountId the ID of the account
+   * @return a list of the IDs of the owners, empty if the account has none
+   */
+  public static List<Integer> getAccountOwners(int accountId) {
+    List<Integer> userIds = new ArrayList<Integer>();
+    Connection connection = null;
+    ResultSet results = null;
+    
+    try {
+      connection = DatabaseDriverHelper.connectOrCreateDataBase();
+      results = DatabaseSelector.getAccountOwners(accountId, connection);
+      
+      while (results.next()) {
+        userIds.add(results.getInt("USERID"));
+      }
+    } catch (SQLException e) {
+      e.printStackTrace();
+    } finally {
+      closeResults(results);
+      DatabaseDriverHelper.returnConnection(connection);
+    }
+    
+    return userIds;
+  }
+  
+  /**
+   * Checks whether a user owns an account in the database.
+   * @param userId the ID of the user
+   * @param accountId the ID of the account
+   * @return true if the user owns the account, false otherwise
+   */
+  public static boolean isOwner(int userId, int accountId) {
+    boolean owner = false;
+    Connection connection = null;
+    
+    try {
+      connection = DatabaseDriverHelper.connectOrCreateDataBase();
+      owner = DatabaseSelector.isOwner(userId, accountId, connection);
+    } catch (SQLException e) {
+      e.printStackTrace();
+    } finally {
+      DatabaseDriverHelper.returnConnection(connection);
+    }
+    
+    return owner;
+  }
+  
   /**
    * Get an Account object representing an account in the database.
    * @param accountId the ID of the account
@@ -205,58 +233,48 @@ public class DatabaseSelectHelper extends DatabaseSelector {
   public static Account getAccountDetails(int accountId) {
     Account account = null;
     Connection connection = null;
+    ResultSet results = null;
+    int typeId = -1;
+    String name = null;
+    Money balance = null;
     
     try {
       connection = DatabaseDriverHelper.connectOrCreateDataBase();
-      ResultSet results = DatabaseSelector.getAccountDetails(accountId, connection);
+      results = DatabaseSelector.getAccountDetails(accountId, connection);
 
-      // Creating the Account object
       while (results.next()) {
-        switch (DatabaseSelectHelper.getAccountTypeName(results.getInt("TYPE"))) {
-          case "CHEQUING":
-            account = new ChequingAccount(
-                accountId, 
-                results.getString("NAME"), 
-                new BigDecimal(results.getString("BALANCE")));
-            break;
-          case "SAVING":
-            account = new SavingsAccount(
-                accountId, 
-                results.getString("NAME"), 
-                new BigDecimal(results.getString("BALANCE")));
-            break;
-          case "TFSA":
-            account = new Tfsa(
-                accountId, 
-                results.getString("NAME"), 
-                new BigDecimal(results.getString("BALANCE")));
-            break;
-          case "RESTRICTEDSAVING":
-            account = new RestrictedSavingsAccount(
-                accountId,
-                results.getString("NAME"),
-                new BigDecimal(results.getString("BALANCE")));
-            break;
-          case "BALANCEOWING":
-            account = new BalanceOwingAccount(
-                accountId,
-                results.getString("NAME"),
-                new BigDecimal(results.getString("BALANCE")));
-            break;
-          default:
-            // SQLException would have been thrown if an ID was invalid
-        }
+        typeId = results.getInt("TYPE");
+        name = results.getString("NAME");
+        balance = Money.ofCents(results.getLong("BALANCE"));
       }
     } catch (SQLException e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      closeResults(results);
+      DatabaseDriverHelper.returnConnection(connection);
+    }
+    
+    // Creating the Account object, once the connection is given back since loading the
+    // account types may lease one
+    String type = typeId == -1 ? null : DatabaseSelectHelper.getAccountTypeName(typeId);
+    switch (type == null ? "" : type) {
+      case "CHEQUING":
+        account = new ChequingAccount(accountId, name, balance);
+        break;
+      case "SAVING":
+        account = new SavingsAccount(accountId, name, balance);
+        break;
+      case "TFSA":
+        account = new Tfsa(accountId, name, balance);
+        break;
+      case "RESTRICTEDSAVING":
+        account = new RestrictedSavingsAccount(accountId, name, balance);
+        break;
+      case "BALANCEOWING":
+        account = new BalanceOwingAccount(accountId, name, balance);
+        break;
+      default:
+        // SQLException would have been thrown if an ID was invalid
     }
     
     return account;
@@ -267,8 +285,8 @@ public class DatabaseSelectHelper extends DatabaseSelector {
   * @param accountId the ID of the account
   * @return the balance of the account
   */
-  public static BigDecimal getBalance(int accountId) {
-    BigDecimal balance = null;
+  public static Money getBalance(int accountId) {
+    Money balance = null;
     Connection connection = null;
     
     try {
@@ -278,13 +296,7 @@ public class DatabaseSelectHelper extends DatabaseSelector {
     } catch (SQLException e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      DatabaseDriverHelper.returnConnection(connection);
     }
     
     return balance;
@@ -296,82 +308,122 @@ public class DatabaseSelectHelper extends DatabaseSelector {
    * @return the interest rate
    */
   public static BigDecimal getInterestRate(int accountType) {
-    BigDecimal interestRate = null;
+    return AccountMap.getInstance().getInterestRate(accountType);
+  }
+  
+  /**
+   * Returns the account type IDs in the database.
+   * @return a list of the account type IDs
+   */
+  public static List<Integer> getAccountTypesIds() {
+    List<Integer> ids = new ArrayList<Integer>();
     Connection connection = null;
+    ResultSet results = null;
     
     try {
       connection = DatabaseDriverHelper.connectOrCreateDataBase();
-      interestRate = DatabaseSelector.getInterestRate(accountType, connection);
+      results = DatabaseSelector.getAccountTypesId(connection);
+      
+      while (results.next()) {
+        ids.add(results.getInt("ID"));
+      }
     } catch (SQLException e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      closeResults(results);
+      DatabaseDriverHelper.returnConnection(connection);
     }
     
-    return interestRate;
+    return ids;
   }
   
   /**
-   * Returns the account type IDs in the database.
-   * @return a list of the account type IDs
+   * Returns the name of every account type in the database by ID, in one query.
+   * @return the names by ID, in the order of their IDs
    */
-  public static List<Integer> getAccountTypesIds() {
-    List<Integer> ids = new ArrayList<Integer>();
+  public static Map<Integer, String> getAccountTypeNames() {
+    Map<Integer, String> names = new LinkedHashMap<Integer, String>();
     Connection connection = null;
+    ResultSet results = null;
     
     try {
       connection = DatabaseDriverHelper.connectOrCreateDataBase();
-      ResultSet results = DatabaseSelector.getAccountTypesId(connection);
+      results = DatabaseSelector.getAccountTypesDetails(connection);
       
       while (results.next()) {
-        ids.add(results.getInt("ID"));
+        names.put(results.getInt("ID"), results.getString("NAME"));
       }
     } catch (SQLException e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      closeResults(results);
+      DatabaseDriverHelper.returnConnection(connection);
     }
     
-    return ids;
+    return names;
   }
   
   /**
-   * Gets the name of an account type in the database.
-   * @param accountTypeId the ID of the account type
-   * @return the name of the account type
+   * Returns the interest rate of every account type in the database by ID, in one query.
+   * @return the interest rates by ID
    */
-  public static String getAccountTypeName(int accountTypeId) {
-    String name = "";
+  public static Map<Integer, BigDecimal> getInterestRates() {
+    Map<Integer, BigDecimal> rates = new LinkedHashMap<Integer, BigDecimal>();
     Connection connection = null;
+    ResultSet results = null;
     
     try {
       connection = DatabaseDriverHelper.connectOrCreateDataBase();
-      name = DatabaseSelector.getAccountTypeName(accountTypeId, connection);
+      results = DatabaseSelector.getAccountTypesDetails(connection);
+      
+      while (results.next()) {
+        String rate = results.getString("INTERESTRATE");
+        rates.put(results.getInt("ID"), rate == null ? null : new BigDecimal(rate));
+      }
     } catch (SQLException e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
+      closeResults(results);
+      DatabaseDriverHelper.returnConnection(connection);
+    }
+    
+    return rates;
+  }
+  
+  /**
+   * Returns the name of every role in the database by ID, in one query.
+   * @return the names by ID
+   */
+  public static Map<Integer, String> getRoleNames() {
+    Map<Integer, String> names = new LinkedHashMap<Integer, String>();
+    Connection connection = null;
+    ResultSet results = null;
+    
+    try {
+      connection = DatabaseDriverHelper.connectOrCreateDataBase();
+      results = DatabaseSelector.getRoles(connection);
+      
+      while (results.next()) {
+        names.put(results.getInt("ID"), results.getString("NAME"));
       }
+    } catch (SQLException e) {
+      e.printStackTrace();
+    } finally {
+      closeResults(results);
+      DatabaseDriverHelper.returnConnection(connection);
     }
     
-    return name;
+    return names;
+  }
+  
+  /**
+   * Gets the name of an account type in the database.
+   * @param accountTypeId the ID of the account type
+   * @return the name of the account type
+   */
+  public static String getAccountTypeName(int accountTypeId) {
+    // Account types hardly ever change, so they are read from the database once
+    return AccountMap.getInstance().getTypeName(accountTypeId);
   }
   
   /**
@@ -381,10 +433,11 @@ public class DatabaseSelectHelper extends DatabaseSelector {
   public static List<Integer> getRoles() {
     List<Integer> roles = new ArrayList<>();
     Connection connection = null;
+    ResultSet results = null;
     
     try {
       connection = DatabaseDriverHelper.connectOrCreateDataBase();
-      ResultSet results = DatabaseSelector.getRoles(connection);
+      results = DatabaseSelector.getRoles(connection);
       
       while (results.next()) {
         roles.add(results.getInt("ID"));
@@ -392,13 +445,8 @@ public class DatabaseSelectHelper extends DatabaseSelector {
     } catch (SQLException e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      closeResults(results);
+      DatabaseDriverHelper.returnConnection(connection);
     }
 
     return roles;
@@ -419,13 +467,7 @@ public class DatabaseSelectHelper extends DatabaseSelector {
     } catch (SQLException e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      DatabaseDriverHelper.returnConnection(connection);
     }
     
     return accountType;
@@ -447,13 +489,7 @@ public class DatabaseSelectHelper extends DatabaseSelector {
     } catch (SQLException e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      DatabaseDriverHelper.returnConnection(connection);
     }
     
     return role;
@@ -469,10 +505,11 @@ public class DatabaseSelectHelper extends DatabaseSelector {
   public static String getAccountName(int accountId) {
     String accountName = null;
     Connection connection = null;
+    ResultSet results = null;
     
     try {
       connection = DatabaseDriverHelper.connectOrCreateDataBase();
-      ResultSet results = DatabaseSelector.getAccountDetails(accountId, connection);
+      results = DatabaseSelector.getAccountDetails(accountId, connection);
     
       // Getting the account name from the result set
       while (results.next()) {
@@ -481,13 +518,8 @@ public class DatabaseSelectHelper extends DatabaseSelector {
     } catch (SQLException e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      closeResults(results);
+      DatabaseDriverHelper.returnConnection(connection);
     }
     
     return accountName;
@@ -501,10 +533,11 @@ public class DatabaseSelectHelper extends DatabaseSelector {
   public static List<Message> getAllMessages(int userId) {
     ArrayList<Message> messages = new ArrayList<>();
     Connection connection = null;
+    ResultSet results = null;
     try {
       // get all messages
       connection = DatabaseDriverHelper.connectOrCreateDataBase();
-      ResultSet results = DatabaseSelector.getAllMessages(userId, connection);
+      results = DatabaseSelector.getAllMessages(userId, connection);
 
       // add messages to list
       while (results.next()) {
@@ -518,17 +551,130 @@ public class DatabaseSelectHelper extends DatabaseSelector {
     } catch (SQLException e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
+      closeResults(results);
+      DatabaseDriverHelper.returnConnection(connection);
+    }
+    return messages;
+  }
+  
+  /**
+   * Get a page of the messages of a user, newest first. The next page starts after the last
+   * message of this one, so no page reads the messages before it.
+   * @param userId the user whose messages are being retrieved.
+   * @param afterId id of the last message of the previous page, 0 for the first page.
+   * @param limit the most messages on the page.
+   * @return the messages on the page.
+   */
+  public static List<Message> getMessages(int userId, int afterId, int limit) {
+    ArrayList<Message> messages = new ArrayList<>();
+    Connection connection = null;
+    ResultSet results = null;
+    try {
+      connection = DatabaseDriverHelper.connectOrCreateDataBase();
+      results = DatabaseSelector.getMessagesPage(userId,
+          afterId > 0 ? afterId : Long.MAX_VALUE, limit, connection);
+
+      while (results.next()) {
+        messages.add(new Message(results.getString("MESSAGE"), results.getInt("ID"),
+            results.getInt("USERID"), results.getInt("VIEWED")));
+      }
+    } catch (SQLException e) {
+      e.printStackTrace();
+    } finally {
+      closeResults(results);
+      DatabaseDriverHelper.returnConnection(connection);
+    }
+    return messages;
+  }
+  
+  /**
+   * Count the messages of a user that were not read yet.
+   * @param userId the user whose messages are counted.
+   * @return the number of unread messages, 0 if they could not be counted.
+   */
+  public static int countUnread(int userId) {
+    int unread = 0;
+    Connection connection = null;
+    try {
+      connection = DatabaseDriverHelper.connectOrCreateDataBase();
+      unread = DatabaseSelector.countUnread(userId, connection);
+    } catch (SQLException e) {
+      e.printStackTrace();
+    } finally {
+      DatabaseDriverHelper.returnConnection(connection);
+    }
+    return unread;
+  }
+  
+  /**
+   * Search the messages for the given words, best matches first. A message matches if it has
+   * every word, and matches rank higher the more often they have the words that are rare.
+   * @param query the words to search for.
+   * @param userId only the messages of this user are searched, all messages if it is 0 or less.
+   * @param limit the most messages found.
+   * @return the messages found.
+   */
+  public static List<Message> searchMessages(String query, int userId, int limit) {
+    ArrayList<Message> messages = new ArrayList<>();
+    String match = MessageSearch.toMatchQuery(query);
+    if (match == null || limit <= 0) {
+      return messages;
+    }
+    
+    Connection connection = null;
+    ResultSet results = null;
+    try {
+      connection = DatabaseDriverHelper.connectOrCreateDataBase();
+      MessageSearch search = new MessageSearch(limit);
+      results = DatabaseSelector.searchMessages(match, userId, connection);
+      while (results.next()) {
+        search.add(results.getInt("ID"), results.getBytes("MATCHINFO"));
+      }
+      results.close();
+      
+      // Only the messages that made the cut are read
+      for (int messageId : search.getMessageIds()) {
+        results = DatabaseSelector.getMessage(messageId, connection);
+        if (results.next()) {
+          messages.add(new Message(results.getString("MESSAGE"), results.getInt("ID"),
+              results.getInt("USERID"), results.getInt("VIEWED")));
         }
-      } catch (Exception e) {
-        e.printStackTrace();
+        results.close();
       }
+    } catch (SQLException e) {
+      e.printStackTrace();
+    } finally {
+      closeResults(results);
+      DatabaseDriverHelper.returnConnection(connection);
     }
     return messages;
   }
   
+  /**
+   * Get a message with who it is for and whether it was read.
+   * @param messageId the id of the message.
+   * @return the message, null if it does not exist.
+   */
+  public static Message getMessage(int messageId) {
+    Message message = null;
+    Connection connection = null;
+    ResultSet results = null;
+    try {
+      connection = DatabaseDriverHelper.connectOrCreateDataBase();
+      results = DatabaseSelector.getMessage(messageId, connection);
+      if (results.next()) {
+        message = new Message(results.getString("MESSAGE"), results.getInt("ID"),
+            results.getInt("USERID"), results.getInt("VIEWED"));
+      }
+    } catch (SQLException e) {
+      e.printStackTrace();
+    } finally {
+      closeResults(results);
+      DatabaseDriverHelper.returnConnection(connection);
+    }
+    return message;
+  }
+  
   /**
    * Get a specific message from the database.
    * @param messageId the id of the message.
@@ -545,14 +691,18 @@ public class DatabaseSelectHelper extends DatabaseSelector {
     } catch (SQLException e) {
       e.printStackTrace();
     } finally {
+      DatabaseDriverHelper.returnConnection(connection);
+    }
+    return message;
+  }
+  
+  private static void closeResults(ResultSet results) {
+    if (results != null) {
       try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
+        results.close();
+      } catch (SQLException e) {
         e.printStackTrace();
       }
     }
-    return message;
   }
 }
@@ -1,5 +1,6 @@
 package com.bank.databasehelper;
 
+import com.bank.accounts.Money;
 import com.bank.databasehelper.BankData.AccTypeSer;
 import com.bank.databasehelper.BankData.AccountSer;
 import com.bank.databasehelper.BankData.RoleSer;
@@ -16,17 +17,70 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.math.BigDecimal;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.sql.Connection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 
 public class DatabaseSerializer {
+  // Default pace of backups in bytes a second, can be overridden with
+  // -Dbank.backup.bytesPerSecond, 0 for no limit
+  private static final long DEFAULT_BACKUP_RATE = 4 * 1024 * 1024;
+  private static final int BACKUP_BUFFER_SIZE = 64 * 1024;
+
+  private static final long backupRate =
+      Long.getLong("bank.backup.bytesPerSecond", DEFAULT_BACKUP_RATE);
+
+  // Runs the backups one at a time, without keeping the program open
+  private static final ExecutorService backupExecutor = Executors.newSingleThreadExecutor(
+      new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "bank-backup");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+
+  /**
+   * Backs the database up into a file on a background thread, at the default pace.
+   * @param target the file of the backup, replaced once the backup is complete
+   * @return the result of the backup, true if the database was backed up, false otherwise
+   * @see #backupDatabase(String, long)
+   */
+  public static Future<Boolean> backupDatabase(String target) {
+    return backupDatabase(target, backupRate);
+  }
+
+  /**
+   * Backs the database up into a file on a background thread. The database is first copied in
+   * one read, which is all that holds up anyone writing to it, and the copy is then written
+   * out no faster than the given pace, so ATMs and tellers keep their speed while a backup
+   * runs. The backup is a database file that can be opened like bank.db.
+   * @param target the file of the backup, replaced once the backup is complete
+   * @param bytesPerSecond the most bytes written in a second, 0 for no limit
+   * @return the result of the backup, true if the database was backed up, false otherwise
+   */
+  public static Future<Boolean> backupDatabase(final String target, final long bytesPerSecond) {
+    return backupExecutor.submit(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return writeBackup(target, bytesPerSecond);
+      }
+    });
+  }
+
   /**
    * Serializes the database into database_copy.
    * @return true if database was serialized, false otherwise
@@ -101,7 +155,7 @@ public class DatabaseSerializer {
       // Inserting accounts into the database
       for (AccountSer accSer : bankData.accounts) {
         String name = accSer.name;
-        BigDecimal balance = accSer.balance;
+        Money balance = Money.valueOf(accSer.balance);
         // Getting the type ID of the account's type in case it was changed
         int typeId = getNewTypeId(accSer.type, bankData);
         
@@ -129,6 +183,8 @@ public class DatabaseSerializer {
         }
       }
     } catch (Exception e) {
+      // Pooled connections still point at the database that is about to be replaced
+      DatabaseDriverHelper.closePool();
       copyDatabase("bank-backup", "bank");
       e.printStackTrace();
       return false;
@@ -199,6 +255,68 @@ public class DatabaseSerializer {
     return accountMap.getTypeId(typeName);
   }
   
+  private static boolean writeBackup(String target, long bytesPerSecond) {
+    Path snapshot = Paths.get(target + ".snapshot");
+    Path partial = Paths.get(target + ".tmp");
+    
+    try {
+      Files.deleteIfExists(snapshot);
+      if (!DatabaseDriverHelper.copyDatabase(snapshot.toString())) {
+        return false;
+      }
+      
+      copyAtRate(snapshot, partial, bytesPerSecond);
+      Files.move(partial, Paths.get(target), StandardCopyOption.REPLACE_EXISTING);
+    } catch (Exception e) {
+      e.printStackTrace();
+      return false;
+    } finally {
+      try {
+        Files.deleteIfExists(snapshot);
+        Files.deleteIfExists(partial);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+    
+    return true;
+  }
+  
+  /**
+   * Copies a file, waiting whenever the bytes copied so far are ahead of the given pace.
+   */
+  private static void copyAtRate(Path source, Path target, long bytesPerSecond)
+      throws IOException, InterruptedException {
+    InputStream in = Files.newInputStream(source);
+    try {
+      OutputStream out = Files.newOutputStream(target);
+      try {
+        byte[] buffer = new byte[BACKUP_BUFFER_SIZE];
+        long start = System.nanoTime();
+        long copied = 0;
+        int read;
+        
+        while ((read = in.read(buffer)) > 0) {
+          out.write(buffer, 0, read);
+          copied += read;
+          
+          if (bytesPerSecond > 0) {
+            long due = start + copied / bytesPerSecond * 1000000000L
+                + copied % bytesPerSecond * 1000000000L / bytesPerSecond;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+              Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+            }
+          }
+        }
+      } finally {
+        out.close();
+      }
+    } finally {
+      in.close();
+    }
+  }
+  
   private static boolean copyDatabase(String dbName, String target) {
     Path path = Paths.get(dbName + ".db");
     Path newPath = Paths.get(target + ".db");
@@ -1,8 +1,12 @@
 package com.bank.databasehelper;
 
+import com.bank.accounts.Money;
 import com.bank.database.DatabaseUpdater;
+import com.bank.generics.AccountMap;
 import com.bank.generics.AccountTypes;
+import com.bank.generics.RoleMap;
 import com.bank.generics.Roles;
+import com.bank.messages.NotificationQueue;
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.util.List;
@@ -21,24 +25,18 @@ public class DatabaseUpdateHelper extends DatabaseUpdater {
     Connection connection = null;
     
     try {
-      connection = DatabaseDriverHelper.connectOrCreateDataBase();
-      
       // Will throw an exception if role is not in the Roles enumerator
       Roles.valueOf(name.toUpperCase());
       
       if (!hasDuplicateRole(name)) {
+        connection = DatabaseDriverHelper.connectOrCreateDataBase();
         complete = DatabaseUpdater.updateRoleName(name, id, connection);
+        RoleMap.invalidate();
       }
     } catch (Exception e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      DatabaseDriverHelper.returnConnection(connection);
     }
     
     return complete;
@@ -63,13 +61,7 @@ public class DatabaseUpdateHelper extends DatabaseUpdater {
     } catch (Exception e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      DatabaseDriverHelper.returnConnection(connection);
     }
     
     return complete;
@@ -91,13 +83,7 @@ public class DatabaseUpdateHelper extends DatabaseUpdater {
     } catch (Exception e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      DatabaseDriverHelper.returnConnection(connection);
     }
     
     return complete;
@@ -114,22 +100,16 @@ public class DatabaseUpdateHelper extends DatabaseUpdater {
     Connection connection = null;
     
     try {
-      connection = DatabaseDriverHelper.connectOrCreateDataBase();
       List<Integer> roleIds = DatabaseSelectHelper.getRoles();
       
       if (roleIds.contains(roleId)) {
+        connection = DatabaseDriverHelper.connectOrCreateDataBase();
         complete = DatabaseUpdater.updateUserRole(roleId, id, connection);
       }
     } catch (Exception e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      DatabaseDriverHelper.returnConnection(connection);
     }
     
     return complete;
@@ -154,13 +134,7 @@ public class DatabaseUpdateHelper extends DatabaseUpdater {
     } catch (Exception e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      DatabaseDriverHelper.returnConnection(connection);
     }
     
     return complete;
@@ -185,13 +159,7 @@ public class DatabaseUpdateHelper extends DatabaseUpdater {
     } catch (Exception e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      DatabaseDriverHelper.returnConnection(connection);
     }
     
     return complete;
@@ -215,13 +183,7 @@ public class DatabaseUpdateHelper extends DatabaseUpdater {
     } catch (Exception e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      DatabaseDriverHelper.returnConnection(connection);
     }
     
     return complete;
@@ -235,7 +197,7 @@ public class DatabaseUpdateHelper extends DatabaseUpdater {
    */
   
   // TODO check if savings less than 1000 and change type to chequing
-  public static boolean updateAccountBalance(BigDecimal balance, int id) {
+  public static boolean updateAccountBalance(Money balance, int id) {
     boolean complete = false;
     Connection connection = null;
     
@@ -245,13 +207,7 @@ public class DatabaseUpdateHelper extends DatabaseUpdater {
     } catch (Exception e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      DatabaseDriverHelper.returnConnection(connection);
     }
     
     return complete;
@@ -268,7 +224,6 @@ public class DatabaseUpdateHelper extends DatabaseUpdater {
     Connection connection = null;
     
     try {
-      connection = DatabaseDriverHelper.connectOrCreateDataBase();
       List<Integer> accTypesId = DatabaseSelectHelper.getAccountTypesIds();
       
       // Checking that the account type is in the AccountTypes table
@@ -276,7 +231,11 @@ public class DatabaseUpdateHelper extends DatabaseUpdater {
         // get old account type and name
         String oldType = DatabaseSelectHelper.getAccountTypeName(typeId);
         String accountname = DatabaseSelectHelper.getAccountName(id);
+        connection = DatabaseDriverHelper.connectOrCreateDataBase();
         complete = DatabaseUpdater.updateAccountType(typeId, id, connection);
+        // The connection is given back before the lookups below lease their own
+        DatabaseDriverHelper.returnConnection(connection);
+        connection = null;
 
         // get new type of the account
         String newType = DatabaseSelectHelper.getAccountTypeName(typeId);
@@ -285,26 +244,17 @@ public class DatabaseUpdateHelper extends DatabaseUpdater {
           // create message
           String message = "Your " + oldType + " account " + accountname
               + " has been changed to a " + newType;
-          // get the user of the account
-          List<Integer> users = DatabaseSelectHelper.getUsers();
-          for (int userId: users) {
-            if (DatabaseSelectHelper.getAccountIds(userId).contains(id)) {
-              // leave message for the user
-              DatabaseInsertHelper.insertMessage(userId, message);
-            }
+          // leave a message for every owner of the account, written after the change
+          NotificationQueue notifications = NotificationQueue.getInstance();
+          for (int userId : DatabaseSelectHelper.getAccountOwners(id)) {
+            notifications.send(userId, message);
           }
         }
       }
     } catch (Exception e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      DatabaseDriverHelper.returnConnection(connection);
     }
     
     return complete;
@@ -327,16 +277,11 @@ public class DatabaseUpdateHelper extends DatabaseUpdater {
       AccountTypes.valueOf(name.toUpperCase());
 
       complete = DatabaseUpdater.updateAccountTypeName(name, id, connection);
+      AccountMap.invalidate();
     } catch (IllegalArgumentException e) {
       System.out.println("Invalid role name");
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      DatabaseDriverHelper.returnConnection(connection);
     }
     
     return complete;
@@ -358,17 +303,12 @@ public class DatabaseUpdateHelper extends DatabaseUpdater {
       if (interestRate.compareTo(new BigDecimal("1")) == -1 
           && interestRate.compareTo(new BigDecimal("0")) >= 0) {
         complete = DatabaseUpdater.updateAccountTypeInterestRate(interestRate, id, connection);
+        AccountMap.invalidate();
       }
     } catch (Exception e) {
       e.printStackTrace();
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      DatabaseDriverHelper.returnConnection(connection);
     }
     
     return complete;
@@ -401,15 +341,32 @@ public class DatabaseUpdateHelper extends DatabaseUpdater {
       connection = DatabaseDriverHelper.connectOrCreateDataBase();
       complete = updateUserMessageState(id, connection);
     } finally {
-      try {
-        if (connection != null) {
-          connection.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      DatabaseDriverHelper.returnConnection(connection);
     }
 
     return complete;
   }
+  
+  /**
+   * Marks messages as read, all at once.
+   * @param messageIds the ids of the messages that have been viewed.
+   * @return the number of messages marked, -1 if they could not be marked.
+   */
+  public static int markViewed(int[] messageIds) {
+    if (messageIds.length == 0) {
+      return 0;
+    }
+    
+    int marked = -1;
+    Connection connection = null;
+
+    try {
+      connection = DatabaseDriverHelper.connectOrCreateDataBase();
+      marked = markViewed(messageIds, connection);
+    } finally {
+      DatabaseDriverHelper.returnConnection(connection);
+    }
+
+    return marked;
+  }
 }
@@ -1,41 +1,40 @@
 package com.bank.generics;
 
 import com.bank.databasehelper.DatabaseSelectHelper;
-import java.util.EnumMap;
-import java.util.List;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class AccountMap {
-  private EnumMap<AccountTypes, Integer> map = new EnumMap<>(AccountTypes.class);
-  private static AccountMap instance = new AccountMap();
+  private static final AccountMap instance = new AccountMap();
+  // The account types in the database, null until loaded or after they changed
+  private static volatile Catalog catalog = null;
+  // Counts the changes, so a table loaded while one was made is not kept
+  private static final AtomicInteger changes = new AtomicInteger();
+
+  private AccountMap() {}
 
-  private AccountMap() {
-    updateMap();
-  }
-  
   public static AccountMap getInstance() {
     return instance;
   }
-  
+
+  /**
+   * Forgets the account types, so they are read again the next time they are needed. Called
+   * whenever the account types in the database change.
+   */
+  public static void invalidate() {
+    changes.incrementAndGet();
+    catalog = null;
+  }
+
   /**
    * Updates this map to match the account types and account type IDs in the database.
    */
   public void updateMap() {
-    // Resetting the current map
-    map.clear();
-
-    // Grabbing a list of all the account type IDs from the database
-    List<Integer> accTypeIds = DatabaseSelectHelper.getAccountTypesIds();
-
-    for (int typeId : accTypeIds) {
-      // Getting the matching key from the AccountTypes enumerator
-      String keyName = DatabaseSelectHelper.getAccountTypeName(typeId);
-      AccountTypes typeKey = AccountTypes.valueOf(keyName);
-      
-      // Inserting into map
-      map.put(typeKey, typeId);
-    }
+    invalidate();
+    getCatalog();
   }
-  
+
   /**
    * Returns the type ID of an account type in the database.
    * @param typeName the account type
@@ -43,17 +42,83 @@ public class AccountMap {
    */
   public int getTypeId(String typeName) {
     int typeId = -1;
-    
+
     try {
-      typeId = map.get(AccountTypes.valueOf(typeName.toUpperCase()));
+      typeId = getCatalog().types.getId(AccountTypes.valueOf(typeName.toUpperCase()));
     } catch (IllegalArgumentException e) {
       // Invalid account type, method will return -1
     }
-    
+
     return typeId;
   }
-  
+
+  /**
+   * Returns the account type of a type ID in the database.
+   * @param typeId the type ID
+   * @return the account type, null if the type ID is not in the database
+   */
+  public AccountTypes getType(int typeId) {
+    return getCatalog().types.getConstant(typeId);
+  }
+
+  /**
+   * Returns the name of an account type in the database.
+   * @param typeId the type ID
+   * @return the name, null if the type ID is not in the database
+   */
+  public String getTypeName(int typeId) {
+    return getCatalog().names.get(typeId);
+  }
+
+  /**
+   * Returns the interest rate of an account type in the database.
+   * @param typeId the type ID
+   * @return the interest rate, null if the type ID is not in the database
+   */
+  public BigDecimal getInterestRate(int typeId) {
+    return getCatalog().interestRates.get(typeId);
+  }
+
   public boolean containsTypeId(int typeId) {
-    return map.containsValue(typeId);
+    return getCatalog().types.containsId(typeId);
+  }
+
+  /**
+   * Gets the account types, reading them from the database if they changed.
+   */
+  private static Catalog getCatalog() {
+    Catalog current = catalog;
+    if (current != null) {
+      return current;
+    }
+
+    synchronized (AccountMap.class) {
+      current = catalog;
+      if (current == null) {
+        int seen = changes.get();
+        current = new Catalog(DatabaseSelectHelper.getAccountTypeNames(),
+            DatabaseSelectHelper.getInterestRates());
+        if (changes.get() == seen) {
+          catalog = current;
+        }
+      }
+      return current;
+    }
+  }
+
+  /**
+   * The account types in the database, never changed once loaded.
+   */
+  private static final class Catalog {
+    private final EnumIdTable<AccountTypes> types;
+    // The name and interest rate of every type ID, null for IDs that are not in the database
+    private final IdTable<String> names;
+    private final IdTable<BigDecimal> interestRates;
+
+    private Catalog(Map<Integer, String> names, Map<Integer, BigDecimal> interestRates) {
+      this.types = new EnumIdTable<>(AccountTypes.class, names);
+      this.names = new IdTable<>(names);
+      this.interestRates = new IdTable<>(interestRates);
+    }
   }
 }
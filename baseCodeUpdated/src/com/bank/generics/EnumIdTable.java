@@ -0,0 +1,81 @@
+package com.bank.generics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches the constants of an enum with the IDs of their rows in the database, both ways in
+ * constant time. A table is never changed once built, a new one replaces it when the rows
+ * change, so any number of threads can read it without locking.
+ * @param <E> the enum
+ */
+final class EnumIdTable<E extends Enum<E>> {
+  // The ID of every constant by its ordinal, -1 if it is not in the database
+  private final int[] ids;
+  // The constant of every ID, null for IDs that are not in the database
+  private final IdTable<E> constants;
+  private final List<String> names;
+
+  /**
+   * Builds a table from the rows of the database. Rows named after no constant are left out.
+   * @param type the enum
+   * @param rows the name of every row by ID, in the order the names are listed
+   */
+  EnumIdTable(Class<E> type, Map<Integer, String> rows) {
+    this.ids = new int[type.getEnumConstants().length];
+    Arrays.fill(ids, -1);
+    Map<Integer, E> constants = new HashMap<>();
+    List<String> names = new ArrayList<>();
+
+    for (Map.Entry<Integer, String> row : rows.entrySet()) {
+      E constant;
+      try {
+        constant = Enum.valueOf(type, row.getValue());
+      } catch (IllegalArgumentException e) {
+        continue;
+      }
+
+      if (row.getKey() >= 0) {
+        ids[constant.ordinal()] = row.getKey();
+        constants.put(row.getKey(), constant);
+        names.add(row.getValue());
+      }
+    }
+    this.constants = new IdTable<>(constants);
+    this.names = Collections.unmodifiableList(names);
+  }
+
+  /**
+   * Gets the ID of a constant.
+   * @param constant the constant
+   * @return the ID, -1 if the constant is not in the database
+   */
+  int getId(E constant) {
+    return ids[constant.ordinal()];
+  }
+
+  /**
+   * Gets the constant of an ID.
+   * @param id the ID
+   * @return the constant, null if the ID is not in the database
+   */
+  E getConstant(int id) {
+    return constants.get(id);
+  }
+
+  boolean containsId(int id) {
+    return getConstant(id) != null;
+  }
+
+  /**
+   * Gets the names of the constants in the database, in the order of their rows.
+   * @return the names, which cannot be changed
+   */
+  List<String> getNames() {
+    return names;
+  }
+}
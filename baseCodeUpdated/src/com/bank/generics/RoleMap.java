@@ -1,41 +1,38 @@
 package com.bank.generics;
 
 import com.bank.databasehelper.DatabaseSelectHelper;
-import java.util.EnumMap;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class RoleMap {
-  private EnumMap<Roles, Integer> map = new EnumMap<>(Roles.class);
-  private static RoleMap instance = new RoleMap();
-  
-  private RoleMap() {
-    updateMap();
-  }
-  
+  private static final RoleMap instance = new RoleMap();
+  // The roles in the database, null until loaded or after they changed
+  private static volatile EnumIdTable<Roles> table = null;
+  // Counts the changes, so a table loaded while one was made is not kept
+  private static final AtomicInteger changes = new AtomicInteger();
+
+  private RoleMap() {}
+
   public static RoleMap getInstance() {
     return instance;
   }
 
+  /**
+   * Forgets the roles, so they are read again the next time they are needed. Called whenever
+   * the roles in the database change.
+   */
+  public static void invalidate() {
+    changes.incrementAndGet();
+    table = null;
+  }
+
   /**
    * Updates this map to match the roles and role IDs in the database.
    */
   public void updateMap() {
-    // Resetting the current map
-    map.clear();
-
-    // Grabbing a list of all the role IDs from the database
-    List<Integer> roleIds = DatabaseSelectHelper.getRoles();
-
-    for (int roleId : roleIds) {
-      // Getting the matching key from the Roles enumerator
-      String keyName = DatabaseSelectHelper.getRole(roleId);
-      Roles typeKey = Roles.valueOf(keyName);
-      
-      // Inserting into map
-      map.put(typeKey, roleId);
-    }
+    invalidate();
+    getTable();
   }
-  
+
   /**
    * Returns the role ID of a role in the database.
    * @param roleName the name of the role
@@ -43,20 +40,48 @@ public class RoleMap {
    */
   public int getRoleId(String roleName) {
     int roleId = -1;
-    
+
     try {
-      roleId = map.get(Roles.valueOf(roleName.toUpperCase()));
+      roleId = getTable().getId(Roles.valueOf(roleName.toUpperCase()));
     } catch (IllegalArgumentException e) {
       // Invalid role, method will return -1
     }
-    
+
     return roleId;
   }
-  
-  public boolean containsRoleId(int roleId) {
-    return map.containsValue(roleId);
+
+  /**
+   * Returns the role of a role ID in the database.
+   * @param roleId the role ID
+   * @return the role, null if the role ID is not in the database
+   */
+  public Roles getRole(int roleId) {
+    return getTable().getConstant(roleId);
   }
-}
 
+  public boolean containsRoleId(int roleId) {
+    return getTable().containsId(roleId);
+  }
 
+  /**
+   * Gets the roles, reading them from the database in one query if they changed.
+   */
+  private static EnumIdTable<Roles> getTable() {
+    EnumIdTable<Roles> current = table;
+    if (current != null) {
+      return current;
+    }
 
+    synchronized (RoleMap.class) {
+      current = table;
+      if (current == null) {
+        int seen = changes.get();
+        current = new EnumIdTable<>(Roles.class, DatabaseSelectHelper.getRoleNames());
+        if (changes.get() == seen) {
+          table = current;
+        }
+      }
+      return current;
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package com.bank.messages;
+
+import com.bank.databasehelper.DatabaseInsertHelper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Leaves the messages the bank sends on its own, like interest and account changes, without
+ * making the customer wait for them to be written. Messages are queued and written by a single
+ * thread, as many as are waiting in one transaction. A batch that could not be written is tried
+ * again, before anything queued after it. A sender waits when the queue is full, and the process
+ * waits a little for what is still queued when it exits.
+ */
+public class NotificationQueue {
+  private static final int CAPACITY = 1024;
+  private static final int MAX_BATCH = 128;
+  private static final long RETRY_MILLIS = 100;
+  private static final long MAX_RETRY_MILLIS = 5000;
+  // How long the process waits for the queue to be written when it exits
+  private static final long SHUTDOWN_WAIT_MS = 5000;
+
+  private static NotificationQueue instance = null;
+
+  private final BlockingQueue<Message> queue = new ArrayBlockingQueue<>(CAPACITY);
+  // How many messages were queued and how many of those were written
+  private final Object progress = new Object();
+  private long sent = 0;
+  private long written = 0;
+
+  private NotificationQueue() {}
+
+  /**
+   * Gets the queue of the process, starting its writer the first time.
+   * @return the queue
+   */
+  public static synchronized NotificationQueue getInstance() {
+    if (instance == null) {
+      instance = new NotificationQueue();
+      instance.start();
+    }
+
+    return instance;
+  }
+
+  /**
+   * Queues a message to be left for a user. Waits for room if the queue is full.
+   * @param userId the user the message is for
+   * @param message the contents of the message
+   */
+  public void send(int userId, String message) {
+    Message notification = new Message(message, -1, userId, 0);
+
+    try {
+      queue.put(notification);
+      synchronized (progress) {
+        sent++;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      // Written by the sender rather than lost
+      insert(Collections.singletonList(notification));
+    }
+  }
+
+  /**
+   * Waits until every message queued so far has been written.
+   * @param timeoutMillis the longest to wait
+   * @return true if they were all written, false if the time ran out
+   */
+  public boolean flush(long timeoutMillis) {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+
+    synchronized (progress) {
+      long target = sent;
+      while (written < target) {
+        long left = deadline - System.currentTimeMillis();
+        if (left <= 0) {
+          return false;
+        }
+
+        try {
+          progress.wait(left);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return false;
+        }
+      }
+    }
+
+    return true;
+  }
+
+  private void start() {
+    Thread writer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        List<Message> batch = new ArrayList<>();
+        long retryMillis = RETRY_MILLIS;
+
+        while (true) {
+          try {
+            if (batch.isEmpty()) {
+              batch.add(queue.take());
+              queue.drainTo(batch, MAX_BATCH - 1);
+            }
+
+            if (insert(batch)) {
+              synchronized (progress) {
+                written += batch.size();
+                progress.notifyAll();
+              }
+              batch = new ArrayList<>();
+              retryMillis = RETRY_MILLIS;
+            } else {
+              // The batch is kept and tried again, waiting longer each time it fails
+              Thread.sleep(retryMillis);
+              retryMillis = Math.min(retryMillis * 2, MAX_RETRY_MILLIS);
+            }
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+      }
+    }, "bank-notifications");
+    writer.setDaemon(true);
+    writer.start();
+
+    Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+      @Override
+      public void run() {
+        flush(SHUTDOWN_WAIT_MS);
+      }
+    }, "bank-notifications-flush"));
+  }
+
+  private boolean insert(List<Message> messages) {
+    try {
+      return DatabaseInsertHelper.insertMessages(messages) != -1;
+    } catch (Exception e) {
+      e.printStackTrace();
+      return false;
+    }
+  }
+}
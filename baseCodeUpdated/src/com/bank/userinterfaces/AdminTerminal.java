@@ -1,6 +1,7 @@
 package com.bank.userinterfaces;
 
 import com.bank.accounts.Account;
+import com.bank.accounts.Money;
 import com.bank.databasehelper.DatabaseInsertHelper;
 import com.bank.databasehelper.DatabaseSelectHelper;
 import com.bank.databasehelper.DatabaseUpdateHelper;
@@ -11,7 +12,6 @@ import com.bank.messages.Message;
 import com.bank.users.Customer;
 import com.bank.users.User;
 
-import java.math.BigDecimal;
 import java.util.List;
 
 public class AdminTerminal {
@@ -146,22 +146,40 @@ public class AdminTerminal {
   public String viewMessage(int messageId) {
     // Check authentication
   
-    String specificMessage = DatabaseSelectHelper.getSpecificMessage(messageId);
+    Message message = DatabaseSelectHelper.getMessage(messageId);
     String result = "";
-    // Get all the Admin's messages
-    List<Message> messages = DatabaseSelectHelper.getAllMessages(this.currentAdmin.getId());
-    // Go through the Admin's messages
-    for (Message message : messages) {
-      // Check that the message is the Admin's
-      if (message.getMessage().equals(specificMessage)) {
-        // update viewed status and return the message
+    // Check that the message is the Admin's
+    if (message != null && message.getUserid() == this.currentAdmin.getId()) {
+      // update viewed status and return the message
+      if (message.getViewed() == 0) {
         DatabaseUpdateHelper.updateUserMessageState(messageId);
-        result = specificMessage;
       }
+      result = message.getMessage();
     }
     return result;
   }
 
+  /**
+   * Searches every message for the given words.
+   * @param query the words to search for
+   * @param limit the most messages found
+   * @return the messages found, best matches first
+   */
+  public List<Message> searchMessages(String query, int limit) {
+    return searchMessages(query, 0, limit);
+  }
+
+  /**
+   * Searches the messages of a user for the given words.
+   * @param query the words to search for
+   * @param userid the id of the user whose messages are searched, 0 for everyone
+   * @param limit the most messages found
+   * @return the messages found, best matches first
+   */
+  public List<Message> searchMessages(String query, int userid, int limit) {
+    return DatabaseSelectHelper.searchMessages(query, userid, limit);
+  }
+
   /**
    * Creates a message to be left to a user.
    * @param userid the id of the recipient
@@ -180,13 +198,13 @@ public class AdminTerminal {
   
   /**
    * Returns the total amount of money in the bank.
-   * @return BigDecimal amount of money in the bank
+   * @return Money amount of money in the bank
    */
-  public BigDecimal bankBalance() {
+  public Money bankBalance() {
     User users;
     int i = 1;
     RoleMap rolemap = RoleMap.getInstance();
-    BigDecimal dosh = new BigDecimal("0");
+    Money dosh = Money.ZERO;
     int customerRoleId = rolemap.getRoleId("CUSTOMER");
     // Grab all users in the database and sort them
     try {
@@ -1,6 +1,7 @@
 package com.bank.userinterfaces;
 
 import com.bank.accounts.Account;
+import com.bank.accounts.Money;
 import com.bank.databasehelper.DatabaseSelectHelper;
 import com.bank.databasehelper.DatabaseUpdateHelper;
 import com.bank.exceptions.InsufficientPermissionException;
@@ -11,7 +12,6 @@ import com.bank.generics.RoleMap;
 import com.bank.messages.Message;
 import com.bank.users.Customer;
 import com.bank.users.User;
-import java.math.BigDecimal;
 import java.util.List;
 
 public class Atm {
@@ -87,18 +87,13 @@ public class Atm {
    * @return true if the deposit was successful, false otherwise
    * @throws InvalidAccountException if the account was not found in the user's account
    */
-  public boolean makeDeposit(BigDecimal amount, int accountId) throws InvalidAccountException {
+  public boolean makeDeposit(Money amount, int accountId) throws InvalidAccountException {
     boolean completed = false;
     
     if (this.currentCustomer != null && this.authenticated) {
-      List<Integer> customerAccs = DatabaseSelectHelper.getAccountIds(this.currentCustomer.getId());
-      
       // Checking if the account is of the customer's
-      if (customerAccs.contains(accountId)) {
-        BigDecimal currentBalance = DatabaseSelectHelper.getBalance(accountId);
-        BigDecimal newBalance = currentBalance.add(amount);
-        // Rounding
-        newBalance = newBalance.setScale(2, BigDecimal.ROUND_HALF_UP);
+      if (DatabaseSelectHelper.isOwner(this.currentCustomer.getId(), accountId)) {
+        Money newBalance = DatabaseSelectHelper.getBalance(accountId).add(amount);
         // Updating
         DatabaseUpdateHelper.updateAccountBalance(newBalance, accountId);
         completed = true;
@@ -116,14 +111,12 @@ public class Atm {
    * @return the balance of the account
    * @throws InvalidAccountException if the account was not found in the user's accounts
    */
-  public BigDecimal checkBalance(int accountId) throws InvalidAccountException {
-    BigDecimal balance = null;
+  public Money checkBalance(int accountId) throws InvalidAccountException {
+    Money balance = null;
     
     if (this.currentCustomer != null && this.authenticated) {
-      List<Integer> customerAccs = DatabaseSelectHelper.getAccountIds(this.currentCustomer.getId());
-      
       // Checking if the account is of the customer's
-      if (customerAccs.contains(accountId)) {
+      if (DatabaseSelectHelper.isOwner(this.currentCustomer.getId(), accountId)) {
         balance = DatabaseSelectHelper.getBalance(accountId);
       } else {
         throw new InvalidAccountException();
@@ -144,21 +137,16 @@ public class Atm {
    */
   
   // TODO Check if restrictedsavingsaccount and throw InsufficientPermission exception
-  public boolean makeWithdrawal(BigDecimal amount, int accountId) throws InsuffiecintFundsException,
+  public boolean makeWithdrawal(Money amount, int accountId) throws InsuffiecintFundsException,
       InvalidAccountException, InsufficientPermissionException {
     boolean completed = false;
     int rsaTypeId = AccountMap.getInstance().getTypeId("RESTRICTEDSAVING");
     
     if (this.currentCustomer != null && this.authenticated) {
-      List<Integer> customerAccs = DatabaseSelectHelper.getAccountIds(this.currentCustomer.getId());
-      
       if (DatabaseSelectHelper.getAccountType(accountId) != rsaTypeId) {
-        if (customerAccs.contains(accountId)) {
+        if (DatabaseSelectHelper.isOwner(this.currentCustomer.getId(), accountId)) {
           // Checking if the customer owns the account
-          BigDecimal currentBalance = DatabaseSelectHelper.getBalance(accountId);
-          BigDecimal newBalance = currentBalance.subtract(amount);
-          // Rounding
-          newBalance = newBalance.setScale(2, BigDecimal.ROUND_HALF_UP);
+          Money newBalance = DatabaseSelectHelper.getBalance(accountId).subtract(amount);
           
           if (newBalance.signum() != -1) {
             // Updating
@@ -184,18 +172,15 @@ public class Atm {
    * @return the message (String)
    */
   public String viewMessage(int messageId) {
-    String specificMessage = DatabaseSelectHelper.getSpecificMessage(messageId);
+    Message message = DatabaseSelectHelper.getMessage(messageId);
     String result = "";
-    // Get all the users messages
-    List<Message> messages = DatabaseSelectHelper.getAllMessages(currentCustomer.getId());
-    // Go through the users messages
-    for (Message message: messages) {
-      // Check that the message is the users
-      if (message.getMessage().equals(specificMessage)) {
-        // update viewed status and return the message
+    // Check that the message is the users
+    if (message != null && message.getUserid() == currentCustomer.getId()) {
+      // update viewed status and return the message
+      if (message.getViewed() == 0) {
         DatabaseUpdateHelper.updateUserMessageState(messageId);
-        result =  specificMessage;
       }
+      result = message.getMessage();
     }
     return result;
   }
@@ -1,6 +1,7 @@
 package com.bank.userinterfaces;
 
 import com.bank.accounts.Account;
+import com.bank.accounts.Money;
 import com.bank.databasehelper.DatabaseInsertHelper;
 import com.bank.databasehelper.DatabaseSelectHelper;
 import com.bank.databasehelper.DatabaseUpdateHelper;
@@ -12,7 +13,6 @@ import com.bank.generics.RoleMap;
 import com.bank.messages.Message;
 import com.bank.users.Customer;
 import com.bank.users.User;
-import java.math.BigDecimal;
 import java.util.List;
 
 public class TellerTerminal extends Atm {
@@ -40,11 +40,11 @@ public class TellerTerminal extends Atm {
    * Makes a new account and registers it to the current customer.
    *
    * @param name    a nonempty name of the account
-   * @param balance the balance of the account with 2 decimal places
+   * @param balance the balance of the account
    * @param type    the type of account from the AccountType enumerator
    * @return the ID of the new UserAccount, -1 otherwise
    */
-  public int makeNewAccount(String name, BigDecimal balance, int type) {
+  public int makeNewAccount(String name, Money balance, int type) {
     int ret = -1;
 
     if (this.currentUser != null && this.currentCustomer != null && this.currentUserAuthenticated
@@ -120,10 +120,7 @@ public class TellerTerminal extends Atm {
    */
   public void giveInterest(int accountId) {
     if (this.currentUserAuthenticated && this.currentCustomerAuthenticated) {
-      List<Integer> customerAccIds
-          = DatabaseSelectHelper.getAccountIds(this.currentCustomer.getId());
-
-      if (customerAccIds.contains(accountId)) {
+      if (DatabaseSelectHelper.isOwner(this.currentCustomer.getId(), accountId)) {
         // Loop through the customer's accounts to find the matching account
         // and give interest based on the type
         for (Account account : this.currentCustomer.getAccounts()) {
@@ -153,20 +150,15 @@ public class TellerTerminal extends Atm {
     return accounts;
   }
 
-  @Override public boolean makeDeposit(BigDecimal amount, int accountId)
+  @Override public boolean makeDeposit(Money amount, int accountId)
       throws InvalidAccountException {
     boolean completed = false;
 
     // Checking that the customer is authenticated
     if (this.currentCustomer != null && this.currentUserAuthenticated
         && this.currentCustomerAuthenticated) {
-      List<Integer> customerAccs = DatabaseSelectHelper.getAccountIds(this.currentCustomer.getId());
-
-      if (customerAccs.contains(accountId)) {
-        BigDecimal currentBalance = DatabaseSelectHelper.getBalance(accountId);
-        BigDecimal newBalance = currentBalance.add(amount);
-        // Rounding
-        newBalance = newBalance.setScale(2, BigDecimal.ROUND_HALF_UP);
+      if (DatabaseSelectHelper.isOwner(this.currentCustomer.getId(), accountId)) {
+        Money newBalance = DatabaseSelectHelper.getBalance(accountId).add(amount);
         // Updating
         DatabaseUpdateHelper.updateAccountBalance(newBalance, accountId);
         completed = true;
@@ -178,15 +170,13 @@ public class TellerTerminal extends Atm {
     return completed;
   }
 
-  @Override public BigDecimal checkBalance(int accountId) throws InvalidAccountException {
-    BigDecimal balance = null;
+  @Override public Money checkBalance(int accountId) throws InvalidAccountException {
+    Money balance = null;
 
     // Checking that the customer is authenticated
     if (this.currentCustomer != null && this.currentUserAuthenticated
         && this.currentCustomerAuthenticated) {
-      List<Integer> customerAccs = DatabaseSelectHelper.getAccountIds(this.currentCustomer.getId());
-
-      if (customerAccs.contains(accountId)) {
+      if (DatabaseSelectHelper.isOwner(this.currentCustomer.getId(), accountId)) {
         balance = DatabaseSelectHelper.getBalance(accountId);
       } else {
         throw new InvalidAccountException();
@@ -196,19 +186,14 @@ public class TellerTerminal extends Atm {
     return balance;
   }
 
-  @Override public boolean makeWithdrawal(BigDecimal amount, int accountId)
+  @Override public boolean makeWithdrawal(Money amount, int accountId)
       throws InsuffiecintFundsException, InvalidAccountException {
     boolean completed = false;
 
     if (this.currentCustomer != null && this.currentUserAuthenticated
         && this.currentCustomerAuthenticated) {
-      List<Integer> customerAccs = DatabaseSelectHelper.getAccountIds(this.currentCustomer.getId());
-
-      if (customerAccs.contains(accountId)) {
-        BigDecimal currentBalance = DatabaseSelectHelper.getBalance(accountId);
-        BigDecimal newBalance = currentBalance.subtract(amount);
-        // Rounding
-        newBalance = newBalance.setScale(2, BigDecimal.ROUND_HALF_UP);
+      if (DatabaseSelectHelper.isOwner(this.currentCustomer.getId(), accountId)) {
+        Money newBalance = DatabaseSelectHelper.getBalance(accountId).subtract(amount);
 
         if (newBalance.signum() != -1) {
           // Updating
@@ -254,18 +239,15 @@ public class TellerTerminal extends Atm {
 
     // Check authentication
     if (this.currentUserAuthenticated) {
-      String specificMessage = DatabaseSelectHelper.getSpecificMessage(messageId);
+      Message message = DatabaseSelectHelper.getMessage(messageId);
       String result = "";
-      // Get all the Teller's messages
-      List<Message> messages = DatabaseSelectHelper.getAllMessages(currentUser.getId());
-      // Go through the Teller's messages
-      for (Message message : messages) {
-        // Check that the message is the Teller's
-        if (message.getMessage().equals(specificMessage)) {
-          // update viewed status and return the message
+      // Check that the message is the Teller's
+      if (message != null && message.getUserid() == currentUser.getId()) {
+        // update viewed status and return the message
+        if (message.getViewed() == 0) {
           DatabaseUpdateHelper.updateUserMessageState(messageId);
-          result = specificMessage;
         }
+        result = message.getMessage();
       }
       return result;
     } else {
@@ -281,18 +263,15 @@ public class TellerTerminal extends Atm {
   public String viewCustomersMessage(int messageId) {
     // Check authentication
     if (this.currentUserAuthenticated && this.currentCustomerAuthenticated) {
-      String specificMessage = DatabaseSelectHelper.getSpecificMessage(messageId);
+      Message message = DatabaseSelectHelper.getMessage(messageId);
       String result = "";
-      // Get all the Customer's messages
-      List<Message> messages = DatabaseSelectHelper.getAllMessages(currentCustomer.getId());
-      // Go through the Customer's messages
-      for (Message message : messages) {
-        // Check that the message is the Customer's
-        if (message.getMessage().equals(specificMessage)) {
-          // update viewed status and return the message
+      // Check that the message is the Customer's
+      if (message != null && message.getUserid() == currentCustomer.getId()) {
+        // update viewed status and return the message
+        if (message.getViewed() == 0) {
           DatabaseUpdateHelper.updateUserMessageState(messageId);
-          result = specificMessage;
         }
+        result = message.getMessage();
       }
       return result;
     } else {
@@ -4,13 +4,13 @@ import android.content.Context;
 
 import com.bank.database.android.DatabaseHelper;
 import com.bank.generics.AccountMap;
+import com.bank.messages.NotificationQueue;
 import java.math.BigDecimal;
-import java.util.List;
 
 public abstract class AccountImpl implements Account {
   private int id;
   private String name;
-  private BigDecimal balance;
+  private Money balance;
   private int type;
   BigDecimal interestRate = null;
   private Context context;
@@ -22,7 +22,7 @@ public abstract class AccountImpl implements Account {
    * @param name the name of the account
    * @param balance the balance of the account
    */
-  public AccountImpl(Context context, int id, String name, BigDecimal balance) {
+  public AccountImpl(Context context, int id, String name, Money balance) {
     this.dbHelper = new DatabaseHelper(context);
     this.context = context;
     this.setId(id);
@@ -55,13 +55,13 @@ public abstract class AccountImpl implements Account {
    * Updates the account's balance from the database and then returns it.
    * @return the account balance
    */
-  public BigDecimal getBalance() {
+  public Money getBalance() {
     // Updating in case information was changed
     this.balance = dbHelper.getBalance(this.id);
     return this.balance;
   }
 
-  public void setBalance(BigDecimal balance) {
+  public void setBalance(Money balance) {
     this.balance = balance;
   }
   
@@ -90,13 +90,10 @@ public abstract class AccountImpl implements Account {
    */
   public void addInterest() {
 
-    // Calculating the new balance
-    BigDecimal newInterest = this.getBalance().multiply(this.interestRate)
-            .setScale(2, BigDecimal.ROUND_HALF_UP);
-    BigDecimal newBalance = this.getBalance().add(newInterest);
-
-    // Rounding
-    newBalance = newBalance.setScale(2, BigDecimal.ROUND_HALF_UP);
+    // Calculating the new balance, the interest is rounded to the nearest cent
+    Money balance = this.getBalance();
+    Money newInterest = balance.multiply(this.interestRate);
+    Money newBalance = balance.add(newInterest);
     this.setBalance(newBalance);
 
     // Updating the balance in the database
@@ -109,13 +106,10 @@ public abstract class AccountImpl implements Account {
     String message = "$" + newInterest + " worth of interest has been added to your " + typeName
         + " account ID " + this.id;
 
-    // get the user of the account
-    List<Integer> users = dbHelper.getUserIds();
-    for (int userId : users) {
-      if (dbHelper.getUsersAccIds(userId).contains(this.id)) {
-        // leave message for the user
-        dbHelper.insertMessage(userId, message);
-      }
+    // leave a message for every owner of the account, written after the interest is added
+    NotificationQueue notifications = NotificationQueue.getInstance(context);
+    for (int userId : dbHelper.getAccountOwners(this.id)) {
+      notifications.offer(userId, message);
     }
   }
 
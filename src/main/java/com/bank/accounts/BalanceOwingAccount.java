@@ -2,8 +2,6 @@ package com.bank.accounts;
 
 import android.content.Context;
 
-import java.math.BigDecimal;
-
 public class BalanceOwingAccount extends AccountImpl {
   private final String typeName = "BALANCEOWING";
   
@@ -13,7 +11,7 @@ public class BalanceOwingAccount extends AccountImpl {
    * @param name the name of the account
    * @param balance the balance of the account
    */
-  public BalanceOwingAccount(Context context, int id, String name, BigDecimal balance) {
+  public BalanceOwingAccount(Context context, int id, String name, Money balance) {
     super(context, id, name, balance);
     this.setType(this.typeName);
   }
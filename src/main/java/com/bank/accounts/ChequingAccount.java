@@ -2,8 +2,6 @@ package com.bank.accounts;
 
 import android.content.Context;
 
-import java.math.BigDecimal;
-
 public class ChequingAccount extends AccountImpl {
   // Account type name
   private final String typeName = "CHEQUING";
@@ -14,7 +12,7 @@ public class ChequingAccount extends AccountImpl {
    * @param name the name of the account
    * @param balance the balance of the account
    */
-  public ChequingAccount(Context context, int id, String name, BigDecimal balance) {
+  public ChequingAccount(Context context, int id, String name, Money balance) {
     super(context, id, name, balance);
     this.setType(this.typeName);
   }
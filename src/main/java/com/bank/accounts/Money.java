@@ -0,0 +1,144 @@
+package com.bank.accounts;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * An amount of money, kept as a whole number of cents.
+ */
+public final class Money implements Comparable<Money>, Serializable {
+  private static final long serialVersionUID = 1L;
+
+  public static final Money ZERO = new Money(0);
+
+  private final long cents;
+
+  private Money(long cents) {
+    this.cents = cents;
+  }
+
+  /**
+   * Creates an amount from a number of cents.
+   * @param cents the number of cents
+   * @return the amount
+   */
+  public static Money ofCents(long cents) {
+    return cents == 0 ? ZERO : new Money(cents);
+  }
+
+  /**
+   * Creates an amount from a decimal number of dollars, rounded half up to the nearest cent.
+   * @param amount the number of dollars
+   * @return the amount
+   * @throws ArithmeticException if the amount is too large
+   */
+  public static Money valueOf(BigDecimal amount) {
+    return ofCents(amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP)
+        .longValueExact());
+  }
+
+  /**
+   * Parses an amount of dollars such as "12.34".
+   * @param amount the number of dollars
+   * @return the amount
+   * @throws NumberFormatException if the amount is not a number
+   */
+  public static Money parse(String amount) {
+    return valueOf(new BigDecimal(amount.trim()));
+  }
+
+  public long getCents() {
+    return this.cents;
+  }
+
+  /**
+   * Adds two amounts.
+   * @param other the amount to add
+   * @return the sum
+   * @throws ArithmeticException if the sum is too large
+   */
+  public Money add(Money other) {
+    long sum = this.cents + other.cents;
+
+    // Overflow if both operands have the sign opposite to the result
+    if (((this.cents ^ sum) & (other.cents ^ sum)) < 0) {
+      throw new ArithmeticException();
+    }
+
+    return ofCents(sum);
+  }
+
+  /**
+   * Subtracts an amount from this one.
+   * @param other the amount to subtract
+   * @return the difference
+   * @throws ArithmeticException if the difference is too large
+   */
+  public Money subtract(Money other) {
+    long difference = this.cents - other.cents;
+
+    // Overflow if the operands have different signs and the result has the sign of the other
+    if (((this.cents ^ other.cents) & (this.cents ^ difference)) < 0) {
+      throw new ArithmeticException();
+    }
+
+    return ofCents(difference);
+  }
+
+  /**
+   * Multiplies this amount by a rate, rounded half up to the nearest cent.
+   * @param rate the rate, such as an interest rate
+   * @return the product
+   * @throws ArithmeticException if the product is too large
+   */
+  public Money multiply(BigDecimal rate) {
+    return ofCents(BigDecimal.valueOf(this.cents).multiply(rate)
+        .setScale(0, RoundingMode.HALF_UP).longValueExact());
+  }
+
+  public int signum() {
+    return Long.signum(this.cents);
+  }
+
+  public BigDecimal toBigDecimal() {
+    return BigDecimal.valueOf(this.cents, 2);
+  }
+
+  @Override
+  public int compareTo(Money other) {
+    return this.cents < other.cents ? -1 : (this.cents == other.cents ? 0 : 1);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof Money && ((Money) other).cents == this.cents;
+  }
+
+  @Override
+  public int hashCode() {
+    return (int) (this.cents ^ (this.cents >>> 32));
+  }
+
+  /**
+   * Formats the amount as dollars with two decimal places, such as "12.34".
+   * @return the formatted amount
+   */
+  @Override
+  public String toString() {
+    long dollars = this.cents / 100;
+    long remainder = Math.abs(this.cents % 100);
+    StringBuilder builder = new StringBuilder(24);
+
+    // A negative amount under a dollar has no sign on the dollars
+    if (this.cents < 0 && dollars == 0) {
+      builder.append('-');
+    }
+
+    builder.append(dollars).append('.');
+    if (remainder < 10) {
+      builder.append('0');
+    }
+    return builder.append(remainder).toString();
+  }
+}
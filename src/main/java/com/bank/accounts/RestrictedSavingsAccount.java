@@ -2,8 +2,6 @@ package com.bank.accounts;
 
 import android.content.Context;
 
-import java.math.BigDecimal;
-
 public class RestrictedSavingsAccount extends AccountImpl {
   // Account type name
   private final String typeName = "RESTRICTEDSAVING";
@@ -14,7 +12,7 @@ public class RestrictedSavingsAccount extends AccountImpl {
    * @param name account name
    * @param balance account balance
    */
-  public RestrictedSavingsAccount(Context context, int id, String name, BigDecimal balance) {
+  public RestrictedSavingsAccount(Context context, int id, String name, Money balance) {
     super(context, id, name, balance);
     this.setType(this.typeName);
   }
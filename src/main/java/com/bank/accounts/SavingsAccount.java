@@ -2,8 +2,6 @@ package com.bank.accounts;
 
 import android.content.Context;
 
-import java.math.BigDecimal;
-
 public class SavingsAccount extends AccountImpl {
   // Account type name
   private final String typeName = "SAVING";
@@ -14,7 +12,7 @@ public class SavingsAccount extends AccountImpl {
    * @param name account name
    * @param balance account balance
    */
-  public SavingsAccount(Context context, int id, String name, BigDecimal balance) {
+  public SavingsAccount(Context context, int id, String name, Money balance) {
     super(context, id, name, balance);
     this.setType(this.typeName);
   }
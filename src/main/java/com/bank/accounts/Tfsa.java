@@ -2,8 +2,6 @@ package com.bank.accounts;
 
 import android.content.Context;
 
-import java.math.BigDecimal;
-
 public class Tfsa extends AccountImpl {
   // Account type name
   private final String typeName = "TFSA";
@@ -14,7 +12,7 @@ public class Tfsa extends AccountImpl {
    * @param name account name
    * @param balance account balance
    */
-  public Tfsa(Context context, int id, String name, BigDecimal balance) {
+  public Tfsa(Context context, int id, String name, Money balance) {
     super(context, id, name, balance);
     this.setType(this.typeName);
   }
@@ -15,9 +15,12 @@ import android.widget.EditText;
 import android.widget.Toast;
 
 import com.bank.R;
+import com.bank.activities.helpers.DatabaseTasks;
 import com.bank.database.android.DatabaseHelper;
 import com.bank.users.User;
 
+import java.util.concurrent.Callable;
+
 
 public class LoginActivity extends AppCompatActivity {
   @Override
@@ -28,24 +31,44 @@ public class LoginActivity extends AppCompatActivity {
     checkInitialized();
   }
 
+  @Override
+  protected void onDestroy() {
+    DatabaseTasks.cancel(this);
+    super.onDestroy();
+  }
+
   private void checkInitialized() {
-    DatabaseHelper dbHelper = new DatabaseHelper(this);
-    String msg;
-    String title;
+    DatabaseTasks.of(this).query(isEmpty(), new DatabaseTasks.Callback<Boolean>() {
+      @Override
+      public void onResult(Boolean empty) {
+        if (empty) {
+          String msg = "The database may not be initialized.\n"
+                  + "You can initialize the database from the options menu on the top right.";
+          String title = "Hello";
 
-    if (dbHelper.getRoleIds().isEmpty() && dbHelper.getUserIds().isEmpty()) {
-      msg = "The database may not be initialized.\n"
-              + "You can initialize the database from the options menu on the top right.";
-      title = "Hello";
+          AlertDialog.Builder builder = new AlertDialog.Builder(LoginActivity.this);
+          builder.setMessage(msg)
+                  .setTitle(title)
+                  .setNegativeButton("OK", null).create();
 
-      AlertDialog.Builder builder = new AlertDialog.Builder(this);
-      builder.setMessage(msg)
-              .setTitle(title)
-              .setNegativeButton("OK", null).create();
+          AlertDialog dialog = builder.create();
+          dialog.show();
+        }
+      }
+    });
+  }
 
-      AlertDialog dialog = builder.create();
-      dialog.show();
-    }
+  /**
+   * Checks if the database has no roles and no users.
+   */
+  private Callable<Boolean> isEmpty() {
+    final DatabaseHelper dbHelper = new DatabaseHelper(this);
+    return new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return dbHelper.getRoleIds().isEmpty() && dbHelper.getUserIds().isEmpty();
+      }
+    };
   }
 
   private void setupButtons() {
@@ -70,37 +93,79 @@ public class LoginActivity extends AppCompatActivity {
       return;
     }
 
-    String password = ((EditText) findViewById(R.id.login_password)).getText().toString();
-
-    DatabaseHelper dbHelper = new DatabaseHelper(this);
-    User user = dbHelper.getUserObject(userId);
-    if (user != null && user.authenticated(password)) {
-      Intent intent = new Intent(this, MenuActivity.class);
-      intent.putExtra("userRole", user.getRoleId());
-      intent.putExtra("userId", userId);
-      intent.putExtra("userPw", password);
-      startActivity(intent);
-    } else if (dbHelper.getRoleIds().isEmpty()) {
-      AlertDialog.Builder builder = new AlertDialog.Builder(this);
-      String msg = "Database may not have been initialized. "
-              + "You can initialize the database from the options menu.";
-      builder.setMessage(msg)
-          .setTitle("Error")
-          .setNegativeButton("OK", null).create();
+    final String password
+        = ((EditText) findViewById(R.id.login_password)).getText().toString();
+    final int fUserId = userId;
+    final DatabaseHelper dbHelper = new DatabaseHelper(this);
 
-      AlertDialog dialog = builder.create();
-      dialog.show();
-    } else {
-      Toast toast = Toast.makeText(this, "Invalid ID or password", Toast.LENGTH_SHORT);
-      toast.show();
-    }
+    // Finding the user and checking the password, null if either is wrong
+    Callable<User> login = new Callable<User>() {
+      @Override
+      public User call() {
+        User user = dbHelper.getUserObject(fUserId);
+        return user != null && user.authenticated(password) ? user : null;
+      }
+    };
+
+    DatabaseTasks.of(this).query(login, new DatabaseTasks.Callback<User>() {
+      @Override
+      public void onResult(User user) {
+        if (user != null) {
+          Intent intent = new Intent(LoginActivity.this, MenuActivity.class);
+          intent.putExtra("userRole", user.getRoleId());
+          intent.putExtra("userId", fUserId);
+          intent.putExtra("userPw", password);
+          startActivity(intent);
+        } else {
+          showLoginFailed();
+        }
+      }
+    });
+  }
+
+  private void showLoginFailed() {
+    final DatabaseHelper dbHelper = new DatabaseHelper(this);
+    Callable<Boolean> noRoles = new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return dbHelper.getRoleIds().isEmpty();
+      }
+    };
+
+    DatabaseTasks.of(this).query(noRoles, new DatabaseTasks.Callback<Boolean>() {
+      @Override
+      public void onResult(Boolean empty) {
+        if (empty) {
+          AlertDialog.Builder builder = new AlertDialog.Builder(LoginActivity.this);
+          String msg = "Database may not have been initialized. "
+                  + "You can initialize the database from the options menu.";
+          builder.setMessage(msg)
+              .setTitle("Error")
+              .setNegativeButton("OK", null).create();
+
+          AlertDialog dialog = builder.create();
+          dialog.show();
+        } else {
+          Toast toast = Toast.makeText(LoginActivity.this, "Invalid ID or password",
+                  Toast.LENGTH_SHORT);
+          toast.show();
+        }
+      }
+    });
   }
 
   private void handleInitBtnClick() {
-    DatabaseHelper dbHelper = new DatabaseHelper(this);
+    DatabaseTasks.of(this).query(isEmpty(), new DatabaseTasks.Callback<Boolean>() {
+      @Override
+      public void onResult(Boolean empty) {
+        showInitDialog(empty);
+      }
+    });
+  }
 
+  private void showInitDialog(boolean empty) {
     // Prompting the user to set the admin password
-    if (dbHelper.getRoleIds().isEmpty() && dbHelper.getUserIds().isEmpty()) {
+    if (empty) {
       // Creating the dialog
       LayoutInflater inflater = LayoutInflater.from(this);
       View changePasswordForm = inflater.inflate(R.layout.change_password_form, null);
@@ -151,19 +216,43 @@ public class LoginActivity extends AppCompatActivity {
     }
   }
 
-  private void initDbWithPassword(String password) {
-    DatabaseHelper dbHelper = new DatabaseHelper(this);
-    int adminId = dbHelper.initializeDatabase(password);
-    Toast toast = Toast.makeText(LoginActivity.this, "Your admin ID is: " + adminId,
-            Toast.LENGTH_LONG);
-    toast.show();
+  private void initDbWithPassword(final String password) {
+    final DatabaseHelper dbHelper = new DatabaseHelper(this);
+    Callable<Integer> initialize = new Callable<Integer>() {
+      @Override
+      public Integer call() {
+        return dbHelper.initializeDatabase(password);
+      }
+    };
+
+    DatabaseTasks.of(this).update(initialize, new DatabaseTasks.Callback<Integer>() {
+      @Override
+      public void onResult(Integer adminId) {
+        Toast toast = Toast.makeText(LoginActivity.this, "Your admin ID is: " + adminId,
+                Toast.LENGTH_LONG);
+        toast.show();
+      }
+    });
   }
 
   private void handleReinitBtnClick() {
-    DatabaseHelper dbHelper = new DatabaseHelper(this);
-    dbHelper.reinitializeDatabase();
-    Toast toast = Toast.makeText(this, "Database cleared", Toast.LENGTH_SHORT);
-    toast.show();
+    final DatabaseHelper dbHelper = new DatabaseHelper(this);
+    Callable<Void> reinitialize = new Callable<Void>() {
+      @Override
+      public Void call() {
+        dbHelper.reinitializeDatabase();
+        return null;
+      }
+    };
+
+    DatabaseTasks.of(this).update(reinitialize, new DatabaseTasks.Callback<Void>() {
+      @Override
+      public void onResult(Void result) {
+        Toast toast = Toast.makeText(LoginActivity.this, "Database cleared",
+                Toast.LENGTH_SHORT);
+        toast.show();
+      }
+    });
   }
 
   @Override
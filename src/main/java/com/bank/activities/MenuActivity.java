@@ -17,17 +17,21 @@ import android.widget.Toast;
 import com.bank.R;
 import com.bank.activities.helpers.AccountFunc;
 import com.bank.activities.helpers.AdminFunc;
+import com.bank.activities.helpers.DatabaseTasks;
 import com.bank.activities.helpers.MessageFunc;
 import com.bank.activities.helpers.MoneyFunc;
 import com.bank.activities.helpers.TellerFunc;
 import com.bank.database.android.DatabaseHelper;
 import com.bank.database.android.DatabaseSerializer;
 import com.bank.generics.RoleMap;
+import com.bank.messages.NotificationQueue;
 import com.bank.userinterfaces.AdminTerminal;
 import com.bank.userinterfaces.Atm;
 import com.bank.userinterfaces.TellerTerminal;
 import com.bank.users.User;
 
+import java.util.concurrent.Callable;
+
 public class MenuActivity extends Activity {
 
   ListView menuList;
@@ -39,6 +43,10 @@ public class MenuActivity extends Activity {
   TellerTerminal tellerTerminal;
   AdminTerminal adminTerminal;
   Atm atm;
+  // How fast a backup is written out, so it leaves the storage to the tellers and ATMs
+  static final long BACKUP_BYTES_PER_SECOND = 1024 * 1024;
+  // How long leaving the menu waits for the queued notifications to be written, on the main thread
+  static final long NOTIFICATION_FLUSH_MS = 500;
   // region CONSTANTS
   static final int ADMIN_CREATE_TELLER = 0;
   static final int ADMIN_CREATE_ADMIN = 1;
@@ -146,6 +154,22 @@ public class MenuActivity extends Activity {
     menuList.setAdapter(arrayAdapter);
   }
 
+  @Override
+  protected void onStop() {
+    // The process may be killed once the menu is out of sight, so it waits a little for the
+    // queued notifications. Those still queued after that may be lost.
+    if (!NotificationQueue.getInstance(this).flush(NOTIFICATION_FLUSH_MS)) {
+      Log.w("MenuActivity", "Notifications were still queued when the menu was left");
+    }
+    super.onStop();
+  }
+
+  @Override
+  protected void onDestroy() {
+    DatabaseTasks.cancel(this);
+    super.onDestroy();
+  }
+
   private void handleAtmActions(int i) {
     Log.i("me", "Handle ATM Action " + Integer.toString(i));
     MoneyFunc moneyFunction;
@@ -187,9 +211,7 @@ public class MenuActivity extends Activity {
     RoleMap roleMap = RoleMap.getInstance(this);
     MessageFunc messageFunctions;
     AccountFunc accountFunctions;
-    DatabaseSerializer dbSer;
     Toast toast;
-    boolean success;
 
     switch (i) {
       case ADMIN_CREATE_ADMIN:
@@ -199,32 +221,9 @@ public class MenuActivity extends Activity {
         adminFunc.createUser(this, roleMap.getRoleId("TELLER"), userId, userPw);
         break;
       case ADMIN_DESERIALIZE_DATABASE:
-        User currentAdmin = adminTerminal.getCurrentAdmin();
         toast = Toast.makeText(this, "Deserializing...", Toast.LENGTH_SHORT);
         toast.show();
-        dbSer = new DatabaseSerializer(this);
-        success = dbSer.deserializeDatabase();
-        if (success) {
-          // Checking if current admin is in database and adding if not
-          int adminCheck = dbSer.checkAdmin(currentAdmin, userPw);
-          if (adminCheck == 0) {
-            toast = Toast.makeText(this, "Database deserialized", Toast.LENGTH_SHORT);
-            toast.show();
-          } else {
-            // Notifying admin of his new user ID if he was reinserted into the db
-            AlertDialog.Builder builder = new AlertDialog.Builder(this);
-            builder.setMessage("Database deserialized!\nYour new user ID is: " + adminCheck
-                    + "\nYour password is unchanged.")
-                    .setTitle("Success")
-                    .setNegativeButton("OK", null).create();
-
-            AlertDialog dialog = builder.create();
-            dialog.show();
-          }
-        } else {
-          toast = Toast.makeText(this, "Deserialization failed", Toast.LENGTH_SHORT);
-          toast.show();
-        }
+        deserializeDatabase(adminTerminal.getCurrentAdmin());
         break;
       case ADMIN_ANY_MESSAGE:
         messageFunctions = new MessageFunc(this, adminTerminal, userId, userPw);
@@ -236,15 +235,7 @@ public class MenuActivity extends Activity {
       case ADMIN_SERIALIZE_DATABASE:
         toast = Toast.makeText(this, "Serializing...", Toast.LENGTH_SHORT);
         toast.show();
-        dbSer = new DatabaseSerializer(this);
-        success = dbSer.serializeDatabase();
-        if (success) {
-          toast = Toast.makeText(this, "Database serialized", Toast.LENGTH_SHORT);
-          toast.show();
-        } else {
-          toast = Toast.makeText(this, "Serialization failed", Toast.LENGTH_SHORT);
-          toast.show();
-        }
+        serializeDatabase();
         break;
       case ADMIN_VIEW_ACCOUNTS:
         accountFunctions = new AccountFunc(this, adminTerminal, userId, userPw);
@@ -272,6 +263,87 @@ public class MenuActivity extends Activity {
     }
   }
 
+  private void serializeDatabase() {
+    final DatabaseTasks tasks = DatabaseTasks.of(this);
+    final DatabaseTasks.Callback<Boolean> done = new DatabaseTasks.Callback<Boolean>() {
+      @Override
+      public void onResult(Boolean success) {
+        String msg = success ? "Database serialized" : "Serialization failed";
+        Toast toast = Toast.makeText(MenuActivity.this, msg, Toast.LENGTH_SHORT);
+        toast.show();
+      }
+
+      @Override
+      public void onError(Exception e) {
+        super.onError(e);
+        Toast toast = Toast.makeText(MenuActivity.this, "Serialization failed",
+                Toast.LENGTH_SHORT);
+        toast.show();
+      }
+    };
+
+    // Runs on the backup thread and reads from a copy, so the bank keeps working while it is
+    // written out, and no database thread waits for it
+    new DatabaseSerializer(this).serializeChangesOnline(BACKUP_BYTES_PER_SECOND,
+        new DatabaseSerializer.BackupListener() {
+          @Override
+          public void onFinished(boolean success) {
+            tasks.post(success, done);
+          }
+        });
+  }
+
+  private void deserializeDatabase(final User currentAdmin) {
+    final DatabaseSerializer dbSer = new DatabaseSerializer(this);
+
+    // Gives null if deserializing failed, otherwise the result of checking the admin
+    Callable<Integer> deserialize = new Callable<Integer>() {
+      @Override
+      public Integer call() {
+        if (!dbSer.deserializeDatabase()) {
+          return null;
+        }
+
+        // Checking if current admin is in database and adding if not
+        return dbSer.checkAdmin(currentAdmin, userPw);
+      }
+    };
+
+    DatabaseTasks.of(this).update(deserialize, new DatabaseTasks.Callback<Integer>() {
+      @Override
+      public void onResult(Integer adminCheck) {
+        Toast toast;
+        if (adminCheck == null) {
+          toast = Toast.makeText(MenuActivity.this, "Deserialization failed",
+                  Toast.LENGTH_SHORT);
+          toast.show();
+        } else if (adminCheck == 0) {
+          toast = Toast.makeText(MenuActivity.this, "Database deserialized",
+                  Toast.LENGTH_SHORT);
+          toast.show();
+        } else {
+          // Notifying admin of his new user ID if he was reinserted into the db
+          AlertDialog.Builder builder = new AlertDialog.Builder(MenuActivity.this);
+          builder.setMessage("Database deserialized!\nYour new user ID is: " + adminCheck
+                  + "\nYour password is unchanged.")
+                  .setTitle("Success")
+                  .setNegativeButton("OK", null).create();
+
+          AlertDialog dialog = builder.create();
+          dialog.show();
+        }
+      }
+
+      @Override
+      public void onError(Exception e) {
+        super.onError(e);
+        Toast toast = Toast.makeText(MenuActivity.this, "Deserialization failed",
+                Toast.LENGTH_SHORT);
+        toast.show();
+      }
+    });
+  }
+
   private void handleTellerActions(int i) {
     AdminFunc adminFunc = new AdminFunc();
     TellerFunc tellerFunc = new TellerFunc();
@@ -14,6 +14,8 @@ import com.bank.activities.lists.activities.AccountListActivity;
 import com.bank.userinterfaces.AdminTerminal;
 import com.bank.userinterfaces.Atm;
 
+import java.util.concurrent.Callable;
+
 /**
  * Created by byron on 2017-07-30.
  */
@@ -99,7 +101,7 @@ public class AccountFunc {
     dialog.getButton(AlertDialog.BUTTON_POSITIVE).setOnClickListener(new View.OnClickListener() {
       @Override
       public void onClick(View v) {
-        int userId;
+        final int userId;
 
         try {
           userId = Integer.parseInt(idView.getText().toString());
@@ -109,12 +111,24 @@ public class AccountFunc {
           return;
         }
 
-        if (adminTerminal.isCustomer(userId)) {
-          listAccounts(userId);
-        } else {
-          Toast toast = Toast.makeText(context, "Not a customer", Toast.LENGTH_SHORT);
-          toast.show();
-        }
+        Callable<Boolean> isCustomer = new Callable<Boolean>() {
+          @Override
+          public Boolean call() {
+            return adminTerminal.isCustomer(userId);
+          }
+        };
+
+        DatabaseTasks.of(context).query(isCustomer, new DatabaseTasks.Callback<Boolean>() {
+          @Override
+          public void onResult(Boolean customer) {
+            if (customer) {
+              listAccounts(userId);
+            } else {
+              Toast toast = Toast.makeText(context, "Not a customer", Toast.LENGTH_SHORT);
+              toast.show();
+            }
+          }
+        });
       }
     });
   }
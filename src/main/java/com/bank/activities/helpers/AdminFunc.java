@@ -11,13 +11,14 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.bank.R;
+import com.bank.accounts.Money;
 import com.bank.activities.lists.activities.UserListActivity;
 import com.bank.database.android.DatabaseHelper;
 import com.bank.generics.RoleMap;
 import com.bank.userinterfaces.AdminTerminal;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
 
 /**
  * Created by byron on 2017-07-28.
@@ -76,8 +77,8 @@ public class AdminFunc {
       @Override
       public void onClick(View v) {
         // Getting inputs from TextViews
-        String name = nameView.getText().toString();
-        int age;
+        final String name = nameView.getText().toString();
+        final int age;
         try {
           age = Integer.parseInt(ageView.getText().toString());
         } catch (Exception e) {
@@ -85,22 +86,33 @@ public class AdminFunc {
           toast.show();
           return;
         }
-        String address = addressView.getText().toString();
-        String password = passwordView.getText().toString();
+        final String address = addressView.getText().toString();
+        final String password = passwordView.getText().toString();
 
         // Creating the user
-        int newUserId = terminal.makeNewUser(name, age, address, roleId, password);
-        setUserRet(newUserId);
-
-        // Exit dialog on success
-        if (newUserId != -1) {
-          Toast.makeText(fContext, "New user's ID: "
-              + Integer.toString(newUserId), Toast.LENGTH_LONG).show();
-          dialog.dismiss();
-        } else {
-          Toast toast = Toast.makeText(fContext, "Invalid input", Toast.LENGTH_SHORT);
-          toast.show();
-        }
+        Callable<Integer> makeUser = new Callable<Integer>() {
+          @Override
+          public Integer call() {
+            return terminal.makeNewUser(name, age, address, roleId, password);
+          }
+        };
+
+        DatabaseTasks.of(fContext).update(makeUser, new DatabaseTasks.Callback<Integer>() {
+          @Override
+          public void onResult(Integer newUserId) {
+            setUserRet(newUserId);
+
+            // Exit dialog on success
+            if (newUserId != -1) {
+              Toast.makeText(fContext, "New user's ID: "
+                  + Integer.toString(newUserId), Toast.LENGTH_LONG).show();
+              dialog.dismiss();
+            } else {
+              Toast toast = Toast.makeText(fContext, "Invalid input", Toast.LENGTH_SHORT);
+              toast.show();
+            }
+          }
+        });
       }
     });
 
@@ -122,10 +134,25 @@ public class AdminFunc {
     final String terminalPw = userPw;
 
     // Getting the list of roles and putting it into an array
-    DatabaseHelper dbHelper = new DatabaseHelper(context);
-    ArrayList<String> roles = (ArrayList<String>) dbHelper.getRoleList();
-    final String[] rolesArr = roles.toArray(new String[0]);
+    final DatabaseHelper dbHelper = new DatabaseHelper(context);
+    Callable<String[]> getRoles = new Callable<String[]>() {
+      @Override
+      public String[] call() {
+        ArrayList<String> roles = (ArrayList<String>) dbHelper.getRoleList();
+        return roles.toArray(new String[0]);
+      }
+    };
+
+    DatabaseTasks.of(context).query(getRoles, new DatabaseTasks.Callback<String[]>() {
+      @Override
+      public void onResult(String[] rolesArr) {
+        showUserTypes(terminalId, terminalPw, rolesArr);
+      }
+    });
+  }
 
+  private void showUserTypes(final int terminalId, final String terminalPw,
+                             final String[] rolesArr) {
     // Creating the dialog
     AlertDialog.Builder builder = new AlertDialog.Builder(context);
     builder.setTitle("User type")
@@ -177,26 +204,42 @@ public class AdminFunc {
     dialog.getButton(AlertDialog.BUTTON_POSITIVE).setOnClickListener(new View.OnClickListener() {
       @Override
       public void onClick(View v) {
-        int tellerId;
-        boolean success;
+        final int tellerId;
 
         try {
           tellerId = Integer.parseInt(idView.getText().toString());
-          success = terminal.promoteTeller(tellerId);
         } catch (Exception e) {
           Toast toast = Toast.makeText(context, "Invalid ID", Toast.LENGTH_SHORT);
           toast.show();
           return;
         }
 
-        if (success) {
-          Toast toast = Toast.makeText(context, "Teller promoted", Toast.LENGTH_SHORT);
-          toast.show();
-          dialog.dismiss();
-        } else {
-          Toast toast = Toast.makeText(context, "Not a teller", Toast.LENGTH_SHORT);
-          toast.show();
-        }
+        Callable<Boolean> promote = new Callable<Boolean>() {
+          @Override
+          public Boolean call() {
+            return terminal.promoteTeller(tellerId);
+          }
+        };
+
+        DatabaseTasks.of(context).update(promote, new DatabaseTasks.Callback<Boolean>() {
+          @Override
+          public void onResult(Boolean success) {
+            if (success) {
+              Toast toast = Toast.makeText(context, "Teller promoted", Toast.LENGTH_SHORT);
+              toast.show();
+              dialog.dismiss();
+            } else {
+              Toast toast = Toast.makeText(context, "Not a teller", Toast.LENGTH_SHORT);
+              toast.show();
+            }
+          }
+
+          @Override
+          public void onError(Exception e) {
+            Toast toast = Toast.makeText(context, "Invalid ID", Toast.LENGTH_SHORT);
+            toast.show();
+          }
+        });
       }
     });
   }
@@ -205,16 +248,27 @@ public class AdminFunc {
    * Views the total money the bank owns.
    */
   public void viewTotalMoney() {
-    // Creating a dialog to display the total money
-    AlertDialog.Builder builder = new AlertDialog.Builder(context);
-    BigDecimal money = terminal.getTotalMoney();
-    String msg = "Total money in bank:\n$" + money;
-    builder.setMessage(msg)
-        .setTitle("Bank")
-        .setNegativeButton("OK", null).create();
+    Callable<Money> getTotalMoney = new Callable<Money>() {
+      @Override
+      public Money call() {
+        return terminal.getTotalMoney();
+      }
+    };
 
-    AlertDialog dialog = builder.create();
-    dialog.show();
+    DatabaseTasks.of(context).query(getTotalMoney, new DatabaseTasks.Callback<Money>() {
+      @Override
+      public void onResult(Money money) {
+        // Creating a dialog to display the total money
+        AlertDialog.Builder builder = new AlertDialog.Builder(context);
+        String msg = "Total money in bank:\n$" + money;
+        builder.setMessage(msg)
+            .setTitle("Bank")
+            .setNegativeButton("OK", null).create();
+
+        AlertDialog dialog = builder.create();
+        dialog.show();
+      }
+    });
   }
 
   /**
@@ -254,18 +308,41 @@ public class AdminFunc {
       @Override
       public void onClick(View v) {
         // Getting inputs from TextViews
-        int userId;
-        BigDecimal balance;
+        final int userId;
         try {
           userId = Integer.parseInt(idView.getText().toString());
-          balance = terminal.userTotalBalance(userId);
-          balanceText.setVisibility(View.VISIBLE);
-          balanceText.setText("Total balance: $" + balance.toString());
         } catch (Exception e) {
           Toast toast = Toast.makeText(context, "Invalid customer ID", Toast.LENGTH_SHORT);
           toast.show();
           return;
         }
+
+        Callable<Money> totalBalance = new Callable<Money>() {
+          @Override
+          public Money call() {
+            return terminal.userTotalBalance(userId);
+          }
+        };
+
+        DatabaseTasks.of(context).query(totalBalance, new DatabaseTasks.Callback<Money>() {
+          @Override
+          public void onResult(Money balance) {
+            if (balance == null) {
+              Toast toast = Toast.makeText(context, "Invalid customer ID", Toast.LENGTH_SHORT);
+              toast.show();
+              return;
+            }
+
+            balanceText.setVisibility(View.VISIBLE);
+            balanceText.setText("Total balance: $" + balance.toString());
+          }
+
+          @Override
+          public void onError(Exception e) {
+            Toast toast = Toast.makeText(context, "Invalid customer ID", Toast.LENGTH_SHORT);
+            toast.show();
+          }
+        });
       }
     });
   }
@@ -0,0 +1,212 @@
+package com.bank.activities.helpers;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the database work of an activity away from the main thread and hands the results back
+ * on it, so a slow query never holds up the screen. Every activity has its own tasks, which it
+ * cancels when it is destroyed: its queries that have not started are not run and none of its
+ * callbacks are called after that. Updates are always run to the end once started. Work that
+ * does not fit in the queue is turned away and reported to its callback.
+ */
+public class DatabaseTasks {
+  // SQLite writes one at a time, so a couple of threads are enough for every activity
+  private static final int THREADS = 2;
+  private static final int QUEUE_SIZE = 32;
+  private static final ThreadPoolExecutor executor;
+  private static final Handler mainThread = new Handler(Looper.getMainLooper());
+  // The tasks of every activity, only used on the main thread
+  private static final Map<Context, DatabaseTasks> activityTasks = new WeakHashMap<>();
+
+  static {
+    // Work that does not fit in the queue is rejected, never run on the main thread instead
+    executor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<Runnable>(QUEUE_SIZE), new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable work) {
+            Thread thread = new Thread(work, "bank-database");
+            thread.setDaemon(true);
+            return thread;
+          }
+        }, new ThreadPoolExecutor.AbortPolicy());
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  // The queries that have not finished, so they can be cancelled
+  private final Set<Future<?>> queries
+      = Collections.newSetFromMap(new ConcurrentHashMap<Future<?>, Boolean>());
+  private volatile boolean cancelled = false;
+
+  private DatabaseTasks() {}
+
+  /**
+   * Receives the result of a task on the main thread.
+   * @param <T> the type of the result
+   */
+  public abstract static class Callback<T> {
+    /**
+     * Called with the result of the task.
+     * @param result the result
+     */
+    public abstract void onResult(T result);
+
+    /**
+     * Called instead of {@link #onResult(Object)} if the task threw an exception.
+     * @param e the exception
+     */
+    public void onError(Exception e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Gets the tasks of an activity.
+   * @param context the activity
+   * @return the tasks of the activity
+   */
+  public static DatabaseTasks of(Context context) {
+    DatabaseTasks tasks = activityTasks.get(context);
+    if (tasks == null) {
+      tasks = new DatabaseTasks();
+      activityTasks.put(context, tasks);
+    }
+
+    return tasks;
+  }
+
+  /**
+   * Cancels the tasks of an activity, called when the activity is destroyed.
+   * @param context the activity
+   */
+  public static void cancel(Context context) {
+    DatabaseTasks tasks = activityTasks.remove(context);
+    if (tasks != null) {
+      tasks.cancel();
+    }
+  }
+
+  /**
+   * Runs a query. It is not run if the activity is destroyed before it starts. If too much
+   * work is already waiting, it is not run and the callback is told with a
+   * {@link RejectedExecutionException}.
+   * @param query the query
+   * @param callback receives the result, can be null
+   * @param <T> the type of the result
+   */
+  public <T> void query(Callable<T> query, Callback<T> callback) {
+    if (cancelled) {
+      return;
+    }
+
+    FutureTask<Void> future = new FutureTask<Void>(task(query, callback), null) {
+      @Override
+      protected void done() {
+        queries.remove(this);
+      }
+    };
+    queries.add(future);
+    try {
+      executor.execute(future);
+    } catch (RejectedExecutionException e) {
+      queries.remove(future);
+      deliver(callback, null, e);
+    }
+  }
+
+  /**
+   * Runs an update. It is run to the end even if the activity is destroyed before it finishes,
+   * only its callback is not called then. If too much work is already waiting, it is not run
+   * and the callback is told with a {@link RejectedExecutionException}.
+   * @param update the update
+   * @param callback receives the result, can be null
+   * @param <T> the type of the result
+   */
+  public <T> void update(Callable<T> update, Callback<T> callback) {
+    try {
+      executor.execute(task(update, callback));
+    } catch (RejectedExecutionException e) {
+      deliver(callback, null, e);
+    }
+  }
+
+  /**
+   * Hands a result worked out on another thread to a callback on the main thread. The callback
+   * is not called if the activity is destroyed first.
+   * @param result the result
+   * @param callback receives the result
+   * @param <T> the type of the result
+   */
+  public <T> void post(T result, Callback<T> callback) {
+    deliver(callback, result, null);
+  }
+
+  private void cancel() {
+    cancelled = true;
+    for (Future<?> query : queries) {
+      query.cancel(false);
+    }
+    executor.purge();
+  }
+
+  /**
+   * Makes the runnable that does the work and posts its result to the main thread.
+   */
+  private <T> Runnable task(final Callable<T> work, final Callback<T> callback) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        T result = null;
+        Exception error = null;
+
+        try {
+          result = work.call();
+        } catch (Exception e) {
+          error = e;
+        }
+
+        deliver(callback, result, error);
+      }
+    };
+  }
+
+  private <T> void deliver(final Callback<T> callback, final T result, final Exception error) {
+    if (callback == null) {
+      if (error != null) {
+        error.printStackTrace();
+      }
+      return;
+    }
+
+    mainThread.post(new Runnable() {
+      @Override
+      public void run() {
+        // Checked here, on the main thread, so nothing is delivered once the activity is gone
+        if (cancelled) {
+          return;
+        }
+
+        if (error == null) {
+          callback.onResult(result);
+        } else {
+          callback.onError(error);
+        }
+      }
+    });
+  }
+}
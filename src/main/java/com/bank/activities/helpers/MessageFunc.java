@@ -16,6 +16,8 @@ import com.bank.userinterfaces.AdminTerminal;
 import com.bank.userinterfaces.Atm;
 import com.bank.userinterfaces.TellerTerminal;
 
+import java.util.concurrent.Callable;
+
 public class MessageFunc {
   private String terminalType;
   private AdminTerminal adminTerminal;
@@ -148,27 +150,44 @@ public class MessageFunc {
     dialog.getButton(AlertDialog.BUTTON_POSITIVE).setOnClickListener(new View.OnClickListener() {
       @Override
       public void onClick(View v) {
-        int messageId;
-        String message;
+        final int messageId;
 
         try {
-          // Parsing user input and getting the actual message
+          // Parsing user input
           messageId = Integer.parseInt(idView.getText().toString());
-          message = fTerminal.viewAnyMessage(messageId);
-          if (message != null) {
-            // Displaying the message
-            messageText.setVisibility(View.VISIBLE);
-            messageText.setText("Message:\n" + message);
-          } else {
-            Toast toast = Toast.makeText(context, "Invalid message",
-                Toast.LENGTH_SHORT);
-            toast.show();
-          }
         } catch (Exception e) {
           Toast toast = Toast.makeText(context, "Invalid message", Toast.LENGTH_SHORT);
           toast.show();
           return;
         }
+
+        // Getting the actual message
+        Callable<String> viewMessage = new Callable<String>() {
+          @Override
+          public String call() {
+            return fTerminal.viewAnyMessage(messageId);
+          }
+        };
+
+        DatabaseTasks.of(context).query(viewMessage, new DatabaseTasks.Callback<String>() {
+          @Override
+          public void onResult(String message) {
+            if (message != null) {
+              // Displaying the message
+              messageText.setVisibility(View.VISIBLE);
+              messageText.setText("Message:\n" + message);
+            } else {
+              Toast toast = Toast.makeText(context, "Invalid message", Toast.LENGTH_SHORT);
+              toast.show();
+            }
+          }
+
+          @Override
+          public void onError(Exception e) {
+            Toast toast = Toast.makeText(context, "Invalid message", Toast.LENGTH_SHORT);
+            toast.show();
+          }
+        });
       }
     });
   }
@@ -212,17 +231,29 @@ public class MessageFunc {
           return;
         }
 
-        String message = messageView.getText().toString();
-        int messageId = adminTerminal.createMessage(userId, message);
-        if (messageId != -1) {
-          Toast toast = Toast.makeText(context, "Message "
-              + Integer.toString(messageId) + " sent", Toast.LENGTH_SHORT);
-          toast.show();
-          dialog.dismiss();
-        } else {
-          Toast toast = Toast.makeText(context, "Invalid ID", Toast.LENGTH_SHORT);
-          toast.show();
-        }
+        final int recipientId = userId;
+        final String message = messageView.getText().toString();
+        Callable<Integer> createMessage = new Callable<Integer>() {
+          @Override
+          public Integer call() {
+            return adminTerminal.createMessage(recipientId, message);
+          }
+        };
+
+        DatabaseTasks.of(context).update(createMessage, new DatabaseTasks.Callback<Integer>() {
+          @Override
+          public void onResult(Integer messageId) {
+            if (messageId != -1) {
+              Toast toast = Toast.makeText(context, "Message "
+                  + Integer.toString(messageId) + " sent", Toast.LENGTH_SHORT);
+              toast.show();
+              dialog.dismiss();
+            } else {
+              Toast toast = Toast.makeText(context, "Invalid ID", Toast.LENGTH_SHORT);
+              toast.show();
+            }
+          }
+        });
       }
     });
   }
@@ -11,11 +11,12 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.bank.R;
+import com.bank.accounts.Money;
 import com.bank.activities.lists.activities.AccountListActivity;
 import com.bank.userinterfaces.Atm;
 import com.bank.userinterfaces.TellerTerminal;
 
-import java.math.BigDecimal;
+import java.util.concurrent.Callable;
 
 /**
  * Created by byron on 2017-07-30.
@@ -73,18 +74,35 @@ public class MoneyFunc {
       @Override
       public void onClick(View v) {
         // Getting inputs from TextViews
-        int accountId;
-        BigDecimal balance;
+        final int accountId;
         try {
           accountId = Integer.parseInt(idView.getText().toString());
-          balance = atm.checkBalance(accountId);
-          balanceText.setVisibility(View.VISIBLE);
-          balanceText.setText("Balance: $" + balance.toString());
         } catch (Exception e) {
           Toast toast = Toast.makeText(context, "Invalid account", Toast.LENGTH_SHORT);
           toast.show();
           return;
         }
+
+        Callable<Money> checkBalance = new Callable<Money>() {
+          @Override
+          public Money call() throws Exception {
+            return atm.checkBalance(accountId);
+          }
+        };
+
+        DatabaseTasks.of(context).query(checkBalance, new DatabaseTasks.Callback<Money>() {
+          @Override
+          public void onResult(Money balance) {
+            balanceText.setVisibility(View.VISIBLE);
+            balanceText.setText("Balance: $" + balance.toString());
+          }
+
+          @Override
+          public void onError(Exception e) {
+            Toast toast = Toast.makeText(context, "Invalid account", Toast.LENGTH_SHORT);
+            toast.show();
+          }
+        });
       }
     });
   }
@@ -137,13 +155,24 @@ public class MoneyFunc {
    * @param userPw password of terminal user
    */
   public void checkTotalBalance(int userId, String userPw) {
-    BigDecimal totalBalance = tellerTerminal.customerTotalBalance();
-    AlertDialog.Builder builder = new AlertDialog.Builder(context);
-    builder.setMessage("Customer's total balance: $" + totalBalance)
-            .setTitle("Total balance")
-            .setNegativeButton("OK", null).create();
+    Callable<Money> totalBalance = new Callable<Money>() {
+      @Override
+      public Money call() {
+        return tellerTerminal.customerTotalBalance();
+      }
+    };
 
-    AlertDialog dialog = builder.create();
-    dialog.show();
+    DatabaseTasks.of(context).query(totalBalance, new DatabaseTasks.Callback<Money>() {
+      @Override
+      public void onResult(Money totalBalance) {
+        AlertDialog.Builder builder = new AlertDialog.Builder(context);
+        builder.setMessage("Customer's total balance: $" + totalBalance)
+                .setTitle("Total balance")
+                .setNegativeButton("OK", null).create();
+
+        AlertDialog dialog = builder.create();
+        dialog.show();
+      }
+    });
   }
 }
@@ -14,6 +14,7 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.bank.R;
+import com.bank.accounts.Money;
 import com.bank.activities.MenuActivity;
 import com.bank.activities.lists.activities.AccountListActivity;
 import com.bank.database.android.DatabaseHelper;
@@ -23,6 +24,7 @@ import com.bank.users.Customer;
 import com.bank.users.User;
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * Created by byron on 2017-07-29.
@@ -78,36 +80,49 @@ public class TellerFunc {
           return;
         }
 
-        String password = passwordView.getText().toString();
+        final String password = passwordView.getText().toString();
+        final int fUserId = userId;
 
         // Attempt to authenticate customer
-        boolean success = false; // default
-        User user = dbHelper.getUserObject(userId);
-
-        if (user != null && user instanceof Customer) {
-          fTerminal.setCurrentCustomer((Customer) user);
-          success = fTerminal.authenticateCurrentCustomer(password);
-        }
-
-        // Exit dialog on success
-        if (success) {
-          Toast toast = Toast.makeText(fContext, "User " + userId
-              + " authenticated", Toast.LENGTH_SHORT);
-          toast.show();
-
-          // Setting subtext
-          TextView subtext = (TextView)
-                  ((MenuActivity) fContext).findViewById(R.id.terminal_sub_text);
-          subtext.setVisibility(View.VISIBLE);
-          subtext.setText("Current customer: " + fTerminal.getCurrentCustomer().getName()
-                  +  " (ID: " + fTerminal.getCurrentCustomer().getId() + ")");
-
-          dialog.dismiss();
-        } else {
-          fTerminal.deAuthenticateCustomer();
-          Toast toast = Toast.makeText(fContext, "Authentication failed", Toast.LENGTH_SHORT);
-          toast.show();
-        }
+        Callable<Boolean> authenticate = new Callable<Boolean>() {
+          @Override
+          public Boolean call() {
+            boolean success = false; // default
+            User user = dbHelper.getUserObject(fUserId);
+
+            if (user != null && user instanceof Customer) {
+              fTerminal.setCurrentCustomer((Customer) user);
+              success = fTerminal.authenticateCurrentCustomer(password);
+            }
+            return success;
+          }
+        };
+
+        DatabaseTasks.of(fContext).query(authenticate, new DatabaseTasks.Callback<Boolean>() {
+          @Override
+          public void onResult(Boolean success) {
+            // Exit dialog on success
+            if (success) {
+              Toast toast = Toast.makeText(fContext, "User " + fUserId
+                  + " authenticated", Toast.LENGTH_SHORT);
+              toast.show();
+
+              // Setting subtext
+              TextView subtext = (TextView)
+                      ((MenuActivity) fContext).findViewById(R.id.terminal_sub_text);
+              subtext.setVisibility(View.VISIBLE);
+              subtext.setText("Current customer: " + fTerminal.getCurrentCustomer().getName()
+                      +  " (ID: " + fTerminal.getCurrentCustomer().getId() + ")");
+
+              dialog.dismiss();
+            } else {
+              fTerminal.deAuthenticateCustomer();
+              Toast toast = Toast.makeText(fContext, "Authentication failed",
+                  Toast.LENGTH_SHORT);
+              toast.show();
+            }
+          }
+        });
       }
     });
   }
@@ -183,13 +198,10 @@ public class TellerFunc {
           return;
         }
 
-        String name = nameView.getText().toString();
+        final String name = nameView.getText().toString();
         String type = typeView.getSelectedItem().toString();
         // Getting the ID of the type using the enum map
-        int typeId = AccountMap.getInstance(fContext).getTypeId(type);
-
-        // Attempting to create the account
-        long newAccountId = -1;
+        final int typeId = AccountMap.getInstance(fContext).getTypeId(type);
 
         // Savings account must have a balance of at least 1000
         if (typeId == AccountMap.getInstance(fContext).getTypeId("SAVING")) {
@@ -201,25 +213,38 @@ public class TellerFunc {
           }
         }
 
-        // Validate that the type is valid and attempt to create the account
-        if (typeId != -1) {
-          newAccountId = fTerminal.makeNewAccount(name, balance.setScale(2,
-                  BigDecimal.ROUND_HALF_UP), typeId);
-        } else {
+        // Validate that the type is valid
+        if (typeId == -1) {
           Toast toast = Toast.makeText(fContext, "Invalid account type", Toast.LENGTH_SHORT);
           toast.show();
+          return;
         }
 
-        // Exit dialog on success
-        if (newAccountId != -1) {
-          Toast toast = Toast.makeText(fContext, "Account " + newAccountId
-              + " created", Toast.LENGTH_SHORT);
-          toast.show();
-          dialog.dismiss();
-        } else {
-          Toast toast = Toast.makeText(fContext, "Account creation failed", Toast.LENGTH_SHORT);
-          toast.show();
-        }
+        // Attempting to create the account
+        final Money fBalance = Money.valueOf(balance);
+        Callable<Long> makeAccount = new Callable<Long>() {
+          @Override
+          public Long call() {
+            return fTerminal.makeNewAccount(name, fBalance, typeId);
+          }
+        };
+
+        DatabaseTasks.of(fContext).update(makeAccount, new DatabaseTasks.Callback<Long>() {
+          @Override
+          public void onResult(Long newAccountId) {
+            // Exit dialog on success
+            if (newAccountId != -1) {
+              Toast toast = Toast.makeText(fContext, "Account " + newAccountId
+                  + " created", Toast.LENGTH_SHORT);
+              toast.show();
+              dialog.dismiss();
+            } else {
+              Toast toast = Toast.makeText(fContext, "Account creation failed",
+                  Toast.LENGTH_SHORT);
+              toast.show();
+            }
+          }
+        });
       }
     });
   }
@@ -265,20 +290,37 @@ public class TellerFunc {
       @Override
       public void onClick(View v) {
         // Getting inputs from TextViews
-        int accountId;
-        BigDecimal balance;
+        final int accountId;
 
         try {
-          // Finding the balance of the account and displaying it
           accountId = Integer.parseInt(idView.getText().toString());
-          balance = fTerminal.checkBalance(accountId);
-          balanceText.setVisibility(View.VISIBLE);
-          balanceText.setText("Balance: $" + balance.toString());
         } catch (Exception e) {
           Toast toast = Toast.makeText(fContext, "Invalid account", Toast.LENGTH_SHORT);
           toast.show();
           return;
         }
+
+        // Finding the balance of the account and displaying it
+        Callable<Money> checkBalance = new Callable<Money>() {
+          @Override
+          public Money call() throws Exception {
+            return fTerminal.checkBalance(accountId);
+          }
+        };
+
+        DatabaseTasks.of(fContext).query(checkBalance, new DatabaseTasks.Callback<Money>() {
+          @Override
+          public void onResult(Money balance) {
+            balanceText.setVisibility(View.VISIBLE);
+            balanceText.setText("Balance: $" + balance.toString());
+          }
+
+          @Override
+          public void onError(Exception e) {
+            Toast toast = Toast.makeText(fContext, "Invalid account", Toast.LENGTH_SHORT);
+            toast.show();
+          }
+        });
       }
     });
   }
@@ -377,17 +419,29 @@ public class TellerFunc {
         }
 
         // Attempting to create the message
-        String message = messageView.getText().toString();
-        int messageId = fTerminal.createMessage(customerId, message);
-        if (messageId != -1) {
-          Toast toast = Toast.makeText(fContext, "Message " + Integer.toString(messageId)
-                  + " sent", Toast.LENGTH_SHORT);
-          toast.show();
-          dialog.dismiss();
-        } else {
-          Toast toast = Toast.makeText(fContext, "Invalid ID", Toast.LENGTH_SHORT);
-          toast.show();
-        }
+        final int fCustomerId = customerId;
+        final String message = messageView.getText().toString();
+        Callable<Integer> createMessage = new Callable<Integer>() {
+          @Override
+          public Integer call() {
+            return fTerminal.createMessage(fCustomerId, message);
+          }
+        };
+
+        DatabaseTasks.of(fContext).update(createMessage, new DatabaseTasks.Callback<Integer>() {
+          @Override
+          public void onResult(Integer messageId) {
+            if (messageId != -1) {
+              Toast toast = Toast.makeText(fContext, "Message " + Integer.toString(messageId)
+                      + " sent", Toast.LENGTH_SHORT);
+              toast.show();
+              dialog.dismiss();
+            } else {
+              Toast toast = Toast.makeText(fContext, "Invalid ID", Toast.LENGTH_SHORT);
+              toast.show();
+            }
+          }
+        });
       }
     });
   }
@@ -464,8 +518,8 @@ public class TellerFunc {
       @Override
       public void onClick(View v) {
         // Getting inputs from TextViews
-        String name = nameView.getText().toString();
-        int age;
+        final String name = nameView.getText().toString();
+        final int age;
         try {
           age = Integer.parseInt(ageView.getText().toString());
         } catch (Exception e) {
@@ -473,8 +527,8 @@ public class TellerFunc {
           toast.show();
           return;
         }
-        String address = addressView.getText().toString();
-        String password = passwordView.getText().toString();
+        final String address = addressView.getText().toString();
+        final String password = passwordView.getText().toString();
 
         if (password.isEmpty()) {
           Toast toast = Toast.makeText(fContext, "Invalid password", Toast.LENGTH_SHORT);
@@ -490,23 +544,33 @@ public class TellerFunc {
         }
 
         // Updating user info
-        boolean done = fTerminal.updateCustomerInfo(name, age, address, password);
-
-        // Exit dialog on success
-        if (done) {
-          Toast.makeText(fContext, "Customer info updated", Toast.LENGTH_LONG).show();
-
-          // Setting subtext
-          TextView subtext = (TextView)
-                  ((MenuActivity) fContext).findViewById(R.id.terminal_sub_text);
-          subtext.setVisibility(View.VISIBLE);
-          subtext.setText("Current customer: " + fTerminal.getCurrentCustomer().getName()
-                  +  " (ID: " + fTerminal.getCurrentCustomer().getId() + ")");
-          dialog.dismiss();
-        } else {
-          Toast toast = Toast.makeText(fContext, "Invalid input", Toast.LENGTH_SHORT);
-          toast.show();
-        }
+        Callable<Boolean> updateInfo = new Callable<Boolean>() {
+          @Override
+          public Boolean call() {
+            return fTerminal.updateCustomerInfo(name, age, address, password);
+          }
+        };
+
+        DatabaseTasks.of(fContext).update(updateInfo, new DatabaseTasks.Callback<Boolean>() {
+          @Override
+          public void onResult(Boolean done) {
+            // Exit dialog on success
+            if (done) {
+              Toast.makeText(fContext, "Customer info updated", Toast.LENGTH_LONG).show();
+
+              // Setting subtext
+              TextView subtext = (TextView)
+                      ((MenuActivity) fContext).findViewById(R.id.terminal_sub_text);
+              subtext.setVisibility(View.VISIBLE);
+              subtext.setText("Current customer: " + fTerminal.getCurrentCustomer().getName()
+                      +  " (ID: " + fTerminal.getCurrentCustomer().getId() + ")");
+              dialog.dismiss();
+            } else {
+              Toast toast = Toast.makeText(fContext, "Invalid input", Toast.LENGTH_SHORT);
+              toast.show();
+            }
+          }
+        });
       }
     });
   }
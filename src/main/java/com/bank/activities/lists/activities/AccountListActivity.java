@@ -17,6 +17,8 @@ import android.widget.Toast;
 
 import com.bank.R;
 import com.bank.accounts.Account;
+import com.bank.accounts.Money;
+import com.bank.activities.helpers.DatabaseTasks;
 import com.bank.activities.lists.adapters.AccountListAdapter;
 import com.bank.database.android.DatabaseHelper;
 import com.bank.exceptions.InsufficientFundsException;
@@ -26,6 +28,7 @@ import com.bank.users.Customer;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
 
 /**
  * Activity for the list of accounts.
@@ -46,17 +49,12 @@ public class AccountListActivity extends AppCompatActivity {
     String terminalPw = intent.getStringExtra("terminalPw");
     int customerId = intent.getIntExtra("customerId", 0);
     action = intent.getStringExtra("action");
-    DatabaseHelper dbHelper = new DatabaseHelper(this);
-    terminal = new TellerTerminal(this, terminalId, terminalPw);
-    Customer customer = (Customer) dbHelper.getUserObject(customerId);
-    terminal.setCurrentCustomer(customer);
-    accounts = (ArrayList<Account>) terminal.listAccounts();
 
     // Setting the title of the list
     TextView titleView = (TextView) findViewById(R.id.account_list_title);
     switch (action) {
       case "listAccounts":
-        titleView.setText(customer.getName() + "'s Accounts");
+        // The title is set once the customer is loaded
         findViewById(R.id.account_list_btn).setVisibility(View.GONE);
         break;
       case "giveInterest":
@@ -78,7 +76,8 @@ public class AccountListActivity extends AppCompatActivity {
         // no other options
     }
 
-    // Converting list using adapter
+    // Converting list using adapter, empty until the accounts are loaded
+    accounts = new ArrayList<>();
     adapter = new AccountListAdapter(this, 0, accounts);
     listView = (ListView) findViewById(R.id.accounts_list);
 
@@ -100,19 +99,70 @@ public class AccountListActivity extends AppCompatActivity {
     });
 
     listView.setAdapter(adapter);
+    loadCustomer(terminalId, terminalPw, customerId);
+  }
+
+  @Override
+  protected void onDestroy() {
+    DatabaseTasks.cancel(this);
+    super.onDestroy();
+  }
+
+  /**
+   * Loads the customer and his accounts, then shows them.
+   * @param terminalId id of the terminal user
+   * @param terminalPw password of the terminal user
+   * @param customerId id of the customer
+   */
+  private void loadCustomer(final int terminalId, final String terminalPw,
+                            final int customerId) {
+    final DatabaseHelper dbHelper = new DatabaseHelper(this);
+    Callable<TellerTerminal> load = new Callable<TellerTerminal>() {
+      @Override
+      public TellerTerminal call() {
+        TellerTerminal teller = new TellerTerminal(AccountListActivity.this, terminalId,
+                terminalPw);
+        teller.setCurrentCustomer((Customer) dbHelper.getUserObject(customerId));
+        return teller;
+      }
+    };
+
+    DatabaseTasks.of(this).query(load, new DatabaseTasks.Callback<TellerTerminal>() {
+      @Override
+      public void onResult(TellerTerminal result) {
+        terminal = result;
+        if (action.equals("listAccounts")) {
+          TextView titleView = (TextView) findViewById(R.id.account_list_title);
+          titleView.setText(terminal.getCurrentCustomer().getName() + "'s Accounts");
+        }
+        updateList();
+      }
+    });
   }
 
   private void handleRowClick(int i) {
-    Account account = accounts.get(i);
+    final Account account = accounts.get(i);
 
     // Opening user interfaces according to the action from the intent
     switch (action) {
       case "giveInterest":
-        account.findAndSetInterestRate();
-        account.addInterest();
-        Toast toast = Toast.makeText(this, "Interest given", Toast.LENGTH_SHORT);
-        toast.show();
-        updateList();
+        Callable<Void> giveInterest = new Callable<Void>() {
+          @Override
+          public Void call() {
+            account.findAndSetInterestRate();
+            account.addInterest();
+            return null;
+          }
+        };
+        DatabaseTasks.of(this).update(giveInterest, new DatabaseTasks.Callback<Void>() {
+          @Override
+          public void onResult(Void result) {
+            Toast toast = Toast.makeText(AccountListActivity.this, "Interest given",
+                    Toast.LENGTH_SHORT);
+            toast.show();
+            updateList();
+          }
+        });
         break;
       case "makeDeposit":
       case "makeWithdrawal":
@@ -179,33 +229,32 @@ public class AccountListActivity extends AppCompatActivity {
                   return;
                 }
 
-                boolean success = false;
-
-                try {
-                  success = terminal.sendMoney(finAccountId, toAccountId, amount);
-
-                  Toast toast = Toast.makeText(AccountListActivity.this,
-                          "Transaction complete", Toast.LENGTH_SHORT);
-                  toast.show();
-                } catch (InsufficientPermissionException e) {
-                  Toast toast = Toast.makeText(AccountListActivity.this,
-                          "Teller authorization required", Toast.LENGTH_SHORT);
-                  toast.show();
-                } catch (InsufficientFundsException e) {
-                  Toast toast = Toast.makeText(AccountListActivity.this,
-                          "Insufficient funds", Toast.LENGTH_SHORT);
-                  toast.show();
-                } catch (Exception e) {
-                  // account cannot be invalid
-                }
-
-                if  (!success) {
-                  Toast toast = Toast.makeText(AccountListActivity.this,
-                          "Invalid account", Toast.LENGTH_SHORT);
-                  toast.show();
-                }
-
-                updateList();
+                final int fToAccountId = toAccountId;
+                final Money fAmount = Money.valueOf(amount);
+                Callable<Boolean> send = new Callable<Boolean>() {
+                  @Override
+                  public Boolean call() throws Exception {
+                    return terminal.sendMoney(finAccountId, fToAccountId, fAmount);
+                  }
+                };
+
+                DatabaseTasks.of(AccountListActivity.this).update(send,
+                    new DatabaseTasks.Callback<Boolean>() {
+                      @Override
+                      public void onResult(Boolean success) {
+                        String msg = success ? "Transaction complete" : "Invalid account";
+                        Toast toast = Toast.makeText(AccountListActivity.this, msg,
+                                Toast.LENGTH_SHORT);
+                        toast.show();
+                        updateList();
+                      }
+
+                      @Override
+                      public void onError(Exception e) {
+                        showTransactionError(e);
+                        updateList();
+                      }
+                    });
               }
             })
             .setNegativeButton("Cancel", null).create();
@@ -268,29 +317,35 @@ public class AccountListActivity extends AppCompatActivity {
               return;
             }
 
-            try {
-              if (action.equals("makeDeposit")) {
-                terminal.makeDeposit(amount, fAccountId);
-              } else if (action.equals("makeWithdrawal")) {
-                terminal.makeWithdrawal(amount, fAccountId);
+            final Money fAmount = Money.valueOf(amount);
+            Callable<Void> transaction = new Callable<Void>() {
+              @Override
+              public Void call() throws Exception {
+                if (action.equals("makeDeposit")) {
+                  terminal.makeDeposit(fAmount, fAccountId);
+                } else if (action.equals("makeWithdrawal")) {
+                  terminal.makeWithdrawal(fAmount, fAccountId);
+                }
+                return null;
               }
-
-              Toast toastTwo = Toast.makeText(AccountListActivity.this,
-                      "Transaction complete", Toast.LENGTH_SHORT);
-              toastTwo.show();
-            } catch (InsufficientPermissionException e) {
-              Toast toast = Toast.makeText(AccountListActivity.this,
-                      "Teller authorization required", Toast.LENGTH_SHORT);
-              toast.show();
-            } catch (InsufficientFundsException e) {
-              Toast toast = Toast.makeText(AccountListActivity.this,
-                  "Insufficient funds", Toast.LENGTH_SHORT);
-              toast.show();
-            } catch (Exception e) {
-              // account cannot be invalid
-            }
-
-            updateList();
+            };
+
+            DatabaseTasks.of(AccountListActivity.this).update(transaction,
+                new DatabaseTasks.Callback<Void>() {
+                  @Override
+                  public void onResult(Void result) {
+                    Toast toastTwo = Toast.makeText(AccountListActivity.this,
+                            "Transaction complete", Toast.LENGTH_SHORT);
+                    toastTwo.show();
+                    updateList();
+                  }
+
+                  @Override
+                  public void onError(Exception e) {
+                    showTransactionError(e);
+                    updateList();
+                  }
+                });
             dialog.dismiss();
           }
         })
@@ -299,18 +354,60 @@ public class AccountListActivity extends AppCompatActivity {
     dialog.show();
   }
 
+  /**
+   * Tells the user why a transaction failed.
+   * @param e the exception the transaction threw
+   */
+  private void showTransactionError(Exception e) {
+    Toast toast;
+    if (e instanceof InsufficientPermissionException) {
+      toast = Toast.makeText(this, "Teller authorization required", Toast.LENGTH_SHORT);
+    } else if (e instanceof InsufficientFundsException) {
+      toast = Toast.makeText(this, "Insufficient funds", Toast.LENGTH_SHORT);
+    } else {
+      toast = Toast.makeText(this, "Invalid account", Toast.LENGTH_SHORT);
+    }
+    toast.show();
+  }
+
   private void handleButtonClick() {
-    if (action.equals("giveInterest")) {
-      terminal.giveAllInterest();
-      Toast toast = Toast.makeText(this, "Interest given", Toast.LENGTH_SHORT);
-      toast.show();
-      updateList();
+    // Nothing to do until the customer is loaded
+    if (action.equals("giveInterest") && terminal != null) {
+      Callable<Void> giveAllInterest = new Callable<Void>() {
+        @Override
+        public Void call() {
+          terminal.giveAllInterest();
+          return null;
+        }
+      };
+
+      DatabaseTasks.of(this).update(giveAllInterest, new DatabaseTasks.Callback<Void>() {
+        @Override
+        public void onResult(Void result) {
+          Toast toast = Toast.makeText(AccountListActivity.this, "Interest given",
+                  Toast.LENGTH_SHORT);
+          toast.show();
+          updateList();
+        }
+      });
     }
   }
 
   private void updateList() {
-    accounts = (ArrayList<Account>) terminal.listAccounts();
-    adapter = new AccountListAdapter(this, 0, accounts);;
-    listView.setAdapter(adapter);
+    Callable<ArrayList<Account>> listAccounts = new Callable<ArrayList<Account>>() {
+      @Override
+      public ArrayList<Account> call() {
+        return (ArrayList<Account>) terminal.listAccounts();
+      }
+    };
+
+    DatabaseTasks.of(this).query(listAccounts, new DatabaseTasks.Callback<ArrayList<Account>>() {
+      @Override
+      public void onResult(ArrayList<Account> result) {
+        accounts = result;
+        adapter = new AccountListAdapter(AccountListActivity.this, 0, accounts);
+        listView.setAdapter(adapter);
+      }
+    });
   }
 }
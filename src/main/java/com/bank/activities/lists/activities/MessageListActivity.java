@@ -3,22 +3,30 @@ package com.bank.activities.lists.activities;
 import android.content.Intent;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
+import android.widget.AbsListView;
 import android.widget.ListView;
 
 import com.bank.R;
+import com.bank.activities.helpers.DatabaseTasks;
 import com.bank.activities.lists.adapters.MessageListAdapter;
+import com.bank.database.android.DatabaseHelper;
 import com.bank.messages.Message;
 import com.bank.userinterfaces.AdminTerminal;
 import com.bank.userinterfaces.Atm;
 import com.bank.userinterfaces.TellerTerminal;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
- * Activity for the list of messages.
+ * Activity for the list of messages. Messages are loaded a page at a time, newest first, as the
+ * list is scrolled.
  */
 public class MessageListActivity extends AppCompatActivity {
+  private static final int PAGE_SIZE = 50;
+  // How close to the end of the list the next page is loaded
+  private static final int PRELOAD_ROWS = 10;
 
   private String action;
   private String role;
@@ -26,12 +34,20 @@ public class MessageListActivity extends AppCompatActivity {
   private String terminalPw;
   private int customerId;
 
+  private TellerTerminal tellerTerminal;
+  private AdminTerminal adminTerminal;
+  private Atm atm;
+  private ArrayList<Message> messages = new ArrayList<>();
+  private MessageListAdapter adapter;
+  // The last message loaded, and whether a page is being loaded or there are no pages left
+  private int lastId = 0;
+  private boolean loading = false;
+  private boolean lastPage = false;
+
   @Override
   protected void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
 
-    ArrayList<Message> messages = null;
-
     setContentView(R.layout.activity_message_list);
 
     Intent intent = getIntent();
@@ -41,31 +57,132 @@ public class MessageListActivity extends AppCompatActivity {
     terminalPw = intent.getStringExtra("terminalPw");
     customerId = intent.getIntExtra("customerId", 0);
 
+    adapter = new MessageListAdapter(this, 0, messages);
+    ListView listView = (ListView) findViewById(R.id.message_listview);
+    listView.setAdapter(adapter);
+    listView.setOnScrollListener(new AbsListView.OnScrollListener() {
+      @Override
+      public void onScrollStateChanged(AbsListView view, int scrollState) {
+        // Pages are loaded while scrolling
+      }
 
-    switch (role) {
-      case "teller":
-        TellerTerminal terminal = new TellerTerminal(this, terminalId, terminalPw);
-        if (action.equals("listCustomerMessage")) {
-          messages = (ArrayList<Message>) terminal.listMessages(customerId);
-        } else if (action.equals("listMyMessage")) {
-          messages = (ArrayList<Message>) terminal.listMessages(terminalId);
+      @Override
+      public void onScroll(AbsListView view, int first, int visible, int total) {
+        if (first + visible >= total - PRELOAD_ROWS) {
+          loadPage();
         }
-        break;
-      case "admin":
-        AdminTerminal adminTerminal = new AdminTerminal(this, terminalId, terminalPw);
-        messages = (ArrayList<Message>) adminTerminal.listMessages(terminalId);
-        break;
-      case "customer":
-        Atm atm = new Atm(this, terminalId, terminalPw);
-        messages = (ArrayList<Message>) atm.listMyMessages();
-        break;
-      default:
-        // No default case allowed
+      }
+    });
+
+    openInbox();
+  }
+
+  @Override
+  protected void onDestroy() {
+    DatabaseTasks.cancel(this);
+    super.onDestroy();
+  }
+
+  /**
+   * Opens the terminal and counts the unread messages before the first page marks any read.
+   */
+  private void openInbox() {
+    final DatabaseHelper dbHelper = new DatabaseHelper(this);
+    Callable<Long> open = new Callable<Long>() {
+      @Override
+      public Long call() {
+        switch (role) {
+          case "teller":
+            tellerTerminal = new TellerTerminal(MessageListActivity.this, terminalId,
+                    terminalPw);
+            break;
+          case "admin":
+            adminTerminal = new AdminTerminal(MessageListActivity.this, terminalId, terminalPw);
+            break;
+          case "customer":
+            atm = new Atm(MessageListActivity.this, terminalId, terminalPw);
+            break;
+          default:
+            // No default case allowed
+        }
+        return dbHelper.countUnread(getInboxId());
+      }
+    };
+
+    loading = true;
+    DatabaseTasks.of(this).query(open, new DatabaseTasks.Callback<Long>() {
+      @Override
+      public void onResult(Long unread) {
+        setTitle("Messages (" + unread + " unread)");
+        loading = false;
+        loadPage();
+      }
+    });
+  }
+
+  /**
+   * Loads the page after the messages already in the list, unless one is being loaded.
+   */
+  private void loadPage() {
+    if (loading || lastPage) {
+      return;
     }
+    loading = true;
 
-    Collections.reverse(messages);
-    MessageListAdapter adapter = new MessageListAdapter(this, 0, messages);
-    ListView listView = (ListView) findViewById(R.id.message_listview);
-    listView.setAdapter(adapter);
+    final int afterId = lastId;
+    Callable<List<Message>> page = new Callable<List<Message>>() {
+      @Override
+      public List<Message> call() {
+        List<Message> page = null;
+
+        switch (role) {
+          case "teller":
+            page = tellerTerminal.listMessages(getInboxId(), afterId, PAGE_SIZE);
+            break;
+          case "admin":
+            page = adminTerminal.listMessages(terminalId, afterId, PAGE_SIZE);
+            break;
+          case "customer":
+            page = atm.listMyMessages(afterId, PAGE_SIZE);
+            break;
+          default:
+            // No default case allowed
+        }
+        return page;
+      }
+    };
+
+    DatabaseTasks.of(this).query(page, new DatabaseTasks.Callback<List<Message>>() {
+      @Override
+      public void onResult(List<Message> page) {
+        loading = false;
+        if (page == null || page.size() < PAGE_SIZE) {
+          lastPage = true;
+        }
+
+        if (page != null && !page.isEmpty()) {
+          lastId = page.get(page.size() - 1).getId();
+          messages.addAll(page);
+          adapter.notifyDataSetChanged();
+        }
+      }
+
+      @Override
+      public void onError(Exception e) {
+        e.printStackTrace();
+        loading = false;
+        lastPage = true;
+      }
+    });
+  }
+
+  /**
+   * Gets the user whose messages are listed.
+   */
+  private int getInboxId() {
+    if (role.equals("teller") && action.equals("listCustomerMessage")) {
+      return customerId;
+    }
+    return terminalId;
   }
 }
@@ -1,9 +1,10 @@
 package com.bank.database.android;
 
 import android.content.Context;
+import android.database.Cursor;
 
-import com.bank.messages.Message;
-import com.bank.users.User;
+import com.bank.accounts.Money;
+import java.io.IOException;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.util.ArrayList;
@@ -17,16 +18,314 @@ public class BankData implements Serializable {
   public List<AccountSer> accounts = new ArrayList<AccountSer>();
   public List<UserAccSer> userAccounts = new ArrayList<UserAccSer>();
   public List<UserMsgSer> userMessages = new ArrayList<UserMsgSer>();
-  private transient DatabaseHelper dbHelper;
 
   /**
    * Creates a BankData object containing the information of a bank database.
    * */
   public BankData(Context context) {
-    dbHelper = new DatabaseHelper(context);
-    updateAccountTypes();
-    updateRoles();
-    updateUsersAndAccounts();
+    try {
+      capture(context, new SnapshotHandler() {
+        @Override
+        public void accountType(int id, String name, BigDecimal interestRate) {
+          accountTypes.add(new AccTypeSer(id, name, interestRate));
+        }
+
+        @Override
+        public void role(int id, String name) {
+          roles.add(new RoleSer(id, name));
+        }
+
+        @Override
+        public void user(int id, String name, int age, String address, int roleId,
+            String password) {
+          users.add(new UserSer(id, name, age, address, roleId, password));
+        }
+
+        @Override
+        public void account(int id, String name, Money balance, int typeId) {
+          // Kept as BigDecimal so backups made before balances were stored in cents still load
+          accounts.add(new AccountSer(id, name, balance.toBigDecimal(), typeId));
+        }
+
+        @Override
+        public void userAccount(int userId, int accountId) {
+          userAccounts.add(new UserAccSer(userId, accountId));
+        }
+
+        @Override
+        public void message(int id, int userId, String message, int viewed) {
+          userMessages.add(new UserMsgSer(id, userId, message, viewed));
+        }
+
+        @Override
+        public void removed(int table, int id, int otherId) {
+          // a full capture has no removed rows
+        }
+      }, null);
+    } catch (IOException e) {
+      // the lists above never throw
+    }
+  }
+
+  /**
+   * Told how far a capture of the bank has got.
+   */
+  public interface ProgressListener {
+    /**
+     * Called every few thousand rows and once more at the end.
+     * @param rows the number of rows captured so far
+     * @param totalRows the number of rows in the bank when the capture started
+     */
+    public void onProgress(long rows, long totalRows);
+  }
+
+  /**
+   * Reads the whole bank and hands every row over to the handler, a table at a time. Every
+   * table is read once from start to end, from one snapshot so the tables agree with each
+   * other. The database can be written while the capture runs.
+   * @param context the context of the database
+   * @param handler receives the rows
+   * @param listener told how far the capture has got, may be null
+   * @throws IOException if the handler failed
+   */
+  public static void capture(Context context, SnapshotHandler handler,
+      ProgressListener listener) throws IOException {
+    DatabaseDriverA snapshot = openSnapshot(context);
+    try {
+      capture(snapshot, handler, listener);
+    } finally {
+      snapshot.close();
+    }
+  }
+
+  /**
+   * Reads the whole bank from a snapshot of the database, like {@link #capture(Context,
+   * SnapshotHandler, ProgressListener)}.
+   * @param db the snapshot to read from, see {@link DatabaseDriverA#openSnapshot()}
+   * @param handler receives the rows
+   * @param listener told how far the capture has got, may be null
+   * @throws IOException if the handler failed
+   */
+  static void capture(DatabaseDriverA db, SnapshotHandler handler, ProgressListener listener)
+      throws IOException {
+    Progress progress = new Progress(listener, listener == null ? 0 : db.countSnapshotRows());
+
+    readAccountTypes(db.getAccountTypesDetails(), handler, progress);
+    readRoles(db.getRoles(), handler, progress);
+    readUsers(db.getUsersAndPasswords(), handler, progress);
+    readAccounts(db.getAccountsDetails(), handler, progress);
+    readUserAccounts(db.getUserAccountLinks(), handler, progress);
+    readMessages(db.getMessagesDetails(), handler, progress);
+
+    progress.done();
+  }
+
+  /**
+   * Hands the rows in the change log over to the handler, a table at a time, followed by the
+   * ones that were removed, from one snapshot like {@link #capture(Context, SnapshotHandler,
+   * ProgressListener)}. Rows are read as they are now, so a row that changed again after the
+   * last change looked at is handed over as it is now.
+   * @param context the context of the database
+   * @param toSeq the last change looked at
+   * @param handler receives the rows
+   * @throws IOException if the handler failed
+   */
+  public static void captureChanges(Context context, long toSeq, SnapshotHandler handler)
+      throws IOException {
+    DatabaseDriverA db = openSnapshot(context);
+
+    try {
+      Progress progress = new Progress(null, 0);
+
+      readAccountTypes(db.getChangedAccountTypes(toSeq), handler, progress);
+      readRoles(db.getChangedRoles(toSeq), handler, progress);
+      readUsers(db.getChangedUsers(toSeq), handler, progress);
+      readAccounts(db.getChangedAccounts(toSeq), handler, progress);
+      readUserAccounts(db.getChangedUserAccountLinks(toSeq), handler, progress);
+      readMessages(db.getChangedMessages(toSeq), handler, progress);
+
+      Cursor cursor = db.getRemovedRows(toSeq);
+      try {
+        int tagColumn = cursor.getColumnIndex("TAG");
+        int idColumn = cursor.getColumnIndex("ID");
+        int otherIdColumn = cursor.getColumnIndex("OTHERID");
+        while (cursor.moveToNext()) {
+          handler.removed(cursor.getInt(tagColumn), cursor.getInt(idColumn),
+              cursor.getInt(otherIdColumn));
+        }
+      } finally {
+        cursor.close();
+      }
+    } finally {
+      db.close();
+    }
+  }
+
+  private static DatabaseDriverA openSnapshot(Context context) {
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    try {
+      return db.openSnapshot();
+    } finally {
+      db.release();
+    }
+  }
+
+  private static void readAccountTypes(Cursor cursor, SnapshotHandler handler,
+      Progress progress) throws IOException {
+    try {
+      int idColumn = cursor.getColumnIndex("ID");
+      int nameColumn = cursor.getColumnIndex("NAME");
+      int rateColumn = cursor.getColumnIndex("INTERESTRATE");
+      while (cursor.moveToNext()) {
+        String rate = cursor.getString(rateColumn);
+        handler.accountType(cursor.getInt(idColumn), cursor.getString(nameColumn),
+            rate == null ? null : new BigDecimal(rate));
+        progress.row();
+      }
+    } finally {
+      cursor.close();
+    }
+  }
+
+  private static void readRoles(Cursor cursor, SnapshotHandler handler, Progress progress)
+      throws IOException {
+    try {
+      int idColumn = cursor.getColumnIndex("ID");
+      int nameColumn = cursor.getColumnIndex("NAME");
+      while (cursor.moveToNext()) {
+        handler.role(cursor.getInt(idColumn), cursor.getString(nameColumn));
+        progress.row();
+      }
+    } finally {
+      cursor.close();
+    }
+  }
+
+  private static void readUsers(Cursor cursor, SnapshotHandler handler, Progress progress)
+      throws IOException {
+    try {
+      int idColumn = cursor.getColumnIndex("ID");
+      int nameColumn = cursor.getColumnIndex("NAME");
+      int ageColumn = cursor.getColumnIndex("AGE");
+      int addressColumn = cursor.getColumnIndex("ADDRESS");
+      int roleColumn = cursor.getColumnIndex("ROLEID");
+      int passwordColumn = cursor.getColumnIndex("PASSWORD");
+      while (cursor.moveToNext()) {
+        handler.user(cursor.getInt(idColumn), cursor.getString(nameColumn),
+            cursor.getInt(ageColumn), cursor.getString(addressColumn), cursor.getInt(roleColumn),
+            cursor.getString(passwordColumn));
+        progress.row();
+      }
+    } finally {
+      cursor.close();
+    }
+  }
+
+  private static void readAccounts(Cursor cursor, SnapshotHandler handler, Progress progress)
+      throws IOException {
+    try {
+      int idColumn = cursor.getColumnIndex("ID");
+      int nameColumn = cursor.getColumnIndex("NAME");
+      int balanceColumn = cursor.getColumnIndex("BALANCE");
+      int typeColumn = cursor.getColumnIndex("TYPE");
+      while (cursor.moveToNext()) {
+        handler.account(cursor.getInt(idColumn), cursor.getString(nameColumn),
+            Money.ofCents(cursor.getLong(balanceColumn)), cursor.getInt(typeColumn));
+        progress.row();
+      }
+    } finally {
+      cursor.close();
+    }
+  }
+
+  private static void readUserAccounts(Cursor cursor, SnapshotHandler handler,
+      Progress progress) throws IOException {
+    try {
+      int userColumn = cursor.getColumnIndex("USERID");
+      int accountColumn = cursor.getColumnIndex("ACCOUNTID");
+      while (cursor.moveToNext()) {
+        handler.userAccount(cursor.getInt(userColumn), cursor.getInt(accountColumn));
+        progress.row();
+      }
+    } finally {
+      cursor.close();
+    }
+  }
+
+  private static void readMessages(Cursor cursor, SnapshotHandler handler, Progress progress)
+      throws IOException {
+    try {
+      int idColumn = cursor.getColumnIndex("ID");
+      int userColumn = cursor.getColumnIndex("USERID");
+      int messageColumn = cursor.getColumnIndex("MESSAGE");
+      int viewedColumn = cursor.getColumnIndex("VIEWED");
+      while (cursor.moveToNext()) {
+        handler.message(cursor.getInt(idColumn), cursor.getInt(userColumn),
+            cursor.getString(messageColumn), cursor.getInt(viewedColumn));
+        progress.row();
+      }
+    } finally {
+      cursor.close();
+    }
+  }
+
+  /**
+   * Counts the rows of a capture and tells the listener every few thousand of them.
+   */
+  private static class Progress {
+    private ProgressListener listener;
+    private long rows = 0;
+    private long totalRows;
+
+    private Progress(ProgressListener listener, long totalRows) {
+      this.listener = listener;
+      this.totalRows = totalRows;
+    }
+
+    private void row() {
+      rows++;
+      if (listener != null && rows % 4096 == 0) {
+        listener.onProgress(rows, totalRows);
+      }
+    }
+
+    private void done() {
+      if (listener != null) {
+        listener.onProgress(rows, totalRows);
+      }
+    }
+  }
+
+  /**
+   * Hands every row of this copy of the bank over to the handler, a table at a time.
+   * @param handler receives the rows
+   * @throws IOException if the handler failed
+   */
+  public void replay(SnapshotHandler handler) throws IOException {
+    for (AccTypeSer accTypeSer : accountTypes) {
+      handler.accountType(accTypeSer.id, accTypeSer.name, accTypeSer.interestRate);
+    }
+
+    for (RoleSer roleSer : roles) {
+      handler.role(roleSer.id, roleSer.name);
+    }
+
+    for (UserSer userSer : users) {
+      handler.user(userSer.id, userSer.name, userSer.age, userSer.address, userSer.roleId,
+          userSer.password);
+    }
+
+    for (AccountSer accSer : accounts) {
+      handler.account(accSer.id, accSer.name, Money.valueOf(accSer.balance), accSer.type);
+    }
+
+    for (UserAccSer userAccSer : userAccounts) {
+      handler.userAccount(userAccSer.userId, userAccSer.accountId);
+    }
+
+    for (UserMsgSer userMsgSer : userMessages) {
+      handler.message(userMsgSer.id, userMsgSer.userId, userMsgSer.message, userMsgSer.viewed);
+    }
   }
 
   public class UserSer implements Serializable {
@@ -152,61 +451,4 @@ public class BankData implements Serializable {
       this.viewed = viewed;
     }
   }
-  
-  private void updateUsersAndAccounts() {
-    for (int userId : dbHelper.getUserIds()) {
-      // Getting serializable user object
-      User user = dbHelper.getUserObject(userId);
-      String password = dbHelper.getPassword(userId);
-      UserSer userSer = new UserSer(user.getId(), user.getName(), user.getAge(), 
-          user.getAddress(), user.getRoleId(), password);
-      users.add(userSer);
-      
-      // Adding serializable account and user account objects to its list
-      for (int accountId : dbHelper.getUsersAccIds(userId)) {
-        // Adding account objects to account list
-        String name = dbHelper.getAccountObject(accountId).getName();
-        BigDecimal balance = dbHelper.getBalance(accountId);
-        int type = dbHelper.getAccountType(accountId);
-        
-        // Adding serializable account object to account list
-        AccountSer accountSer = new AccountSer(accountId, name, balance, type);
-        accounts.add(accountSer);
-        
-        // Adding user accounts
-        UserAccSer userAccSer = new UserAccSer(userId, accountId);
-        userAccounts.add(userAccSer);
-      }
-      
-      // Adding serializable user message objects to its list
-      for (Message messageObj : dbHelper.getMessageList(userId)) {
-        int id = messageObj.getId();
-        String message = messageObj.getMessage();
-        int msgUserId = messageObj.getUserId();
-        int viewed = messageObj.getViewed();
-        
-        UserMsgSer userMsgSer = new UserMsgSer(id, msgUserId, message, viewed);
-        userMessages.add(userMsgSer);
-      }
-    }
-  }
-  
-  private void updateAccountTypes() {
-    for (int typeId : dbHelper.getAccountTypeIds()) {
-      String name = dbHelper.getAccountTypeName(typeId);
-      BigDecimal interestRate = dbHelper.getInterestRate(typeId);
-      
-      // Creating and adding the serializable object to the list
-      AccTypeSer accTypeSer = new AccTypeSer(typeId, name, interestRate);
-      accountTypes.add(accTypeSer);
-    }
-  }
-  
-  private void updateRoles() {
-    for (int roleId : dbHelper.getRoleIds()) {
-      String name = dbHelper.getRole(roleId);
-      RoleSer roleSer = new RoleSer(roleId, name);
-      roles.add(roleSer);
-    }
-  }
 }
@@ -5,22 +5,97 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 
+import com.bank.accounts.Money;
 import com.bank.security.PasswordHelpers;
 
+import java.io.Closeable;
+import java.io.File;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by Joe on 2017-07-17.
  */
 
 public class DatabaseDriverA extends SQLiteOpenHelper {
-  private static final int DATABASE_VERSION = 1;
+  // Version 2 stores balances as a whole number of cents, version 3 adds the running total,
+  // version 4 indexes users by role, version 5 indexes the owners of accounts, version 6 logs
+  // the rows that change between backups, version 7 indexes the messages of every user,
+  // version 8 indexes the words of the messages for searching
+  private static final int DATABASE_VERSION = 8;
   private static final String DATABASE_NAME = "bank.db";
 
+  // The one driver that owns the process-wide connection, and how many callers are using it
+  private static DatabaseDriverA instance = null;
+  private static int references = 0;
+  private static boolean closePending = false;
+
+  // The tables whose changes are logged for incremental backups
+  private static final String[] LOGGED_TABLES = {"ACCOUNTTYPES", "ROLES", "USERS", "USERPW",
+      "ACCOUNTS", "USERACCOUNT", "USERMESSAGES"};
+  // The most message IDs in one update, below the limit on SQLite arguments
+  private static final int MAX_UPDATE_IDS = 500;
+
   public DatabaseDriverA(Context context) {
-    super(context, DATABASE_NAME, null, 1);
+    super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    // Lets a backup read from its own connection while tellers keep writing
+    setWriteAheadLoggingEnabled(true);
+  }
+
+  private DatabaseDriverA(String path) {
+    super(null, path, null, DATABASE_VERSION);
+  }
+
+  /**
+   * Gets the driver shared by the whole process and takes a reference to its connection.
+   * Every call must be matched by a call to {@link #release()}. Nested callers reuse the
+   * connection that is already open instead of opening their own.
+   * @param context any context, only its application context is kept
+   * @return the shared driver
+   */
+  public static DatabaseDriverA acquire(Context context) {
+    synchronized (DatabaseDriverA.class) {
+      if (instance == null) {
+        instance = new DatabaseDriverA(context.getApplicationContext());
+      }
 
+      references++;
+      return instance;
+    }
+  }
+
+  /**
+   * Gives back a reference taken with {@link #acquire(Context)}. The connection is left open
+   * for the next caller, unless a close was requested while it was still in use.
+   */
+  public void release() {
+    synchronized (DatabaseDriverA.class) {
+      if (references > 0) {
+        references--;
+      }
+
+      if (references == 0 && closePending) {
+        closePending = false;
+        super.close();
+      }
+    }
+  }
+
+  /**
+   * Closes the connection, or defers the close until every reference has been released.
+   */
+  @Override
+  public void close() {
+    synchronized (DatabaseDriverA.class) {
+      if (this == instance && references > 0) {
+        closePending = true;
+      } else {
+        super.close();
+      }
+    }
   }
 
   @Override
@@ -32,12 +107,7 @@ public class DatabaseDriverA extends SQLiteOpenHelper {
             + "(ID INTEGER PRIMARY KEY NOT NULL,"
             + "NAME TEXT NOT NULL,"
             + "INTERESTRATE TEXT)");
-    sqLiteDatabase.execSQL("CREATE TABLE ACCOUNTS "
-            + "(ID INTEGER PRIMARY KEY NOT NULL,"
-            + "NAME TEXT NOT NULL,"
-            + "BALANCE TEXT,"
-            + "TYPE INTEGER NOT NULL,"
-            + "FOREIGN KEY(TYPE) REFERENCES ACCOUNTTYPES(ID))");
+    createAccounts(sqLiteDatabase);
     sqLiteDatabase.execSQL("CREATE TABLE USERS "
             + "(ID INTEGER PRIMARY KEY NOT NULL,"
             + "NAME TEXT NOT NULL,"
@@ -45,26 +115,79 @@ public class DatabaseDriverA extends SQLiteOpenHelper {
             + "ADDRESS CHAR(100),"
             + "ROLEID INTEGER,"
             + "FOREIGN KEY(ROLEID) REFERENCES ROLE(ID))");
+    createUsersRoleIndex(sqLiteDatabase);
     sqLiteDatabase.execSQL("CREATE TABLE USERACCOUNT "
             + "(USERID INTEGER NOT NULL,"
             + "ACCOUNTID INTEGER NOT NULL,"
             + "FOREIGN KEY(USERID) REFERENCES USER(ID),"
             + "FOREIGN KEY(ACCOUNTID) REFERENCES ACOUNT(ID),"
             + "PRIMARY KEY(USERID, ACCOUNTID))");
+    createAccountOwnersIndex(sqLiteDatabase);
     sqLiteDatabase.execSQL("CREATE TABLE USERPW "
             + "(USERID INTEGER NOT NULL,"
             + "PASSWORD CHAR(64),"
             + "FOREIGN KEY(USERID) REFERENCES USER(ID))");
+    createPasswordIndex(sqLiteDatabase);
     sqLiteDatabase.execSQL("CREATE TABLE USERMESSAGES "
             + "(ID INTEGER PRIMARY KEY NOT NULL,"
             + "USERID INTEGER NOT NULL,"
             + "MESSAGE CHAR(512) NOT NULL,"
             + "VIEWED CHAR(1) NOT NULL,"
             + "FOREIGN KEY(USERID) REFERENCES USER(ID))");
+    createInboxIndex(sqLiteDatabase);
+    createMessageSearch(sqLiteDatabase);
+    createBankTotal(sqLiteDatabase);
+    createChangeLog(sqLiteDatabase);
   }
 
   @Override
   public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
+    if (oldVersion < 2) {
+      // Balances used to be stored as text, convert them to cents
+      sqLiteDatabase.execSQL("ALTER TABLE ACCOUNTS RENAME TO ACCOUNTS_OLD");
+      createAccounts(sqLiteDatabase);
+      sqLiteDatabase.execSQL("INSERT INTO ACCOUNTS(ID,NAME,BALANCE,TYPE) "
+              + "SELECT ID,NAME,CAST(ROUND(CAST(BALANCE AS REAL) * 100) AS INTEGER),TYPE "
+              + "FROM ACCOUNTS_OLD");
+      sqLiteDatabase.execSQL("DROP TABLE ACCOUNTS_OLD");
+    }
+
+    if (oldVersion < 3) {
+      createBankTotal(sqLiteDatabase);
+    }
+
+    if (oldVersion < 4) {
+      createUsersRoleIndex(sqLiteDatabase);
+    }
+
+    if (oldVersion < 5) {
+      createAccountOwnersIndex(sqLiteDatabase);
+    }
+
+    if (oldVersion < 6) {
+      createPasswordIndex(sqLiteDatabase);
+      createChangeLog(sqLiteDatabase);
+    }
+
+    if (oldVersion < 7) {
+      createInboxIndex(sqLiteDatabase);
+    }
+
+    if (oldVersion < 8) {
+      createMessageSearch(sqLiteDatabase);
+      rebuildMessageSearch(sqLiteDatabase);
+    }
+  }
+
+  /**
+   * Drops every table and creates them again empty.
+   * @param sqLiteDatabase the database
+   */
+  protected void resetDatabase(SQLiteDatabase sqLiteDatabase) {
+    sqLiteDatabase.execSQL("DROP TABLE IF EXISTS BACKUPSTATE");
+    sqLiteDatabase.execSQL("DROP TABLE IF EXISTS CHANGELOG");
+    sqLiteDatabase.execSQL("DROP TABLE IF EXISTS BANKTOTAL");
+    sqLiteDatabase.execSQL("DROP TABLE IF EXISTS USERMESSAGES_SEARCH");
     sqLiteDatabase.execSQL("DROP TABLE IF EXISTS USERMESSAGES");
     sqLiteDatabase.execSQL("DROP TABLE IF EXISTS USERPW");
     sqLiteDatabase.execSQL("DROP TABLE IF EXISTS USERACCOUNT");
@@ -76,6 +199,170 @@ public class DatabaseDriverA extends SQLiteOpenHelper {
     onCreate(sqLiteDatabase);
   }
 
+  private static void createAccounts(SQLiteDatabase sqLiteDatabase) {
+    sqLiteDatabase.execSQL("CREATE TABLE ACCOUNTS "
+            + "(ID INTEGER PRIMARY KEY NOT NULL,"
+            + "NAME TEXT NOT NULL,"
+            + "BALANCE INTEGER,"
+            + "TYPE INTEGER NOT NULL,"
+            + "FOREIGN KEY(TYPE) REFERENCES ACCOUNTTYPES(ID))");
+  }
+
+  private static void createUsersRoleIndex(SQLiteDatabase sqLiteDatabase) {
+    // Users are listed by role, the ID makes the index cover the order of the pages too
+    sqLiteDatabase.execSQL("CREATE INDEX USERS_ROLEID ON USERS(ROLEID, ID)");
+  }
+
+  private static void createAccountOwnersIndex(SQLiteDatabase sqLiteDatabase) {
+    // The primary key only finds the accounts of a user, this finds the owners of an account
+    sqLiteDatabase.execSQL("CREATE INDEX USERACCOUNT_ACCOUNTID ON USERACCOUNT(ACCOUNTID, USERID)");
+  }
+
+  private static void createPasswordIndex(SQLiteDatabase sqLiteDatabase) {
+    sqLiteDatabase.execSQL("CREATE INDEX USERPW_USERID ON USERPW(USERID)");
+  }
+
+  private static void createInboxIndex(SQLiteDatabase sqLiteDatabase) {
+    // Finds the messages of a user, the unread ones apart from the read ones, in order of ID
+    sqLiteDatabase.execSQL("CREATE INDEX USERMESSAGES_INBOX ON USERMESSAGES(USERID, VIEWED, ID)");
+  }
+
+  /**
+   * Creates the full-text index of the messages. It reads the text from USERMESSAGES rather
+   * than keeping its own copy, and triggers keep it up to date as messages are inserted,
+   * changed and deleted. Marking a message read does not touch it.
+   * @param sqLiteDatabase the database
+   */
+  private static void createMessageSearch(SQLiteDatabase sqLiteDatabase) {
+    sqLiteDatabase.execSQL("CREATE VIRTUAL TABLE USERMESSAGES_SEARCH "
+            + "USING fts4(content=\"USERMESSAGES\", MESSAGE)");
+    createMessageSearchTriggers(sqLiteDatabase);
+  }
+
+  private static void createMessageSearchTriggers(SQLiteDatabase sqLiteDatabase) {
+    // The words of a message are found through its text, so they are removed before it changes
+    sqLiteDatabase.execSQL("CREATE TRIGGER USERMESSAGES_SEARCH_INSERT "
+            + "AFTER INSERT ON USERMESSAGES BEGIN "
+            + "INSERT INTO USERMESSAGES_SEARCH(docid,MESSAGE) VALUES(NEW.ID,NEW.MESSAGE); END");
+    sqLiteDatabase.execSQL("CREATE TRIGGER USERMESSAGES_SEARCH_DELETE "
+            + "BEFORE DELETE ON USERMESSAGES BEGIN "
+            + "DELETE FROM USERMESSAGES_SEARCH WHERE docid = OLD.ID; END");
+    sqLiteDatabase.execSQL("CREATE TRIGGER USERMESSAGES_SEARCH_UNINDEX "
+            + "BEFORE UPDATE OF ID,MESSAGE ON USERMESSAGES BEGIN "
+            + "DELETE FROM USERMESSAGES_SEARCH WHERE docid = OLD.ID; END");
+    sqLiteDatabase.execSQL("CREATE TRIGGER USERMESSAGES_SEARCH_REINDEX "
+            + "AFTER UPDATE OF ID,MESSAGE ON USERMESSAGES BEGIN "
+            + "INSERT INTO USERMESSAGES_SEARCH(docid,MESSAGE) VALUES(NEW.ID,NEW.MESSAGE); END");
+  }
+
+  private static void dropMessageSearchTriggers(SQLiteDatabase sqLiteDatabase) {
+    sqLiteDatabase.execSQL("DROP TRIGGER USERMESSAGES_SEARCH_INSERT");
+    sqLiteDatabase.execSQL("DROP TRIGGER USERMESSAGES_SEARCH_DELETE");
+    sqLiteDatabase.execSQL("DROP TRIGGER USERMESSAGES_SEARCH_UNINDEX");
+    sqLiteDatabase.execSQL("DROP TRIGGER USERMESSAGES_SEARCH_REINDEX");
+  }
+
+  private static void rebuildMessageSearch(SQLiteDatabase sqLiteDatabase) {
+    sqLiteDatabase.execSQL("INSERT INTO USERMESSAGES_SEARCH(USERMESSAGES_SEARCH) "
+            + "VALUES('rebuild')");
+  }
+
+  /**
+   * Creates the CHANGELOG table, which gets the key of every row inserted, updated or deleted
+   * since the last backup, and the BACKUPSTATE table, which remembers that backup. Triggers
+   * fill the log, so every way of writing to the tables is covered. Backups empty it.
+   * @param sqLiteDatabase the database
+   */
+  private static void createChangeLog(SQLiteDatabase sqLiteDatabase) {
+    sqLiteDatabase.execSQL("CREATE TABLE CHANGELOG "
+            + "(SEQ INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + "TAG INTEGER NOT NULL,"
+            + "ID INTEGER,"
+            + "OTHERID INTEGER)");
+    sqLiteDatabase.execSQL("CREATE TABLE BACKUPSTATE "
+            + "(ID INTEGER PRIMARY KEY NOT NULL,"
+            + "CHAINID INTEGER NOT NULL,"
+            + "SEQ INTEGER NOT NULL,"
+            + "DELTAS INTEGER NOT NULL)");
+    createChangeTriggers(sqLiteDatabase);
+  }
+
+  private static void createChangeTriggers(SQLiteDatabase sqLiteDatabase) {
+    // Rows are logged under the snapshot table they are written to, a password is part of a user
+    createChangeTriggers(sqLiteDatabase, "ACCOUNTTYPES", SnapshotWriter.ACCOUNT_TYPE, "ID", null);
+    createChangeTriggers(sqLiteDatabase, "ROLES", SnapshotWriter.ROLE, "ID", null);
+    createChangeTriggers(sqLiteDatabase, "USERS", SnapshotWriter.USER, "ID", null);
+    createChangeTriggers(sqLiteDatabase, "USERPW", SnapshotWriter.USER, "USERID", null);
+    createChangeTriggers(sqLiteDatabase, "ACCOUNTS", SnapshotWriter.ACCOUNT, "ID", null);
+    createChangeTriggers(sqLiteDatabase, "USERACCOUNT", SnapshotWriter.USER_ACCOUNT, "USERID",
+        "ACCOUNTID");
+    createChangeTriggers(sqLiteDatabase, "USERMESSAGES", SnapshotWriter.MESSAGE, "ID", null);
+  }
+
+  private static void createChangeTriggers(SQLiteDatabase sqLiteDatabase, String table, int tag,
+      String idColumn, String otherIdColumn) {
+    String log = "INSERT INTO CHANGELOG(TAG,ID,OTHERID) SELECT " + tag + ",";
+    String newKey = "NEW." + idColumn + "," + (otherIdColumn == null ? "NULL"
+        : "NEW." + otherIdColumn);
+    String oldKey = "OLD." + idColumn + "," + (otherIdColumn == null ? "NULL"
+        : "OLD." + otherIdColumn);
+    String keyChanged = "OLD." + idColumn + " IS NOT NEW." + idColumn
+        + (otherIdColumn == null ? ""
+        : " OR OLD." + otherIdColumn + " IS NOT NEW." + otherIdColumn);
+
+    sqLiteDatabase.execSQL("CREATE TRIGGER " + table + "_LOG_INSERT "
+            + "AFTER INSERT ON " + table + " BEGIN " + log + newKey + "; END");
+    // A row whose key changes is gone from its old key as well
+    sqLiteDatabase.execSQL("CREATE TRIGGER " + table + "_LOG_UPDATE "
+            + "AFTER UPDATE ON " + table + " BEGIN " + log + oldKey + " WHERE " + keyChanged
+            + "; " + log + newKey + "; END");
+    sqLiteDatabase.execSQL("CREATE TRIGGER " + table + "_LOG_DELETE "
+            + "AFTER DELETE ON " + table + " BEGIN " + log + oldKey + "; END");
+  }
+
+  private static void dropChangeTriggers(SQLiteDatabase sqLiteDatabase) {
+    for (String table : LOGGED_TABLES) {
+      sqLiteDatabase.execSQL("DROP TRIGGER " + table + "_LOG_INSERT");
+      sqLiteDatabase.execSQL("DROP TRIGGER " + table + "_LOG_UPDATE");
+      sqLiteDatabase.execSQL("DROP TRIGGER " + table + "_LOG_DELETE");
+    }
+  }
+
+  /**
+   * Creates the BANKTOTAL table, which holds the sum of the balances of every account that has
+   * an owner. Triggers keep it up to date whenever a balance, an account or an owner changes.
+   * @param sqLiteDatabase the database
+   */
+  private static void createBankTotal(SQLiteDatabase sqLiteDatabase) {
+    sqLiteDatabase.execSQL("CREATE TABLE BANKTOTAL "
+            + "(ID INTEGER PRIMARY KEY NOT NULL,"
+            + "TOTAL INTEGER NOT NULL)");
+    sqLiteDatabase.execSQL("INSERT INTO BANKTOTAL(ID,TOTAL) "
+            + "SELECT 1,IFNULL(SUM(BALANCE),0) FROM ACCOUNTS "
+            + "WHERE ID IN (SELECT ACCOUNTID FROM USERACCOUNT)");
+    sqLiteDatabase.execSQL("CREATE TRIGGER BANKTOTAL_BALANCE "
+            + "AFTER UPDATE OF BALANCE ON ACCOUNTS "
+            + "WHEN EXISTS (SELECT 1 FROM USERACCOUNT WHERE ACCOUNTID = NEW.ID) "
+            + "BEGIN UPDATE BANKTOTAL "
+            + "SET TOTAL = TOTAL + IFNULL(NEW.BALANCE,0) - IFNULL(OLD.BALANCE,0); END");
+    sqLiteDatabase.execSQL("CREATE TRIGGER BANKTOTAL_DELETE "
+            + "AFTER DELETE ON ACCOUNTS "
+            + "WHEN EXISTS (SELECT 1 FROM USERACCOUNT WHERE ACCOUNTID = OLD.ID) "
+            + "BEGIN UPDATE BANKTOTAL SET TOTAL = TOTAL - IFNULL(OLD.BALANCE,0); END");
+    // Only the first owner of an account adds it to the total, and only the last one removes it
+    sqLiteDatabase.execSQL("CREATE TRIGGER BANKTOTAL_OWNED "
+            + "AFTER INSERT ON USERACCOUNT "
+            + "WHEN NOT EXISTS (SELECT 1 FROM USERACCOUNT "
+            + "WHERE ACCOUNTID = NEW.ACCOUNTID AND USERID != NEW.USERID) "
+            + "BEGIN UPDATE BANKTOTAL SET TOTAL = TOTAL "
+            + "+ IFNULL((SELECT BALANCE FROM ACCOUNTS WHERE ID = NEW.ACCOUNTID),0); END");
+    sqLiteDatabase.execSQL("CREATE TRIGGER BANKTOTAL_DISOWNED "
+            + "AFTER DELETE ON USERACCOUNT "
+            + "WHEN NOT EXISTS (SELECT 1 FROM USERACCOUNT WHERE ACCOUNTID = OLD.ACCOUNTID) "
+            + "BEGIN UPDATE BANKTOTAL SET TOTAL = TOTAL "
+            + "- IFNULL((SELECT BALANCE FROM ACCOUNTS WHERE ID = OLD.ACCOUNTID),0); END");
+  }
+
   //INSERTS
   protected long insertRole(String role) {
     SQLiteDatabase sqLiteDatabase = this.getWritableDatabase();
@@ -98,11 +385,11 @@ public class DatabaseDriverA extends SQLiteOpenHelper {
     return sqLiteDatabase.insert("ACCOUNTTYPES", null, contentValues);
   }
 
-  protected long insertAccount(String name, BigDecimal balance, int typeId) {
+  protected long insertAccount(String name, Money balance, int typeId) {
     SQLiteDatabase sqLiteDatabase = this.getWritableDatabase();
     ContentValues contentValues = new ContentValues();
     contentValues.put("NAME", name);
-    contentValues.put("BALANCE", balance.toPlainString());
+    contentValues.put("BALANCE", balance.getCents());
     contentValues.put("TYPE", typeId);
     return sqLiteDatabase.insert("ACCOUNTS", null, contentValues);
   }
@@ -124,6 +411,37 @@ public class DatabaseDriverA extends SQLiteOpenHelper {
     return sqLiteDatabase.insert("USERMESSAGES", null, contentValues);
   }
 
+  /**
+   * Inserts messages in one transaction. Messages for a user that doesn't exist are left out.
+   * @param userIds the user every message is for
+   * @param messages the messages, in the same order as their users
+   * @return the number of messages inserted
+   */
+  protected int insertMessages(int[] userIds, String[] messages) {
+    SQLiteDatabase sqLiteDatabase = this.getWritableDatabase();
+    // The user is looked up by its key for each message instead of reading every user first
+    SQLiteStatement statement = sqLiteDatabase.compileStatement(
+            "INSERT INTO USERMESSAGES(USERID,MESSAGE,VIEWED) SELECT ?,?,0"
+            + " WHERE EXISTS (SELECT 1 FROM USERS WHERE ID = ?)");
+    int inserted = 0;
+
+    sqLiteDatabase.beginTransaction();
+    try {
+      for (int i = 0; i < messages.length; i++) {
+        statement.bindLong(1, userIds[i]);
+        statement.bindString(2, messages[i]);
+        statement.bindLong(3, userIds[i]);
+        inserted += statement.executeUpdateDelete();
+      }
+      sqLiteDatabase.setTransactionSuccessful();
+    } finally {
+      sqLiteDatabase.endTransaction();
+      statement.close();
+    }
+
+    return inserted;
+  }
+
   private long insertUser(String name, int age, String address, int roleId) {
     SQLiteDatabase sqLiteDatabase = this.getWritableDatabase();
     ContentValues contentValues = new ContentValues();
@@ -178,6 +496,31 @@ public class DatabaseDriverA extends SQLiteOpenHelper {
     return sqLiteDatabase.rawQuery("SELECT * FROM USERS", null);
   }
 
+  /**
+   * Gets one page of the users with the given role, ordered by ID.
+   * @param roleId the role of the users
+   * @param offset the number of users skipped
+   * @param limit the most users returned, or a negative number for all of them
+   * @return the ID, NAME, AGE and ADDRESS of the users
+   */
+  protected Cursor getUsersDetailsByRole(int roleId, int offset, int limit) {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    return sqLiteDatabase.rawQuery("SELECT ID,NAME,AGE,ADDRESS FROM USERS WHERE ROLEID = ? "
+            + "ORDER BY ID LIMIT ? OFFSET ?",
+            new String[] {String.valueOf(roleId), String.valueOf(limit), String.valueOf(offset)});
+  }
+
+  /**
+   * Gets every user along with their password hash, ordered by ID.
+   * @return the ID, NAME, AGE, ADDRESS, ROLEID and PASSWORD of the users
+   */
+  protected Cursor getUsersAndPasswords() {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    return sqLiteDatabase.rawQuery("SELECT U.ID AS ID,U.NAME AS NAME,U.AGE AS AGE,"
+            + "U.ADDRESS AS ADDRESS,U.ROLEID AS ROLEID,P.PASSWORD AS PASSWORD FROM USERS U "
+            + "LEFT JOIN USERPW P ON P.USERID = U.ID ORDER BY U.ID", null);
+  }
+
   protected Cursor getUserDetails(int userId) {
     SQLiteDatabase sqLiteDatabase = getReadableDatabase();
     return sqLiteDatabase.rawQuery("SELECT * FROM USERS WHERE ID = ?",
@@ -201,18 +544,75 @@ public class DatabaseDriverA extends SQLiteOpenHelper {
 
   }
 
+  protected Cursor getOwnerIds(int accountId) {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    return sqLiteDatabase.rawQuery("SELECT USERID FROM USERACCOUNT WHERE ACCOUNTID = ?",
+            new String[] {String.valueOf(accountId)});
+  }
+
+  protected boolean isOwner(int userId, int accountId) {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    SQLiteStatement statement = sqLiteDatabase.compileStatement(
+            "SELECT EXISTS (SELECT 1 FROM USERACCOUNT WHERE USERID = ? AND ACCOUNTID = ?)");
+    try {
+      statement.bindLong(1, userId);
+      statement.bindLong(2, accountId);
+      return statement.simpleQueryForLong() != 0;
+    } finally {
+      statement.close();
+    }
+  }
+
+  protected boolean accountExists(int accountId) {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    SQLiteStatement statement = sqLiteDatabase.compileStatement(
+            "SELECT COUNT(*) FROM ACCOUNTS WHERE ID = ?");
+    try {
+      statement.bindLong(1, accountId);
+      return statement.simpleQueryForLong() > 0;
+    } finally {
+      statement.close();
+    }
+  }
+
+  /**
+   * Gets every account of a user along with the name of its type, ordered by ID.
+   * @param userId the owner of the accounts
+   * @return the ID, NAME, BALANCE and TYPENAME of the accounts
+   */
+  protected Cursor getUserAccountsDetails(int userId) {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    return sqLiteDatabase.rawQuery("SELECT A.ID AS ID,A.NAME AS NAME,A.BALANCE AS BALANCE,"
+            + "T.NAME AS TYPENAME FROM USERACCOUNT U "
+            + "JOIN ACCOUNTS A ON A.ID = U.ACCOUNTID "
+            + "JOIN ACCOUNTTYPES T ON T.ID = A.TYPE "
+            + "WHERE U.USERID = ? ORDER BY A.ID",
+            new String[] {String.valueOf(userId)});
+  }
+
+  protected Cursor getAccountsDetails() {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    return sqLiteDatabase.rawQuery("SELECT ID,NAME,BALANCE,TYPE FROM ACCOUNTS ORDER BY ID", null);
+  }
+
+  protected Cursor getUserAccountLinks() {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    return sqLiteDatabase.rawQuery("SELECT USERID,ACCOUNTID FROM USERACCOUNT "
+            + "ORDER BY USERID,ACCOUNTID", null);
+  }
+
   protected Cursor getAccountDetails(int accountId) {
     SQLiteDatabase sqLiteDatabase = getReadableDatabase();
     return sqLiteDatabase.rawQuery("SELECT * FROM ACCOUNTS WHERE ID = ?",
             new String[] {String.valueOf(accountId)});
   }
 
-  protected BigDecimal getBalance(int accountId) {
+  protected Money getBalance(int accountId) {
     SQLiteDatabase sqLiteDatabase = getReadableDatabase();
     Cursor cursor = sqLiteDatabase.rawQuery("SELECT BALANCE FROM ACCOUNTS WHERE ID = ?",
             new String[] {String.valueOf(accountId)});
     cursor.moveToFirst();
-    BigDecimal result = new BigDecimal(cursor.getString(cursor.getColumnIndex("BALANCE")));
+    Money result = Money.ofCents(cursor.getLong(cursor.getColumnIndex("BALANCE")));
     cursor.close();
     return result;
   }
@@ -242,6 +642,25 @@ public class DatabaseDriverA extends SQLiteOpenHelper {
     return sqLiteDatabase.rawQuery("SELECT ID FROM ACCOUNTTYPES", null);
   }
 
+  protected Cursor getAccountTypesDetails() {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    return sqLiteDatabase.rawQuery("SELECT ID,NAME,INTERESTRATE FROM ACCOUNTTYPES ORDER BY ID",
+            null);
+  }
+
+  /**
+   * Gets the accounts that come after the given ID, ordered by ID.
+   * @param accountId the ID the accounts come after
+   * @param limit the most accounts returned
+   * @return the ID, BALANCE and TYPE of the accounts
+   */
+  protected Cursor getAccountsAfter(int accountId, int limit) {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    return sqLiteDatabase.rawQuery("SELECT ID,BALANCE,TYPE FROM ACCOUNTS WHERE ID > ? "
+            + "ORDER BY ID LIMIT ?",
+            new String[] {String.valueOf(accountId), String.valueOf(limit)});
+  }
+
   protected BigDecimal getInterestRate(int accountType) {
     SQLiteDatabase sqLiteDatabase = getReadableDatabase();
     Cursor cursor = sqLiteDatabase.rawQuery("SELECT INTERESTRATE FROM ACCOUNTTYPES WHERE ID = ?",
@@ -252,12 +671,422 @@ public class DatabaseDriverA extends SQLiteOpenHelper {
     return result;
   }
 
+  protected Money getTotalBalance() {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    SQLiteStatement statement = sqLiteDatabase.compileStatement(
+            "SELECT TOTAL FROM BANKTOTAL WHERE ID = 1");
+    try {
+      return Money.ofCents(statement.simpleQueryForLong());
+    } finally {
+      statement.close();
+    }
+  }
+
+  protected Money getUserTotalBalance(int userId) {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    SQLiteStatement statement = sqLiteDatabase.compileStatement(
+            "SELECT IFNULL(SUM(A.BALANCE),0) FROM USERACCOUNT UA "
+            + "JOIN ACCOUNTS A ON A.ID = UA.ACCOUNTID WHERE UA.USERID = ?");
+    try {
+      statement.bindLong(1, userId);
+      return Money.ofCents(statement.simpleQueryForLong());
+    } finally {
+      statement.close();
+    }
+  }
+
+  protected Cursor getTotalsByType() {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    return sqLiteDatabase.rawQuery("SELECT T.NAME AS NAME, SUM(A.BALANCE) AS TOTAL "
+            + "FROM ACCOUNTS A JOIN ACCOUNTTYPES T ON T.ID = A.TYPE "
+            + "WHERE A.ID IN (SELECT ACCOUNTID FROM USERACCOUNT) "
+            + "GROUP BY T.NAME", null);
+  }
+
+  protected Cursor getTotalsByRole() {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    return sqLiteDatabase.rawQuery("SELECT R.NAME AS NAME, SUM(A.BALANCE) AS TOTAL "
+            + "FROM USERACCOUNT UA JOIN ACCOUNTS A ON A.ID = UA.ACCOUNTID "
+            + "JOIN USERS U ON U.ID = UA.USERID JOIN ROLES R ON R.ID = U.ROLEID "
+            + "GROUP BY R.NAME", null);
+  }
+
   protected Cursor getAllMessages(int userId) {
     SQLiteDatabase sqLiteDatabase = getReadableDatabase();
-    return sqLiteDatabase.rawQuery("SELECT * FROM USERMESSAGES WHERE USERID = ?",
+    // Ordered, since the inbox index would otherwise list the unread messages first
+    return sqLiteDatabase.rawQuery("SELECT * FROM USERMESSAGES WHERE USERID = ? ORDER BY ID",
             new String[] {String.valueOf(userId)});
   }
 
+  /**
+   * Gets a page of the messages of a user, newest first.
+   * @param userId the user
+   * @param beforeId only messages with a lower ID are on the page
+   * @param limit the most messages on the page
+   * @return the ID, USERID, MESSAGE and VIEWED of the messages, ordered by ID from the highest
+   */
+  protected Cursor getMessagesPage(int userId, long beforeId, int limit) {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    // A message is unread (0) or read (1). The index keeps the two apart, so the page is made
+    // of the first messages of each in index order, and only those are sorted
+    String side = "SELECT * FROM (SELECT ID,USERID,MESSAGE,VIEWED FROM USERMESSAGES "
+            + "WHERE USERID = ? AND VIEWED = ? AND ID < ? ORDER BY ID DESC LIMIT ?)";
+    String user = String.valueOf(userId);
+    String before = String.valueOf(beforeId);
+    String count = String.valueOf(limit);
+    return sqLiteDatabase.rawQuery(side + " UNION ALL " + side + " ORDER BY ID DESC LIMIT ?",
+            new String[] {user, "0", before, count, user, "1", before, count, count});
+  }
+
+  /**
+   * Counts the messages of a user that were not read, from the index alone.
+   * @param userId the user
+   * @return the number of unread messages
+   */
+  protected long countUnread(int userId) {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    SQLiteStatement statement = sqLiteDatabase.compileStatement(
+            "SELECT COUNT(*) FROM USERMESSAGES WHERE USERID = ? AND VIEWED = 0");
+    try {
+      statement.bindLong(1, userId);
+      return statement.simpleQueryForLong();
+    } finally {
+      statement.close();
+    }
+  }
+
+  /**
+   * Finds the messages that match a full-text query.
+   * @param match the full-text query
+   * @param userId only the messages of this user are found, all messages if it is 0 or less
+   * @return the ID and the 'pcnalx' MATCHINFO of every match, in no particular order
+   */
+  protected Cursor searchMessages(String match, int userId) {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    String sql = "SELECT docid AS ID,matchinfo(USERMESSAGES_SEARCH,'pcnalx') AS MATCHINFO "
+            + "FROM USERMESSAGES_SEARCH WHERE USERMESSAGES_SEARCH MATCH ?";
+
+    if (userId <= 0) {
+      return sqLiteDatabase.rawQuery(sql, new String[] {match});
+    }
+    // The inbox index lists the messages of the user, without reading any of them
+    return sqLiteDatabase.rawQuery(sql + " AND docid IN (SELECT ID FROM USERMESSAGES "
+            + "WHERE USERID = ?)", new String[] {match, String.valueOf(userId)});
+  }
+
+  /**
+   * Gets every message, grouped by the user they are for.
+   * @return the ID, USERID, MESSAGE and VIEWED of the messages, ordered by USERID and ID
+   */
+  protected Cursor getMessagesDetails() {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    return sqLiteDatabase.rawQuery("SELECT ID,USERID,MESSAGE,VIEWED FROM USERMESSAGES "
+            + "ORDER BY USERID,ID", null);
+  }
+
+  /**
+   * Counts the rows a snapshot of the database is made of.
+   * @return the number of account types, roles, users, accounts, owners and messages
+   */
+  protected long countSnapshotRows() {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    SQLiteStatement statement = sqLiteDatabase.compileStatement("SELECT "
+            + "(SELECT COUNT(*) FROM ACCOUNTTYPES) + (SELECT COUNT(*) FROM ROLES) "
+            + "+ (SELECT COUNT(*) FROM USERS) + (SELECT COUNT(*) FROM ACCOUNTS) "
+            + "+ (SELECT COUNT(*) FROM USERACCOUNT) + (SELECT COUNT(*) FROM USERMESSAGES)");
+    try {
+      return statement.simpleQueryForLong();
+    } finally {
+      statement.close();
+    }
+  }
+
+  /**
+   * Opens a snapshot of the database: a read-only connection of its own, kept in one read
+   * transaction, that sees the database as it was when the snapshot was opened. The connection
+   * everyone else writes through is not held up while the snapshot is read. The snapshot is
+   * not shared, and is closed with {@link #close()}.
+   *
+   * <p>The write-ahead log cannot be checkpointed past a snapshot that is still open, so it
+   * grows for as long as the snapshot is held. Read what is needed and close it; a backup that
+   * is written out slowly is written from {@link #copyTables(File)} instead.
+   * @return a driver reading from the snapshot
+   */
+  protected DatabaseDriverA openSnapshot() {
+    return new Snapshot(getReadableDatabase().getPath(), true);
+  }
+
+  /**
+   * Copies the tables whose changes are logged, with their indexes but none of the triggers,
+   * into a new database file. The rows are copied as fast as they can be read, in one read
+   * transaction when called on a snapshot, so the snapshot can be closed before a backup is
+   * written out slowly from the copy.
+   * @param target the file to copy to, replaced if it exists
+   * @return a driver reading from the copy, closed with {@link #close()}
+   */
+  protected DatabaseDriverA copyTables(File target) {
+    SQLiteDatabase.deleteDatabase(target);
+    SQLiteDatabase source = getReadableDatabase();
+    SQLiteDatabase copy = SQLiteDatabase.openDatabase(target.getPath(), null,
+        SQLiteDatabase.OPEN_READWRITE | SQLiteDatabase.CREATE_IF_NECESSARY);
+
+    try {
+      // The copy is thrown away if anything goes wrong, so it need not survive a crash
+      copy.execSQL("PRAGMA synchronous = OFF");
+      copy.beginTransaction();
+      try {
+        for (String table : LOGGED_TABLES) {
+          List<String> indexes = new ArrayList<>();
+          Cursor schema = source.rawQuery("SELECT TYPE,SQL FROM SQLITE_MASTER WHERE TBL_NAME = ?"
+              + " AND TYPE IN ('table','index') AND SQL IS NOT NULL", new String[] {table});
+          try {
+            while (schema.moveToNext()) {
+              if (schema.getString(0).equals("table")) {
+                copy.execSQL(schema.getString(1));
+              } else {
+                indexes.add(schema.getString(1));
+              }
+            }
+          } finally {
+            schema.close();
+          }
+
+          copyRows(source, copy, table);
+          // Building the indexes once the rows are in is faster than keeping them up to date
+          for (String index : indexes) {
+            copy.execSQL(index);
+          }
+        }
+        copy.setTransactionSuccessful();
+      } finally {
+        copy.endTransaction();
+      }
+    } catch (RuntimeException e) {
+      copy.close();
+      SQLiteDatabase.deleteDatabase(target);
+      throw e;
+    }
+
+    copy.close();
+    return new Snapshot(target.getPath(), false);
+  }
+
+  private static void copyRows(SQLiteDatabase source, SQLiteDatabase copy, String table) {
+    Cursor cursor = source.rawQuery("SELECT * FROM " + table, null);
+    try {
+      int columns = cursor.getColumnCount();
+      StringBuilder sql = new StringBuilder("INSERT INTO " + table + "(");
+      for (int i = 0; i < columns; i++) {
+        sql.append(i == 0 ? "" : ",").append(cursor.getColumnName(i));
+      }
+      sql.append(") VALUES(?");
+      for (int i = 1; i < columns; i++) {
+        sql.append(",?");
+      }
+      sql.append(")");
+
+      SQLiteStatement statement = copy.compileStatement(sql.toString());
+      try {
+        while (cursor.moveToNext()) {
+          // Every value keeps the type it is stored with
+          for (int i = 0; i < columns; i++) {
+            switch (cursor.getType(i)) {
+              case Cursor.FIELD_TYPE_NULL:
+                statement.bindNull(i + 1);
+                break;
+              case Cursor.FIELD_TYPE_INTEGER:
+                statement.bindLong(i + 1, cursor.getLong(i));
+                break;
+              case Cursor.FIELD_TYPE_FLOAT:
+                statement.bindDouble(i + 1, cursor.getDouble(i));
+                break;
+              case Cursor.FIELD_TYPE_BLOB:
+                statement.bindBlob(i + 1, cursor.getBlob(i));
+                break;
+              default:
+                statement.bindString(i + 1, cursor.getString(i));
+            }
+          }
+          statement.executeInsert();
+        }
+      } finally {
+        statement.close();
+      }
+    } finally {
+      cursor.close();
+    }
+  }
+
+  /**
+   * A driver on a snapshot of the database, see {@link #openSnapshot()}, or on a copy of its
+   * tables, see {@link #copyTables(File)}.
+   */
+  private static final class Snapshot extends DatabaseDriverA {
+    private final SQLiteDatabase sqLiteDatabase;
+    private final boolean inTransaction;
+
+    private Snapshot(String path, boolean inTransaction) {
+      super(path);
+      this.inTransaction = inTransaction;
+      sqLiteDatabase = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY);
+      if (!inTransaction) {
+        // Nothing else writes to a copy, so it needs no transaction to stay as it is
+        return;
+      }
+
+      try {
+        // Android runs BEGIN as BEGIN EXCLUSIVE, which a read-only connection cannot take.
+        // SQLite documents that a savepoint made outside a transaction starts a deferred one,
+        // and execSQL only treats BEGIN, COMMIT and ROLLBACK specially, so SAVEPOINT reaches
+        // SQLite as it is. The first read then fixes what the snapshot sees, without taking the
+        // write lock.
+        sqLiteDatabase.execSQL("SAVEPOINT SNAPSHOT");
+        SQLiteStatement statement = sqLiteDatabase.compileStatement(
+            "SELECT COUNT(*) FROM SQLITE_MASTER");
+        try {
+          statement.simpleQueryForLong();
+        } finally {
+          statement.close();
+        }
+      } catch (RuntimeException e) {
+        sqLiteDatabase.close();
+        throw e;
+      }
+    }
+
+    @Override
+    public SQLiteDatabase getReadableDatabase() {
+      return sqLiteDatabase;
+    }
+
+    @Override
+    public SQLiteDatabase getWritableDatabase() {
+      return sqLiteDatabase;
+    }
+
+    @Override
+    public void close() {
+      try {
+        if (inTransaction) {
+          // Nothing was written, so ending the transaction only lets the snapshot go
+          sqLiteDatabase.execSQL("RELEASE SNAPSHOT");
+        }
+      } finally {
+        sqLiteDatabase.close();
+      }
+    }
+  }
+
+  /**
+   * Gets the sequence number of the last change ever logged, even if the log was emptied since.
+   * @return the sequence number, or 0 if nothing was logged
+   */
+  protected long getLastChange() {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    SQLiteStatement statement = sqLiteDatabase.compileStatement("SELECT IFNULL("
+            + "(SELECT SEQ FROM SQLITE_SEQUENCE WHERE NAME = 'CHANGELOG'),0)");
+    try {
+      return statement.simpleQueryForLong();
+    } finally {
+      statement.close();
+    }
+  }
+
+  /**
+   * Gets the backup the change log was last emptied by.
+   * @return the CHAINID, SEQ and DELTAS of the backup, or no rows if there was none
+   */
+  protected Cursor getBackupState() {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    return sqLiteDatabase.rawQuery("SELECT CHAINID,SEQ,DELTAS FROM BACKUPSTATE WHERE ID = 1",
+            null);
+  }
+
+  protected Cursor getChangedAccountTypes(long toSeq) {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    return sqLiteDatabase.rawQuery("SELECT ID,NAME,INTERESTRATE FROM ACCOUNTTYPES "
+            + "WHERE ID IN " + changedIds(SnapshotWriter.ACCOUNT_TYPE) + " ORDER BY ID",
+            new String[] {String.valueOf(toSeq)});
+  }
+
+  protected Cursor getChangedRoles(long toSeq) {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    return sqLiteDatabase.rawQuery("SELECT ID,NAME FROM ROLES "
+            + "WHERE ID IN " + changedIds(SnapshotWriter.ROLE) + " ORDER BY ID",
+            new String[] {String.valueOf(toSeq)});
+  }
+
+  protected Cursor getChangedUsers(long toSeq) {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    return sqLiteDatabase.rawQuery("SELECT U.ID AS ID,U.NAME AS NAME,U.AGE AS AGE,"
+            + "U.ADDRESS AS ADDRESS,U.ROLEID AS ROLEID,P.PASSWORD AS PASSWORD FROM USERS U "
+            + "LEFT JOIN USERPW P ON P.USERID = U.ID "
+            + "WHERE U.ID IN " + changedIds(SnapshotWriter.USER) + " ORDER BY U.ID",
+            new String[] {String.valueOf(toSeq)});
+  }
+
+  protected Cursor getChangedAccounts(long toSeq) {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    return sqLiteDatabase.rawQuery("SELECT ID,NAME,BALANCE,TYPE FROM ACCOUNTS "
+            + "WHERE ID IN " + changedIds(SnapshotWriter.ACCOUNT) + " ORDER BY ID",
+            new String[] {String.valueOf(toSeq)});
+  }
+
+  protected Cursor getChangedUserAccountLinks(long toSeq) {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    return sqLiteDatabase.rawQuery("SELECT DISTINCT U.USERID AS USERID,U.ACCOUNTID AS ACCOUNTID "
+            + "FROM CHANGELOG C JOIN USERACCOUNT U "
+            + "ON U.USERID = C.ID AND U.ACCOUNTID = C.OTHERID "
+            + "WHERE C.TAG = " + SnapshotWriter.USER_ACCOUNT + " AND C.SEQ <= ? "
+            + "ORDER BY U.USERID,U.ACCOUNTID",
+            new String[] {String.valueOf(toSeq)});
+  }
+
+  protected Cursor getChangedMessages(long toSeq) {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    return sqLiteDatabase.rawQuery("SELECT ID,USERID,MESSAGE,VIEWED FROM USERMESSAGES "
+            + "WHERE ID IN " + changedIds(SnapshotWriter.MESSAGE) + " ORDER BY USERID,ID",
+            new String[] {String.valueOf(toSeq)});
+  }
+
+  /**
+   * Gets the logged rows that no longer exist.
+   * @param toSeq the last change looked at
+   * @return the TAG, ID and OTHERID of the rows
+   */
+  protected Cursor getRemovedRows(long toSeq) {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    return sqLiteDatabase.rawQuery("SELECT DISTINCT TAG,ID,IFNULL(OTHERID,0) AS OTHERID "
+            + "FROM CHANGELOG C WHERE SEQ <= ? AND NOT CASE TAG "
+            + "WHEN " + SnapshotWriter.ACCOUNT_TYPE
+            + " THEN EXISTS (SELECT 1 FROM ACCOUNTTYPES WHERE ID = C.ID) "
+            + "WHEN " + SnapshotWriter.ROLE + " THEN EXISTS (SELECT 1 FROM ROLES WHERE ID = C.ID) "
+            + "WHEN " + SnapshotWriter.USER + " THEN EXISTS (SELECT 1 FROM USERS WHERE ID = C.ID) "
+            + "WHEN " + SnapshotWriter.ACCOUNT
+            + " THEN EXISTS (SELECT 1 FROM ACCOUNTS WHERE ID = C.ID) "
+            + "WHEN " + SnapshotWriter.USER_ACCOUNT + " THEN EXISTS (SELECT 1 FROM USERACCOUNT "
+            + "WHERE USERID = C.ID AND ACCOUNTID = C.OTHERID) "
+            + "WHEN " + SnapshotWriter.MESSAGE
+            + " THEN EXISTS (SELECT 1 FROM USERMESSAGES WHERE ID = C.ID) "
+            + "ELSE 1 END ORDER BY TAG,ID,OTHERID",
+            new String[] {String.valueOf(toSeq)});
+  }
+
+  private static String changedIds(int tag) {
+    return "(SELECT ID FROM CHANGELOG WHERE TAG = " + tag + " AND SEQ <= ?)";
+  }
+
+  /**
+   * Gets one message by its ID.
+   * @param messageId the message
+   * @return the ID, USERID, MESSAGE and VIEWED of the message, no rows if it does not exist
+   */
+  protected Cursor getMessageDetails(int messageId) {
+    SQLiteDatabase sqLiteDatabase = getReadableDatabase();
+    return sqLiteDatabase.rawQuery("SELECT ID,USERID,MESSAGE,VIEWED FROM USERMESSAGES "
+            + "WHERE ID = ?", new String[] {String.valueOf(messageId)});
+  }
+
   protected String getSpecificMessage(int messageId){
     SQLiteDatabase sqLiteDatabase = getReadableDatabase();
     Cursor cursor = sqLiteDatabase.rawQuery("SELECT MESSAGE FROM USERMESSAGES WHERE ID = ?",
@@ -317,14 +1146,106 @@ public class DatabaseDriverA extends SQLiteOpenHelper {
             new String[] {String.valueOf(id)}) > 0;
   }
 
-  protected boolean updateAccountBalance(BigDecimal balance, int id) {
+  protected boolean updateAccountBalance(Money balance, int id) {
     SQLiteDatabase sqLiteDatabase = this.getWritableDatabase();
     ContentValues contentValues = new ContentValues();
-    contentValues.put("BALANCE", balance.toPlainString());
+    contentValues.put("BALANCE", balance.getCents());
     return sqLiteDatabase.update("ACCOUNTS",contentValues,"ID = ?",
             new String[] {String.valueOf(id)}) > 0;
   }
 
+  /**
+   * Takes an amount out of an account, but only if the balance covers it.
+   * @param id the ID of the account
+   * @param amount the amount to take out
+   * @return true if the account was debited, false if it does not exist or has too little money
+   */
+  protected boolean debitAccount(int id, Money amount) {
+    SQLiteDatabase sqLiteDatabase = this.getWritableDatabase();
+    SQLiteStatement statement = sqLiteDatabase.compileStatement(
+            "UPDATE ACCOUNTS SET BALANCE = BALANCE - ? WHERE ID = ? AND BALANCE >= ?");
+    try {
+      statement.bindLong(1, amount.getCents());
+      statement.bindLong(2, id);
+      statement.bindLong(3, amount.getCents());
+      return statement.executeUpdateDelete() > 0;
+    } finally {
+      statement.close();
+    }
+  }
+
+  /**
+   * Adds an amount to an account.
+   * @param id the ID of the account
+   * @param amount the amount to add
+   * @return true if the account was credited, false if it does not exist
+   */
+  protected boolean creditAccount(int id, Money amount) {
+    SQLiteDatabase sqLiteDatabase = this.getWritableDatabase();
+    SQLiteStatement statement = sqLiteDatabase.compileStatement(
+            "UPDATE ACCOUNTS SET BALANCE = BALANCE + ? WHERE ID = ?");
+    try {
+      statement.bindLong(1, amount.getCents());
+      statement.bindLong(2, id);
+      return statement.executeUpdateDelete() > 0;
+    } finally {
+      statement.close();
+    }
+  }
+
+  /**
+   * Changes the type of an account if it has the given type and its balance is below a minimum.
+   * @param id the ID of the account
+   * @param oldTypeId the type the account must have
+   * @param newTypeId the type the account is changed to
+   * @param minimum the balance the account must be below
+   * @return true if the type was changed
+   */
+  protected boolean downgradeAccountType(int id, int oldTypeId, int newTypeId, Money minimum) {
+    SQLiteDatabase sqLiteDatabase = this.getWritableDatabase();
+    SQLiteStatement statement = sqLiteDatabase.compileStatement(
+            "UPDATE ACCOUNTS SET TYPE = ? WHERE ID = ? AND TYPE = ? AND BALANCE < ?");
+    try {
+      statement.bindLong(1, newTypeId);
+      statement.bindLong(2, id);
+      statement.bindLong(3, oldTypeId);
+      statement.bindLong(4, minimum.getCents());
+      return statement.executeUpdateDelete() > 0;
+    } finally {
+      statement.close();
+    }
+  }
+
+  /**
+   * Adds interest to a batch of accounts and leaves a message for every owner of each one.
+   * @param accountIds the IDs of the accounts
+   * @param interest the interest added to each account
+   * @param messages the message left for the owners of each account
+   * @param count the number of accounts used from the arrays
+   */
+  protected void postInterest(int[] accountIds, Money[] interest, String[] messages, int count) {
+    SQLiteDatabase sqLiteDatabase = this.getWritableDatabase();
+    SQLiteStatement credit = sqLiteDatabase.compileStatement(
+            "UPDATE ACCOUNTS SET BALANCE = BALANCE + ? WHERE ID = ?");
+    SQLiteStatement notify = sqLiteDatabase.compileStatement(
+            "INSERT INTO USERMESSAGES(USERID,MESSAGE,VIEWED) "
+            + "SELECT USERID,?,0 FROM USERACCOUNT WHERE ACCOUNTID = ?");
+    try {
+      for (int i = 0; i < count; i++) {
+        credit.bindLong(1, interest[i].getCents());
+        credit.bindLong(2, accountIds[i]);
+        credit.executeUpdateDelete();
+
+        notify.bindString(1, messages[i]);
+        notify.bindLong(2, accountIds[i]);
+        notify.executeInsert();
+      }
+    } finally {
+      credit.close();
+      notify.close();
+    }
+  }
+
   protected boolean updateAccountType(int typeId, int id) {
     SQLiteDatabase sqLiteDatabase = this.getWritableDatabase();
     ContentValues contentValues = new ContentValues();
@@ -364,4 +1285,325 @@ public class DatabaseDriverA extends SQLiteOpenHelper {
     return sqLiteDatabase.update("USERMESSAGES",contentValues,"ID = ?",
             new String[] {String.valueOf(id)}) > 0;
   }
+
+  /**
+   * Marks the unread messages of a user up to a given message as read, in one update found
+   * through the inbox index. Messages that came in after it are left unread.
+   * @param userId the user
+   * @param lastMessageId the last message to mark
+   * @return the number of messages marked
+   */
+  protected int markAllViewed(int userId, int lastMessageId) {
+    SQLiteDatabase sqLiteDatabase = this.getWritableDatabase();
+    ContentValues contentValues = new ContentValues();
+    contentValues.put("VIEWED", 1);
+    // Messages already read are left alone, so they are not logged as changed again
+    return sqLiteDatabase.update("USERMESSAGES", contentValues,
+            "USERID = ? AND VIEWED = 0 AND ID <= ?",
+            new String[] {String.valueOf(userId), String.valueOf(lastMessageId)});
+  }
+
+  /**
+   * Marks messages as read in one transaction.
+   * @param messageIds the messages
+   * @return the number of messages marked, messages already read are not counted
+   */
+  protected int markViewed(int[] messageIds) {
+    SQLiteDatabase sqLiteDatabase = this.getWritableDatabase();
+    ContentValues contentValues = new ContentValues();
+    contentValues.put("VIEWED", 1);
+    int marked = 0;
+
+    sqLiteDatabase.beginTransaction();
+    try {
+      // SQLite takes at most 999 arguments, so a long list is updated in a few pieces
+      for (int start = 0; start < messageIds.length; start += MAX_UPDATE_IDS) {
+        int end = Math.min(messageIds.length, start + MAX_UPDATE_IDS);
+        StringBuilder where = new StringBuilder("VIEWED = 0 AND ID IN (");
+        String[] args = new String[end - start];
+        for (int i = start; i < end; i++) {
+          where.append(i == start ? "?" : ",?");
+          args[i - start] = String.valueOf(messageIds[i]);
+        }
+        where.append(')');
+        marked += sqLiteDatabase.update("USERMESSAGES", contentValues, where.toString(), args);
+      }
+      sqLiteDatabase.setTransactionSuccessful();
+    } finally {
+      sqLiteDatabase.endTransaction();
+    }
+
+    return marked;
+  }
+
+  /**
+   * Remembers a backup and empties the change log up to the last change it holds.
+   * @param chainId the chain of backups it belongs to
+   * @param toSeq the last change in the backup
+   * @param deltas the number of deltas written on top of the full copy of the chain
+   */
+  protected void markBackedUp(long chainId, long toSeq, int deltas) {
+    SQLiteDatabase sqLiteDatabase = this.getWritableDatabase();
+    sqLiteDatabase.beginTransaction();
+    try {
+      ContentValues contentValues = new ContentValues();
+      contentValues.put("ID", 1);
+      contentValues.put("CHAINID", chainId);
+      contentValues.put("SEQ", toSeq);
+      contentValues.put("DELTAS", deltas);
+      sqLiteDatabase.insertWithOnConflict("BACKUPSTATE", null, contentValues,
+          SQLiteDatabase.CONFLICT_REPLACE);
+      sqLiteDatabase.delete("CHANGELOG", "SEQ <= ?", new String[] {String.valueOf(toSeq)});
+      sqLiteDatabase.setTransactionSuccessful();
+    } finally {
+      sqLiteDatabase.endTransaction();
+    }
+  }
+
+  /**
+   * Empties the database and starts loading rows into it with their original IDs. Everything
+   * happens in one transaction, so the database is left as it was unless
+   * {@link BulkLoader#finish()} is reached.
+   * @return the loader, which must be finished or closed
+   */
+  protected BulkLoader startBulkLoad() {
+    return new BulkLoader(this.getWritableDatabase(), false);
+  }
+
+  /**
+   * Starts loading rows into the database on top of the ones already there, replacing the rows
+   * with the same keys. Everything happens in one transaction, so the database is left as it
+   * was unless {@link BulkLoader#finish()} is reached.
+   * @return the loader, which must be finished or closed
+   */
+  protected BulkLoader startMerge() {
+    return new BulkLoader(this.getWritableDatabase(), true);
+  }
+
+  /**
+   * Inserts the rows of a snapshot as they are, without checking them one by one. Indexes and
+   * the running total are left out while loading and built once at the end. The deltas of a
+   * chain of backups can be read after the full copy, their rows replace the ones loaded
+   * before. Nothing loaded is logged as a change, and the next backup is a full copy again.
+   * When merging, the database is kept, and the triggers keep the running total and the change
+   * log up to date as rows are loaded.
+   */
+  protected class BulkLoader implements SnapshotHandler, Closeable {
+    private SQLiteDatabase sqLiteDatabase;
+    private SQLiteStatement insertAccountType;
+    private SQLiteStatement insertRole;
+    private SQLiteStatement insertUser;
+    private SQLiteStatement deletePassword;
+    private SQLiteStatement insertPassword;
+    private SQLiteStatement updateAccount;
+    private SQLiteStatement insertAccount;
+    private SQLiteStatement insertUserAccount;
+    private SQLiteStatement updateMessage;
+    private SQLiteStatement insertMessage;
+    private boolean merge;
+    private boolean open = true;
+
+    private BulkLoader(SQLiteDatabase sqLiteDatabase, boolean merge) {
+      this.sqLiteDatabase = sqLiteDatabase;
+      this.merge = merge;
+      sqLiteDatabase.beginTransaction();
+
+      try {
+        if (!merge) {
+          resetDatabase(sqLiteDatabase);
+          sqLiteDatabase.execSQL("DROP INDEX USERS_ROLEID");
+          sqLiteDatabase.execSQL("DROP INDEX USERACCOUNT_ACCOUNTID");
+          sqLiteDatabase.execSQL("DROP INDEX USERMESSAGES_INBOX");
+          dropMessageSearchTriggers(sqLiteDatabase);
+          sqLiteDatabase.execSQL("DROP TRIGGER BANKTOTAL_BALANCE");
+          sqLiteDatabase.execSQL("DROP TRIGGER BANKTOTAL_DELETE");
+          sqLiteDatabase.execSQL("DROP TRIGGER BANKTOTAL_OWNED");
+          sqLiteDatabase.execSQL("DROP TRIGGER BANKTOTAL_DISOWNED");
+          sqLiteDatabase.execSQL("DROP TABLE BANKTOTAL");
+          dropChangeTriggers(sqLiteDatabase);
+        }
+
+        // Deltas hold rows that were already loaded, and older copies list an account once for
+        // every owner, so rows replace the ones with the same key
+        insertAccountType = sqLiteDatabase.compileStatement(
+                "INSERT OR REPLACE INTO ACCOUNTTYPES(ID,NAME,INTERESTRATE) VALUES(?,?,?)");
+        insertRole = sqLiteDatabase.compileStatement(
+                "INSERT OR REPLACE INTO ROLES(ID,NAME) VALUES(?,?)");
+        insertUser = sqLiteDatabase.compileStatement(
+                "INSERT OR REPLACE INTO USERS(ID,NAME,AGE,ADDRESS,ROLEID) VALUES(?,?,?,?,?)");
+        deletePassword = sqLiteDatabase.compileStatement("DELETE FROM USERPW WHERE USERID = ?");
+        insertPassword = sqLiteDatabase.compileStatement(
+                "INSERT INTO USERPW(USERID,PASSWORD) VALUES(?,?)");
+        // Replacing a row does not run the delete triggers, so balances are updated in place
+        updateAccount = sqLiteDatabase.compileStatement(
+                "UPDATE ACCOUNTS SET NAME = ?, BALANCE = ?, TYPE = ? WHERE ID = ?");
+        insertAccount = sqLiteDatabase.compileStatement(
+                "INSERT OR REPLACE INTO ACCOUNTS(ID,NAME,BALANCE,TYPE) VALUES(?,?,?,?)");
+        insertUserAccount = sqLiteDatabase.compileStatement(
+                "INSERT OR IGNORE INTO USERACCOUNT(USERID,ACCOUNTID) VALUES(?,?)");
+        // Replacing a message would leave its old words in the search index, so it is updated
+        updateMessage = sqLiteDatabase.compileStatement(
+                "UPDATE USERMESSAGES SET USERID = ?, MESSAGE = ?, VIEWED = ? WHERE ID = ?");
+        insertMessage = sqLiteDatabase.compileStatement(
+                "INSERT OR REPLACE INTO USERMESSAGES(ID,USERID,MESSAGE,VIEWED) VALUES(?,?,?,?)");
+      } catch (RuntimeException e) {
+        close();
+        throw e;
+      }
+    }
+
+    @Override
+    public void accountType(int id, String name, BigDecimal interestRate) {
+      insertAccountType.bindLong(1, id);
+      bindString(insertAccountType, 2, name);
+      bindString(insertAccountType, 3, interestRate == null ? null : interestRate.toPlainString());
+      insertAccountType.executeInsert();
+    }
+
+    @Override
+    public void role(int id, String name) {
+      insertRole.bindLong(1, id);
+      bindString(insertRole, 2, name);
+      insertRole.executeInsert();
+    }
+
+    @Override
+    public void user(int id, String name, int age, String address, int roleId,
+        String password) {
+      insertUser.bindLong(1, id);
+      bindString(insertUser, 2, name);
+      insertUser.bindLong(3, age);
+      bindString(insertUser, 4, address);
+      insertUser.bindLong(5, roleId);
+      insertUser.executeInsert();
+
+      // The password is already hashed, and USERPW has no key to replace it by
+      deletePassword.bindLong(1, id);
+      deletePassword.executeUpdateDelete();
+      insertPassword.bindLong(1, id);
+      bindString(insertPassword, 2, password);
+      insertPassword.executeInsert();
+    }
+
+    @Override
+    public void account(int id, String name, Money balance, int typeId) {
+      if (merge) {
+        bindString(updateAccount, 1, name);
+        updateAccount.bindLong(2, balance.getCents());
+        updateAccount.bindLong(3, typeId);
+        updateAccount.bindLong(4, id);
+        if (updateAccount.executeUpdateDelete() > 0) {
+          return;
+        }
+      }
+
+      insertAccount.bindLong(1, id);
+      bindString(insertAccount, 2, name);
+      insertAccount.bindLong(3, balance.getCents());
+      insertAccount.bindLong(4, typeId);
+      insertAccount.executeInsert();
+    }
+
+    @Override
+    public void userAccount(int userId, int accountId) {
+      insertUserAccount.bindLong(1, userId);
+      insertUserAccount.bindLong(2, accountId);
+      insertUserAccount.executeInsert();
+    }
+
+    @Override
+    public void message(int id, int userId, String message, int viewed) {
+      if (merge) {
+        updateMessage.bindLong(1, userId);
+        bindString(updateMessage, 2, message);
+        updateMessage.bindLong(3, viewed);
+        updateMessage.bindLong(4, id);
+        if (updateMessage.executeUpdateDelete() > 0) {
+          return;
+        }
+      }
+
+      insertMessage.bindLong(1, id);
+      insertMessage.bindLong(2, userId);
+      bindString(insertMessage, 3, message);
+      insertMessage.bindLong(4, viewed);
+      insertMessage.executeInsert();
+    }
+
+    @Override
+    public void removed(int table, int id, int otherId) {
+      String[] key = {String.valueOf(id)};
+
+      switch (table) {
+        case SnapshotWriter.ACCOUNT_TYPE:
+          sqLiteDatabase.delete("ACCOUNTTYPES", "ID = ?", key);
+          break;
+        case SnapshotWriter.ROLE:
+          sqLiteDatabase.delete("ROLES", "ID = ?", key);
+          break;
+        case SnapshotWriter.USER:
+          sqLiteDatabase.delete("USERS", "ID = ?", key);
+          sqLiteDatabase.delete("USERPW", "USERID = ?", key);
+          break;
+        case SnapshotWriter.ACCOUNT:
+          sqLiteDatabase.delete("ACCOUNTS", "ID = ?", key);
+          break;
+        case SnapshotWriter.USER_ACCOUNT:
+          sqLiteDatabase.delete("USERACCOUNT", "USERID = ? AND ACCOUNTID = ?",
+              new String[] {String.valueOf(id), String.valueOf(otherId)});
+          break;
+        case SnapshotWriter.MESSAGE:
+          sqLiteDatabase.delete("USERMESSAGES", "ID = ?", key);
+          break;
+        default:
+          // Tables added by later versions are skipped
+      }
+    }
+
+    /**
+     * Builds the indexes and the running total and commits everything that was loaded.
+     */
+    public void finish() {
+      if (!merge) {
+        createUsersRoleIndex(sqLiteDatabase);
+        createAccountOwnersIndex(sqLiteDatabase);
+        createInboxIndex(sqLiteDatabase);
+        rebuildMessageSearch(sqLiteDatabase);
+        createMessageSearchTriggers(sqLiteDatabase);
+        createBankTotal(sqLiteDatabase);
+        createChangeTriggers(sqLiteDatabase);
+      }
+      sqLiteDatabase.setTransactionSuccessful();
+      close();
+    }
+
+    /**
+     * Ends the load. Unless it was finished, nothing that was loaded is kept.
+     */
+    @Override
+    public void close() {
+      if (!open) {
+        return;
+      }
+      open = false;
+
+      SQLiteStatement[] statements = {insertAccountType, insertRole, insertUser, deletePassword,
+          insertPassword, updateAccount, insertAccount, insertUserAccount, updateMessage,
+          insertMessage};
+      for (SQLiteStatement statement : statements) {
+        if (statement != null) {
+          statement.close();
+        }
+      }
+      sqLiteDatabase.endTransaction();
+    }
+
+    private void bindString(SQLiteStatement statement, int index, String value) {
+      if (value == null) {
+        statement.bindNull(index);
+      } else {
+        statement.bindString(index, value);
+      }
+    }
+  }
 }
@@ -6,12 +6,16 @@ import android.database.sqlite.SQLiteDatabase;
 import com.bank.accounts.Account;
 import com.bank.accounts.BalanceOwingAccount;
 import com.bank.accounts.ChequingAccount;
+import com.bank.accounts.Money;
 import com.bank.accounts.RestrictedSavingsAccount;
 import com.bank.accounts.SavingsAccount;
 import com.bank.accounts.Tfsa;
+import com.bank.generics.AccountMap;
 import com.bank.generics.AccountTypes;
+import com.bank.generics.RoleMap;
 import com.bank.generics.Roles;
 import com.bank.messages.Message;
+import com.bank.messages.MessageSearch;
 import com.bank.users.Admin;
 import com.bank.users.Customer;
 import com.bank.users.Teller;
@@ -19,7 +23,10 @@ import com.bank.users.User;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Created by byron on 2017-07-27.
@@ -54,10 +61,12 @@ public class DatabaseHelper extends DatabaseDriverA {
    * If a database already exists, reinitialize it.
    */
   public void reinitializeDatabase() {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     SQLiteDatabase sqLiteDatabase = db.getWritableDatabase();
-    db.onUpgrade(sqLiteDatabase, 1, 1);
-    db.close();
+    db.resetDatabase(sqLiteDatabase);
+    db.release();
+    AccountMap.invalidate();
+    RoleMap.invalidate();
   }
   //endregion
 
@@ -66,7 +75,7 @@ public class DatabaseHelper extends DatabaseDriverA {
    * Inserts the userRoles to the database.
    */
   public long insertRole(String role) {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     long roleId = -1;
 
     if (!this.getRoleList().contains(role)) {
@@ -79,22 +88,25 @@ public class DatabaseHelper extends DatabaseDriverA {
       roleId = db.insertRole(role);
     }
 
-    db.close();
+    db.release();
+    if (roleId != -1) {
+      RoleMap.invalidate();
+    }
     return roleId;
   }
 
   /**
    * Inserts the account into the database.
    */
-  public long insertAccount(String name, BigDecimal balance, int typeId) {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+  public long insertAccount(String name, Money balance, int typeId) {
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     long id = -1;
 
-    if (balance.scale() == 2 && !name.isEmpty() && this.getAccountTypeIds().contains(typeId)) {
+    if (balance != null && !name.isEmpty() && this.getAccountTypeIds().contains(typeId)) {
       id = db.insertAccount(name, balance, typeId);
     }
 
-    db.close();
+    db.release();
     return id;
   }
 
@@ -102,14 +114,14 @@ public class DatabaseHelper extends DatabaseDriverA {
    * Insert a new user/account relationship.
    */
   public long insertUserAccount(int userId, int accountId) {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     long id = -1;
 
     if (this.getUserIds().contains(userId)) {
       id = db.insertUserAccount(userId, accountId);
     }
 
-    db.close();
+    db.release();
     return id;
   }
 
@@ -117,7 +129,7 @@ public class DatabaseHelper extends DatabaseDriverA {
    * Inserts the account types into the database.
    */
   public long insertAccountType(String type, BigDecimal interestRate) {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     long id = -1;
 
     try {
@@ -125,11 +137,9 @@ public class DatabaseHelper extends DatabaseDriverA {
         // will throw exception if account type is not in enum
         AccountTypes.valueOf(type);
 
-        for (int typeId : this.getAccountTypeIds()) {
-          if (db.getAccountTypeName(typeId).equals(type)) {
-            // throw exception if account type already exists
-            throw new Exception();
-          }
+        if (AccountMap.getInstance(context).getTypeId(type) != -1) {
+          // throw exception if account type already exists
+          throw new Exception();
         }
       }
 
@@ -138,7 +148,10 @@ public class DatabaseHelper extends DatabaseDriverA {
       // method will return -1
     }
 
-    db.close();
+    db.release();
+    if (id != -1) {
+      AccountMap.invalidate();
+    }
     return id;
   }
 
@@ -146,7 +159,7 @@ public class DatabaseHelper extends DatabaseDriverA {
    * Inserts a new user into the database.
    */
   public long insertNewUser(String name, int age, String address, int roleId, String password) {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     long id = -1;
 
     if (!name.isEmpty() && age >= 0 && address.length() <= 100 && !address.isEmpty()
@@ -155,7 +168,7 @@ public class DatabaseHelper extends DatabaseDriverA {
       id = db.insertNewUser(name, age, address, roleId, password);
     }
 
-    db.close();
+    db.release();
     return id;
   }
 
@@ -163,16 +176,54 @@ public class DatabaseHelper extends DatabaseDriverA {
    * Inserts a message into the database.
    */
   public long insertMessage(int userId, String message) {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     long messageId = -1;
 
     if (!message.isEmpty() && message.length() <= 512 && this.getUserIds().contains(userId)) {
       messageId = db.insertMessage(userId, message);
     }
 
-    db.close();
+    db.release();
     return messageId;
   }
+
+  /**
+   * Inserts messages into the database in one transaction. Messages that are empty, too long or
+   * for a user that doesn't exist are left out.
+   * @param messages the messages, with the user each is for
+   * @return the number of messages inserted, or -1 if they could not be written
+   */
+  public int insertMessages(List<Message> messages) {
+    int[] recipients = new int[messages.size()];
+    String[] contents = new String[messages.size()];
+    int count = 0;
+
+    for (Message message : messages) {
+      String content = message.getMessage();
+      if (!content.isEmpty() && content.length() <= 512) {
+        recipients[count] = message.getUserId();
+        contents[count] = content;
+        count++;
+      }
+    }
+
+    if (count == 0) {
+      return 0;
+    }
+
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    int inserted = -1;
+
+    try {
+      inserted = db.insertMessages(Arrays.copyOf(recipients, count),
+          Arrays.copyOf(contents, count));
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+
+    db.release();
+    return inserted;
+  }
   //endregion
 
   //region Selectors
@@ -182,7 +233,7 @@ public class DatabaseHelper extends DatabaseDriverA {
    * @return name of the role
    */
   public String getRoleName(int roleId) {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     String roleName = null;
 
     try {
@@ -191,7 +242,7 @@ public class DatabaseHelper extends DatabaseDriverA {
       // method will return null if role does not exist
     }
 
-    db.close();
+    db.release();
     return roleName;
   }
 
@@ -200,7 +251,7 @@ public class DatabaseHelper extends DatabaseDriverA {
    * @return list of roleIds
    */
   public List<Integer> getRoleIds() {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     Cursor cursor = db.getRoles();
     List<Integer> roles = new ArrayList<>();
 
@@ -211,7 +262,7 @@ public class DatabaseHelper extends DatabaseDriverA {
     }
 
     cursor.close();
-    db.close();
+    db.release();
     return roles;
   }
   
@@ -220,7 +271,7 @@ public class DatabaseHelper extends DatabaseDriverA {
    * @return a list of roles
    */
   public List<String> getRoleList() {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     Cursor cursor = db.getRoles();
     List<String> roles = new ArrayList<>();
 
@@ -231,7 +282,7 @@ public class DatabaseHelper extends DatabaseDriverA {
     }
 
     cursor.close();
-    db.close();
+    db.release();
     return roles;
   }
 
@@ -240,7 +291,7 @@ public class DatabaseHelper extends DatabaseDriverA {
    * @return list of AccountTypeIds
    */
   public List<Integer> getAccountTypeIds() {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     Cursor cursor = db.getAccountTypesId();
     List<Integer> types = new ArrayList<>();
 
@@ -251,16 +302,77 @@ public class DatabaseHelper extends DatabaseDriverA {
     }
 
     cursor.close();
-    db.close();
+    db.release();
+    return types;
+  }
+
+  /**
+   * Gets the name of every account type by ID, in one query.
+   * @return the names by ID, in the order of their IDs
+   */
+  public Map<Integer, String> getAccountTypeNames() {
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    Cursor cursor = db.getAccountTypesDetails();
+    Map<Integer, String> types = new LinkedHashMap<>();
+
+    int idColumn = cursor.getColumnIndex("ID");
+    int nameColumn = cursor.getColumnIndex("NAME");
+    while (cursor.moveToNext()) {
+      types.put(cursor.getInt(idColumn), cursor.getString(nameColumn));
+    }
+
+    cursor.close();
+    db.release();
     return types;
   }
 
+  /**
+   * Gets the interest rate of every account type by ID, in one query.
+   * @return the interest rates by ID
+   */
+  public Map<Integer, BigDecimal> getInterestRates() {
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    Cursor cursor = db.getAccountTypesDetails();
+    Map<Integer, BigDecimal> rates = new LinkedHashMap<>();
+
+    int idColumn = cursor.getColumnIndex("ID");
+    int rateColumn = cursor.getColumnIndex("INTERESTRATE");
+    while (cursor.moveToNext()) {
+      String rate = cursor.getString(rateColumn);
+      rates.put(cursor.getInt(idColumn), rate == null ? null : new BigDecimal(rate));
+    }
+
+    cursor.close();
+    db.release();
+    return rates;
+  }
+
+  /**
+   * Gets the name of every role by ID, in one query.
+   * @return the names by ID
+   */
+  public Map<Integer, String> getRoleNames() {
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    Cursor cursor = db.getRoles();
+    Map<Integer, String> roles = new LinkedHashMap<>();
+
+    int idColumn = cursor.getColumnIndex("ID");
+    int nameColumn = cursor.getColumnIndex("NAME");
+    while (cursor.moveToNext()) {
+      roles.put(cursor.getInt(idColumn), cursor.getString(nameColumn));
+    }
+
+    cursor.close();
+    db.release();
+    return roles;
+  }
+
   /**
    * Gets a list of UserIds.
    * @return list of userids
    */
   public List<Integer> getUserIds() {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     Cursor cursor = db.getUsersDetails();
     List<Integer> userIds = new ArrayList<>();
 
@@ -271,7 +383,7 @@ public class DatabaseHelper extends DatabaseDriverA {
     }
 
     cursor.close();
-    db.close();
+    db.release();
     return userIds;
   }
 
@@ -279,7 +391,7 @@ public class DatabaseHelper extends DatabaseDriverA {
    * Gets the password of the given user.
    */
   public String getPassword(int userId) {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     String password = null;
 
     try {
@@ -288,7 +400,7 @@ public class DatabaseHelper extends DatabaseDriverA {
       // method will return null if user does not exist
     }
 
-    db.close();
+    db.release();
     return password;
   }
 
@@ -298,7 +410,7 @@ public class DatabaseHelper extends DatabaseDriverA {
   * @return User oject of the user
   */
   public User getUserObject(int userId) {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     Cursor cursor = null;
     User user = null;
 
@@ -310,55 +422,95 @@ public class DatabaseHelper extends DatabaseDriverA {
 
     // Creating the User
     if (cursor != null && cursor.moveToFirst()) {
+      int roleId = cursor.getInt(cursor.getColumnIndex("ROLEID"));
+      user = makeUser(this.getRoleName(roleId), cursor);
+    }
+
+    if (cursor != null) {
+      cursor.close();
+    }
+    db.release();
+    return user;
+  }
+  
+  /**
+   * Gets one page of the users with the given role, ordered by ID.
+   * @param roleId id of the role
+   * @param offset the number of users skipped
+   * @param limit the most users returned, or a negative number for all of them
+   * @return list of the users, empty if there are none
+   */
+  public List<User> getUsersByRole(int roleId, int offset, int limit) {
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    String roleName = this.getRoleName(roleId);
+    Cursor cursor = null;
+    List<User> users = new ArrayList<>();
+
+    try {
+      cursor = db.getUsersDetailsByRole(roleId, offset, limit);
+    } catch (Exception e) {
+      // method will return an empty list
+    }
+
+    if (cursor != null && roleName != null && cursor.moveToFirst()) {
       do {
-        String name = cursor.getString(cursor.getColumnIndex("NAME"));
-        int roleId = cursor.getInt(cursor.getColumnIndex("ROLEID"));
-        String roleName = this.getRoleName(roleId);
-        int age = cursor.getInt(cursor.getColumnIndex("AGE"));
-        String address = cursor.getString(cursor.getColumnIndex("ADDRESS"));
-        switch (roleName) {
-          case "ADMIN":
-            user = new Admin(
-                this.context,
-                userId,
-                name,
-                age,
-                address);
-            break;
-          case "TELLER":
-            user = new Teller(
-                this.context,
-                userId,
-                name,
-                age,
-                address);
-            break;
-          case "CUSTOMER":
-            user = new Customer(
-                this.context,
-                userId,
-                name,
-                age,
-                address);
-            break;
-          default:
-            // SQLException would have been thrown if an ID was invalid
-        }
+        users.add(makeUser(roleName, cursor));
       } while (cursor.moveToNext());
     }
 
-    cursor.close();
-    db.close();
+    if (cursor != null) {
+      cursor.close();
+    }
+    db.release();
+    return users;
+  }
+
+  private User makeUser(String roleName, Cursor cursor) {
+    int userId = cursor.getInt(cursor.getColumnIndex("ID"));
+    String name = cursor.getString(cursor.getColumnIndex("NAME"));
+    int age = cursor.getInt(cursor.getColumnIndex("AGE"));
+    String address = cursor.getString(cursor.getColumnIndex("ADDRESS"));
+    User user = null;
+
+    switch (roleName) {
+      case "ADMIN":
+        user = new Admin(
+            this.context,
+            userId,
+            name,
+            age,
+            address);
+        break;
+      case "TELLER":
+        user = new Teller(
+            this.context,
+            userId,
+            name,
+            age,
+            address);
+        break;
+      case "CUSTOMER":
+        user = new Customer(
+            this.context,
+            userId,
+            name,
+            age,
+            address);
+        break;
+      default:
+        // SQLException would have been thrown if an ID was invalid
+    }
+
     return user;
   }
-  
+
   /**
    * Gets a list of the UserAccountIds.
    * @param userId of the user
    * @return a list of the user's account Ids
    */
   public List<Integer> getUsersAccIds(int userId) {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     Cursor cursor = null;
     List<Integer> accountIds = null;
 
@@ -376,8 +528,10 @@ public class DatabaseHelper extends DatabaseDriverA {
       // method will return null if user doesn't exist
     }
 
-    cursor.close();
-    db.close();
+    if (cursor != null) {
+      cursor.close();
+    }
+    db.release();
     return accountIds;
   }
 
@@ -385,7 +539,7 @@ public class DatabaseHelper extends DatabaseDriverA {
    * Gets the roletype of the specified user.
    */
   public int getUserRole(int userId) {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     int role = -1;
 
     try {
@@ -394,17 +548,66 @@ public class DatabaseHelper extends DatabaseDriverA {
       // method will return null if user does not exist
     }
 
-    db.close();
+    db.release();
     return role;
   }
 
+  /**
+   * Gets the IDs of the users who own the given account.
+   * @param accountId id of the account
+   * @return a list of the owners' IDs, empty if the account has none
+   */
+  public List<Integer> getAccountOwners(int accountId) {
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    Cursor cursor = null;
+    List<Integer> userIds = new ArrayList<>();
+
+    try {
+      cursor = db.getOwnerIds(accountId);
+
+      if (cursor.moveToFirst()) {
+        do {
+          userIds.add(cursor.getInt(cursor.getColumnIndex("USERID")));
+        } while (cursor.moveToNext());
+      }
+    } catch (Exception e) {
+      // method will return an empty list
+    }
+
+    if (cursor != null) {
+      cursor.close();
+    }
+    db.release();
+    return userIds;
+  }
+
+  /**
+   * Checks whether a user owns an account.
+   * @param userId id of the user
+   * @param accountId id of the account
+   * @return true if the user owns the account, false otherwise
+   */
+  public boolean isOwner(int userId, int accountId) {
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    boolean owner = false;
+
+    try {
+      owner = db.isOwner(userId, accountId);
+    } catch (Exception e) {
+      // method will return false
+    }
+
+    db.release();
+    return owner;
+  }
+
   /**
    * Gets an account object with the given accountId.
    * @param accountId id of the desired account
    * @return Account object of the desired account
    */
   public Account getAccountObject(int accountId) {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     Cursor cursor = null;
     Account account = null;
 
@@ -415,53 +618,100 @@ public class DatabaseHelper extends DatabaseDriverA {
     }
 
     // Creating the Account
+    if (cursor != null && cursor.moveToFirst()) {
+      String name = cursor.getString(cursor.getColumnIndex("NAME"));
+      Money balance = Money.ofCents(cursor.getLong(cursor.getColumnIndex("BALANCE")));
+      String typeName = this.getAccountTypeName(cursor.getInt(cursor.getColumnIndex("TYPE")));
+      account = makeAccount(typeName, accountId, name, balance);
+    }
+
+    if (cursor != null) {
+      cursor.close();
+    }
+    db.release();
+    return account;
+  }
+
+  /**
+   * Gets every account of the given user with one query.
+   * @param userId id of the user
+   * @return list of the user's accounts ordered by ID, empty if there are none
+   */
+  public List<Account> getUserAccounts(int userId) {
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    Cursor cursor = null;
+    List<Account> accounts = new ArrayList<>();
+
+    try {
+      cursor = db.getUserAccountsDetails(userId);
+    } catch (Exception e) {
+      // method will return an empty list
+    }
+
     if (cursor != null && cursor.moveToFirst()) {
       do {
-        String name = cursor.getString(cursor.getColumnIndex("NAME"));
-        BigDecimal balance = new BigDecimal(cursor.getString(cursor.getColumnIndex("BALANCE")));
-
-        switch (this.getAccountTypeName(cursor.getInt(cursor.getColumnIndex("TYPE")))) {
-          case "CHEQUING":
-            account = new ChequingAccount(
-                this.context,
-                accountId,
-                name,
-                balance);
-            break;
-          case "SAVING":
-            account = new SavingsAccount(
-                this.context,
-                accountId,
-                name,
-                balance);
-            break;
-          case "TFSA":
-            account = new Tfsa(
-                this.context,
-                accountId,
-                name,
-                balance);
-            break;
-          case "RESTRICTEDSAVING":
-            account = new RestrictedSavingsAccount(
-                this.context,
-                accountId,
-                name,
-                balance);
-            break;
-          case "BALANCEOWING":
-            account = new BalanceOwingAccount(
-                this.context,
-                accountId,
-                name,
-                balance);
-            break;
-          default:
-            // SQLException would have been thrown if an ID was invalid
+        Account account = makeAccount(
+            cursor.getString(cursor.getColumnIndex("TYPENAME")),
+            cursor.getInt(cursor.getColumnIndex("ID")),
+            cursor.getString(cursor.getColumnIndex("NAME")),
+            Money.ofCents(cursor.getLong(cursor.getColumnIndex("BALANCE"))));
+
+        if (account != null) {
+          accounts.add(account);
         }
       } while (cursor.moveToNext());
     }
 
+    if (cursor != null) {
+      cursor.close();
+    }
+    db.release();
+    return accounts;
+  }
+
+  private Account makeAccount(String typeName, int accountId, String name, Money balance) {
+    Account account = null;
+
+    switch (typeName) {
+      case "CHEQUING":
+        account = new ChequingAccount(
+            this.context,
+            accountId,
+            name,
+            balance);
+        break;
+      case "SAVING":
+        account = new SavingsAccount(
+            this.context,
+            accountId,
+            name,
+            balance);
+        break;
+      case "TFSA":
+        account = new Tfsa(
+            this.context,
+            accountId,
+            name,
+            balance);
+        break;
+      case "RESTRICTEDSAVING":
+        account = new RestrictedSavingsAccount(
+            this.context,
+            accountId,
+            name,
+            balance);
+        break;
+      case "BALANCEOWING":
+        account = new BalanceOwingAccount(
+            this.context,
+            accountId,
+            name,
+            balance);
+        break;
+      default:
+        // SQLException would have been thrown if an ID was invalid
+    }
+
     return account;
   }
 
@@ -469,7 +719,7 @@ public class DatabaseHelper extends DatabaseDriverA {
    * Gets the accounttype of the given accountId.
    */
   public int getAccountType(int accountId) {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     int type = -1;
 
     try {
@@ -478,7 +728,7 @@ public class DatabaseHelper extends DatabaseDriverA {
       // method will return null if account does not exist
     }
 
-    db.close();
+    db.release();
     return type;
   }
 
@@ -486,25 +736,16 @@ public class DatabaseHelper extends DatabaseDriverA {
    * Gets the name of the given accounttype.
    */
   public String getAccountTypeName(int typeId) {
-    DatabaseDriverA db = new DatabaseDriverA(context);
-    String name = null;
-
-    try {
-      name = db.getAccountTypeName(typeId);
-    } catch (Exception e) {
-      // method will return null if account type doesn't exist
-    }
-
-    db.close();
-    return name;
+    // Account types hardly ever change, so they are read from the database once
+    return AccountMap.getInstance(context).getTypeName(typeId);
   }
 
   /**
    * Gets the balace of the given accountId.
    */
-  public BigDecimal getBalance(int accountId) {
-    DatabaseDriverA db = new DatabaseDriverA(context);
-    BigDecimal balance = null;
+  public Money getBalance(int accountId) {
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    Money balance = null;
 
     try {
       balance = db.getBalance(accountId);
@@ -512,7 +753,7 @@ public class DatabaseHelper extends DatabaseDriverA {
       // method will return null if account doesn't exist
     }
 
-    db.close();
+    db.release();
     return balance;
   }
 
@@ -520,17 +761,99 @@ public class DatabaseHelper extends DatabaseDriverA {
    * Gets the interestrate of the accounttype.
    */
   public BigDecimal getInterestRate(int type) {
-    DatabaseDriverA db = new DatabaseDriverA(context);
-    BigDecimal interestRate = null;
+    return AccountMap.getInstance(context).getInterestRate(type);
+  }
+
+  /**
+   * Gets the total balance of every account that has an owner, kept up to date by the database.
+   */
+  public Money getTotalBalance() {
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    Money total = null;
+
+    try {
+      total = db.getTotalBalance();
+    } catch (Exception e) {
+      // method will return null if the total could not be read
+    }
+
+    db.release();
+    return total;
+  }
+
+  /**
+   * Gets the total balance of the accounts of the given user.
+   */
+  public Money getUserTotalBalance(int userId) {
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    Money total = null;
+
+    try {
+      total = db.getUserTotalBalance(userId);
+    } catch (Exception e) {
+      // method will return null if the total could not be read
+    }
+
+    db.release();
+    return total;
+  }
+
+  /**
+   * Gets the total balance of the owned accounts of each account type, by type name.
+   */
+  public Map<String, Money> getTotalBalanceByType() {
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    Cursor cursor = null;
+    Map<String, Money> totals = null;
+
+    try {
+      cursor = db.getTotalsByType();
+      totals = readTotals(cursor);
+    } catch (Exception e) {
+      // method will return null if the totals could not be read
+    }
+
+    if (cursor != null) {
+      cursor.close();
+    }
+    db.release();
+    return totals;
+  }
+
+  /**
+   * Gets the total balance of the accounts owned by users of each role, by role name.
+   */
+  public Map<String, Money> getTotalBalanceByRole() {
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    Cursor cursor = null;
+    Map<String, Money> totals = null;
 
     try {
-      interestRate = db.getInterestRate(type);
+      cursor = db.getTotalsByRole();
+      totals = readTotals(cursor);
     } catch (Exception e) {
-      // method will return null if account type doesn't exist
+      // method will return null if the totals could not be read
     }
 
-    db.close();
-    return interestRate;
+    if (cursor != null) {
+      cursor.close();
+    }
+    db.release();
+    return totals;
+  }
+
+  private static Map<String, Money> readTotals(Cursor cursor) {
+    Map<String, Money> totals = new LinkedHashMap<>();
+
+    if (cursor.moveToFirst()) {
+      int nameIndex = cursor.getColumnIndex("NAME");
+      int totalIndex = cursor.getColumnIndex("TOTAL");
+      do {
+        totals.put(cursor.getString(nameIndex), Money.ofCents(cursor.getLong(totalIndex)));
+      } while (cursor.moveToNext());
+    }
+
+    return totals;
   }
 
   /**
@@ -539,39 +862,169 @@ public class DatabaseHelper extends DatabaseDriverA {
    * @return list of messages
    */
   public List<Message> getMessageList(int userId) {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     Cursor cursor = null;
     List<Message> messages = null;
 
     try {
       cursor = db.getAllMessages(userId);
+      messages = readMessages(cursor);
+    } catch (Exception e) {
+      // method will return null if user doesn't exist
+    }
 
-      messages = new ArrayList<>();
-      if (cursor != null && cursor.moveToFirst()) {
-        do {
-          int messageId = cursor.getInt(cursor.getColumnIndex("ID"));
-          int userMsgId = cursor.getInt(cursor.getColumnIndex("USERID"));
-          String messageStr = cursor.getString(cursor.getColumnIndex("MESSAGE"));
-          int viewed = cursor.getInt(cursor.getColumnIndex("VIEWED"));
+    if (cursor != null) {
+      cursor.close();
+    }
+    db.release();
+    return messages;
+  }
+
+  /**
+   * Gets a page of the messages of a user, newest first. The next page starts after the last
+   * message of this one, so no page reads the messages before it.
+   * @param userId id of the user we are getting messages from
+   * @param afterId id of the last message of the previous page, 0 for the first page
+   * @param limit the most messages on the page
+   * @return the messages on the page, null if they could not be read
+   */
+  public List<Message> getMessageList(int userId, int afterId, int limit) {
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    Cursor cursor = null;
+    List<Message> messages = null;
+
+    try {
+      cursor = db.getMessagesPage(userId, afterId > 0 ? afterId : Long.MAX_VALUE, limit);
+      messages = readMessages(cursor);
+    } catch (Exception e) {
+      // method will return null if the messages could not be read
+    }
 
-          Message message = new Message(messageId, userMsgId, messageStr, viewed);
-          messages.add(message);
+    if (cursor != null) {
+      cursor.close();
+    }
+    db.release();
+    return messages;
+  }
+
+  /**
+   * Searches the messages for the given words, best matches first. A message matches if it has
+   * every word, and matches rank higher the more often they have the words that are rare.
+   * @param query the words to search for
+   * @param userId only the messages of this user are searched, all messages if it is 0 or less
+   * @param limit the most messages found
+   * @return the messages found, null if they could not be searched
+   */
+  public List<Message> searchMessages(String query, int userId, int limit) {
+    String match = MessageSearch.toMatchQuery(query);
+    if (match == null || limit <= 0) {
+      return new ArrayList<>();
+    }
+
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    Cursor cursor = null;
+    List<Message> messages = null;
+
+    try {
+      MessageSearch search = new MessageSearch(limit);
+      cursor = db.searchMessages(match, userId);
+      if (cursor.moveToFirst()) {
+        int idIndex = cursor.getColumnIndex("ID");
+        int matchinfoIndex = cursor.getColumnIndex("MATCHINFO");
+        do {
+          search.add(cursor.getInt(idIndex), cursor.getBlob(matchinfoIndex));
         } while (cursor.moveToNext());
       }
+      cursor.close();
+
+      // Only the messages that made the cut are read
+      messages = new ArrayList<>();
+      for (int messageId : search.getMessageIds()) {
+        cursor = db.getMessageDetails(messageId);
+        messages.addAll(readMessages(cursor));
+        cursor.close();
+      }
+      cursor = null;
     } catch (Exception e) {
-      // method will return null if user doesn't exist
+      // method will return null if the messages could not be searched
+      messages = null;
     }
 
-    cursor.close();
-    db.close();
+    if (cursor != null) {
+      cursor.close();
+    }
+    db.release();
     return messages;
   }
 
+  /**
+   * Counts the messages of a user that were not read yet.
+   * @param userId id of the user
+   * @return the number of unread messages, 0 if they could not be counted
+   */
+  public long countUnread(int userId) {
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    long unread = 0;
+
+    try {
+      unread = db.countUnread(userId);
+    } catch (Exception e) {
+      // method will return 0 if the messages could not be counted
+    }
+
+    db.release();
+    return unread;
+  }
+
+  private static List<Message> readMessages(Cursor cursor) {
+    List<Message> messages = new ArrayList<>();
+
+    if (cursor != null && cursor.moveToFirst()) {
+      int idIndex = cursor.getColumnIndex("ID");
+      int userIdIndex = cursor.getColumnIndex("USERID");
+      int messageIndex = cursor.getColumnIndex("MESSAGE");
+      int viewedIndex = cursor.getColumnIndex("VIEWED");
+      do {
+        messages.add(new Message(cursor.getInt(idIndex), cursor.getInt(userIdIndex),
+            cursor.getString(messageIndex), cursor.getInt(viewedIndex)));
+      } while (cursor.moveToNext());
+    }
+
+    return messages;
+  }
+
+  /**
+   * Gets the message with the given messageId, with who it is for and whether it was read.
+   * @param messageId id of the message
+   * @return the message, null if it doesn't exist
+   */
+  public Message getMessage(int messageId) {
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    Cursor cursor = null;
+    Message message = null;
+
+    try {
+      cursor = db.getMessageDetails(messageId);
+      List<Message> messages = readMessages(cursor);
+      if (!messages.isEmpty()) {
+        message = messages.get(0);
+      }
+    } catch (Exception e) {
+      // method will return null if the message could not be read
+    }
+
+    if (cursor != null) {
+      cursor.close();
+    }
+    db.release();
+    return message;
+  }
+
   /**
    * Get a specific message with the given messageId.
    */
   public String getSpecificMessage(int messageId) {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     String message = null;
 
     try {
@@ -580,7 +1033,7 @@ public class DatabaseHelper extends DatabaseDriverA {
       // method will return null if message doesn't exist
     }
 
-    db.close();
+    db.release();
     return message;
   }
 
@@ -590,11 +1043,11 @@ public class DatabaseHelper extends DatabaseDriverA {
   /**
    * Updates the given account's balance to the given balance amount.
    */
-  public boolean updateAccountBalance(BigDecimal balance, int accountId) {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+  public boolean updateAccountBalance(Money balance, int accountId) {
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     boolean success = false;
 
-    if (balance.scale() == 2) {
+    if (balance != null) {
       try {
         success = db.updateAccountBalance(balance, accountId);
       } catch (Exception e) {
@@ -602,7 +1055,7 @@ public class DatabaseHelper extends DatabaseDriverA {
       }
     }
 
-    db.close();
+    db.release();
     return success;
   }
 
@@ -610,7 +1063,7 @@ public class DatabaseHelper extends DatabaseDriverA {
    * Updates the given user's message status.
    */
   public boolean updateUserMessageState(int messageId) {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     boolean updated = false;
 
     try {
@@ -619,10 +1072,80 @@ public class DatabaseHelper extends DatabaseDriverA {
       // method will return false if message doesn't exist
     }
 
-    db.close();
+    db.release();
     return updated;
   }
 
+  /**
+   * Marks every unread message of a user that was listed as read, in one update. Messages that
+   * came in after the list was read are left unread.
+   * @param userId id of the user
+   * @param messages every message of the user, as listed to them
+   * @return the number of messages marked, 0 if none could be
+   */
+  public int markAllViewed(int userId, List<Message> messages) {
+    int lastMessageId = 0;
+    for (Message message : messages) {
+      lastMessageId = Math.max(lastMessageId, message.getId());
+    }
+    if (lastMessageId == 0) {
+      return 0;
+    }
+
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    int marked = 0;
+
+    try {
+      marked = db.markAllViewed(userId, lastMessageId);
+    } catch (Exception e) {
+      // method will return 0 if the messages could not be marked
+    }
+
+    db.release();
+    return marked;
+  }
+
+  /**
+   * Marks the given messages as read, all at once.
+   * @param messageIds ids of the messages
+   * @return the number of messages marked, 0 if none could be
+   */
+  public int markViewed(int[] messageIds) {
+    if (messageIds.length == 0) {
+      return 0;
+    }
+
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    int marked = 0;
+
+    try {
+      marked = db.markViewed(messageIds);
+    } catch (Exception e) {
+      // method will return 0 if the messages could not be marked
+    }
+
+    db.release();
+    return marked;
+  }
+
+  /**
+   * Marks the messages of a list that were not read yet as read, all at once.
+   * @param messages the messages
+   * @return the number of messages marked, 0 if none could be
+   */
+  public int markViewed(List<Message> messages) {
+    int[] unread = new int[messages.size()];
+    int count = 0;
+
+    for (Message message : messages) {
+      if (message.getViewed() == 0) {
+        unread[count++] = message.getId();
+      }
+    }
+
+    return markViewed(Arrays.copyOf(unread, count));
+  }
+
   /**
    * Updates the name of the given user.
    * @param userId id of the user whos name is being updated
@@ -630,7 +1153,7 @@ public class DatabaseHelper extends DatabaseDriverA {
    * @return true if success, false otherwise
    */
   public boolean updateUserName(int userId, String name) {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     boolean updated = false;
 
     if (!name.isEmpty()) {
@@ -641,7 +1164,7 @@ public class DatabaseHelper extends DatabaseDriverA {
       }
     }
 
-    db.close();
+    db.release();
     return updated;
   }
 
@@ -652,7 +1175,7 @@ public class DatabaseHelper extends DatabaseDriverA {
    * @return true if success, false otherwise
    */
   public boolean updateUserAge(int userId, int age) {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     boolean updated = false;
 
     if (age >= 0) {
@@ -663,7 +1186,7 @@ public class DatabaseHelper extends DatabaseDriverA {
       }
     }
 
-    db.close();
+    db.release();
     return updated;
   }
 
@@ -674,7 +1197,7 @@ public class DatabaseHelper extends DatabaseDriverA {
    * @return true if success, false otherwise
    */
   public boolean updateUserAddress(int userId, String address) {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     boolean updated = false;
 
     if (address.length() <= 100) {
@@ -685,7 +1208,7 @@ public class DatabaseHelper extends DatabaseDriverA {
       }
     }
 
-    db.close();
+    db.release();
     return updated;
   }
 
@@ -696,7 +1219,7 @@ public class DatabaseHelper extends DatabaseDriverA {
    * @return true if success, false otherwise
    */
   public boolean updateUserPassword(int userId, String password) {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     boolean updated = false;
 
     if (!password.isEmpty()) {
@@ -707,7 +1230,7 @@ public class DatabaseHelper extends DatabaseDriverA {
       }
     }
 
-    db.close();
+    db.release();
     return updated;
   }
 
@@ -718,7 +1241,7 @@ public class DatabaseHelper extends DatabaseDriverA {
    * @return true if success, false otherwise
    */
   public boolean updateUserRole(int userId, int roleId) {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     boolean updated = false;
 
     if (this.getRoleIds().contains(roleId)) {
@@ -729,7 +1252,7 @@ public class DatabaseHelper extends DatabaseDriverA {
       }
     }
 
-    db.close();
+    db.release();
     return updated;
   }
 
@@ -740,7 +1263,7 @@ public class DatabaseHelper extends DatabaseDriverA {
    * @return true if success, false otherwise
    */
   public boolean updateAccountType(int accountId, int typeId) {
-    DatabaseDriverA db = new DatabaseDriverA(context);
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
     boolean success = false;
 
     if (this.getAccountTypeIds().contains(typeId)) {
@@ -751,7 +1274,7 @@ public class DatabaseHelper extends DatabaseDriverA {
       }
     }
 
-    db.close();
+    db.release();
     return success;
   }
   //endregion
@@ -1,143 +1,413 @@
 package com.bank.database.android;
 
 import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 
-import com.bank.database.android.BankData.AccTypeSer;
-import com.bank.database.android.BankData.AccountSer;
-import com.bank.database.android.BankData.RoleSer;
-import com.bank.database.android.BankData.UserAccSer;
-import com.bank.database.android.BankData.UserMsgSer;
-import com.bank.database.android.BankData.UserSer;
 import com.bank.generics.AccountMap;
 import com.bank.generics.RoleMap;
 import com.bank.users.User;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 public class DatabaseSerializer {
+  // Runs the backups started in the background, one at a time
+  private static final ExecutorService backupExecutor = Executors.newSingleThreadExecutor();
+
   private Context context;
   private DatabaseHelper dbHelper;
 
+  /**
+   * Told when a backup started in the background has finished.
+   */
+  public interface BackupListener {
+    /**
+     * Called once, on the thread the backup ran on.
+     * @param success true if the backup was written, false otherwise
+     */
+    public void onFinished(boolean success);
+  }
+
   public DatabaseSerializer(Context context) {
     this.context = context;
     this.dbHelper = new DatabaseHelper(context);
   }
 
   /**
-   * Serializes the database into database_copy.
+   * Serializes the database into database_copy. The previous copy is only replaced once the
+   * new one is complete.
    * @return true if database was serialized, false otherwise
    */
   public boolean serializeDatabase() {
+    return serializeDatabase(null);
+  }
+
+  /**
+   * Serializes the database into database_copy. The previous copy is only replaced once the
+   * new one is complete. The copy starts a new chain of backups, so the deltas written on top
+   * of the previous copy are deleted.
+   * @param listener told how far the copy has got, may be null
+   * @return true if database was serialized, false otherwise
+   */
+  public boolean serializeDatabase(BankData.ProgressListener listener) {
+    return serializeDatabase(0, listener);
+  }
+
+  /**
+   * Serializes the database into database_copy like {@link #serializeDatabase()}, on a
+   * background thread, writing the copy out no faster than the given rate. The tables are
+   * first copied from a snapshot as fast as they can be read, and the backup is written out
+   * from that copy, so tellers and ATMs are not held up however long the backup takes.
+   * Backups started this way run one at a time.
+   * @param bytesPerSecond the most bytes written in a second, 0 for no limit
+   * @param listener told how far the copy has got, on the background thread, may be null
+   * @return the result of the backup, true if database was serialized, false otherwise
+   */
+  public Future<Boolean> serializeDatabaseOnline(final long bytesPerSecond,
+      final BankData.ProgressListener listener) {
+    return backupExecutor.submit(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return serializeDatabase(bytesPerSecond, listener);
+      }
+    });
+  }
+
+  private boolean serializeDatabase(long bytesPerSecond, BankData.ProgressListener listener) {
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    File tablesFile = new File(context.getFilesDir(), "database_copy.tables");
+    DatabaseDriverA tables = null;
+
     try {
-      ObjectOutputStream outputStream;
-      File file = new File(context.getFilesDir(), "database_copy.ser");
-      FileOutputStream fileOutput = new FileOutputStream(file);
-      outputStream = new ObjectOutputStream(fileOutput);
-      BankData outputObj = new BankData(context);
-      outputStream.writeObject(outputObj);
-      outputStream.close();
+      long chainId = new Random().nextLong();
+      long toSeq;
+      // The snapshot is only held while its tables are copied, which is quick, so the
+      // write-ahead log can be checkpointed again while the backup is written out slowly
+      DatabaseDriverA snapshot = db.openSnapshot();
+      try {
+        // The copy holds exactly the changes logged up to the snapshot
+        toSeq = snapshot.getLastChange();
+        tables = snapshot.copyTables(tablesFile);
+      } finally {
+        snapshot.close();
+      }
+
+      writeCopy(getCopyFile(0), false, chainId, 0, toSeq, tables, bytesPerSecond, listener);
+      for (int delta = 1; getCopyFile(delta).delete(); delta++) {
+        // the deltas of the previous copy no longer apply
+      }
+      db.markBackedUp(chainId, toSeq, 0);
     } catch (Exception e) {
       e.printStackTrace();
       return false;
+    } finally {
+      if (tables != null) {
+        tables.close();
+      }
+      SQLiteDatabase.deleteDatabase(tablesFile);
+      db.release();
     }
     
     return true;
   }
-  
+
+  /**
+   * Serializes only the rows that changed since the last copy, as the next delta on top of
+   * database_copy. Falls back to a full copy if there is no copy to build on.
+   * @return true if the changes were serialized, false otherwise
+   */
+  public boolean serializeChanges() {
+    return serializeChanges(0);
+  }
+
+  /**
+   * Serializes the changes like {@link #serializeChanges()}, on a background thread, writing
+   * them out no faster than the given rate. Tellers and ATMs are not held up while it runs,
+   * even when it falls back to a full copy. The changes are read from a snapshot that is held
+   * while they are written, which only takes long if much has changed since the last backup.
+   * Runs one at a time with the other online backups.
+   * @param bytesPerSecond the most bytes written in a second, 0 for no limit
+   * @return the result of the backup, true if the changes were serialized, false otherwise
+   */
+  public Future<Boolean> serializeChangesOnline(long bytesPerSecond) {
+    return serializeChangesOnline(bytesPerSecond, null);
+  }
+
+  /**
+   * Serializes the changes like {@link #serializeChangesOnline(long)}, and tells the listener
+   * once they are, so nothing has to wait on the result.
+   * @param bytesPerSecond the most bytes written in a second, 0 for no limit
+   * @param listener told the result on the backup thread, may be null
+   * @return the result of the backup, true if the changes were serialized, false otherwise
+   */
+  public Future<Boolean> serializeChangesOnline(final long bytesPerSecond,
+      final BackupListener listener) {
+    return backupExecutor.submit(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        boolean success = false;
+        try {
+          success = serializeChanges(bytesPerSecond);
+        } finally {
+          if (listener != null) {
+            listener.onFinished(success);
+          }
+        }
+        return success;
+      }
+    });
+  }
+
+  private boolean serializeChanges(long bytesPerSecond) {
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    boolean fullCopy = true;
+
+    try {
+      Cursor cursor = db.getBackupState();
+      long chainId;
+      long fromSeq;
+      int deltas;
+      try {
+        if (!cursor.moveToFirst()) {
+          return serializeDatabase(bytesPerSecond, null);
+        }
+        chainId = cursor.getLong(cursor.getColumnIndex("CHAINID"));
+        fromSeq = cursor.getLong(cursor.getColumnIndex("SEQ"));
+        deltas = cursor.getInt(cursor.getColumnIndex("DELTAS"));
+      } finally {
+        cursor.close();
+      }
+
+      // The copy may have been replaced or deleted since
+      if (SnapshotReader.isSnapshot(getCopyFile(0))) {
+        SnapshotReader reader = new SnapshotReader(getCopyFile(0));
+        fullCopy = reader.getChainId() != chainId || reader.isDelta();
+        reader.close();
+      }
+
+      if (!fullCopy) {
+        long toSeq = db.getLastChange();
+        if (toSeq == fromSeq) {
+          return true;
+        }
+
+        writeCopy(getCopyFile(deltas + 1), true, chainId, fromSeq, toSeq, db, bytesPerSecond,
+            null);
+        db.markBackedUp(chainId, toSeq, deltas + 1);
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+      return false;
+    } finally {
+      db.release();
+    }
+
+    return !fullCopy || serializeDatabase(bytesPerSecond, null);
+  }
+
   /**
-   * Deserializes database_copy.ser
-   * @throws FileNotFoundException if database_copy.ser cannot be found
-   * @throws IOException if an I/O error occurs
-   * @throws ClassNotFoundException if class of a serialized object cannot be found.
+   * Replaces the database with the contents of database_copy.ser, followed by the deltas
+   * written on top of it. Copies written before snapshots were streamed are still read. The
+   * rows keep their IDs and are loaded in one transaction, so the database is left as it was
+   * if the copy cannot be restored. The next backup after a restore is a full copy.
+   * @return true if database was deserialized, false otherwise
    */
   public boolean deserializeDatabase() {
-    // Backing up the database
-    //copyDatabase("bank", "bank-backup");
+    File file = getCopyFile(0);
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    boolean completed = false;
     
     try {
-      File file = new File(context.getFilesDir(), "database_copy.ser");
-      ObjectInputStream inputStream = new ObjectInputStream(
-          new FileInputStream(file));
-      BankData bankData = (BankData) inputStream.readObject();
-      inputStream.close();
-      
-      // Clearing the existing database
-      dbHelper.reinitializeDatabase();
-      
-      // Adding account types and roles to the database
-      for (AccTypeSer accTypeSer : bankData.accountTypes) {
-        dbHelper.insertAccountType(accTypeSer.name, accTypeSer.interestRate);
-      }
-      
-      for (RoleSer roleSer : bankData.roles) {
-        dbHelper.insertRole(roleSer.name);
+      if (SnapshotReader.isSnapshot(file)) {
+        SnapshotReader reader = new SnapshotReader(file);
+
+        try {
+          DatabaseDriverA.BulkLoader loader = db.startBulkLoad();
+          try {
+            reader.read(loader);
+            for (File delta : getDeltas(reader.getChainId(), reader.getToSeq())) {
+              SnapshotReader deltaReader = new SnapshotReader(delta);
+              try {
+                deltaReader.read(loader);
+              } finally {
+                deltaReader.close();
+              }
+            }
+            loader.finish();
+          } finally {
+            loader.close();
+          }
+        } finally {
+          reader.close();
+        }
+      } else {
+        ObjectInputStream inputStream = new ObjectInputStream(new FileInputStream(file));
+        BankData bankData = (BankData) inputStream.readObject();
+        inputStream.close();
+
+        DatabaseDriverA.BulkLoader loader = db.startBulkLoad();
+        try {
+          bankData.replay(loader);
+          loader.finish();
+        } finally {
+          loader.close();
+        }
       }
-      
+      completed = true;
+    } catch (Exception e) {
+      e.printStackTrace();
+    } finally {
+      db.release();
+    }
+
+    if (completed) {
       // Updating the enum maps
       AccountMap.getInstance(context).updateMap();
       RoleMap.getInstance(context).updateMap();
-      
-      // Adding users and their password to the database
-      for (UserSer userSer : bankData.users) {
-        // Getting the role ID of the user's role in case it changed
-        int roleId = getNewRoleId(userSer.roleId, bankData);
-
-        dbHelper.insertNewUser(userSer.name, userSer.age, userSer.address,
-            roleId, "UNDEFINED");
-        dbHelper.updateUserPassword(userSer.password, userSer.id);
-      }
-  
-      // Inserting accounts into the database
-      for (AccountSer accSer : bankData.accounts) {
-        String name = accSer.name;
-        BigDecimal balance = accSer.balance;
-        // Getting the type ID of the account's type in case it was changed
-        int typeId = getNewTypeId(accSer.type, bankData);
-        
-        dbHelper.insertAccount(name, balance, typeId);
-      }
-      
-      // Inserting user accounts to the database
-      for (UserAccSer userAccSer : bankData.userAccounts) {
-        int userId = userAccSer.userId;
-        int accountId = userAccSer.accountId;
-        
-        dbHelper.insertUserAccount(userId, accountId);
-      }
-      
-      // Inserting user messages to the database
-      for (UserMsgSer userMsgSer : bankData.userMessages) {
-        int userId = userMsgSer.userId;
-        String message = userMsgSer.message;
-        int viewed = userMsgSer.viewed;
-        
-        dbHelper.insertMessage(userId, message);
-        // Updating the viewed status if it was viewed
-        if (viewed == 1) {
-          dbHelper.updateUserMessageState(userMsgSer.id);
+    }
+    
+    return completed;
+  }
+
+  /**
+   * Puts one user back the way the latest copy has them, along with the accounts they own and
+   * their messages. Only the parts of the copy and its deltas that hold the user are read, and
+   * the rest of the database is left as it is.
+   * @param userId the ID of the user
+   * @return true if the user was restored, false if the copy does not have them or could not
+   *     be read
+   */
+  public boolean restoreUser(int userId) {
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    boolean completed = false;
+
+    try {
+      DatabaseDriverA.BulkLoader loader = db.startMerge();
+      try {
+        SnapshotLookup lookup = new SnapshotLookup(getCopyFile(0));
+        Set<Integer> accountIds = new HashSet<Integer>();
+        List<File> deltas;
+        boolean found;
+        try {
+          found = lookup.readUser(userId, accountIds, loader);
+          deltas = getDeltas(lookup.getChainId(), lookup.getToSeq());
+        } finally {
+          lookup.close();
+        }
+
+        for (File delta : deltas) {
+          lookup = new SnapshotLookup(delta);
+          try {
+            found |= lookup.readUser(userId, accountIds, loader);
+          } finally {
+            lookup.close();
+          }
+        }
+
+        if (found) {
+          loader.finish();
+          completed = true;
         }
+      } finally {
+        loader.close();
       }
     } catch (Exception e) {
-      //copyDatabase("bank-backup", "bank");
       e.printStackTrace();
-      return false;
     } finally {
-      /*try {
-        Files.delete(Paths.get("bank-backup.db"));
-      } catch (Exception e) {
-        e.printStackTrace();
-      }*/
+      db.release();
+    }
+
+    return completed;
+  }
+
+  /**
+   * Finds the deltas of a chain in the order they were written, until one is missing or
+   * belongs to another chain.
+   * @param chainId the chain of the full copy
+   * @param toSeq the last change in the full copy
+   * @return the deltas
+   * @throws IOException if a delta of the chain is missing changes, or could not be read
+   */
+  private List<File> getDeltas(long chainId, long toSeq) throws IOException {
+    List<File> deltas = new ArrayList<File>();
+
+    for (int delta = 1; getCopyFile(delta).exists(); delta++) {
+      SnapshotReader reader = new SnapshotReader(getCopyFile(delta));
+
+      try {
+        if (!reader.isDelta() || reader.getChainId() != chainId) {
+          // Left over from an older copy
+          break;
+        }
+        if (reader.getFromSeq() != toSeq) {
+          throw new IOException("Changes missing before " + getCopyFile(delta));
+        }
+
+        deltas.add(getCopyFile(delta));
+        toSeq = reader.getToSeq();
+      } finally {
+        reader.close();
+      }
+    }
+
+    return deltas;
+  }
+
+  /**
+   * Writes a full copy or a delta to a temporary file and moves it over the given one once it
+   * is complete. A full copy is read from the given snapshot, a delta from a snapshot of its own.
+   */
+  private void writeCopy(File file, boolean delta, long chainId, long fromSeq, long toSeq,
+      DatabaseDriverA source, long bytesPerSecond, BankData.ProgressListener listener)
+      throws IOException {
+    File partial = new File(context.getFilesDir(), file.getName() + ".tmp");
+    SnapshotWriter writer = new SnapshotWriter(partial, delta, chainId, fromSeq, toSeq);
+
+    try {
+      writer.setRateLimit(bytesPerSecond);
+      if (delta) {
+        BankData.captureChanges(context, toSeq, writer);
+      } else {
+        BankData.capture(source, writer, listener);
+      }
+      writer.close();
+      writer = null;
+
+      if (!partial.renameTo(file)) {
+        throw new IOException("Could not replace " + file);
+      }
+    } finally {
+      if (writer != null) {
+        try {
+          writer.close();
+        } catch (IOException closeException) {
+          // the partial copy is deleted anyway
+        }
+      }
+      partial.delete();
     }
-    
-    return true;
+  }
+
+  /**
+   * Gets the file of the full copy, or of one of the deltas written on top of it.
+   * @param delta the number of the delta, 0 for the full copy
+   */
+  private File getCopyFile(int delta) {
+    return new File(context.getFilesDir(),
+        delta == 0 ? "database_copy.ser" : "database_copy.ser." + delta);
   }
   
   /**
@@ -163,32 +433,4 @@ public class DatabaseSerializer {
     
     return newId;
   }
-  
-  private int getNewRoleId(int oldRoleId, BankData bankData) {
-    RoleMap roleMap = RoleMap.getInstance(context);
-    String roleName = null;
-    
-    for (RoleSer roleSer : bankData.roles) {
-      if (roleSer.id == oldRoleId) {
-        roleName = roleSer.name;
-        break;
-      }
-    }
-    
-    return roleMap.getRoleId(roleName);
-  }
-  
-  private int getNewTypeId(int oldTypeId, BankData bankData) {
-    AccountMap accountMap = AccountMap.getInstance(context);
-    String typeName = null;
-    
-    for (AccTypeSer typeSer : bankData.accountTypes) {
-      if (typeSer.id == oldTypeId) {
-        typeName = typeSer.name;
-        break;
-      }
-    }
-    
-    return accountMap.getTypeId(typeName);
-  }
 }
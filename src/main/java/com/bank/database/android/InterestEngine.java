@@ -0,0 +1,174 @@
+package com.bank.database.android;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.bank.accounts.Money;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Adds the interest of its type to every account in the bank. Accounts are read and updated in
+ * chunks, all inside one transaction, so either every account gets its interest or none does.
+ */
+public class InterestEngine {
+  public static final int DEFAULT_CHUNK_SIZE = 500;
+
+  private Context context;
+  private int chunkSize;
+  private int accountsProcessed = 0;
+  private long elapsedMillis = 0;
+
+  /**
+   * Creates an InterestEngine that reads {@link #DEFAULT_CHUNK_SIZE} accounts at a time.
+   * @param context the context of the database
+   */
+  public InterestEngine(Context context) {
+    this(context, DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Creates an InterestEngine.
+   * @param context the context of the database
+   * @param chunkSize the number of accounts read at a time
+   */
+  public InterestEngine(Context context, int chunkSize) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException();
+    }
+
+    this.context = context;
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Adds interest to every account and leaves a message for the owners of each account that
+   * changed. Accounts whose interest rounds to nothing are left alone.
+   * @return the number of accounts that got interest, or -1 if nothing was changed
+   */
+  public int postInterest() {
+    long start = System.currentTimeMillis();
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    SQLiteDatabase sqLiteDatabase = db.getWritableDatabase();
+    int processed = 0;
+    int posted = 0;
+    boolean completed = false;
+
+    sqLiteDatabase.beginTransaction();
+    try {
+      Map<Integer, BigDecimal> rates = new HashMap<>();
+      Map<Integer, String> typeNames = new HashMap<>();
+      readAccountTypes(db, rates, typeNames);
+
+      int[] accountIds = new int[chunkSize];
+      Money[] interest = new Money[chunkSize];
+      String[] messages = new String[chunkSize];
+      int lastId = Integer.MIN_VALUE;
+      int read;
+
+      do {
+        Cursor cursor = db.getAccountsAfter(lastId, chunkSize);
+        int count = 0;
+        read = 0;
+
+        try {
+          int idColumn = cursor.getColumnIndex("ID");
+          int balanceColumn = cursor.getColumnIndex("BALANCE");
+          int typeColumn = cursor.getColumnIndex("TYPE");
+
+          while (cursor.moveToNext()) {
+            read++;
+            lastId = cursor.getInt(idColumn);
+            BigDecimal rate = rates.get(cursor.getInt(typeColumn));
+
+            if (rate != null) {
+              Money amount = Money.ofCents(cursor.getLong(balanceColumn)).multiply(rate);
+
+              if (amount.signum() != 0) {
+                accountIds[count] = lastId;
+                interest[count] = amount;
+                messages[count] = "$" + amount + " worth of interest has been added to your "
+                    + typeNames.get(cursor.getInt(typeColumn)) + " account ID " + lastId;
+                count++;
+              }
+            }
+          }
+        } finally {
+          cursor.close();
+        }
+
+        db.postInterest(accountIds, interest, messages, count);
+        processed += read;
+        posted += count;
+      } while (read == chunkSize);
+
+      sqLiteDatabase.setTransactionSuccessful();
+      completed = true;
+    } catch (RuntimeException e) {
+      // method will return -1, nothing was changed
+      e.printStackTrace();
+    } finally {
+      sqLiteDatabase.endTransaction();
+      db.release();
+    }
+
+    this.accountsProcessed = completed ? processed : 0;
+    this.elapsedMillis = System.currentTimeMillis() - start;
+    Log.i("InterestEngine", this.accountsProcessed + " accounts in " + this.elapsedMillis
+        + " ms, " + getAccountsPerSecond() + " accounts per second");
+
+    return completed ? posted : -1;
+  }
+
+  /**
+   * The number of accounts looked at by the last {@link #postInterest()}.
+   * @return the number of accounts
+   */
+  public int getAccountsProcessed() {
+    return this.accountsProcessed;
+  }
+
+  /**
+   * How long the last {@link #postInterest()} took.
+   * @return the time in milliseconds
+   */
+  public long getElapsedMillis() {
+    return this.elapsedMillis;
+  }
+
+  /**
+   * The rate at which the last {@link #postInterest()} went through the accounts.
+   * @return the number of accounts per second
+   */
+  public long getAccountsPerSecond() {
+    return this.accountsProcessed * 1000L / Math.max(this.elapsedMillis, 1);
+  }
+
+  private static void readAccountTypes(DatabaseDriverA db, Map<Integer, BigDecimal> rates,
+      Map<Integer, String> typeNames) {
+    Cursor cursor = db.getAccountTypesDetails();
+
+    try {
+      while (cursor.moveToNext()) {
+        int typeId = cursor.getInt(cursor.getColumnIndex("ID"));
+        String rate = cursor.getString(cursor.getColumnIndex("INTERESTRATE"));
+
+        typeNames.put(typeId, cursor.getString(cursor.getColumnIndex("NAME")));
+        // Types without a rate give no interest
+        if (rate != null) {
+          try {
+            rates.put(typeId, new BigDecimal(rate));
+          } catch (NumberFormatException e) {
+            e.printStackTrace();
+          }
+        }
+      }
+    } finally {
+      cursor.close();
+    }
+  }
+}
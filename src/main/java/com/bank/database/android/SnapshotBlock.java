@@ -0,0 +1,123 @@
+package com.bank.database.android;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses and checks the blocks of rows a snapshot is made of. A block is written as the
+ * length of its compressed bytes, the length of its rows, a checksum of both, and the
+ * compressed bytes. Every block can be checked and decompressed on its own.
+ */
+final class SnapshotBlock {
+  static final int HEADER_SIZE = 12;
+
+  private SnapshotBlock() {
+  }
+
+  /**
+   * Compresses a block of rows.
+   * @param rows the rows, made of records as described in {@link SnapshotWriter}
+   * @param length the number of bytes of rows
+   * @return the block with its header, ready to be written
+   */
+  static ByteBuffer encode(byte[] rows, int length) {
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    byte[] compressed = new byte[length + length / 1000 + 64];
+    int compressedLength = 0;
+
+    try {
+      deflater.setInput(rows, 0, length);
+      deflater.finish();
+      while (!deflater.finished()) {
+        if (compressedLength == compressed.length) {
+          compressed = Arrays.copyOf(compressed, compressed.length * 2);
+        }
+        compressedLength += deflater.deflate(compressed, compressedLength,
+            compressed.length - compressedLength);
+      }
+    } finally {
+      deflater.end();
+    }
+
+    ByteBuffer block = ByteBuffer.allocate(HEADER_SIZE + compressedLength);
+    block.putInt(compressedLength);
+    block.putInt(length);
+    block.putInt(checksum(compressed, compressedLength, length));
+    block.put(compressed, 0, compressedLength);
+    block.flip();
+    return block;
+  }
+
+  /**
+   * Checks a block and decompresses it.
+   * @param compressed the compressed bytes of the block
+   * @param rowsLength the number of bytes of rows given by the header of the block
+   * @param checksum the checksum given by the header of the block
+   * @return the rows of the block
+   * @throws IOException if the block is corrupt
+   */
+  static ByteBuffer decode(byte[] compressed, int rowsLength, int checksum) throws IOException {
+    // The lengths are checked before anything is allocated for them
+    if (checksum(compressed, compressed.length, rowsLength) != checksum) {
+      throw new IOException("Corrupt snapshot block");
+    }
+
+    Inflater inflater = new Inflater();
+    byte[] rows = new byte[rowsLength];
+    int length = 0;
+
+    try {
+      inflater.setInput(compressed);
+      while (length < rowsLength && !inflater.finished()) {
+        int inflated = inflater.inflate(rows, length, rowsLength - length);
+        if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        length += inflated;
+      }
+    } catch (DataFormatException e) {
+      throw new IOException("Corrupt snapshot block");
+    } finally {
+      inflater.end();
+    }
+
+    if (length != rowsLength) {
+      throw new IOException("Corrupt snapshot block");
+    }
+    return ByteBuffer.wrap(rows);
+  }
+
+  /**
+   * Gets the key the rows of a table are ordered by in a snapshot: the ID of the row, the user
+   * ID for the owners of accounts and for messages, and the ID for removed rows.
+   * @param tag the table tag of the row
+   * @param row the row, from its position on
+   * @return the key
+   */
+  static int keyOf(byte tag, ByteBuffer row) {
+    switch (tag) {
+      case SnapshotWriter.MESSAGE:
+        return row.getInt(row.position() + 4);
+      case SnapshotWriter.REMOVED:
+        return row.getInt(row.position() + 1);
+      default:
+        return row.getInt(row.position());
+    }
+  }
+
+  private static int checksum(byte[] compressed, int compressedLength, int rowsLength) {
+    // CRC32C would be faster, but it needs API 26 and a snapshot must restore on older devices
+    CRC32 crc = new CRC32();
+    crc.update(compressed, 0, compressedLength);
+    crc.update(rowsLength >>> 24);
+    crc.update(rowsLength >>> 16);
+    crc.update(rowsLength >>> 8);
+    crc.update(rowsLength);
+    return (int) crc.getValue();
+  }
+}
@@ -0,0 +1,45 @@
+package com.bank.database.android;
+
+import com.bank.accounts.Money;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Receives the rows of a snapshot of the bank one at a time. Account types and roles come
+ * first, then users, accounts, the owners of accounts and messages. A delta only has the rows
+ * that changed, followed by the ones that were removed.
+ */
+public interface SnapshotHandler {
+
+  public void accountType(int id, String name, BigDecimal interestRate) throws IOException;
+
+  public void role(int id, String name) throws IOException;
+
+  public void user(int id, String name, int age, String address, int roleId, String password)
+      throws IOException;
+
+  public void account(int id, String name, Money balance, int typeId) throws IOException;
+
+  public void userAccount(int userId, int accountId) throws IOException;
+
+  /**
+   * Receives a message.
+   * @param id the ID of the message
+   * @param userId the user the message is for
+   * @param message the message
+   * @param viewed 1 if viewed, 0 otherwise
+   * @throws IOException if the row could not be handled
+   */
+  public void message(int id, int userId, String message, int viewed) throws IOException;
+
+  /**
+   * Receives a row that was removed since the snapshot a delta is based on. Full snapshots
+   * have none.
+   * @param table the table tag of the row, such as {@link SnapshotWriter#ACCOUNT}
+   * @param id the ID of the row, or the user ID for the owner of an account
+   * @param otherId the account ID for the owner of an account, 0 otherwise
+   * @throws IOException if the row could not be handled
+   */
+  public void removed(int table, int id, int otherId) throws IOException;
+}
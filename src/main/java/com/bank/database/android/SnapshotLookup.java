@@ -0,0 +1,313 @@
+package com.bank.database.android;
+
+import com.bank.accounts.Money;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Finds the rows of one user in a snapshot through the index at its end, see
+ * {@link SnapshotWriter}. Only the index and the blocks holding the user are mapped and read,
+ * and every block is found with a binary search of the index, so a lookup costs the same in a
+ * small snapshot as in one of several gigabytes.
+ */
+public class SnapshotLookup implements Closeable {
+  private FileChannel channel;
+  private ByteBuffer index;
+  private int blocks;
+  private boolean delta;
+  private long chainId;
+  private long fromSeq;
+  private long toSeq;
+
+  /**
+   * Opens a snapshot and maps its index.
+   * @param file the snapshot
+   * @throws IOException if the file is not a snapshot with an index or could not be read
+   */
+  public SnapshotLookup(File file) throws IOException {
+    SnapshotReader reader = new SnapshotReader(file);
+    this.delta = reader.isDelta();
+    this.chainId = reader.getChainId();
+    this.fromSeq = reader.getFromSeq();
+    this.toSeq = reader.getToSeq();
+    reader.close();
+
+    this.channel = new FileInputStream(file).getChannel();
+    try {
+      long size = channel.size();
+      if (size < SnapshotWriter.INDEX_TRAILER_SIZE) {
+        throw new IOException("Snapshot has no index");
+      }
+
+      ByteBuffer trailer = channel.map(FileChannel.MapMode.READ_ONLY,
+          size - SnapshotWriter.INDEX_TRAILER_SIZE, SnapshotWriter.INDEX_TRAILER_SIZE);
+      long indexOffset = trailer.getLong();
+      this.blocks = trailer.getInt();
+      int checksum = trailer.getInt();
+      byte[] magic = new byte[SnapshotWriter.INDEX_MAGIC.length];
+      trailer.get(magic);
+
+      if (!Arrays.equals(magic, SnapshotWriter.INDEX_MAGIC)) {
+        throw new IOException("Snapshot has no index");
+      }
+      if (blocks < 0 || indexOffset < 0 || indexOffset + (long) blocks
+          * SnapshotWriter.INDEX_ENTRY_SIZE != size - SnapshotWriter.INDEX_TRAILER_SIZE) {
+        throw new IOException("Corrupt snapshot index");
+      }
+
+      this.index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset,
+          (long) blocks * SnapshotWriter.INDEX_ENTRY_SIZE);
+      CRC32 crc = new CRC32();
+      byte[] entries = new byte[index.remaining()];
+      index.duplicate().get(entries);
+      crc.update(entries);
+      if ((int) crc.getValue() != checksum) {
+        throw new IOException("Corrupt snapshot index");
+      }
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  public boolean isDelta() {
+    return this.delta;
+  }
+
+  public long getChainId() {
+    return this.chainId;
+  }
+
+  public long getFromSeq() {
+    return this.fromSeq;
+  }
+
+  public long getToSeq() {
+    return this.toSeq;
+  }
+
+  /**
+   * Hands over the rows of a user: the user, the accounts they own, the owners of those
+   * accounts that are this user, and their messages. A delta also hands over the removal of
+   * the user and of the accounts they no longer own.
+   * @param userId the ID of the user
+   * @param handler receives the rows
+   * @return true if the snapshot has the user, false otherwise
+   * @throws IOException if a block holding the user is corrupt, or the handler failed
+   */
+  public boolean readUser(int userId, SnapshotHandler handler) throws IOException {
+    return readUser(userId, new HashSet<Integer>(), handler);
+  }
+
+  /**
+   * Hands over the rows of a user, like {@link #readUser(int, SnapshotHandler)}, along with
+   * the accounts they owned in earlier snapshots. A delta only has the accounts that changed,
+   * and the user may not have gained or lost any of them since.
+   * @param userId the ID of the user
+   * @param accountIds the accounts of the user in earlier snapshots, the accounts of the user
+   *     in this one are added to them
+   * @param handler receives the rows
+   * @return true if the snapshot has the user, false otherwise
+   * @throws IOException if a block holding the user is corrupt, or the handler failed
+   */
+  public boolean readUser(final int userId, Set<Integer> accountIds, SnapshotHandler handler)
+      throws IOException {
+    final boolean[] found = {false};
+    final List<Integer> owned = new ArrayList<Integer>();
+
+    readRows(SnapshotWriter.USER, userId, new RowFilter(handler) {
+      @Override
+      public void user(int id, String name, int age, String address, int roleId,
+          String password) throws IOException {
+        if (id == userId) {
+          found[0] = true;
+          handler.user(id, name, age, address, roleId, password);
+        }
+      }
+    });
+
+    // The owners are collected first, an account has to be there before its owner is added
+    readRows(SnapshotWriter.USER_ACCOUNT, userId, new RowFilter(handler) {
+      @Override
+      public void userAccount(int ownerId, int accountId) {
+        if (ownerId == userId) {
+          owned.add(accountId);
+        }
+      }
+    });
+
+    accountIds.addAll(owned);
+    for (final int accountId : accountIds) {
+      readRows(SnapshotWriter.ACCOUNT, accountId, new RowFilter(handler) {
+        @Override
+        public void account(int id, String name, Money balance, int typeId)
+            throws IOException {
+          if (id == accountId) {
+            handler.account(id, name, balance, typeId);
+          }
+        }
+      });
+    }
+
+    for (int accountId : owned) {
+      handler.userAccount(userId, accountId);
+    }
+
+    readRows(SnapshotWriter.MESSAGE, userId, new RowFilter(handler) {
+      @Override
+      public void message(int id, int messageUserId, String message, int viewed)
+          throws IOException {
+        if (messageUserId == userId) {
+          handler.message(id, messageUserId, message, viewed);
+        }
+      }
+    });
+
+    if (delta) {
+      readRows(SnapshotWriter.REMOVED, null, new RowFilter(handler) {
+        @Override
+        public void removed(int table, int id, int otherId) throws IOException {
+          if (id == userId
+              && (table == SnapshotWriter.USER || table == SnapshotWriter.USER_ACCOUNT)) {
+            handler.removed(table, id, otherId);
+          }
+        }
+      });
+    }
+
+    return found[0];
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Reads the rows of the blocks of a table that can hold a key.
+   * @param key the key, or null for every block of the table
+   */
+  private void readRows(byte tag, Integer key, SnapshotHandler handler) throws IOException {
+    for (int block = firstBlock(tag, key); block < blocks; block++) {
+      int entry = block * SnapshotWriter.INDEX_ENTRY_SIZE;
+      if (index.get(entry) != tag || (key != null && index.getInt(entry + 1) > key)) {
+        return;
+      }
+
+      ByteBuffer rows = readBlock(index.getLong(entry + 9));
+      try {
+        while (rows.hasRemaining()) {
+          byte rowTag = rows.get();
+          int length = rows.getInt();
+          if (length < 0 || length > rows.remaining()) {
+            throw new IOException("Corrupt snapshot");
+          }
+
+          int end = rows.position() + length;
+          ByteBuffer row = rows.duplicate();
+          row.limit(end);
+          SnapshotReader.handleRow(rowTag, row, handler);
+          rows.position(end);
+        }
+      } catch (BufferUnderflowException e) {
+        throw new IOException("Corrupt snapshot");
+      }
+    }
+  }
+
+  /**
+   * Finds the first block of a table whose last key is not below the key.
+   */
+  private int firstBlock(byte tag, Integer key) {
+    int low = 0;
+    int high = blocks;
+
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      int entry = middle * SnapshotWriter.INDEX_ENTRY_SIZE;
+      byte middleTag = index.get(entry);
+
+      if (middleTag < tag
+          || (middleTag == tag && key != null && index.getInt(entry + 5) < key)) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private ByteBuffer readBlock(long offset) throws IOException {
+    if (offset < 0 || offset + SnapshotBlock.HEADER_SIZE > channel.size()) {
+      throw new IOException("Corrupt snapshot index");
+    }
+
+    ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+        SnapshotBlock.HEADER_SIZE);
+    int compressedLength = header.getInt();
+    int rowsLength = header.getInt();
+    int checksum = header.getInt();
+    if (compressedLength <= 0
+        || offset + SnapshotBlock.HEADER_SIZE + compressedLength > channel.size()) {
+      throw new IOException("Corrupt snapshot block");
+    }
+
+    byte[] compressed = new byte[compressedLength];
+    channel.map(FileChannel.MapMode.READ_ONLY, offset + SnapshotBlock.HEADER_SIZE,
+        compressedLength).get(compressed);
+    return SnapshotBlock.decode(compressed, rowsLength, checksum);
+  }
+
+  /**
+   * Drops every row, so a lookup only has to pass on the rows it is after.
+   */
+  private static class RowFilter implements SnapshotHandler {
+    protected SnapshotHandler handler;
+
+    private RowFilter(SnapshotHandler handler) {
+      this.handler = handler;
+    }
+
+    @Override
+    public void accountType(int id, String name, BigDecimal interestRate) {
+    }
+
+    @Override
+    public void role(int id, String name) {
+    }
+
+    @Override
+    public void user(int id, String name, int age, String address, int roleId,
+        String password) throws IOException {
+    }
+
+    @Override
+    public void account(int id, String name, Money balance, int typeId) throws IOException {
+    }
+
+    @Override
+    public void userAccount(int userId, int accountId) {
+    }
+
+    @Override
+    public void message(int id, int userId, String message, int viewed) throws IOException {
+    }
+
+    @Override
+    public void removed(int table, int id, int otherId) throws IOException {
+    }
+  }
+}
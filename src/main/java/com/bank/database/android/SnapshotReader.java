@@ -0,0 +1,317 @@
+package com.bank.database.android;
+
+import com.bank.accounts.Money;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a snapshot written by a {@link SnapshotWriter}, handing over one row at a time. The
+ * blocks of a snapshot are checked and decompressed on other threads, a few blocks ahead of
+ * the rows being handed over.
+ */
+public class SnapshotReader implements Closeable {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private FileChannel channel;
+  private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+  private int version;
+  private boolean delta = false;
+  private long chainId = 0;
+  private long fromSeq = 0;
+  private long toSeq = 0;
+
+  /**
+   * Opens a snapshot and reads its start.
+   * @param file the snapshot
+   * @throws IOException if the file is not a snapshot or could not be read
+   */
+  public SnapshotReader(File file) throws IOException {
+    this.channel = new FileInputStream(file).getChannel();
+    buffer.flip();
+
+    try {
+      byte[] magic = new byte[SnapshotWriter.MAGIC.length];
+      ensure(magic.length + 4);
+      buffer.get(magic);
+      this.version = buffer.getInt();
+
+      if (!Arrays.equals(magic, SnapshotWriter.MAGIC)) {
+        throw new IOException("Not a snapshot");
+      }
+      if (version < 1 || version > SnapshotWriter.VERSION) {
+        throw new IOException("Unsupported snapshot version " + version);
+      }
+
+      if (version >= 2) {
+        ensure(25);
+        this.delta = buffer.get() != 0;
+        this.chainId = buffer.getLong();
+        this.fromSeq = buffer.getLong();
+        this.toSeq = buffer.getLong();
+      }
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Checks whether a file starts like a snapshot.
+   * @param file the file
+   * @return true if the file is a snapshot, false otherwise
+   */
+  public static boolean isSnapshot(File file) {
+    try {
+      new SnapshotReader(file).close();
+      return true;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  public int getVersion() {
+    return this.version;
+  }
+
+  /**
+   * Whether the snapshot only has the rows that changed since the previous one of its chain.
+   * @return true for a delta, false for a full snapshot
+   */
+  public boolean isDelta() {
+    return this.delta;
+  }
+
+  public long getChainId() {
+    return this.chainId;
+  }
+
+  public long getFromSeq() {
+    return this.fromSeq;
+  }
+
+  public long getToSeq() {
+    return this.toSeq;
+  }
+
+  /**
+   * Reads every row of the snapshot.
+   * @param handler receives the rows
+   * @throws IOException if the snapshot is cut short or could not be read, or the handler failed
+   */
+  public void read(SnapshotHandler handler) throws IOException {
+    if (version < 3) {
+      readRecords(handler);
+    } else {
+      readBlocks(handler);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private void readBlocks(SnapshotHandler handler) throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(SnapshotWriter.THREADS);
+    Deque<Future<ByteBuffer>> pending = new ArrayDeque<Future<ByteBuffer>>();
+    boolean ended = false;
+
+    try {
+      while (!ended || !pending.isEmpty()) {
+        while (!ended && pending.size() < SnapshotWriter.THREADS * 2) {
+          ensure(SnapshotBlock.HEADER_SIZE);
+          int compressedLength = buffer.getInt();
+          final int rowsLength = buffer.getInt();
+          final int checksum = buffer.getInt();
+
+          if (compressedLength == 0) {
+            ended = true;
+          } else if (compressedLength < 0 || compressedLength > channel.size()) {
+            throw new IOException("Corrupt snapshot");
+          } else {
+            ensure(compressedLength);
+            final byte[] compressed = new byte[compressedLength];
+            buffer.get(compressed);
+            pending.addLast(executor.submit(new Callable<ByteBuffer>() {
+              @Override
+              public ByteBuffer call() throws IOException {
+                return SnapshotBlock.decode(compressed, rowsLength, checksum);
+              }
+            }));
+          }
+        }
+
+        if (!pending.isEmpty()) {
+          readBlock(getBlock(pending.removeFirst()), handler);
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static ByteBuffer getBlock(Future<ByteBuffer> block) throws IOException {
+    try {
+      return block.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  private static void readBlock(ByteBuffer rows, SnapshotHandler handler) throws IOException {
+    while (rows.hasRemaining()) {
+      int length;
+      byte tag;
+      try {
+        tag = rows.get();
+        length = rows.getInt();
+      } catch (BufferUnderflowException e) {
+        throw new IOException("Corrupt snapshot");
+      }
+      if (length < 0 || length > rows.remaining()) {
+        throw new IOException("Corrupt snapshot");
+      }
+
+      int end = rows.position() + length;
+      ByteBuffer row = rows.duplicate();
+      row.limit(end);
+      handleRow(tag, row, handler);
+      rows.position(end);
+    }
+  }
+
+  /**
+   * Reads the records of a snapshot written before rows were put in blocks.
+   */
+  private void readRecords(SnapshotHandler handler) throws IOException {
+    byte tag;
+
+    while (true) {
+      ensure(1);
+      tag = buffer.get();
+      if (tag == SnapshotWriter.END) {
+        return;
+      }
+
+      ensure(4);
+      int length = buffer.getInt();
+      if (length < 0) {
+        throw new IOException("Corrupt snapshot");
+      }
+      ensure(length);
+
+      int end = buffer.position() + length;
+      ByteBuffer row = buffer.duplicate();
+      row.limit(end);
+      handleRow(tag, row, handler);
+      buffer.position(end);
+    }
+  }
+
+  static void handleRow(byte tag, ByteBuffer row, SnapshotHandler handler)
+      throws IOException {
+    try {
+      readRow(tag, row, handler);
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Corrupt snapshot");
+    } catch (NumberFormatException e) {
+      throw new IOException("Corrupt snapshot");
+    }
+  }
+
+  private static void readRow(byte tag, ByteBuffer row, SnapshotHandler handler)
+      throws IOException {
+    switch (tag) {
+      case SnapshotWriter.ACCOUNT_TYPE:
+        int typeId = row.getInt();
+        String typeName = getString(row);
+        String rate = getString(row);
+        handler.accountType(typeId, typeName, rate == null ? null : new BigDecimal(rate));
+        break;
+      case SnapshotWriter.ROLE:
+        handler.role(row.getInt(), getString(row));
+        break;
+      case SnapshotWriter.USER:
+        handler.user(row.getInt(), getString(row), row.getInt(), getString(row), row.getInt(),
+            getString(row));
+        break;
+      case SnapshotWriter.ACCOUNT:
+        handler.account(row.getInt(), getString(row), Money.ofCents(row.getLong()),
+            row.getInt());
+        break;
+      case SnapshotWriter.USER_ACCOUNT:
+        handler.userAccount(row.getInt(), row.getInt());
+        break;
+      case SnapshotWriter.MESSAGE:
+        handler.message(row.getInt(), row.getInt(), getString(row), row.get());
+        break;
+      case SnapshotWriter.REMOVED:
+        handler.removed(row.get(), row.getInt(), row.getInt());
+        break;
+      default:
+        // Tables added by later versions are skipped
+    }
+  }
+
+  private static String getString(ByteBuffer row) throws IOException {
+    int length = row.getInt();
+    if (length < 0) {
+      return null;
+    }
+    if (length > row.remaining()) {
+      throw new IOException("Corrupt snapshot");
+    }
+
+    String value = new String(row.array(), row.arrayOffset() + row.position(), length,
+        SnapshotWriter.UTF_8);
+    row.position(row.position() + length);
+    return value;
+  }
+
+  /**
+   * Makes sure the buffer holds at least the given number of unread bytes.
+   */
+  private void ensure(int bytes) throws IOException {
+    if (buffer.remaining() >= bytes) {
+      return;
+    }
+
+    if (bytes > buffer.capacity()) {
+      ByteBuffer bigger = ByteBuffer.allocate(bytes);
+      bigger.put(buffer);
+      buffer = bigger;
+    } else {
+      buffer.compact();
+    }
+
+    while (buffer.position() < bytes) {
+      if (channel.read(buffer) < 0) {
+        throw new EOFException("Snapshot ends early");
+      }
+    }
+    buffer.flip();
+  }
+}
@@ -0,0 +1,393 @@
+package com.bank.database.android;
+
+import com.bank.accounts.Money;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * Writes a snapshot of the bank to a file as it receives the rows, so only a few blocks of
+ * rows are held in memory at a time.
+ *
+ * <p>The file starts with the magic bytes "BANKSNAP" and the format version. Since version 2
+ * the header goes on with a byte that is 1 for a delta and 0 for a full snapshot, the ID of
+ * the chain of backups the file belongs to, and the range of the change log it covers. Every
+ * row is then a record made of a one byte table tag, the length of the row in bytes and the
+ * row itself. Numbers are big endian, strings are their length in UTF-8 bytes followed by the
+ * bytes, or -1 for null. Readers skip records with a tag they do not know, and anything at the
+ * end of a row they do not expect.
+ *
+ * <p>Since version 3 the records are grouped into blocks of rows of one table, each compressed
+ * and checksummed on its own by {@link SnapshotBlock}, on as many threads as there are
+ * processors. A block header with no bytes ends the blocks. Before, the records followed the
+ * header as they are, and a record with the END tag and no length closed the file.
+ *
+ * <p>Since version 4 the blocks are followed by an index of the blocks, as long as every table
+ * came in the order of its key, see {@link SnapshotBlock#keyOf}. The index has the table tag,
+ * the first and last key and the offset of every block, and ends with the offset of the index,
+ * the number of blocks, a CRC32 of the index and the magic bytes "BANKINDX". It lets
+ * {@link SnapshotLookup} find the rows of one user without reading the rest of the file.
+ */
+public class SnapshotWriter implements SnapshotHandler, Closeable {
+  static final byte[] MAGIC = {'B', 'A', 'N', 'K', 'S', 'N', 'A', 'P'};
+  static final int VERSION = 4;
+  static final byte[] INDEX_MAGIC = {'B', 'A', 'N', 'K', 'I', 'N', 'D', 'X'};
+  static final int INDEX_ENTRY_SIZE = 17;
+  static final int INDEX_TRAILER_SIZE = 24;
+  static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  static final byte END = 0;
+  static final byte ACCOUNT_TYPE = 1;
+  static final byte ROLE = 2;
+  static final byte USER = 3;
+  static final byte ACCOUNT = 4;
+  static final byte USER_ACCOUNT = 5;
+  static final byte MESSAGE = 6;
+  static final byte REMOVED = 7;
+
+  static final int BLOCK_SIZE = 128 * 1024;
+  static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+  private FileChannel channel;
+  private ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+  // Blocks being compressed, in the order they are written
+  private Deque<Future<ByteBuffer>> pending = new ArrayDeque<Future<ByteBuffer>>();
+  // The block being filled, bigger than BLOCK_SIZE when a row does not fit
+  private ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+  private byte blockTag = END;
+  private int blockFirstKey;
+  private int blockLastKey;
+  // The blocks handed over so far, and how many of them were written
+  private List<IndexEntry> index = new ArrayList<IndexEntry>();
+  private int blocksWritten = 0;
+  private boolean sorted = true;
+  // The row being written, grown when a row does not fit
+  private ByteBuffer row = ByteBuffer.allocate(256);
+  private long rows = 0;
+  // The pace the file is written at, 0 for as fast as it goes
+  private long bytesPerSecond = 0;
+  private long rateStart;
+  private long rateBytes;
+
+  /**
+   * Creates the file and writes the start of a full snapshot that is not part of a chain.
+   * @param file the file, replaced if it exists
+   * @throws IOException if the file could not be written
+   */
+  public SnapshotWriter(File file) throws IOException {
+    this(file, false, 0, 0, 0);
+  }
+
+  /**
+   * Creates the file and writes the start of the snapshot.
+   * @param file the file, replaced if it exists
+   * @param delta true if the snapshot only has the rows that changed since the previous one
+   * @param chainId the chain of backups the snapshot belongs to
+   * @param fromSeq the last change already in the previous snapshot of the chain
+   * @param toSeq the last change in this snapshot
+   * @throws IOException if the file could not be written
+   */
+  public SnapshotWriter(File file, boolean delta, long chainId, long fromSeq, long toSeq)
+      throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 29);
+    header.put(MAGIC);
+    header.putInt(VERSION);
+    header.put((byte) (delta ? 1 : 0));
+    header.putLong(chainId);
+    header.putLong(fromSeq);
+    header.putLong(toSeq);
+    header.flip();
+
+    try {
+      this.channel = new FileOutputStream(file).getChannel();
+      write(header);
+    } catch (IOException e) {
+      executor.shutdownNow();
+      if (channel != null) {
+        channel.close();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * The number of rows written so far.
+   * @return the number of rows
+   */
+  public long getRows() {
+    return this.rows;
+  }
+
+  /**
+   * Limits how fast the rest of the snapshot is written, so a backup leaves the disk to
+   * everyone else. The rows are read no faster than they are written.
+   * @param bytesPerSecond the most bytes written in a second, 0 for no limit
+   */
+  public void setRateLimit(long bytesPerSecond) {
+    this.bytesPerSecond = bytesPerSecond;
+    this.rateStart = System.nanoTime();
+    this.rateBytes = 0;
+  }
+
+  @Override
+  public void accountType(int id, String name, BigDecimal interestRate) throws IOException {
+    row.clear();
+    row.putInt(id);
+    putString(name);
+    putString(interestRate == null ? null : interestRate.toPlainString());
+    writeRow(ACCOUNT_TYPE);
+  }
+
+  @Override
+  public void role(int id, String name) throws IOException {
+    row.clear();
+    row.putInt(id);
+    putString(name);
+    writeRow(ROLE);
+  }
+
+  @Override
+  public void user(int id, String name, int age, String address, int roleId, String password)
+      throws IOException {
+    row.clear();
+    row.putInt(id);
+    putString(name);
+    row.putInt(age);
+    putString(address);
+    row.putInt(roleId);
+    putString(password);
+    writeRow(USER);
+  }
+
+  @Override
+  public void account(int id, String name, Money balance, int typeId) throws IOException {
+    row.clear();
+    row.putInt(id);
+    putString(name);
+    row.putLong(balance.getCents());
+    row.putInt(typeId);
+    writeRow(ACCOUNT);
+  }
+
+  @Override
+  public void userAccount(int userId, int accountId) throws IOException {
+    row.clear();
+    row.putInt(userId);
+    row.putInt(accountId);
+    writeRow(USER_ACCOUNT);
+  }
+
+  @Override
+  public void message(int id, int userId, String message, int viewed) throws IOException {
+    row.clear();
+    row.putInt(id);
+    row.putInt(userId);
+    putString(message);
+    row.put((byte) viewed);
+    writeRow(MESSAGE);
+  }
+
+  @Override
+  public void removed(int table, int id, int otherId) throws IOException {
+    row.clear();
+    row.put((byte) table);
+    row.putInt(id);
+    row.putInt(otherId);
+    writeRow(REMOVED);
+  }
+
+  /**
+   * Ends the snapshot and closes the file. A snapshot that was not closed cannot be read.
+   * @throws IOException if the file could not be written
+   */
+  @Override
+  public void close() throws IOException {
+    if (channel == null) {
+      executor.shutdownNow();
+      return;
+    }
+
+    try {
+      finishBlock();
+      while (!pending.isEmpty()) {
+        writeBlock();
+      }
+      write(ByteBuffer.allocate(SnapshotBlock.HEADER_SIZE));
+      if (sorted) {
+        writeIndex();
+      }
+      channel.force(false);
+    } finally {
+      executor.shutdownNow();
+      channel.close();
+      channel = null;
+    }
+  }
+
+  private void putString(String value) {
+    if (value == null) {
+      ensureRowSpace(4);
+      row.putInt(-1);
+      return;
+    }
+
+    byte[] bytes = value.getBytes(UTF_8);
+    ensureRowSpace(4 + bytes.length);
+    row.putInt(bytes.length);
+    row.put(bytes);
+  }
+
+  private void ensureRowSpace(int bytes) {
+    // Numbers are put without checking, so keep room for a few of them as well
+    if (row.remaining() < bytes + 32) {
+      ByteBuffer bigger = ByteBuffer.allocate(Math.max(row.capacity() * 2,
+          row.position() + bytes + 32));
+      row.flip();
+      bigger.put(row);
+      row = bigger;
+    }
+  }
+
+  private void writeRow(byte tag) throws IOException {
+    row.flip();
+    int key = SnapshotBlock.keyOf(tag, row);
+    if (tag < blockTag || (tag == blockTag && key < blockLastKey && tag != REMOVED)) {
+      sorted = false;
+    }
+
+    // Blocks only hold one table, so a reader looking for one table can skip the others
+    if (tag != blockTag || block.remaining() < 5 + row.remaining()) {
+      finishBlock();
+      blockTag = tag;
+      blockFirstKey = key;
+      if (block.remaining() < 5 + row.remaining()) {
+        block = ByteBuffer.allocate(5 + row.remaining());
+      }
+    }
+    blockLastKey = key;
+
+    block.put(tag);
+    block.putInt(row.remaining());
+    block.put(row);
+    rows++;
+  }
+
+  /**
+   * Hands the block being filled over to be compressed, and writes the blocks that are done
+   * if too many are waiting.
+   */
+  private void finishBlock() throws IOException {
+    if (block.position() == 0) {
+      return;
+    }
+
+    final byte[] blockRows = block.array();
+    final int length = block.position();
+    block = ByteBuffer.allocate(BLOCK_SIZE);
+    index.add(new IndexEntry(blockTag, blockFirstKey, blockLastKey));
+    pending.addLast(executor.submit(new Callable<ByteBuffer>() {
+      @Override
+      public ByteBuffer call() {
+        return SnapshotBlock.encode(blockRows, length);
+      }
+    }));
+
+    while (pending.size() > THREADS * 2) {
+      writeBlock();
+    }
+  }
+
+  private void writeBlock() throws IOException {
+    try {
+      index.get(blocksWritten++).offset = channel.position();
+      write(pending.removeFirst().get());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+  }
+
+  private void writeIndex() throws IOException {
+    ByteBuffer entries = ByteBuffer.allocate(index.size() * INDEX_ENTRY_SIZE);
+    for (IndexEntry entry : index) {
+      entries.put(entry.tag);
+      entries.putInt(entry.firstKey);
+      entries.putInt(entry.lastKey);
+      entries.putLong(entry.offset);
+    }
+    CRC32 crc = new CRC32();
+    crc.update(entries.array());
+    entries.flip();
+
+    ByteBuffer trailer = ByteBuffer.allocate(INDEX_TRAILER_SIZE);
+    trailer.putLong(channel.position());
+    trailer.putInt(index.size());
+    trailer.putInt((int) crc.getValue());
+    trailer.put(INDEX_MAGIC);
+    trailer.flip();
+
+    write(entries);
+    write(trailer);
+  }
+
+  private void write(ByteBuffer bytes) throws IOException {
+    int length = bytes.remaining();
+    while (bytes.hasRemaining()) {
+      channel.write(bytes);
+    }
+    if (bytesPerSecond > 0) {
+      throttle(length);
+    }
+  }
+
+  /**
+   * Waits until the bytes written so far are due at the rate limit.
+   */
+  private void throttle(int length) throws IOException {
+    rateBytes += length;
+    long due = rateStart + rateBytes / bytesPerSecond * 1000000000L
+        + rateBytes % bytesPerSecond * 1000000000L / bytesPerSecond;
+    long wait = due - System.nanoTime();
+
+    if (wait > 0) {
+      try {
+        Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+    }
+  }
+
+  private static class IndexEntry {
+    private byte tag;
+    private int firstKey;
+    private int lastKey;
+    private long offset;
+
+    private IndexEntry(byte tag, int firstKey, int lastKey) {
+      this.tag = tag;
+      this.firstKey = firstKey;
+      this.lastKey = lastKey;
+    }
+  }
+}
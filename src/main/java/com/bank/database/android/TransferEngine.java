@@ -0,0 +1,173 @@
+package com.bank.database.android;
+
+import android.content.Context;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.bank.accounts.Money;
+import com.bank.exceptions.InsufficientFundsException;
+import com.bank.exceptions.InvalidAccountException;
+
+/**
+ * Moves money into, out of and between accounts. The debit, the credit and any savings downgrade
+ * of a transfer are made in one transaction, so either all of them happen or none of them do.
+ * Balances are only ever changed by the update that checks them, never written back after a read.
+ */
+public class TransferEngine {
+  private Context context;
+  private int savingTypeId;
+  private int chequingTypeId;
+  private Money savingMinimum;
+
+  /**
+   * Creates a TransferEngine.
+   * @param context the context of the database
+   * @param savingTypeId the type ID of savings accounts
+   * @param chequingTypeId the type ID savings accounts become when below the minimum
+   * @param savingMinimum the lowest balance a savings account can have
+   */
+  public TransferEngine(Context context, int savingTypeId, int chequingTypeId,
+      Money savingMinimum) {
+    this.context = context;
+    this.savingTypeId = savingTypeId;
+    this.chequingTypeId = chequingTypeId;
+    this.savingMinimum = savingMinimum;
+  }
+
+  /**
+   * Creates a TransferEngine that never switches savings accounts to chequing.
+   * @param context the context of the database
+   */
+  public TransferEngine(Context context) {
+    this(context, -1, -1, null);
+  }
+
+  /**
+   * Deposits money to an account.
+   * @param accountId the account the money goes to
+   * @param amount the amount, must be positive
+   * @return true if the money was deposited, false otherwise
+   * @throws InvalidAccountException if the account does not exist
+   */
+  public boolean deposit(int accountId, Money amount) throws InvalidAccountException {
+    if (amount == null || amount.signum() <= 0) {
+      return false;
+    }
+
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    boolean completed = false;
+
+    try {
+      if (!db.creditAccount(accountId, amount)) {
+        throw new InvalidAccountException();
+      }
+      completed = true;
+    } catch (SQLException e) {
+      // method will return false, nothing was changed
+    } finally {
+      db.release();
+    }
+
+    return completed;
+  }
+
+  /**
+   * Withdraws money from an account.
+   * @param accountId the account the money is taken from
+   * @param amount the amount, must be positive
+   * @param ownerId the user told if the account becomes a chequing account
+   * @return true if the money was withdrawn, false otherwise
+   * @throws InsufficientFundsException if the account has too little money
+   * @throws InvalidAccountException if the account does not exist
+   */
+  public boolean withdraw(int accountId, Money amount, int ownerId)
+      throws InsufficientFundsException, InvalidAccountException {
+    if (amount == null || amount.signum() <= 0) {
+      return false;
+    }
+
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    SQLiteDatabase sqLiteDatabase = db.getWritableDatabase();
+    boolean completed = false;
+
+    sqLiteDatabase.beginTransaction();
+    try {
+      debit(db, accountId, amount);
+      downgrade(db, accountId, ownerId);
+
+      sqLiteDatabase.setTransactionSuccessful();
+      completed = true;
+    } catch (SQLException e) {
+      // method will return false, nothing was changed
+    } finally {
+      sqLiteDatabase.endTransaction();
+      db.release();
+    }
+
+    return completed;
+  }
+
+  /**
+   * Transfers money from one account to another.
+   * @param fromAccount the account the money is taken from
+   * @param toAccount the account the money goes to
+   * @param amount the amount, must be positive
+   * @param ownerId the user told if the source account becomes a chequing account
+   * @return true if the money was transferred, false otherwise
+   * @throws InsufficientFundsException if the source account has too little money
+   * @throws InvalidAccountException if either account does not exist
+   */
+  public boolean transfer(int fromAccount, int toAccount, Money amount, int ownerId)
+      throws InsufficientFundsException, InvalidAccountException {
+    if (amount == null || amount.signum() <= 0) {
+      return false;
+    }
+
+    DatabaseDriverA db = DatabaseDriverA.acquire(context);
+    SQLiteDatabase sqLiteDatabase = db.getWritableDatabase();
+    boolean completed = false;
+
+    sqLiteDatabase.beginTransaction();
+    try {
+      debit(db, fromAccount, amount);
+
+      if (!db.creditAccount(toAccount, amount)) {
+        throw new InvalidAccountException();
+      }
+
+      downgrade(db, fromAccount, ownerId);
+
+      sqLiteDatabase.setTransactionSuccessful();
+      completed = true;
+    } catch (SQLException e) {
+      // method will return false, nothing was changed
+    } finally {
+      sqLiteDatabase.endTransaction();
+      db.release();
+    }
+
+    return completed;
+  }
+
+  private void debit(DatabaseDriverA db, int accountId, Money amount)
+      throws InsufficientFundsException, InvalidAccountException {
+    // The balance is checked by the update itself, so two withdrawals cannot both spend it
+    if (!db.debitAccount(accountId, amount)) {
+      if (db.accountExists(accountId)) {
+        throw new InsufficientFundsException();
+      }
+      throw new InvalidAccountException();
+    }
+  }
+
+  private void downgrade(DatabaseDriverA db, int accountId, int ownerId) {
+    // Switching to chequing if a savings account went below the minimum, the message is written
+    // in the same transaction so it is only kept if the debit is
+    if (savingMinimum != null
+        && db.downgradeAccountType(accountId, savingTypeId, chequingTypeId, savingMinimum)) {
+      db.insertMessage(ownerId, "Your savings account ID " + accountId
+          + " has become a chequing account due to going below the minimum balance of $"
+          + savingMinimum + ".");
+    }
+  }
+}
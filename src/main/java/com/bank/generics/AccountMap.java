@@ -4,86 +4,52 @@ import android.content.Context;
 
 import com.bank.database.android.DatabaseHelper;
 
-import java.util.ArrayList;
-import java.util.EnumMap;
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class AccountMap {
-  private static EnumMap<AccountTypes, Integer> map = new EnumMap<>(AccountTypes.class);
-  private static AccountMap instance = new AccountMap();
-  private static Context myContext;
-  private static boolean initialized = false;
-  private static List<String> typeNames = new ArrayList<>();
+  private static final AccountMap instance = new AccountMap();
+  // Kept from the first caller, the table outlives any activity
+  private static volatile Context appContext = null;
+  // The account types in the database, null until loaded or after they changed
+  private static volatile Catalog catalog = null;
+  // Counts the changes, so a table loaded while one was made is not kept
+  private static final AtomicInteger changes = new AtomicInteger();
 
   private AccountMap() {}
-  
+
   /**
    * Gets an instance of the AccountMap.
    * @param context of the activity
    * @return an instance of the AccountMap
    */
   public static AccountMap getInstance(Context context) {
-    myContext = context;
-
-    if (!initialized) {
-      initializeMap();
-      initialized = true;
+    if (appContext == null) {
+      appContext = context.getApplicationContext();
     }
 
     return instance;
   }
-  
+
   /**
-   * Updates this map to match the account types and account type IDs in the database.
+   * Forgets the account types, so they are read again the next time they are needed. Called
+   * whenever the account types in the database change.
    */
-  public static void initializeMap() {
-    // Resetting the current map
-    map.clear();
-    typeNames.clear();
-
-    // Connecting to database
-    DatabaseHelper dbHelper = new DatabaseHelper(myContext);
-
-    // Grabbing a list of all the account type IDs from the database
-    List<Integer> accTypeIds = dbHelper.getAccountTypeIds();
-
-    for (int typeId : accTypeIds) {
-      // Getting the matching key from the AccountTypes enumerator
-      String keyName = dbHelper.getAccountTypeName(typeId);
-      AccountTypes typeKey = AccountTypes.valueOf(keyName);
-      
-      // Inserting into map and name list
-      typeNames.add(keyName);
-      map.put(typeKey, typeId);
-    }
+  public static void invalidate() {
+    changes.incrementAndGet();
+    catalog = null;
   }
 
   /**
    * Updates this map to match the account types and account type IDs in the database.
    */
   public void updateMap() {
-    // Resetting the current map
-    map.clear();
-    typeNames.clear();
-
-    // Connecting to database
-    DatabaseHelper dbHelper = new DatabaseHelper(myContext);
-
-    // Grabbing a list of all the account type IDs from the database
-    List<Integer> accTypeIds = dbHelper.getAccountTypeIds();
-
-    for (int typeId : accTypeIds) {
-      // Getting the matching key from the AccountTypes enumerator
-      String keyName = dbHelper.getAccountTypeName(typeId);
-      AccountTypes typeKey = AccountTypes.valueOf(keyName);
-
-      // Inserting into map and name list
-      typeNames.add(keyName);
-      map.put(typeKey, typeId);
-    }
+    invalidate();
+    getCatalog();
   }
 
-
   /**
    * Returns the type ID of an account type in the database.
    * @param typeName the account type
@@ -91,21 +57,87 @@ public class AccountMap {
    */
   public int getTypeId(String typeName) {
     int typeId = -1;
-    
+
     try {
-      typeId = map.get(AccountTypes.valueOf(typeName.toUpperCase()));
+      typeId = getCatalog().types.getId(AccountTypes.valueOf(typeName.toUpperCase()));
     } catch (IllegalArgumentException e) {
       // Invalid account type, method will return -1
     }
-    
+
     return typeId;
   }
-  
+
+  /**
+   * Returns the account type of a type ID in the database.
+   * @param typeId the type ID
+   * @return the account type, null if the type ID is not in the database
+   */
+  public AccountTypes getType(int typeId) {
+    return getCatalog().types.getConstant(typeId);
+  }
+
+  /**
+   * Returns the name of an account type in the database.
+   * @param typeId the type ID
+   * @return the name, null if the type ID is not in the database
+   */
+  public String getTypeName(int typeId) {
+    return getCatalog().names.get(typeId);
+  }
+
+  /**
+   * Returns the interest rate of an account type in the database.
+   * @param typeId the type ID
+   * @return the interest rate, null if the type ID is not in the database
+   */
+  public BigDecimal getInterestRate(int typeId) {
+    return getCatalog().interestRates.get(typeId);
+  }
+
   public boolean containsTypeId(int typeId) {
-    return map.containsValue(typeId);
+    return getCatalog().types.containsId(typeId);
   }
 
   public List<String> getAccountTypes() {
-    return typeNames;
+    return getCatalog().types.getNames();
+  }
+
+  /**
+   * Gets the account types, reading them from the database if they changed.
+   */
+  private static Catalog getCatalog() {
+    Catalog current = catalog;
+    if (current != null) {
+      return current;
+    }
+
+    synchronized (AccountMap.class) {
+      current = catalog;
+      if (current == null) {
+        int seen = changes.get();
+        DatabaseHelper dbHelper = new DatabaseHelper(appContext);
+        current = new Catalog(dbHelper.getAccountTypeNames(), dbHelper.getInterestRates());
+        if (changes.get() == seen) {
+          catalog = current;
+        }
+      }
+      return current;
+    }
+  }
+
+  /**
+   * The account types in the database, never changed once loaded.
+   */
+  private static final class Catalog {
+    private final EnumIdTable<AccountTypes> types;
+    // The name and interest rate of every type ID, null for IDs that are not in the database
+    private final IdTable<String> names;
+    private final IdTable<BigDecimal> interestRates;
+
+    private Catalog(Map<Integer, String> names, Map<Integer, BigDecimal> interestRates) {
+      this.types = new EnumIdTable<>(AccountTypes.class, names);
+      this.names = new IdTable<>(names);
+      this.interestRates = new IdTable<>(interestRates);
+    }
   }
 }
@@ -0,0 +1,60 @@
+package com.bank.generics;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Values looked up by the ID of their row. Small IDs are kept in an array, larger ones in a map,
+ * so a row with a large ID cannot make the table take a lot of memory. A table is never changed
+ * once built, so any number of threads can read it without locking.
+ * @param <V> the type of the values
+ */
+final class IdTable<V> {
+  // SQLite gives rows small IDs, so IDs above this are rare and kept in the map
+  private static final int MAX_ARRAY_ID = 1023;
+
+  // The value of every ID up to the largest one below the limit, null if it has none
+  private final Object[] values;
+  private final Map<Integer, V> largeIds;
+
+  /**
+   * Builds a table. Rows with a negative ID are left out.
+   * @param rows the value of every ID
+   */
+  IdTable(Map<Integer, V> rows) {
+    int maxId = -1;
+    Map<Integer, V> largeIds = new HashMap<>();
+
+    for (Map.Entry<Integer, V> row : rows.entrySet()) {
+      int id = row.getKey();
+      if (id > MAX_ARRAY_ID) {
+        largeIds.put(id, row.getValue());
+      } else if (id >= 0) {
+        maxId = Math.max(maxId, id);
+      }
+    }
+
+    this.values = new Object[maxId + 1];
+    for (Map.Entry<Integer, V> row : rows.entrySet()) {
+      int id = row.getKey();
+      if (id >= 0 && id <= maxId) {
+        values[id] = row.getValue();
+      }
+    }
+    this.largeIds = largeIds.isEmpty() ? Collections.<Integer, V>emptyMap() : largeIds;
+  }
+
+  /**
+   * Gets the value of an ID.
+   * @param id the ID
+   * @return the value, null if the ID has none
+   */
+  @SuppressWarnings("unchecked")
+  V get(int id) {
+    if (id >= 0 && id < values.length) {
+      return (V) values[id];
+    }
+    return id > MAX_ARRAY_ID ? largeIds.get(id) : null;
+  }
+}
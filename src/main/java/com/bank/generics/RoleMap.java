@@ -3,72 +3,50 @@ package com.bank.generics;
 import android.content.Context;
 
 import com.bank.database.android.DatabaseHelper;
-import java.util.EnumMap;
-import java.util.List;
+
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class RoleMap {
-  private static EnumMap<Roles, Integer> map = new EnumMap<>(Roles.class);
-  private static RoleMap instance = new RoleMap();
-  private static Context myContext = null;
-  private static boolean initialized = false;
-  
+  private static final RoleMap instance = new RoleMap();
+  // Kept from the first caller, the table outlives any activity
+  private static volatile Context appContext = null;
+  // The roles in the database, null until loaded or after they changed
+  private static volatile EnumIdTable<Roles> table = null;
+  // Counts the changes, so a table loaded while one was made is not kept
+  private static final AtomicInteger changes = new AtomicInteger();
+
   private RoleMap() {}
-  
+
   /**
    * Gets an instance of the RoleMap.
    * @param context of the activity
    * @return an instance of the rolemap
    */
   public static RoleMap getInstance(Context context) {
-    myContext = context;
-
-    if (!initialized) {
-      initializeMap();
-      initialized = true;
+    if (appContext == null) {
+      appContext = context.getApplicationContext();
     }
 
     return instance;
   }
 
-  private static void initializeMap() {
-    // Resetting the current map
-    map.clear();
-    DatabaseHelper dbHelper = new DatabaseHelper(myContext);
-
-    // Grabbing a list of all the role IDs from the database
-    List<Integer> roleIds = dbHelper.getRoleIds();
-
-    for (int roleId : roleIds) {
-      // Getting the matching key from the Roles enumerator
-      String keyName = dbHelper.getRoleName(roleId);
-      Roles typeKey = Roles.valueOf(keyName);
-
-      // Inserting into map
-      map.put(typeKey, roleId);
-    }
+  /**
+   * Forgets the roles, so they are read again the next time they are needed. Called whenever
+   * the roles in the database change.
+   */
+  public static void invalidate() {
+    changes.incrementAndGet();
+    table = null;
   }
 
   /**
    * Updates this map to match the roles and role IDs in the database.
    */
   public void updateMap() {
-    // Resetting the current map
-    map.clear();
-    DatabaseHelper dbHelper = new DatabaseHelper(myContext);
-
-    // Grabbing a list of all the role IDs from the database
-    List<Integer> roleIds = dbHelper.getRoleIds();
-
-    for (int roleId : roleIds) {
-      // Getting the matching key from the Roles enumerator
-      String keyName = dbHelper.getRoleName(roleId);
-      Roles typeKey = Roles.valueOf(keyName);
-      
-      // Inserting into map
-      map.put(typeKey, roleId);
-    }
+    invalidate();
+    getTable();
   }
-  
+
   /**
    * Returns the role ID of a role in the database.
    * @param roleName the name of the role
@@ -76,20 +54,48 @@ public class RoleMap {
    */
   public int getRoleId(String roleName) {
     int roleId = -1;
-    
+
     try {
-      roleId = map.get(Roles.valueOf(roleName.toUpperCase()));
+      roleId = getTable().getId(Roles.valueOf(roleName.toUpperCase()));
     } catch (IllegalArgumentException e) {
       // Invalid role, method will return -1
     }
-    
+
     return roleId;
   }
-  
-  public boolean containsRoleId(int roleId) {
-    return map.containsValue(roleId);
+
+  /**
+   * Returns the role of a role ID in the database.
+   * @param roleId the role ID
+   * @return the role, null if the role ID is not in the database
+   */
+  public Roles getRole(int roleId) {
+    return getTable().getConstant(roleId);
   }
-}
 
+  public boolean containsRoleId(int roleId) {
+    return getTable().containsId(roleId);
+  }
 
+  /**
+   * Gets the roles, reading them from the database in one query if they changed.
+   */
+  private static EnumIdTable<Roles> getTable() {
+    EnumIdTable<Roles> current = table;
+    if (current != null) {
+      return current;
+    }
 
+    synchronized (RoleMap.class) {
+      current = table;
+      if (current == null) {
+        int seen = changes.get();
+        current = new EnumIdTable<>(Roles.class, new DatabaseHelper(appContext).getRoleNames());
+        if (changes.get() == seen) {
+          table = current;
+        }
+      }
+      return current;
+    }
+  }
+}
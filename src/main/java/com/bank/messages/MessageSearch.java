@@ -0,0 +1,142 @@
+package com.bank.messages;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Ranks the matches of a search over the message index by BM25, keeping only the best ones as
+ * the matches are read. The score of a match is worked out from its SQLite matchinfo, which
+ * must be asked for with the 'pcnalx' format.
+ */
+public class MessageSearch {
+  private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+  // The usual BM25 weights, for how much repeated words and the length of a message count
+  private static final double K1 = 1.2;
+  private static final double B = 0.75;
+
+  // The best matches so far, the worst of them first
+  private final PriorityQueue<Match> best;
+  private final int limit;
+
+  /**
+   * Starts a search.
+   * @param limit the most matches kept
+   */
+  public MessageSearch(int limit) {
+    this.limit = limit;
+    this.best = new PriorityQueue<>(Math.max(1, limit), WORST_FIRST);
+  }
+
+  /**
+   * Turns what a user typed into a full-text query that finds the messages with every word in
+   * it. The words are quoted, so nothing typed is read as query syntax.
+   * @param query the words to search for
+   * @return the full-text query, null if there are no words to search for
+   */
+  public static String toMatchQuery(String query) {
+    StringBuilder match = new StringBuilder();
+    Matcher words = WORD.matcher(query);
+
+    while (words.find()) {
+      if (match.length() > 0) {
+        match.append(' ');
+      }
+      match.append('"').append(words.group()).append('"');
+    }
+
+    return match.length() > 0 ? match.toString() : null;
+  }
+
+  /**
+   * Scores a match and keeps it if it is one of the best so far.
+   * @param messageId the message that matched
+   * @param matchinfo the matchinfo of the match
+   */
+  public void add(int messageId, byte[] matchinfo) {
+    if (limit <= 0) {
+      return;
+    }
+
+    Match match = new Match(messageId, score(matchinfo));
+    if (best.size() < limit) {
+      best.add(match);
+    } else if (WORST_FIRST.compare(match, best.peek()) > 0) {
+      best.poll();
+      best.add(match);
+    }
+  }
+
+  /**
+   * Gets the best matches.
+   * @return the IDs of the messages, the best match first
+   */
+  public List<Integer> getMessageIds() {
+    List<Match> matches = new ArrayList<>(best);
+    Collections.sort(matches, Collections.reverseOrder(WORST_FIRST));
+
+    List<Integer> messageIds = new ArrayList<>();
+    for (Match match : matches) {
+      messageIds.add(match.messageId);
+    }
+    return messageIds;
+  }
+
+  private static double score(byte[] matchinfo) {
+    IntBuffer info = ByteBuffer.wrap(matchinfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+    int phrases = info.get(0);
+    int columns = info.get(1);
+    long messages = info.get(2) & 0xFFFFFFFFL;
+    double score = 0;
+
+    // After p, c and n come the average and own length of every column, then three numbers for
+    // every phrase in every column: its hits here, its hits in all messages, the messages it is in
+    for (int column = 0; column < columns; column++) {
+      double averageLength = Math.max(1, info.get(3 + column) & 0xFFFFFFFFL);
+      double length = info.get(3 + columns + column) & 0xFFFFFFFFL;
+
+      for (int phrase = 0; phrase < phrases; phrase++) {
+        int hits = 3 + 2 * columns + 3 * (phrase * columns + column);
+        double frequency = info.get(hits) & 0xFFFFFFFFL;
+        double containing = info.get(hits + 2) & 0xFFFFFFFFL;
+        if (frequency == 0) {
+          continue;
+        }
+
+        // Kept above zero, so a word that is in most messages still counts for a little
+        double idf = Math.max(0.01,
+            Math.log((messages - containing + 0.5) / (containing + 0.5)));
+        score += idf * frequency * (K1 + 1)
+            / (frequency + K1 * (1 - B + B * length / averageLength));
+      }
+    }
+
+    return score;
+  }
+
+  // Lower scores first, and older messages first among equal scores
+  private static final Comparator<Match> WORST_FIRST = new Comparator<Match>() {
+    @Override
+    public int compare(Match first, Match second) {
+      int byScore = Double.compare(first.score, second.score);
+      return byScore != 0 ? byScore : Integer.compare(first.messageId, second.messageId);
+    }
+  };
+
+  private static final class Match {
+    private final int messageId;
+    private final double score;
+
+    private Match(int messageId, double score) {
+      this.messageId = messageId;
+      this.score = score;
+    }
+  }
+}
@@ -0,0 +1,169 @@
+package com.bank.messages;
+
+import android.content.Context;
+
+import com.bank.database.android.DatabaseHelper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Leaves the messages the bank sends on its own, like interest and account changes, without
+ * making the customer wait for them to be written. Messages are queued and written by a single
+ * thread, as many as are waiting in one transaction. A batch that could not be written is tried
+ * again, before anything queued after it. Android does not run shutdown hooks and may kill the
+ * process at any time, so a message that must not be lost is written in the same transaction as
+ * the change it is about instead of being sent here.
+ */
+public class NotificationQueue {
+  private static final int CAPACITY = 1024;
+  private static final int MAX_BATCH = 128;
+  private static final long RETRY_MILLIS = 100;
+  private static final long MAX_RETRY_MILLIS = 5000;
+
+  private static NotificationQueue instance = null;
+
+  private final DatabaseHelper dbHelper;
+  private final BlockingQueue<Message> queue = new ArrayBlockingQueue<>(CAPACITY);
+  // How many messages were queued and how many of those were written
+  private final Object progress = new Object();
+  private long sent = 0;
+  private long written = 0;
+
+  private NotificationQueue(Context context) {
+    this.dbHelper = new DatabaseHelper(context);
+  }
+
+  /**
+   * Gets the queue of the process, starting its writer the first time.
+   * @param context any context, only its application context is kept
+   * @return the queue
+   */
+  public static synchronized NotificationQueue getInstance(Context context) {
+    if (instance == null) {
+      instance = new NotificationQueue(context.getApplicationContext());
+      instance.start();
+    }
+
+    return instance;
+  }
+
+  /**
+   * Queues a message to be left for a user. Waits for room if the queue is full.
+   * @param userId the user the message is for
+   * @param message the contents of the message
+   */
+  public void send(int userId, String message) {
+    Message notification = new Message(-1, userId, message, 0);
+
+    try {
+      queue.put(notification);
+      queued();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      // Written by the sender rather than lost
+      insert(Collections.singletonList(notification));
+    }
+  }
+
+  /**
+   * Queues a message to be left for a user without waiting for room. If the queue is full the
+   * message is written by the caller instead.
+   * @param userId the user the message is for
+   * @param message the contents of the message
+   * @return true if the message was queued or written, false if it could not be written
+   */
+  public boolean offer(int userId, String message) {
+    Message notification = new Message(-1, userId, message, 0);
+
+    if (queue.offer(notification)) {
+      queued();
+      return true;
+    }
+
+    return insert(Collections.singletonList(notification));
+  }
+
+  /**
+   * Waits until every message queued so far has been written. Keep the timeout short when
+   * calling it on the main thread.
+   * @param timeoutMillis the longest to wait
+   * @return true if they were all written, false if the time ran out
+   */
+  public boolean flush(long timeoutMillis) {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+
+    synchronized (progress) {
+      long target = sent;
+      while (written < target) {
+        long left = deadline - System.currentTimeMillis();
+        if (left <= 0) {
+          return false;
+        }
+
+        try {
+          progress.wait(left);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return false;
+        }
+      }
+    }
+
+    return true;
+  }
+
+  private void start() {
+    Thread writer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        List<Message> batch = new ArrayList<>();
+        long retryMillis = RETRY_MILLIS;
+
+        while (true) {
+          try {
+            if (batch.isEmpty()) {
+              batch.add(queue.take());
+              queue.drainTo(batch, MAX_BATCH - 1);
+            }
+
+            if (insert(batch)) {
+              synchronized (progress) {
+                written += batch.size();
+                progress.notifyAll();
+              }
+              batch = new ArrayList<>();
+              retryMillis = RETRY_MILLIS;
+            } else {
+              // The batch is kept and tried again, waiting longer each time it fails
+              Thread.sleep(retryMillis);
+              retryMillis = Math.min(retryMillis * 2, MAX_RETRY_MILLIS);
+            }
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+      }
+    }, "bank-notifications");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  private void queued() {
+    synchronized (progress) {
+      sent++;
+    }
+  }
+
+  private boolean insert(List<Message> messages) {
+    try {
+      return dbHelper.insertMessages(messages) != -1;
+    } catch (Exception e) {
+      e.printStackTrace();
+      return false;
+    }
+  }
+}
@@ -2,21 +2,24 @@ package com.bank.userinterfaces;
 
 import android.content.Context;
 
+import com.bank.accounts.Money;
 import com.bank.database.android.DatabaseHelper;
+import com.bank.database.android.InterestEngine;
 import com.bank.exceptions.IllegalAgeException;
 import com.bank.generics.RoleMap;
 import com.bank.messages.Message;
+import com.bank.messages.NotificationQueue;
 import com.bank.users.User;
 
-import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 public class AdminTerminal {
   private User currentAdmin = null;
   private boolean currentAdminAuthenticated = false;
   private RoleMap roleMap;
   private DatabaseHelper dbHelper;
+  private Context context;
   
   /**
    * Constructor.
@@ -24,6 +27,7 @@ public class AdminTerminal {
    * @param adminPw Admin's Password
    */
   public AdminTerminal(Context context, int adminId, String adminPw) {
+    this.context = context;
     this.roleMap = RoleMap.getInstance(context);
     dbHelper = new DatabaseHelper(context);
     this.currentAdmin = dbHelper.getUserObject(adminId);
@@ -67,21 +71,10 @@ public class AdminTerminal {
    * @return String representation of all admins
    */
   public String listAdmins() {
-    User users;
-    int i = 1;
     String alladmins = "Current Admins: ";
-    
-    int adminRoleId = roleMap.getRoleId("ADMIN");
-    // Grab all users in the database and sort them
-    try {
-      while ((users = dbHelper.getUserObject(i)) != null) {
-        if (users.getRoleId() == adminRoleId) {
-          alladmins += " " + users.getName() + " (ID: " + users.getId() + "),";
-        }
-        i ++;
-      }
-    } catch (Exception e) {
-      i ++;
+
+    for (User admin : listUsersByRole(roleMap.getRoleId("ADMIN"))) {
+      alladmins += " " + admin.getName() + " (ID: " + admin.getId() + "),";
     }
     return alladmins.substring(0, alladmins.length() - 1);
   }
@@ -91,41 +84,46 @@ public class AdminTerminal {
    * @return String representation of all tellers
    */
   public String listTellers() {
-    User users;
-    int i = 1;
-    
     String alltellers = "Current Tellers: ";
-    
-    int tellerRoleId = roleMap.getRoleId("TELLER");
-    
-    // Grab all users in the database and sort them
-    try {
-      while ((users = dbHelper.getUserObject(i)) != null) {
-        if (users.getRoleId() == tellerRoleId) {
-          alltellers += " " + users.getName() + " (ID: " + users.getId() + "),";
-        }
-        i ++;
-      }
-    } catch (Exception e) {
-      i ++;
+
+    for (User teller : listUsersByRole(roleMap.getRoleId("TELLER"))) {
+      alltellers += " " + teller.getName() + " (ID: " + teller.getId() + "),";
     }
     return alltellers.substring(0, alltellers.length() - 1);
   }
   
   /**
-   * Lists all customers in the database.
-   * @return String representation of all customers
+   * Lists all users with the given role.
+   * @param roleId id of the role
+   * @return list of the users, ordered by ID
    */
   public List<User> listUsersByRole(int roleId) {
-    List<User> users = new ArrayList<>();
+    return listUsersByRole(roleId, 0, -1);
+  }
 
-    for (int userId : dbHelper.getUserIds()) {
-      if (dbHelper.getUserRole(userId) == roleId) {
-        users.add(dbHelper.getUserObject(userId));
-      }
+  /**
+   * Lists one page of the users with the given role.
+   * @param roleId id of the role
+   * @param offset the number of users skipped
+   * @param limit the most users returned, or a negative number for all of them
+   * @return list of the users, ordered by ID
+   */
+  public List<User> listUsersByRole(int roleId, int offset, int limit) {
+    return dbHelper.getUsersByRole(roleId, offset, limit);
+  }
+
+  /**
+   * Gives every account in the bank the interest of its type, such as at the end of the month.
+   * @return the number of accounts that got interest, or -1 if none did
+   */
+  public int giveAllInterest() {
+    int posted = -1;
+
+    if (this.currentAdminAuthenticated) {
+      posted = new InterestEngine(this.context).postInterest();
     }
-    
-    return users;
+
+    return posted;
   }
 
   /**
@@ -137,9 +135,26 @@ public class AdminTerminal {
     List<Message> messages = dbHelper.getMessageList((userId));
 
     if (messages != null) {
-      for (Message message : messages) {
-        dbHelper.updateUserMessageState(message.getId());
-      }
+      // Everything in the inbox was listed, so it is marked read with one update, up to the
+      // last message listed
+      dbHelper.markAllViewed(userId, messages);
+    }
+
+    return messages;
+  }
+
+  /**
+   * Get a page of the messages of the given userId, newest first.
+   * @param userId of the person you wanna see messages from
+   * @param afterId id of the last message of the previous page, 0 for the first page
+   * @param limit the most messages on the page
+   * @return list of messages
+   */
+  public List<Message> listMessages(int userId, int afterId, int limit) {
+    List<Message> messages = dbHelper.getMessageList(userId, afterId, limit);
+
+    if (messages != null) {
+      dbHelper.markViewed(messages);
     }
 
     return messages;
@@ -153,18 +168,15 @@ public class AdminTerminal {
   public String viewMessage(int messageId) {
     // Check authentication
   
-    String specificMessage = dbHelper.getSpecificMessage(messageId);
+    Message message = dbHelper.getMessage(messageId);
     String result = "";
-    // Get all the Admin's messages
-    List<Message> messages = dbHelper.getMessageList(this.currentAdmin.getId());
-    // Go through the Admin's messages
-    for (Message message : messages) {
-      // Check that the message is the Admin's
-      if (message.getMessage().equals(specificMessage)) {
-        // update viewed status and return the message
+    // Check that the message is the Admin's
+    if (message != null && message.getUserId() == this.currentAdmin.getId()) {
+      // update viewed status and return the message
+      if (message.getViewed() == 0) {
         dbHelper.updateUserMessageState(messageId);
-        result = specificMessage;
       }
+      result = message.getMessage();
     }
     return result;
   }
@@ -178,6 +190,27 @@ public class AdminTerminal {
     return dbHelper.getSpecificMessage(messageId);
   }
 
+  /**
+   * Searches every message for the given words.
+   * @param query the words to search for
+   * @param limit the most messages found
+   * @return the messages found, best matches first
+   */
+  public List<Message> searchMessages(String query, int limit) {
+    return searchMessages(query, 0, limit);
+  }
+
+  /**
+   * Searches the messages of the given userId for the given words.
+   * @param query the words to search for
+   * @param userId of the person whose messages are searched, 0 for everyone
+   * @param limit the most messages found
+   * @return the messages found, best matches first
+   */
+  public List<Message> searchMessages(String query, int userId, int limit) {
+    return dbHelper.searchMessages(query, userId, limit);
+  }
+
   /**
    * Promotes the given teller to an Admin.
    * @param tellerId id of the teller that is getting promoted
@@ -191,7 +224,8 @@ public class AdminTerminal {
     }
 
     if (success) {
-      createMessage(tellerId, "You have been promoted to an administrator.");
+      NotificationQueue.getInstance(context).offer(tellerId,
+          "You have been promoted to an administrator.");
     }
 
     return success;
@@ -224,19 +258,27 @@ public class AdminTerminal {
 
   /**
    * Gets the total mamount of money in the bank.
-   * @return BigDecimal, total amount of money in the bank
+   * @return Money, total amount of money in the bank
    */
-  public BigDecimal getTotalMoney() {
-    BigDecimal total = new BigDecimal("0");
+  public Money getTotalMoney() {
+    // Each owned account is counted once, even if it has several owners
+    return dbHelper.getTotalBalance();
+  }
 
-    for (int userId : dbHelper.getUserIds()) {
-      for (int accountId : dbHelper.getUsersAccIds(userId)) {
-        BigDecimal accBalance = dbHelper.getBalance(accountId);
-        total = total.add(accBalance);
-      }
-    }
+  /**
+   * Gets the total amount of money in the bank for each account type.
+   * @return the totals by account type name
+   */
+  public Map<String, Money> getTotalMoneyByType() {
+    return dbHelper.getTotalBalanceByType();
+  }
 
-    return total;
+  /**
+   * Gets the total amount of money owned by the users of each role.
+   * @return the totals by role name
+   */
+  public Map<String, Money> getTotalMoneyByRole() {
+    return dbHelper.getTotalBalanceByRole();
   }
 
   /**
@@ -244,16 +286,7 @@ public class AdminTerminal {
    * @param userId the customer's ID
    * @return the total balance
    */
-  public BigDecimal userTotalBalance(int userId) {
-    BigDecimal total = new BigDecimal("0");
-    List<Integer> accountIds = dbHelper.getUsersAccIds(userId);
-
-    if (accountIds != null) {
-      for (int accountId : accountIds) {
-        total = total.add(dbHelper.getBalance(accountId));
-      }
-    }
-
-    return total;
+  public Money userTotalBalance(int userId) {
+    return dbHelper.getUserTotalBalance(userId);
   }
 }
@@ -3,7 +3,9 @@ package com.bank.userinterfaces;
 import android.content.Context;
 
 import com.bank.accounts.Account;
+import com.bank.accounts.Money;
 import com.bank.database.android.DatabaseHelper;
+import com.bank.database.android.TransferEngine;
 import com.bank.exceptions.InsufficientFundsException;
 import com.bank.exceptions.InsufficientPermissionException;
 import com.bank.exceptions.InvalidAccountException;
@@ -12,7 +14,6 @@ import com.bank.generics.RoleMap;
 import com.bank.messages.Message;
 import com.bank.users.Customer;
 import com.bank.users.User;
-import java.math.BigDecimal;
 import java.util.List;
 
 public class Atm {
@@ -47,6 +48,7 @@ public class Atm {
    * @param customerId the ID of a user in the database.
    */
   public Atm(Context context, int customerId) {
+    this.context = context;
     dbHelper = new DatabaseHelper(context);
     User user = dbHelper.getUserObject(customerId);
 
@@ -81,7 +83,7 @@ public class Atm {
     List<Account> accounts = null;
 
     if (this.currentCustomer != null && this.authenticated) {
-      accounts = this.currentCustomer.getAccounts();
+      accounts = this.currentCustomer.refreshAccounts();
     }
 
     return accounts;
@@ -94,22 +96,13 @@ public class Atm {
    * @return true if the deposit was successful, false otherwise
    * @throws InvalidAccountException if the account was not found in the user's account
    */
-  public boolean makeDeposit(BigDecimal amount, int accountId) throws InvalidAccountException {
+  public boolean makeDeposit(Money amount, int accountId) throws InvalidAccountException {
     boolean completed = false;
 
     if (this.currentCustomer != null && this.authenticated) {
-      List<Integer> customerAccs = dbHelper.getUsersAccIds(this.currentCustomer.getId());
-
-
       // Checking if the account is of the customer's
-      if (customerAccs.contains(accountId)) {
-        BigDecimal currentBalance = dbHelper.getBalance(accountId);
-        BigDecimal newBalance = currentBalance.add(amount);
-        // Rounding
-        newBalance = newBalance.setScale(2, BigDecimal.ROUND_HALF_UP);
-        // Updating
-        dbHelper.updateAccountBalance(newBalance, accountId);
-        completed = true;
+      if (dbHelper.isOwner(this.currentCustomer.getId(), accountId)) {
+        completed = new TransferEngine(context).deposit(accountId, amount);
       } else {
         throw new InvalidAccountException();
       }
@@ -124,14 +117,12 @@ public class Atm {
    * @return the balance of the account
    * @throws InvalidAccountException if the account was not found in the user's accounts
    */
-  public BigDecimal checkBalance(int accountId) throws InvalidAccountException {
-    BigDecimal balance = null;
+  public Money checkBalance(int accountId) throws InvalidAccountException {
+    Money balance = null;
 
     if (this.currentCustomer != null && this.authenticated) {
-      List<Integer> customerAccs = dbHelper.getUsersAccIds(this.currentCustomer.getId());
-
       // Checking if the account is of the customer's
-      if (customerAccs.contains(accountId)) {
+      if (dbHelper.isOwner(this.currentCustomer.getId(), accountId)) {
         balance = dbHelper.getBalance(accountId);
       } else {
         throw new InvalidAccountException();
@@ -151,29 +142,18 @@ public class Atm {
    * @throws InsufficientPermissionException if the customer is trying to withdraw from a Rsa
    */
 
-  public boolean makeWithdrawal(BigDecimal amount, int accountId) throws InsufficientFundsException,
+  public boolean makeWithdrawal(Money amount, int accountId) throws InsufficientFundsException,
       InvalidAccountException, InsufficientPermissionException {
     boolean completed = false;
     int rsaTypeId = AccountMap.getInstance(context).getTypeId("RESTRICTEDSAVING");
 
     if (this.currentCustomer != null && this.authenticated) {
-      List<Integer> customerAccs = dbHelper.getUsersAccIds(this.currentCustomer.getId());
       Account account = dbHelper.getAccountObject(accountId);
       if (account.getType() != rsaTypeId) {
-        if (customerAccs.contains(accountId)) {
+        if (dbHelper.isOwner(this.currentCustomer.getId(), accountId)) {
           // Checking if the customer owns the account
-          BigDecimal currentBalance = dbHelper.getBalance(accountId);
-          BigDecimal newBalance = currentBalance.subtract(amount);
-          // Rounding
-          newBalance = newBalance.setScale(2, BigDecimal.ROUND_HALF_UP);
-
-          if (newBalance.signum() != -1) {
-            // Updating
-            dbHelper.updateAccountBalance(newBalance, accountId);
-            completed = true;
-          } else {
-            throw new InsufficientFundsException();
-          }
+          completed = new TransferEngine(context).withdraw(accountId, amount,
+              this.currentCustomer.getId());
         } else {
           throw new InvalidAccountException();
         }
@@ -191,18 +171,15 @@ public class Atm {
    * @return the message
    */
   public String viewMessage(int messageId) {
-    String specificMessage = dbHelper.getSpecificMessage(messageId);
+    Message message = dbHelper.getMessage(messageId);
     String result = "";
-    // Get all the users messages
-    List<Message> messages = dbHelper.getMessageList(currentCustomer.getId());
-    // Go through the users messages
-    for (Message message: messages) {
-      // Check that the message is the users
-      if (message.getMessage().equals(specificMessage)) {
-        // update viewed status and return the message
+    // Check that the message is the users
+    if (message != null && message.getUserId() == currentCustomer.getId()) {
+      // update viewed status and return the message
+      if (message.getViewed() == 0) {
         dbHelper.updateUserMessageState(messageId);
-        result =  specificMessage;
       }
+      result = message.getMessage();
     }
     return result;
   }
@@ -215,9 +192,26 @@ public class Atm {
     List<Message> messages = dbHelper.getMessageList((this.currentCustomer.getId()));
 
     if (messages != null) {
-      for (Message message : messages) {
-        dbHelper.updateUserMessageState(message.getId());
-      }
+      // Everything in the inbox was listed, so it is marked read with one update, up to the
+      // last message listed
+      dbHelper.markAllViewed(this.currentCustomer.getId(), messages);
+    }
+
+    return messages;
+  }
+
+  /**
+   * List a page of the messages of the current Customer, newest first.
+   * @param afterId id of the last message of the previous page, 0 for the first page
+   * @param limit the most messages on the page
+   * @return a list of messages
+   */
+  public List<Message> listMyMessages(int afterId, int limit) {
+    List<Message> messages = dbHelper.getMessageList(this.currentCustomer.getId(), afterId,
+        limit);
+
+    if (messages != null) {
+      dbHelper.markViewed(messages);
     }
 
     return messages;
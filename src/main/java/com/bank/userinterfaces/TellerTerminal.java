@@ -3,7 +3,9 @@ package com.bank.userinterfaces;
 import android.content.Context;
 
 import com.bank.accounts.Account;
+import com.bank.accounts.Money;
 import com.bank.database.android.DatabaseHelper;
+import com.bank.database.android.TransferEngine;
 import com.bank.exceptions.IllegalAgeException;
 import com.bank.exceptions.InsufficientFundsException;
 import com.bank.exceptions.InsufficientPermissionException;
@@ -14,10 +16,12 @@ import com.bank.messages.Message;
 import com.bank.security.PasswordHelpers;
 import com.bank.users.Customer;
 import com.bank.users.User;
-import java.math.BigDecimal;
 import java.util.List;
 
 public class TellerTerminal extends Atm {
+  // Savings accounts that go below this become chequing accounts
+  private static final Money SAVING_MINIMUM = Money.ofCents(100000);
+
   private User currentUser = null;
   private boolean currentUserAuthenticated = false;
   private Customer currentCustomer = null;
@@ -48,12 +52,12 @@ public class TellerTerminal extends Atm {
    * Makes a new account and registers it to the current customer.
    *
    * @param name  a nonempty name of the account
-   * @param balance the balance of the account with 2 decimal places
+   * @param balance the balance of the account
    * @param type  the type of account from the AccountType enumerator
    * @return the ID of the new UserAccount, -1 otherwise
    */
 
-  public long makeNewAccount(String name, BigDecimal balance, int type) {
+  public long makeNewAccount(String name, Money balance, int type) {
     long accountId = -1;
 
     if (this.currentUser != null && this.currentCustomer != null && this.currentUserAuthenticated
@@ -131,12 +135,10 @@ public class TellerTerminal extends Atm {
    */
   public void giveInterest(int accountId) {
     if (this.currentUserAuthenticated && this.currentCustomerAuthenticated) {
-      List<Integer> customerAccIds = dbHelper.getUsersAccIds(this.currentCustomer.getId());
-
-      if (customerAccIds.contains(accountId)) {
+      if (dbHelper.isOwner(this.currentCustomer.getId(), accountId)) {
         // Loop through the customer's accounts to find the matching account
         // and give interest based on the type
-        for (Account account : this.currentCustomer.getAccounts()) {
+        for (Account account : this.currentCustomer.refreshAccounts()) {
           if (account.getId() == accountId) {
             account.findAndSetInterestRate();
             account.addInterest();
@@ -170,28 +172,20 @@ public class TellerTerminal extends Atm {
     if (this.currentCustomer != null && this.currentUserAuthenticated
         //&& this.currentCustomerAuthenticated
         ) {
-      accounts = this.currentCustomer.getAccounts();
+      accounts = this.currentCustomer.refreshAccounts();
     }
 
     return accounts;
   }
 
-  @Override public boolean makeDeposit(BigDecimal amount, int accountId)
+  @Override public boolean makeDeposit(Money amount, int accountId)
       throws InvalidAccountException {
     boolean completed = false;
 
     // Checking that the customer is authenticated
     if (this.currentCustomer != null && this.currentUserAuthenticated) {
-      List<Integer> customerAccs = dbHelper.getUsersAccIds(this.currentCustomer.getId());
-
-      if (customerAccs.contains(accountId)) {
-        BigDecimal currentBalance = dbHelper.getBalance(accountId);
-        BigDecimal newBalance = currentBalance.add(amount);
-        // Rounding
-        newBalance = newBalance.setScale(2, BigDecimal.ROUND_HALF_UP);
-        // Updating
-        dbHelper.updateAccountBalance(newBalance, accountId);
-        completed = true;
+      if (dbHelper.isOwner(this.currentCustomer.getId(), accountId)) {
+        completed = new TransferEngine(context).deposit(accountId, amount);
       } else {
         throw new InvalidAccountException();
       }
@@ -200,14 +194,12 @@ public class TellerTerminal extends Atm {
     return completed;
   }
 
-  @Override public BigDecimal checkBalance(int accountId) throws InvalidAccountException {
-    BigDecimal balance = null;
+  @Override public Money checkBalance(int accountId) throws InvalidAccountException {
+    Money balance = null;
 
     // Checking that the customer is authenticated
     if (this.currentCustomer != null && this.currentUserAuthenticated) {
-      List<Integer> customerAccs = dbHelper.getUsersAccIds(this.currentCustomer.getId());
-
-      if (customerAccs.contains(accountId)) {
+      if (dbHelper.isOwner(this.currentCustomer.getId(), accountId)) {
         balance = dbHelper.getBalance(accountId);
       } else {
         throw new InvalidAccountException();
@@ -217,19 +209,12 @@ public class TellerTerminal extends Atm {
     return balance;
   }
 
-  @Override public boolean makeWithdrawal(BigDecimal amount, int accountId) throws
+  @Override public boolean makeWithdrawal(Money amount, int accountId) throws
           InsufficientFundsException, InvalidAccountException, InsufficientPermissionException {
     boolean completed = false;
 
     if (this.currentCustomer != null && this.currentUserAuthenticated) {
-      List<Integer> customerAccs = dbHelper.getUsersAccIds(this.currentCustomer.getId());
-
-      if (customerAccs.contains(accountId)) {
-        BigDecimal currentBalance = dbHelper.getBalance(accountId);
-        BigDecimal newBalance = currentBalance.subtract(amount);
-        // Rounding
-        newBalance = newBalance.setScale(2, BigDecimal.ROUND_HALF_UP);
-
+      if (dbHelper.isOwner(this.currentCustomer.getId(), accountId)) {
         int type = dbHelper.getAccountType(accountId);
 
         RoleMap roleMap = RoleMap.getInstance(context);
@@ -240,24 +225,11 @@ public class TellerTerminal extends Atm {
           }
         }
 
-        if (newBalance.signum() != -1) {
-          // Switching account to savings if new balance is less than 1000
-          if (type == accountMap.getTypeId("SAVING")) {
-            if (newBalance.compareTo(new BigDecimal("1000")) == -1) {
-              dbHelper.updateAccountType(accountId, accountMap.getTypeId("CHEQUING"));
-              createMessage(this.currentCustomer.getId(), "Your savings account ID "
-                  + accountId + " has become a chequing account due to going "
-                      + "below the minimum balance of $1000.");
-            }
-          }
-
-          // Updating
-          dbHelper.updateAccountBalance(newBalance, accountId);
-          completed = true;
-        } else {
-          throw new InsufficientFundsException();
-        }
-
+        // Savings accounts going below the minimum become chequing accounts, and the customer
+        // is told in the same transaction as the withdrawal
+        TransferEngine engine = new TransferEngine(context, accountMap.getTypeId("SAVING"),
+            accountMap.getTypeId("CHEQUING"), SAVING_MINIMUM);
+        completed = engine.withdraw(accountId, amount, this.currentCustomer.getId());
       } else {
         throw new InvalidAccountException();
       }
@@ -297,18 +269,15 @@ public class TellerTerminal extends Atm {
 
     // Check authentication
     if (this.currentUserAuthenticated) {
-      String specificMessage = dbHelper.getSpecificMessage(messageId);
+      Message message = dbHelper.getMessage(messageId);
       String result = "";
-      // Get all the Teller's messages
-      List<Message> messages = dbHelper.getMessageList(currentUser.getId());
-      // Go through the Teller's messages
-      for (Message message : messages) {
-        // Check that the message is the Teller's
-        if (message.getMessage().equals(specificMessage)) {
-          // update viewed status and return the message
+      // Check that the message is the Teller's
+      if (message != null && message.getUserId() == currentUser.getId()) {
+        // update viewed status and return the message
+        if (message.getViewed() == 0) {
           dbHelper.updateUserMessageState(messageId);
-          result = specificMessage;
         }
+        result = message.getMessage();
       }
       return result;
     } else {
@@ -324,18 +293,15 @@ public class TellerTerminal extends Atm {
   public String viewCustomersMessage(int messageId) {
     // Check authentication
     if (this.currentUserAuthenticated && this.currentCustomerAuthenticated) {
-      String specificMessage = dbHelper.getSpecificMessage(messageId);
+      Message message = dbHelper.getMessage(messageId);
       String result = "";
-      // Get all the Customer's messages
-      List<Message> messages = dbHelper.getMessageList(currentCustomer.getId());
-      // Go through the Customer's messages
-      for (Message message : messages) {
-        // Check that the message is the Customer's
-        if (message.getMessage().equals(specificMessage)) {
-          // update viewed status and return the message
+      // Check that the message is the Customer's
+      if (message != null && message.getUserId() == currentCustomer.getId()) {
+        // update viewed status and return the message
+        if (message.getViewed() == 0) {
           dbHelper.updateUserMessageState(messageId);
-          result = specificMessage;
         }
+        result = message.getMessage();
       }
       return result;
     } else {
@@ -352,9 +318,26 @@ public class TellerTerminal extends Atm {
     List<Message> messages = dbHelper.getMessageList((userId));
 
     if (messages != null) {
-      for (Message message : messages) {
-        dbHelper.updateUserMessageState(message.getId());
-      }
+      // Everything in the inbox was listed, so it is marked read with one update, up to the
+      // last message listed
+      dbHelper.markAllViewed(userId, messages);
+    }
+
+    return messages;
+  }
+
+  /**
+   * Get a page of the messages of the given userId, newest first.
+   * @param userId of the person you wanna see messages from
+   * @param afterId id of the last message of the previous page, 0 for the first page
+   * @param limit the most messages on the page
+   * @return list of messages
+   */
+  public List<Message> listMessages(int userId, int afterId, int limit) {
+    List<Message> messages = dbHelper.getMessageList(userId, afterId, limit);
+
+    if (messages != null) {
+      dbHelper.markViewed(messages);
     }
 
     return messages;
@@ -396,21 +379,30 @@ public class TellerTerminal extends Atm {
    * @return true if money was sent, false otherwise
    * @throws InsufficientFundsException if source account does not have enough funds
    * @throws InsufficientPermissionException if user does not have permission
-   * @throws InvalidAccountException if the source account does not exist
+   * @throws InvalidAccountException if either account does not exist, or the source account
+   *     is not the customer's
    */
-  public boolean sendMoney(int fromAccount, int toAccount, BigDecimal amount) throws
+  public boolean sendMoney(int fromAccount, int toAccount, Money amount) throws
           InsufficientFundsException, InsufficientPermissionException, InvalidAccountException {
     boolean completed = false;
 
-    this.makeWithdrawal(amount, fromAccount);
+    if (this.currentCustomer != null && this.currentUserAuthenticated) {
+      // Checking if the customer owns the source account
+      if (!dbHelper.isOwner(this.currentCustomer.getId(), fromAccount)) {
+        throw new InvalidAccountException();
+      }
 
-    if (this.currentUserAuthenticated) {
-      BigDecimal currentBalance = dbHelper.getBalance(toAccount);
-      BigDecimal newBalance = currentBalance.add(amount);
-      // Rounding
-      newBalance = newBalance.setScale(2, BigDecimal.ROUND_HALF_UP);
-      // Updating
-      completed = dbHelper.updateAccountBalance(newBalance, toAccount);
+      // Customers cannot take money out of a restricted savings account
+      if (dbHelper.getAccountType(fromAccount) == accountMap.getTypeId("RESTRICTEDSAVING")
+          && dbHelper.getUserRole(this.currentUser.getId())
+          == RoleMap.getInstance(context).getRoleId("CUSTOMER")) {
+        throw new InsufficientPermissionException();
+      }
+
+      // Debit, credit and downgrade are made in a single transaction
+      TransferEngine engine = new TransferEngine(context, accountMap.getTypeId("SAVING"),
+          accountMap.getTypeId("CHEQUING"), SAVING_MINIMUM);
+      completed = engine.transfer(fromAccount, toAccount, amount, this.currentCustomer.getId());
     }
 
     return completed;
@@ -420,13 +412,11 @@ public class TellerTerminal extends Atm {
    * Returns the total balance of the current customer.
    * @return the total balance
    */
-  public BigDecimal customerTotalBalance() {
-    BigDecimal total = new BigDecimal("0");
+  public Money customerTotalBalance() {
+    Money total = Money.ZERO;
 
     if (this.currentUserAuthenticated) {
-      for (int accountId : dbHelper.getUsersAccIds(this.currentCustomer.getId())) {
-        total = total.add(dbHelper.getBalance(accountId));
-      }
+      total = dbHelper.getUserTotalBalance(this.currentCustomer.getId());
     }
 
     return total;
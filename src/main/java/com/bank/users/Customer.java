@@ -3,14 +3,14 @@ package com.bank.users;
 import android.content.Context;
 import com.bank.accounts.Account;
 import com.bank.database.android.DatabaseHelper;
-import java.util.ArrayList;
 import java.util.List;
 
 public class Customer extends UserImpl {
   // The name of the role of this user
   private final String role = "CUSTOMER";
  
-  private List<Account> accounts = new ArrayList<Account>();
+  // Loaded from the database the first time they are needed
+  private List<Account> accounts = null;
   private DatabaseHelper dbHelper = new DatabaseHelper(this.getContext());
   
   /**
@@ -23,7 +23,6 @@ public class Customer extends UserImpl {
   public Customer(Context context, int id, String name, int age, String address) {
     super(context, id, name, age, address);
     this.setRoleId(role);
-    findAndAddAccounts();
   }
   
   /**
@@ -38,32 +37,41 @@ public class Customer extends UserImpl {
       String address, boolean authenticated) {
     super(context, id, name, age, address, authenticated);
     this.setRoleId(role);
-    findAndAddAccounts();
   }
   
+  /**
+   * Gets the accounts of this customer. They are read from the database on the first call and
+   * kept afterwards, use {@link #refreshAccounts()} to read them again.
+   * @return the accounts of this customer
+   */
   public List<Account> getAccounts() {
-    updateAccounts();
+    if (this.accounts == null) {
+      refreshAccounts();
+    }
     return this.accounts;
   }
-  
-  public void addAccount(Account account) {
-    this.accounts.add(account);
-  }
-  
-  private void findAndAddAccounts() {
-    List<Integer> accountIds = dbHelper.getUsersAccIds(this.getId());
-    
-    for (int accountId : accountIds) {
-      this.addAccount(dbHelper.getAccountObject(accountId));
-    }
+
+  /**
+   * Reads the accounts of this customer from the database again, such as after a balance
+   * changed.
+   * @return the accounts of this customer
+   */
+  public List<Account> refreshAccounts() {
+    this.accounts = dbHelper.getUserAccounts(this.getId());
+    return this.accounts;
   }
-  
-  private void updateAccounts() {
-    List<Integer> accountIds = dbHelper.getUsersAccIds(this.getId());
-    
-    this.accounts.clear();
-    for (int accountId : accountIds) {
-      this.addAccount(dbHelper.getAccountObject(accountId));
+
+  /**
+   * Adds an account to the accounts of this customer, unless one with the same ID is already
+   * there.
+   * @param account the account
+   */
+  public void addAccount(Account account) {
+    for (Account existing : getAccounts()) {
+      if (existing.getId() == account.getId()) {
+        return;
+      }
     }
+    this.accounts.add(account);
   }
 }